@@ -117,6 +117,28 @@ public class ApiSecurityConfig {
         return http.build();
     }
 
+    /**
+     * Фильтр для actuator: health открыт, метрики и остальное - только для ADMIN.
+     */
+    @Order(4)
+    @Bean
+    public SecurityFilterChain actuatorSecurity(HttpSecurity http) throws Exception {
+        log.info("Starting actuator filter chain");
+        http
+                .securityMatcher("/actuator/**")
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers("/actuator/health/**").permitAll()
+                        .anyRequest().hasRole("ADMIN")
+                )
+                .oauth2ResourceServer(oauth2 -> oauth2
+                        .jwt(jt -> jt.jwtAuthenticationConverter(jwtAuthenticationConverter()))
+                )
+                .httpBasic(AbstractHttpConfigurer::disable)
+                .formLogin(AbstractHttpConfigurer::disable)
+                .csrf(AbstractHttpConfigurer::disable);
+        return http.build();
+    }
+
     /**
      * Извлекает из полей запроса значения ROLE.
      */
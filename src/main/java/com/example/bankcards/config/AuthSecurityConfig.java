@@ -3,6 +3,7 @@ package com.example.bankcards.config;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.CustomAuthenticationProvider;
 import com.example.bankcards.security.CustomPasswordEncoder;
+import com.example.bankcards.security.OwnerResolver;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.ApplicationRunner;
@@ -159,7 +160,7 @@ public class AuthSecurityConfig {
                     context.getClaims().claim("roles", roles);
 
                     // добавляем дополнительные данные о пользователе.
-                    context.getClaims().claim("user_id", user.getId().toString());      // в поле "sub" есть имя пользователя
+                    context.getClaims().claim(OwnerResolver.USER_ID_CLAIM, user.getId().toString());      // в поле "sub" есть имя пользователя
                     context.getClaims().claim("email", user.getEmail());
                 });
             }
@@ -0,0 +1,24 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Настройки фильтра Блума по HMAC номеров карт (предварительная проверка уникальности при создании карты).
+ */
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "var.card.hmac-bloom")
+public class CardHmacBloomProperties {
+    // false - фильтр не строится, наличие номера всегда проверяется запросом в БД
+    private boolean enabled = true;
+    // на сколько карт рассчитан фильтр (при большем числе растет доля ложных срабатываний)
+    private long expectedCards = 10_000_000;
+    // доля ложных срабатываний ("может быть" для нового номера) при expectedCards картах
+    private double falsePositiveRate = 0.01;
+    // сколько строк читать из БД за один запрос при построении фильтра
+    private int loadBatchSize = 10_000;
+}
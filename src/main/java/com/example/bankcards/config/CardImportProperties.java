@@ -0,0 +1,29 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Настройки импорта карт из файлов процессинга (CSV/NDJSON).
+ */
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "var.card.import")
+public class CardImportProperties {
+    // каталог, в который процессинг выкладывает файлы; импортируются только файлы из него
+    private String dir = "import";
+    // сколько строк передается в пакетный выпуск за раз; после каждой пачки сохраняется позиция в файле
+    private int chunkSize = 10000;
+    // сколько прочитанных пачек ждут выпуска; при заполнении чтение файла приостанавливается
+    private int queueCapacity = 2;
+    // размер окна отображения файла в память (строка не может быть длиннее)
+    private DataSize mapSize = DataSize.ofMegabytes(64);
+    // сколько ошибок по строкам хранить в статусе импорта (остальные только считаются)
+    private int maxErrors = 100;
+    // продолжить прерванные импорты после старта сервиса (каждый файл берет одна инстанция, см. CardFileImporter)
+    private boolean resumeOnStartup = false;
+}
@@ -0,0 +1,30 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ключи AES для шифрования номеров карт.
+ * Новые номера шифруются активным ключом, расшифровать можно любым ключом из списка.
+ * Смена ключа: добавить новый ключ в keys, сделать его активным, дождаться окончания
+ * CardReencryptionJob и только потом убрать старый ключ.
+ */
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "var.card.aes")
+public class CardKeyProperties {
+    // ключ для записей старого формата (без идентификатора ключа); если keys не задан - он же ключ k1
+    private String secret;
+    // сколько свободных объектов Cipher хранить для повторного использования
+    private int cipherPoolSize = CardNumberEncryptor.DEFAULT_POOL_SIZE;
+    // идентификатор ключа, которым шифруются новые записи
+    private String activeKey = CardNumberEncryptor.DEFAULT_KEY_ID;
+    // ключи: идентификатор -> ключ в Base64
+    private Map<String, String> keys = new LinkedHashMap<>();
+}
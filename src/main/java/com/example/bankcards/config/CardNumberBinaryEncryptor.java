@@ -0,0 +1,94 @@
+package com.example.bankcards.config;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Шифрование номера карты для хранения в VARBINARY, без Base64:
+ * в БД на треть меньше данных, а при чтении/записи нет кодирования в текст и обратно.
+ * Формат: [длина keyId (1 байт)][keyId (ASCII)][IV (12 байт)][ciphertext + tag].
+ * Нулевая длина keyId - ключ старого формата (var.card.aes.secret).
+ * Ключи и само шифрование - общие с CardNumberEncryptor.
+ */
+@Component
+@Converter(autoApply = false)
+public class CardNumberBinaryEncryptor implements AttributeConverter<String, byte[]> {
+
+    private final CardNumberEncryptor encryptor;
+    private final byte[] activeHeader;
+
+
+    public CardNumberBinaryEncryptor(CardNumberEncryptor encryptor) {
+        this.encryptor = encryptor;
+        byte[] keyId = encryptor.getActiveKeyId().getBytes(StandardCharsets.US_ASCII);
+        this.activeHeader = new byte[keyId.length + 1];
+        activeHeader[0] = (byte) keyId.length;
+        System.arraycopy(keyId, 0, activeHeader, 1, keyId.length);
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        if (attribute == null) return null;
+        try {
+            return encryptor.seal(attribute, activeHeader);
+        } catch (Exception e) {
+            throw new IllegalStateException("Ошибка шифрования номера карты", e);
+        }
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] dbData) {
+        if (dbData == null) return null;
+        try {
+            int length = headerLength(dbData);
+            String keyId = keyId(dbData);
+            SecretKeySpec key = encryptor.key(keyId);
+            if (key == null) {
+                throw new IllegalArgumentException("unknown key id: " + keyId);
+            }
+            return encryptor.open(key, dbData, length);
+        } catch (Exception e) {
+            throw new IllegalStateException("Ошибка расшифровки номера карты", e);
+        }
+    }
+
+    /**
+     * Идентификатор ключа, которым зашифрованы данные.
+     * @param dbData Значение из БД.
+     * @return Идентификатор ключа, или null для ключа старого формата.
+     */
+    public String keyId(byte[] dbData) {
+        int length = headerLength(dbData) - 1;
+        return length == 0 ? null : new String(dbData, 1, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Перешифровка активным ключом.
+     * @param dbData Значение из БД.
+     * @return Новое значение для БД, или null, если данные уже зашифрованы активным ключом.
+     */
+    public byte[] reencrypt(byte[] dbData) {
+        if (dbData == null || (dbData.length >= activeHeader.length
+                && Arrays.equals(dbData, 0, activeHeader.length, activeHeader, 0, activeHeader.length))) {
+            return null;
+        }
+        return convertToDatabaseColumn(convertToEntityAttribute(dbData));
+    }
+
+    public String getActiveKeyId() {
+        return encryptor.getActiveKeyId();
+    }
+
+
+    private static int headerLength(byte[] dbData) {
+        if (dbData.length == 0 || dbData.length < 1 + (dbData[0] & 0xff)) {
+            throw new IllegalArgumentException("invalid encrypted data header");
+        }
+        return 1 + (dbData[0] & 0xff);
+    }
+}
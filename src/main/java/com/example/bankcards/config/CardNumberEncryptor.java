@@ -1,23 +1,35 @@
 package com.example.bankcards.config;
 
+import com.example.bankcards.util.CipherPool;
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Converter;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 
 /**
  * Авто шифрование/расшифровка номера карты при записи в БД и его извлечении.
  * Алгоритм вносит случайные данные в номер, для улучшения стойкости ко взлому,
  * поэтому один и тот же номер после шифрования всегда будет выглядеть по-разному.
+ * Формат в БД: "keyId:" + Base64(IV + ciphertext + tag), где keyId - идентификатор ключа,
+ * которым зашифрован номер. Поэтому ключей может быть несколько (см. CardKeyProperties):
+ * новые записи шифруются активным ключом, а старые читаются прежним, пока CardReencryptionJob
+ * их не перешифрует. Записи без префикса (старый формат) расшифровываются ключом var.card.aes.secret.
+ * Объекты Cipher берутся из пула, IV и шифротекст пишутся сразу в итоговый массив, без промежуточных буферов.
+ * Это текстовый формат хранения; карты хранятся в бинарном, без Base64 (см. CardNumberBinaryEncryptor),
+ * который использует этот класс как общее ядро шифрования и набор ключей.
  */
 @Component
 @Converter(autoApply = false)
@@ -26,37 +38,62 @@ public class CardNumberEncryptor implements AttributeConverter<String, String> {
     private static final String ALGORITHM = "AES/GCM/NoPadding";
     private static final int IV_LENGTH = 12;
     private static final int TAG_LENGTH_BIT = 128;                  // 16 байт тега аутентификации
-
-    private final SecretKeySpec secretKeySpec;
+    public static final int DEFAULT_POOL_SIZE = 64;
+    public static final String DEFAULT_KEY_ID = "k1";
+    private static final char KEY_ID_SEPARATOR = ':';               // в алфавите Base64 его нет
+    private static final byte[] NO_HEADER = new byte[0];
+    private static final Pattern KEY_ID = Pattern.compile("[A-Za-z0-9_-]{1,16}");
+
+    private final Map<String, SecretKeySpec> keys = new HashMap<>();
+    private final String activeKeyId;
+    private final String activePrefix;
+    private final SecretKeySpec activeKey;
+    private final SecretKeySpec legacyKey;
     private final SecureRandom secureRandom = new SecureRandom();
+    private final CipherPool ciphers;
 
-    public CardNumberEncryptor(@Value("${var.card.aes.secret}") String base64Secret) {
-        byte[] keyBytes = Base64.getDecoder().decode(base64Secret); // ключ из Base64
-        if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
-            throw new IllegalArgumentException("AES ключ должен быть 16, 24 или 32 байта");
+    public CardNumberEncryptor(String base64Secret) {
+        this(base64Secret, DEFAULT_POOL_SIZE);
+    }
+
+    public CardNumberEncryptor(String base64Secret, int poolSize) {
+        this(Map.of(DEFAULT_KEY_ID, base64Secret), DEFAULT_KEY_ID, base64Secret, poolSize);
+    }
+
+    @Autowired
+    public CardNumberEncryptor(CardKeyProperties properties) {
+        this(properties.getKeys().isEmpty() ? Map.of(DEFAULT_KEY_ID, properties.getSecret()) : properties.getKeys(),
+                properties.getActiveKey(), properties.getSecret(), properties.getCipherPoolSize());
+    }
+
+    /**
+     * @param base64Keys   Ключи: идентификатор -> ключ в Base64.
+     * @param activeKeyId  Идентификатор ключа для шифрования новых записей.
+     * @param legacySecret Ключ для записей старого формата, без идентификатора (может быть null).
+     * @param poolSize     Сколько свободных объектов Cipher хранить в пуле.
+     */
+    public CardNumberEncryptor(Map<String, String> base64Keys, String activeKeyId, String legacySecret, int poolSize) {
+        base64Keys.forEach((id, secret) -> {
+            if (id == null || !KEY_ID.matcher(id).matches()) {
+                throw new IllegalArgumentException("Некорректный идентификатор AES ключа: " + id);
+            }
+            keys.put(id, toKey(secret));
+        });
+        this.activeKey = keys.get(activeKeyId);
+        if (activeKey == null) {
+            throw new IllegalArgumentException("Активный AES ключ '" + activeKeyId + "' не задан");
         }
-        this.secretKeySpec = new SecretKeySpec(keyBytes, "AES");
+        this.activeKeyId = activeKeyId;
+        this.activePrefix = activeKeyId + KEY_ID_SEPARATOR;
+        this.legacyKey = legacySecret == null ? null : toKey(legacySecret);
+        this.ciphers = new CipherPool(ALGORITHM, poolSize);
     }
 
     @Override
     public String convertToDatabaseColumn(String attribute) {
         if (attribute == null) return null;
         try {
-            byte[] iv = new byte[IV_LENGTH];
-            secureRandom.nextBytes(iv);
-
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec spec = new GCMParameterSpec(TAG_LENGTH_BIT, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, spec);
-
-            byte[] ciphertext = cipher.doFinal(attribute.getBytes(StandardCharsets.UTF_8));
-
-            // сохраняем IV + ciphertext в одной строке Base64
-            ByteBuffer byteBuffer = ByteBuffer.allocate(iv.length + ciphertext.length);
-            byteBuffer.put(iv);
-            byteBuffer.put(ciphertext);
-            return Base64.getEncoder().encodeToString(byteBuffer.array());
-
+            return activePrefix.concat(Base64.getEncoder().encodeToString(seal(attribute, NO_HEADER)));
         } catch (Exception e) {
             throw new IllegalStateException("Ошибка шифрования номера карты", e);
         }
@@ -66,22 +103,104 @@ public class CardNumberEncryptor implements AttributeConverter<String, String> {
     public String convertToEntityAttribute(String dbData) {
         if (dbData == null) return null;
         try {
-            byte[] decoded = Base64.getDecoder().decode(dbData);
-            ByteBuffer byteBuffer = ByteBuffer.wrap(decoded);
+            int separator = dbData.indexOf(KEY_ID_SEPARATOR);
+            SecretKeySpec key = key(separator < 0 ? null : dbData.substring(0, separator));
+            if (key == null) {
+                throw new IllegalArgumentException("unknown key id: " + keyId(dbData));
+            }
+            byte[] decoded = Base64.getDecoder().decode(separator < 0 ? dbData : dbData.substring(separator + 1));
+            return open(key, decoded, 0);
+        } catch (Exception e) {
+            throw new IllegalStateException("Ошибка расшифровки номера карты", e);
+        }
+    }
 
-            byte[] iv = new byte[IV_LENGTH];
-            byteBuffer.get(iv);
-            byte[] ciphertext = new byte[byteBuffer.remaining()];
-            byteBuffer.get(ciphertext);
+    /**
+     * Идентификатор ключа, которым зашифрованы данные.
+     * @param dbData Значение из БД.
+     * @return Идентификатор ключа, или null для старого формата (без идентификатора).
+     */
+    public String keyId(String dbData) {
+        int separator = dbData == null ? -1 : dbData.indexOf(KEY_ID_SEPARATOR);
+        return separator < 0 ? null : dbData.substring(0, separator);
+    }
 
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec spec = new GCMParameterSpec(TAG_LENGTH_BIT, iv);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, spec);
+    /**
+     * Перешифровка активным ключом.
+     * @param dbData Значение из БД.
+     * @return Новое значение для БД, или null, если данные уже зашифрованы активным ключом.
+     */
+    public String reencrypt(String dbData) {
+        if (dbData == null || dbData.startsWith(activePrefix)) {
+            return null;
+        }
+        return convertToDatabaseColumn(convertToEntityAttribute(dbData));
+    }
 
-            return new String(cipher.doFinal(ciphertext), StandardCharsets.UTF_8);
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
 
-        } catch (Exception e) {
-            throw new IllegalStateException("Ошибка расшифровки номера карты", e);
+
+    /**
+     * Шифрование активным ключом.
+     * @param attribute Открытый текст.
+     * @param header    Заголовок, с которого начнется результат (формат хранения).
+     * @return header + IV + ciphertext + tag, одним массивом.
+     */
+    byte[] seal(String attribute, byte[] header) throws GeneralSecurityException {
+        byte[] plain = attribute.getBytes(StandardCharsets.UTF_8);
+        int offset = header.length;
+
+        byte[] iv = new byte[IV_LENGTH];
+        secureRandom.nextBytes(iv);
+
+        Cipher cipher = ciphers.borrow();
+        cipher.init(Cipher.ENCRYPT_MODE, activeKey, new GCMParameterSpec(TAG_LENGTH_BIT, iv));
+        // заголовок, IV и ciphertext в одном массиве: шифруем сразу за IV
+        byte[] out = new byte[offset + IV_LENGTH + cipher.getOutputSize(plain.length)];
+        System.arraycopy(header, 0, out, 0, offset);
+        System.arraycopy(iv, 0, out, offset, IV_LENGTH);
+        int length = cipher.doFinal(plain, 0, plain.length, out, offset + IV_LENGTH);
+        ciphers.release(cipher);
+
+        // для GCM getOutputSize() точен, копирование - лишь страховка
+        int total = offset + IV_LENGTH + length;
+        return total == out.length ? out : Arrays.copyOf(out, total);
+    }
+
+    /**
+     * Расшифровка.
+     * @param key    Ключ.
+     * @param data   Данные.
+     * @param offset Начало IV в данных (IV + ciphertext + tag идут до конца массива).
+     */
+    String open(SecretKeySpec key, byte[] data, int offset) throws GeneralSecurityException {
+        if (data.length - offset < IV_LENGTH) {
+            throw new IllegalArgumentException("encrypted data is too short");
+        }
+        Cipher cipher = ciphers.borrow();
+        // IV и шифротекст читаем прямо из массива, без копирования
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BIT, data, offset, IV_LENGTH));
+        byte[] plain = cipher.doFinal(data, offset + IV_LENGTH, data.length - offset - IV_LENGTH);
+        ciphers.release(cipher);
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Ключ по идентификатору.
+     * @param keyId Идентификатор ключа (null - ключ старого формата).
+     * @return Ключ, или null, если такого нет.
+     */
+    SecretKeySpec key(String keyId) {
+        return keyId == null ? legacyKey : keys.get(keyId);
+    }
+
+    private static SecretKeySpec toKey(String base64Secret) {
+        byte[] keyBytes = Base64.getDecoder().decode(base64Secret); // ключ из Base64
+        if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
+            throw new IllegalArgumentException("AES ключ должен быть 16, 24 или 32 байта");
         }
+        return new SecretKeySpec(keyBytes, "AES");
     }
 }
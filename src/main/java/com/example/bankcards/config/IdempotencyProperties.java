@@ -0,0 +1,24 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки хранения ключей идемпотентности переводов (заголовок Idempotency-Key).
+ */
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "var.card.idempotency")
+public class IdempotencyProperties {
+    // сколько хранится результат перевода (и в кэше, и в БД)
+    private Duration ttl = Duration.ofHours(24);
+    // максимум ключей в локальном кэше (вытесняются самые старые по использованию)
+    private long cacheSize = 10_000;
+    // как часто удалять устаревшие записи из БД
+    private Duration cleanupInterval = Duration.ofMinutes(10);
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки кэша общего количества элементов страничных выборок (режимы CACHED и ESTIMATED).
+ */
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "var.page.count")
+public class PageCountProperties {
+    // сколько живет закэшированное количество (столько же оно может отставать от БД)
+    private Duration cacheTtl = Duration.ofSeconds(30);
+    // максимум закэшированных фильтров
+    private long cacheSize = 1_000;
+}
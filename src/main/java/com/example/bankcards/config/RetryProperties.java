@@ -0,0 +1,25 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки повтора операций с картами при конфликтах параллельного изменения
+ * (оптимистическая блокировка, deadlock, таймаут ожидания блокировки).
+ */
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "var.card.retry")
+public class RetryProperties {
+    // сколько всего попыток, включая первую
+    private int maxAttempts = 5;
+    // базовая пауза перед повтором, удваивается с каждой попыткой
+    private Duration initialBackoff = Duration.ofMillis(10);
+    // верхняя граница паузы
+    private Duration maxBackoff = Duration.ofMillis(200);
+}
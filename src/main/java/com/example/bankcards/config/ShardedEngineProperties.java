@@ -0,0 +1,34 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки шардированного движка переводов (var.card.transfer.mode: sharded).
+ * Движок рассчитан на одну инстанцию сервиса: балансы карт живут в памяти этой инстанции.
+ * Остальные инстанции, работающие с той же БД, должны использовать другие режимы переводов и не менять
+ * балансы, пока жив шардированный узел; второй шардированный движок при старте ждет, пока первый
+ * освободит сессию (см. ShardedLedgerRecovery), и не стартует, если не дождался.
+ */
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "var.card.sharded")
+public class ShardedEngineProperties {
+    // количество шардов (однопоточных исполнителей), карта попадает в шард по hash(id)
+    private int shards = Runtime.getRuntime().availableProcessors();
+    // емкость очереди команд одного шарда, при заполнении отправитель ждет
+    private int queueCapacity = 4096;
+    // сколько ждать выполнения команды шардом
+    private Duration commandTimeout = Duration.ofSeconds(5);
+    // период сброса измененных балансов в БД
+    private Duration flushInterval = Duration.ofMillis(50);
+    // максимум строк в одном JDBC-батче при сбросе
+    private int flushBatchSize = 500;
+    // карта без переводов дольше этого времени выгружается из памяти шарда (после записи её баланса)
+    private Duration idleEviction = Duration.ofMinutes(10);
+}
@@ -0,0 +1,24 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки локального кэша существования пользователей (UserService.existsUser).
+ */
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "var.user.exists-cache")
+public class UserExistsCacheProperties {
+    // максимум пользователей в кэше (вытесняются самые редко используемые)
+    private long size = 500_000;
+    // сколько помнится, что пользователь есть (удаление на другой инстанции будет видно не позже)
+    private Duration ttl = Duration.ofMinutes(5);
+    // сколько помнится, что пользователя нет
+    private Duration negativeTtl = Duration.ofSeconds(30);
+}
@@ -0,0 +1,32 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.util.CardDateUtil;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.YearMonth;
+
+
+/**
+ * Конвертер YearMonth в число yyyymm и обратно, поскольку Spring сам этого не умеет.
+ */
+@Converter(autoApply = true)
+@Log4j2
+public class YearMonthToIntConverter implements AttributeConverter<YearMonth, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(YearMonth cardDate) {
+        return CardDateUtil.toDbInt(cardDate);
+    }
+
+    @Override
+    public YearMonth convertToEntityAttribute(Integer yyyymm) {
+        YearMonth yearMonth = CardDateUtil.fromDbInt(yyyymm);
+        if (yearMonth == null) {
+            log.error("Can't convert date ({}) to YearMonth", yyyymm);
+        }
+        return yearMonth;
+    }
+
+}
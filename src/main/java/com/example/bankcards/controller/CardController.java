@@ -1,13 +1,19 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.CardImportStatus;
+import com.example.bankcards.dto.CardIssueResult;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CursorPageDTO;
 import com.example.bankcards.dto.PageDTO;
+import com.example.bankcards.dto.TotalMode;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResult;
 import com.example.bankcards.dto.filters.CardFilter;
 import com.example.bankcards.exception.ErrorResponse;
 import com.example.bankcards.service.CardService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -18,8 +24,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.UUID;
 
 
@@ -48,6 +56,32 @@ public class CardController {
         return ResponseEntity.ok(cardService.createCard(request));
     }
 
+    @Operation(summary = "Пакетное создание карт", description = "Создает карты из списка, вставляя их в базу данных пачками. Возвращает результат по каждой карте. Только для роли ADMIN.")
+    @ApiResponse(responseCode = "200", description = "Пакет обработан, результаты в ответе")
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/create/batch")
+    public ResponseEntity<List<CardIssueResult>> createCards(@RequestBody List<CardCreateRequest> requests) {
+        return ResponseEntity.ok(cardService.createCards(requests));
+    }
+
+    @Operation(summary = "Импорт карт из файла", description = "Запускает в фоне импорт карт из файла процессинга (CSV или NDJSON) в каталоге импорта. Прерванный импорт продолжается с сохраненной позиции, restart=true - с начала файла. Только для роли ADMIN.")
+    @ApiResponse(responseCode = "202", description = "Импорт запущен (или уже выполняется), текущее состояние в ответе")
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/import/{fileName}")
+    public ResponseEntity<CardImportStatus> importCards(
+            @PathVariable String fileName,
+            @RequestParam(defaultValue = "false") boolean restart) {
+        return ResponseEntity.accepted().body(cardService.importCards(fileName, restart));
+    }
+
+    @Operation(summary = "Состояние импорта карт", description = "Прогресс импорта карт из файла: сохраненная позиция, количество выпущенных и отклоненных карт, первые ошибки по строкам. Только для роли ADMIN.")
+    @ApiResponse(responseCode = "200", description = "Состояние импорта")
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/import/{fileName}")
+    public ResponseEntity<CardImportStatus> getImportStatus(@PathVariable String fileName) {
+        return ResponseEntity.ok(cardService.getImportStatus(fileName));
+    }
+
     @Operation(summary = "Активация карты", description = "Активирует новую карту, меняя её статус в базе данных. Только для роли ADMIN.")
     @ApiResponse(responseCode = "200", description = "Карта успешно активирована")
     @PreAuthorize("hasRole('ADMIN')")
@@ -77,16 +111,52 @@ public class CardController {
     @ApiResponse(responseCode = "200", description = "Список карт успешно получен")
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/get-all")
-    public ResponseEntity<PageDTO<CardResponse>> getAllCards(@RequestBody CardFilter filter, Pageable pageable) {
-        return ResponseEntity.ok(cardService.getAllCards(filter, pageable));
+    public ResponseEntity<PageDTO<CardResponse>> getAllCards(
+            @RequestBody CardFilter filter,
+            Pageable pageable,
+            @Parameter(description = "Подсчет общего количества: EXACT, CACHED, ESTIMATED или NONE (без подсчета)")
+            @RequestParam(defaultValue = "EXACT") TotalMode total) {
+        return ResponseEntity.ok(cardService.getAllCards(filter, pageable, total));
+    }
+
+    @Operation(summary = "Просмотр карт по курсору", description = "Просмотр всех карт из базы данных, используя фильтр и keyset-пагинацию (без подсчета общего количества). Сортировка: id или expiryDate. Только для роли ADMIN.")
+    @ApiResponse(responseCode = "200", description = "Список карт успешно получен")
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/get-all/scroll")
+    public ResponseEntity<CursorPageDTO<CardResponse>> scrollAllCards(
+            @RequestBody CardFilter filter,
+            @Parameter(description = "Курсор из предыдущего ответа (nextCursor), для первой страницы не задается")
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Sort sort) {
+        return ResponseEntity.ok(cardService.scrollAllCards(filter, cursor, size, sort));
     }
 
     @Operation(summary = "Просмотр карт пользователя", description = "Просмотр пользователем только своих карт из базы данных, используя фильтр и пагинацию. Для роли USER.")
     @ApiResponse(responseCode = "200", description = "Список карт успешно получен")
     @PreAuthorize("hasRole('USER')")
     @PostMapping("/get-cards/{id}")
-    public ResponseEntity<PageDTO<CardResponse>> getUserCards(@PathVariable UUID id, @RequestBody CardFilter filter, Pageable pageable) {
-        return ResponseEntity.ok(cardService.getUserCards(id, filter, pageable));
+    public ResponseEntity<PageDTO<CardResponse>> getUserCards(
+            @PathVariable UUID id,
+            @RequestBody CardFilter filter,
+            Pageable pageable,
+            @Parameter(description = "Подсчет общего количества: EXACT, CACHED, ESTIMATED или NONE (без подсчета)")
+            @RequestParam(defaultValue = "EXACT") TotalMode total) {
+        return ResponseEntity.ok(cardService.getUserCards(id, filter, pageable, total));
+    }
+
+    @Operation(summary = "Просмотр карт пользователя по курсору", description = "Просмотр пользователем только своих карт из базы данных, используя фильтр и keyset-пагинацию. Сортировка: id или expiryDate. Для роли USER.")
+    @ApiResponse(responseCode = "200", description = "Список карт успешно получен")
+    @PreAuthorize("hasRole('USER')")
+    @PostMapping("/get-cards/{id}/scroll")
+    public ResponseEntity<CursorPageDTO<CardResponse>> scrollUserCards(
+            @PathVariable UUID id,
+            @RequestBody CardFilter filter,
+            @Parameter(description = "Курсор из предыдущего ответа (nextCursor), для первой страницы не задается")
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Sort sort) {
+        return ResponseEntity.ok(cardService.scrollUserCards(id, filter, cursor, size, sort));
     }
 
     @Operation(summary = "Запрос на блокировку карты", description = "Запрос пользователя на блокировку его карты. Запрос будет направлен в отдельную базу данных, для дальнейшего рассмотрения администратором.. Для роли USER.")
@@ -102,11 +172,21 @@ public class CardController {
     @ApiResponse(responseCode = "200", description = "Средства успешно переведены")
     @PreAuthorize("hasRole('USER')")
     @PostMapping("/transfer")
-    public ResponseEntity<?> transferCard(@RequestBody TransferRequest request) {
-        cardService.transferAmount(request);
+    public ResponseEntity<?> transferCard(@RequestBody TransferRequest request,
+                                          @Parameter(description = "Ключ идемпотентности: повтор с тем же ключом не выполняет перевод повторно")
+                                          @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        cardService.transferAmount(request, idempotencyKey);
         return ResponseEntity.ok().build();
     }
 
+    @Operation(summary = "Пакетный перевод средств", description = "Выполняет список переводов в одной транзакции, по порядку. Возвращает результат по каждому переводу. Для роли USER.")
+    @ApiResponse(responseCode = "200", description = "Пакет обработан, результаты переводов в ответе")
+    @PreAuthorize("hasRole('USER')")
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<List<TransferResult>> transferBatch(@RequestBody List<TransferRequest> requests) {
+        return ResponseEntity.ok(cardService.transferBatch(requests));
+    }
+
     @Operation(summary = "Запрос баланса", description = "Запрос баланса карты пользователя.. Для роли USER.")
     @ApiResponse(responseCode = "200", description = "Возвращен баланс карты")
     @PreAuthorize("hasRole('USER')")
@@ -1,7 +1,9 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.CursorPageDTO;
 import com.example.bankcards.dto.PageDTO;
 import com.example.bankcards.dto.SignUpRequest;
+import com.example.bankcards.dto.TotalMode;
 import com.example.bankcards.dto.UpdateUserRequest;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.dto.filters.UserFilter;
@@ -16,6 +18,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -41,8 +44,25 @@ public class UserController {
     @ApiResponse(responseCode = "200", description = "Список пользователей успешно получен")
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/get-all")
-    public ResponseEntity<PageDTO<UserResponse>> getAllUsers(@RequestBody UserFilter filter, Pageable pageable) {
-        return ResponseEntity.ok(userService.getAllUsers(filter, pageable));
+    public ResponseEntity<PageDTO<UserResponse>> getAllUsers(
+            @RequestBody UserFilter filter,
+            Pageable pageable,
+            @Parameter(description = "Подсчет общего количества: EXACT, CACHED, ESTIMATED или NONE (без подсчета)")
+            @RequestParam(defaultValue = "EXACT") TotalMode total) {
+        return ResponseEntity.ok(userService.getAllUsers(filter, pageable, total));
+    }
+
+    @Operation(summary = "Список пользователей по курсору", description = "Возвращает список пользователей с поддержкой фильтрации и keyset-пагинации (без подсчета общего количества). Сортировка: id или username.")
+    @ApiResponse(responseCode = "200", description = "Список пользователей успешно получен")
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/get-all/scroll")
+    public ResponseEntity<CursorPageDTO<UserResponse>> scrollAllUsers(
+            @RequestBody UserFilter filter,
+            @Parameter(description = "Курсор из предыдущего ответа (nextCursor), для первой страницы не задается")
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Sort sort) {
+        return ResponseEntity.ok(userService.scrollAllUsers(filter, cursor, size, sort));
     }
 
     @Operation(summary = "Создание пользователя", description = "Добавляет нового пользователя в базу данных пользователей.")
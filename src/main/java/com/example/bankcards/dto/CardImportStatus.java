@@ -0,0 +1,75 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Состояние импорта карт из файла.
+ */
+@Schema(description = "Состояние импорта карт из файла.")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardImportStatus {
+
+    public enum State {
+        NOT_STARTED,        // файл еще не импортировался
+        RUNNING,
+        INTERRUPTED,        // позиция сохранена, но импорт не выполняется (например, после сбоя)
+        COMPLETED,
+        FAILED
+    }
+
+    /**
+     * Строка файла, которую не удалось импортировать.
+     */
+    @Schema(description = "Ошибка импорта строки.")
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RowError {
+        @Schema(description = "Смещение строки в файле, байт", example = "1024")
+        private long offset;
+
+        @Schema(description = "Код ошибки (из BankCardErrorCodes)", example = "10003")
+        private int errorCode;
+
+        @Schema(description = "Описание ошибки", example = "Card operation error: card number is invalid.")
+        private String message;
+    }
+
+
+    @Schema(description = "Имя файла в каталоге импорта", example = "cards-2025-09-01.csv")
+    private String fileName;
+
+    @Schema(description = "Состояние импорта", example = "RUNNING")
+    private State state;
+
+    @Schema(description = "Размер файла, байт", example = "2147483648")
+    private long fileSize;
+
+    @Schema(description = "Позиция в файле, до которой карты уже выпущены (сохраняется в БД), байт", example = "1073741824")
+    private long position;
+
+    @Schema(description = "Строк обработано в текущем запуске", example = "500000")
+    private long rows;
+
+    @Schema(description = "Карт выпущено в текущем запуске", example = "499990")
+    private long issued;
+
+    @Schema(description = "Карт из пачки, прерванной сбоем, которые оказались уже выпущены до него", example = "0")
+    private long replayed;
+
+    @Schema(description = "Строк отклонено в текущем запуске", example = "10")
+    private long rejected;
+
+    @Schema(description = "Описание ошибки, остановившей импорт")
+    private String message;
+
+    @Schema(description = "Первые ошибки по строкам")
+    private List<RowError> errors;
+}
@@ -0,0 +1,40 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.exception.BankCardException;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Результат создания одной карты из пакетного запроса.
+ */
+@Schema(description = "Результат создания карты из пакета.")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardIssueResult {
+    @Schema(description = "Позиция карты в пакете (нумерация с нуля)", example = "0")
+    private int index;
+
+    @Schema(description = "ID созданной карты, null при ошибке", example = "1")
+    private Long cardId;
+
+    @Schema(description = "Карта создана", example = "true")
+    private boolean success;
+
+    @Schema(description = "Код ошибки (из BankCardErrorCodes), 0 при успехе", example = "0")
+    private int errorCode;
+
+    @Schema(description = "Описание ошибки", example = "Card operation error: card number already exists.")
+    private String message;
+
+
+    public static CardIssueResult ok(int index, Long cardId) {
+        return new CardIssueResult(index, cardId, true, 0, null);
+    }
+
+    public static CardIssueResult failed(int index, BankCardException e) {
+        return new CardIssueResult(index, null, false, e.getCode(), e.getMessage());
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Страница keyset-выборки (по курсору).
+ * В отличие от PageDTO не содержит общего числа элементов и страниц:
+ * их подсчет (COUNT(*)) на больших таблицах и есть основная стоимость выборки.
+ */
+@Schema(description = "Страница выборки данных по курсору.")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+
+    @Schema(description = "Список объектов выборки")
+    private List<T> content;
+
+    @Schema(description = "Элементов на странице")
+    private int size;
+
+    @Schema(description = "Курсор следующей страницы, null - если страница последняя", example = "AQACaWQBAAM0MjAAAjQy")
+    private String nextCursor;
+
+    @Schema(description = "Есть ли следующая страница")
+    private boolean hasNext;
+
+    public CursorPageDTO(List<T> content, int size, String nextCursor) {
+        this(content, size, nextCursor, nextCursor != null);
+    }
+
+    public static <T> CursorPageDTO<T> empty() {
+        return new CursorPageDTO<>(Collections.emptyList(), 0, null);
+    }
+
+}
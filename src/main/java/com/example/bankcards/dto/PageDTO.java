@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 import java.util.Collections;
 import java.util.List;
@@ -12,6 +13,8 @@ import java.util.List;
 /**
  * Кастомный класс Page, поскольку Spring Boot выдает предупреждение
  * о нестабильном классе PageImpl.
+ * Общее количество элементов может быть приблизительным или вовсе неизвестным (-1),
+ * в зависимости от запрошенного режима подсчета (totalMode).
  */
 @Schema(description = "Страница выборки данных.")
 @Data
@@ -22,10 +25,10 @@ public class PageDTO<T> {
     @Schema(description = "Список объектов выборки")
     private List<T> content;
 
-    @Schema(description = "Доступных страниц для выборок (ceil(totalElements / size))")
+    @Schema(description = "Доступных страниц для выборок (ceil(totalElements / size)), -1 - неизвестно")
     private int totalPages;
 
-    @Schema(description = "Всего доступных элементов в БД для выборки")
+    @Schema(description = "Всего доступных элементов в БД для выборки, -1 - неизвестно")
     private long totalElements;
 
     @Schema(description = "Элементов на странице")
@@ -34,6 +37,16 @@ public class PageDTO<T> {
     @Schema(description = "Текущая страница (нумерация с нуля)")
     private int number;
 
+    @Schema(description = "Есть ли следующая страница")
+    private boolean hasNext;
+
+    @Schema(description = "Как получено общее количество элементов")
+    private TotalMode totalMode;
+
+    public PageDTO(List<T> content, int totalPages, long totalElements, int size, int number) {
+        this(content, totalPages, totalElements, size, number, number + 1 < totalPages, TotalMode.EXACT);
+    }
+
     public PageDTO(Page<T> page) {
         page.getContent();
         this.content = page.getContent();
@@ -41,6 +54,31 @@ public class PageDTO<T> {
         this.totalElements = page.getTotalElements();
         this.size = page.getSize();
         this.number = Math.max(page.getNumber(), 0);
+        this.hasNext = page.hasNext();
+        this.totalMode = TotalMode.EXACT;
+    }
+
+    /**
+     * Страница выборки без точного подсчета (Slice).
+     * @param slice     Страница.
+     * @param total     Общее количество элементов (возможно приблизительное), или -1 - если неизвестно.
+     * @param totalMode Как получено количество.
+     */
+    public PageDTO(Slice<T> slice, long total, TotalMode totalMode) {
+        this.content = slice.getContent();
+        this.size = slice.getSize();
+        this.number = Math.max(slice.getNumber(), 0);
+        this.hasNext = slice.hasNext();
+        this.totalMode = totalMode;
+        if (total < 0) {
+            this.totalElements = -1;
+            this.totalPages = -1;
+        } else {
+            // кэш и статистика могут отставать: элементов не меньше, чем уже видно
+            long seen = (long) number * size + content.size() + (hasNext ? 1 : 0);
+            this.totalElements = Math.max(total, seen);
+            this.totalPages = size == 0 ? 1 : (int) Math.ceil((double) totalElements / (double) size);
+        }
     }
 
     public static <T> PageDTO<T> empty() {
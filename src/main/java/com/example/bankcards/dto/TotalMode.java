@@ -0,0 +1,18 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Способ получения общего количества элементов для страничной выборки.
+ */
+@Schema(description = """
+        Подсчет общего количества элементов: EXACT - точный COUNT(*) на каждую страницу;
+        CACHED - COUNT(*) кэшируется на короткое время по фильтру; ESTIMATED - оценка по статистике
+        таблицы для выборки без фильтра (с фильтром - как CACHED); NONE - без подсчета,
+        только признак наличия следующей страницы (totalElements и totalPages равны -1).""")
+public enum TotalMode {
+    EXACT,
+    CACHED,
+    ESTIMATED,
+    NONE
+}
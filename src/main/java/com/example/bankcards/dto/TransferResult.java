@@ -0,0 +1,43 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.exception.BankCardException;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Результат одного перевода из пакетного запроса.
+ */
+@Schema(description = "Результат перевода из пакета.")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferResult {
+    @Schema(description = "Позиция перевода в пакете (нумерация с нуля)", example = "0")
+    private int index;
+
+    @Schema(description = "ID карты-источника")
+    private Long fromCardId;
+
+    @Schema(description = "ID карты-приемника")
+    private Long toCardId;
+
+    @Schema(description = "Перевод выполнен", example = "true")
+    private boolean success;
+
+    @Schema(description = "Код ошибки (из BankCardErrorCodes), 0 при успехе", example = "0")
+    private int errorCode;
+
+    @Schema(description = "Описание ошибки", example = "Card operation error: from card does not have enough balance.")
+    private String message;
+
+
+    public static TransferResult ok(int index, TransferRequest request) {
+        return new TransferResult(index, request.getFromCardId(), request.getToCardId(), true, 0, null);
+    }
+
+    public static TransferResult failed(int index, TransferRequest request, BankCardException e) {
+        return new TransferResult(index, request.getFromCardId(), request.getToCardId(), false, e.getCode(), e.getMessage());
+    }
+}
@@ -28,4 +28,12 @@ public class CardFilter {
 
     @Schema(description = "Искать карты действительные до заданной даты", example = "2028-06")
     private YearMonth expiryDate;
+
+    @Schema(description = "Последние 4 цифры номера карты", example = "4444")
+    private String last4;
+
+
+    public CardFilter(UUID userId, String cardNumber, CardStatus cardStatus, YearMonth expiryDate) {
+        this(userId, cardNumber, cardStatus, expiryDate, null);
+    }
 }
@@ -1,12 +1,12 @@
 package com.example.bankcards.dto.filters;
 
 import com.example.bankcards.entity.Card;
-import com.example.bankcards.util.CardDateUtil;
 import com.example.bankcards.util.CardNumberHasher;
 import com.example.bankcards.util.CardUtil;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,6 +15,27 @@ import java.util.List;
  */
 public class CardSpecification {
 
+    /**
+     * Keyset-выборка карт: по id (по умолчанию) или по сроку действия.
+     */
+    public static final KeysetScroll<Card> SCROLL = new KeysetScroll<Card>(Card::getId, Long::valueOf)
+            .key("expiryDate", Card::getExpiryDate, YearMonth::parse);
+
+    /**
+     * Нормализованная копия фильтра - ключ кэша количества строк (номер карты заменен его HMAC).
+     * @return Копия фильтра, или null, если фильтр пустой.
+     */
+    public static CardFilter countKey(CardFilter cardFilter) {
+        String cardNumber = cardFilter.getCardNumber() == null ? null
+                : CardNumberHasher.hmacSha256(CardUtil.normalizeCardNumber(cardFilter.getCardNumber()));
+        String last4 = CardUtil.normalizeLast4(cardFilter.getLast4());
+        if (last4 == null) {
+            last4 = cardFilter.getLast4();                          // некорректное значение: ключ остается отдельным
+        }
+        CardFilter key = new CardFilter(cardFilter.getUserId(), cardNumber, cardFilter.getCardStatus(), cardFilter.getExpiryDate(), last4);
+        return key.equals(new CardFilter()) ? null : key;
+    }
+
     public static Specification<Card> filterBy(CardFilter cardFilter) {
         return ((root, query, criteriaBuilder) -> {
             List<Predicate> predicates = new ArrayList<>();
@@ -24,9 +45,20 @@ public class CardSpecification {
             }
 
             if (cardFilter.getCardNumber() != null) {
-                String cardNumber = CardNumberHasher.hmacSha256(CardUtil.normalizeCardNumber(cardFilter.getCardNumber()));
-                if (cardNumber != null) {
-                    predicates.add(criteriaBuilder.equal(root.get("cardNumberHmac"), cardNumber));
+                byte[] hmac = CardNumberHasher.hmacSha256Bytes(CardUtil.normalizeCardNumber(cardFilter.getCardNumber()));
+                predicates.add(criteriaBuilder.equal(root.get("cardNumberHmac"), hmac));
+            }
+
+            /*
+                Поиск по последним цифрам идет по индексу (card_last4, user_id).
+                Если это не 4 цифры - таких карт заведомо нет.
+             */
+            if (cardFilter.getLast4() != null) {
+                String last4 = CardUtil.normalizeLast4(cardFilter.getLast4());
+                if (last4 != null) {
+                    predicates.add(criteriaBuilder.equal(root.get("cardLast4"), last4));
+                } else {
+                    predicates.add(criteriaBuilder.disjunction());
                 }
             }
 
@@ -34,10 +66,12 @@ public class CardSpecification {
                 predicates.add(criteriaBuilder.equal(root.get("status"), cardFilter.getCardStatus()));
             }
 
+            /*
+                Срок действия хранится числом yyyymm (конвертер применяется и к параметру),
+                поэтому "не позже" - диапазон по индексу idx_cards_expiry.
+             */
             if (cardFilter.getExpiryDate() != null) {
-                System.out.println("Filter date: " + cardFilter.getExpiryDate().toString());
-                String expiryStr = CardDateUtil.toDbString(cardFilter.getExpiryDate());
-                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("expiryDate"), expiryStr));
+                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("expiryDate"), cardFilter.getExpiryDate()));
             }
 
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
@@ -0,0 +1,193 @@
+package com.example.bankcards.dto.filters;
+
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Keyset (seek) пагинация: вместо OFFSET следующая страница выбирается условием
+ * "строго после последней выданной строки" по ключу сортировки и id,
+ * что позволяет БД сразу спозиционироваться по индексу, а COUNT(*) не нужен вовсе.
+ * Позиция передается клиенту непрозрачной строкой (cursor), в которой закодированы
+ * поле и направление сортировки, значение ключа и id последней строки.
+ * Сортировать можно только по заранее разрешенным полям - по ним должен быть индекс.
+ * @param <T> Тип сущности. Идентификатор сущности должен называться "id".
+ */
+public class KeysetScroll<T> {
+
+    public static final String ID = "id";
+    public static final int MAX_SIZE = 1000;
+
+    private static final byte CURSOR_VERSION = 1;
+
+    private final Map<String, Key<T>> keys = new HashMap<>();
+
+
+    private record Key<T>(Function<T, Object> getter, Function<String, Comparable<?>> parser) {}
+
+    /**
+     * Позиция выборки.
+     * @param attribute Поле сортировки.
+     * @param direction Направление сортировки.
+     * @param key       Значение поля последней выданной строки (null - первая страница).
+     * @param id        Идентификатор последней выданной строки (null - первая страница).
+     */
+    public record Position(String attribute, Sort.Direction direction, Comparable<?> key, Comparable<?> id) {
+        public boolean isFirst() {
+            return id == null;
+        }
+    }
+
+    /**
+     * Результат выборки.
+     * @param content    Строки страницы.
+     * @param nextCursor Курсор следующей страницы, или null, если страница последняя.
+     */
+    public record Window<T>(List<T> content, String nextCursor) {}
+
+
+    /**
+     * @param idGetter Получение id из сущности.
+     * @param idParser Разбор id из строки курсора.
+     */
+    public KeysetScroll(Function<T, Object> idGetter, Function<String, Comparable<?>> idParser) {
+        keys.put(ID, new Key<>(idGetter, idParser));
+    }
+
+    /**
+     * Разрешает сортировку по полю.
+     * @param attribute Имя поля сущности.
+     * @param getter    Получение значения поля из сущности.
+     * @param parser    Разбор значения из строки курсора (обратное к toString()).
+     */
+    public KeysetScroll<T> key(String attribute, Function<T, Object> getter, Function<String, Comparable<?>> parser) {
+        keys.put(attribute, new Key<>(getter, parser));
+        return this;
+    }
+
+    /**
+     * Определяет позицию выборки: из курсора, если он задан, иначе - первая страница по заданной сортировке.
+     * @param cursor Курсор из предыдущего ответа (может быть null).
+     * @param sort   Сортировка для первой страницы, допускается не более одного поля (по умолчанию id).
+     * @throws IllegalArgumentException Некорректный курсор или неподдерживаемая сортировка.
+     */
+    public Position position(String cursor, Sort sort) {
+        if (cursor != null && !cursor.isBlank()) {
+            return decode(cursor);
+        }
+        List<Sort.Order> orders = sort == null ? List.of() : sort.toList();
+        if (orders.isEmpty()) {
+            return new Position(ID, Sort.Direction.ASC, null, null);
+        }
+        if (orders.size() > 1 || !keys.containsKey(orders.get(0).getProperty())) {
+            throw new IllegalArgumentException("unsupported sort: " + sort);
+        }
+        return new Position(orders.get(0).getProperty(), orders.get(0).getDirection(), null, null);
+    }
+
+    /**
+     * Условие "строго после позиции": (key > :key) OR (key = :key AND id > :id),
+     * для обратной сортировки - меньше.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Specification<T> after(Position position) {
+        return (root, query, criteriaBuilder) -> {
+            if (position.isFirst()) {
+                return null;
+            }
+            boolean asc = position.direction().isAscending();
+            Path<Comparable> id = root.get(ID);
+            Comparable idValue = position.id();
+            Predicate afterId = asc ? criteriaBuilder.greaterThan(id, idValue) : criteriaBuilder.lessThan(id, idValue);
+            if (ID.equals(position.attribute())) {
+                return afterId;
+            }
+            Path<Comparable> key = root.get(position.attribute());
+            Comparable keyValue = position.key();
+            Predicate afterKey = asc ? criteriaBuilder.greaterThan(key, keyValue) : criteriaBuilder.lessThan(key, keyValue);
+            return criteriaBuilder.or(afterKey, criteriaBuilder.and(criteriaBuilder.equal(key, keyValue), afterId));
+        };
+    }
+
+    /**
+     * Сортировка выборки: поле позиции и id (для однозначного порядка при равных ключах).
+     */
+    public Sort sort(Position position) {
+        Sort sort = Sort.by(position.direction(), position.attribute());
+        return ID.equals(position.attribute()) ? sort : sort.and(Sort.by(position.direction(), ID));
+    }
+
+    /**
+     * Формирует страницу из выборки размером size + 1: лишняя строка лишь признак того,
+     * что данные еще есть, и клиенту не отдается.
+     * @param rows     Выбранные строки (не более size + 1).
+     * @param size     Размер страницы.
+     * @param position Позиция, по которой делалась выборка.
+     */
+    public Window<T> window(List<T> rows, int size, Position position) {
+        if (rows.size() <= size) {
+            return new Window<>(rows, null);
+        }
+        List<T> content = rows.subList(0, size);
+        T last = content.get(size - 1);
+        Object id = keys.get(ID).getter().apply(last);
+        Object key = keys.get(position.attribute()).getter().apply(last);
+        return new Window<>(content, encode(position.attribute(), position.direction(), key, id));
+    }
+
+    /**
+     * Приводит запрошенный размер страницы к допустимому диапазону [1, MAX_SIZE].
+     */
+    public static int limitSize(int size) {
+        return Math.min(Math.max(size, 1), MAX_SIZE);
+    }
+
+
+    private String encode(String attribute, Sort.Direction direction, Object key, Object id) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(CURSOR_VERSION);
+            out.writeUTF(attribute);
+            out.writeBoolean(direction.isAscending());
+            out.writeUTF(String.valueOf(key));
+            out.writeUTF(String.valueOf(id));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Position decode(String cursor) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)));
+            if (in.readByte() != CURSOR_VERSION) {
+                throw new IllegalArgumentException("invalid cursor");
+            }
+            String attribute = in.readUTF();
+            Sort.Direction direction = in.readBoolean() ? Sort.Direction.ASC : Sort.Direction.DESC;
+            String key = in.readUTF();
+            String id = in.readUTF();
+            Key<T> sortKey = keys.get(attribute);
+            if (sortKey == null || in.available() != 0) {
+                throw new IllegalArgumentException("invalid cursor");
+            }
+            return new Position(attribute, direction, sortKey.parser().apply(key), keys.get(ID).parser().apply(id));
+        } catch (IllegalArgumentException | IOException | DateTimeException e) {
+            throw new IllegalArgumentException("invalid cursor", e);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.data.jpa.domain.Specification;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 
 /**
@@ -16,6 +17,21 @@ import java.util.List;
  */
 public class UserSpecification {
 
+    /**
+     * Keyset-выборка пользователей: по id (по умолчанию) или по имени (уникальный индекс).
+     */
+    public static final KeysetScroll<User> SCROLL = new KeysetScroll<User>(User::getId, UUID::fromString)
+            .key("username", User::getUsername, name -> name);
+
+    /**
+     * Копия фильтра - ключ кэша количества строк.
+     * @return Копия фильтра, или null, если фильтр пустой.
+     */
+    public static UserFilter countKey(UserFilter userFilter) {
+        UserFilter key = new UserFilter(userFilter.getUsername(), userFilter.getEmail(), userFilter.getEnabled(), userFilter.getRole());
+        return key.equals(new UserFilter()) ? null : key;
+    }
+
     public static Specification<User> filterBy(UserFilter userFilter) {
         return (root, query, criteriaBuilder) -> {
             List<Predicate> predicates = new ArrayList<>();
@@ -1,7 +1,7 @@
 package com.example.bankcards.entity;
 
-import com.example.bankcards.config.CardNumberEncryptor;
-import com.example.bankcards.config.YearMonthToStringConverter;
+import com.example.bankcards.config.CardNumberBinaryEncryptor;
+import com.example.bankcards.config.YearMonthToIntConverter;
 import com.example.bankcards.entity.auth.User;
 import com.example.bankcards.util.CardNumberHasher;
 import com.example.bankcards.util.CardUtil;
@@ -11,9 +11,11 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.YearMonth;
+import java.util.Arrays;
 import java.util.UUID;
 
 
@@ -23,8 +25,13 @@ import java.util.UUID;
  * простое хранение UUID владельца карты. Это обеспечивает больше
  * гибкости, в случае отделения Auth-сервера в отдельный микросервис,
  * или при переходе на сторонний (тот же Keycloak).
+ * UPDATE содержит только измененные столбцы: смена статуса не перезаписывает баланс,
+ * который мог изменить движок переводов в обход JPA.
+ * Номер карты загружается лениво (нужен bytecode enhancement, см. hibernate-maven-plugin):
+ * выборки карт его не читают и не расшифровывают, для отображения есть cardLast4.
  */
 @Entity
+@DynamicUpdate
 @Getter
 @Setter
 @AllArgsConstructor
@@ -37,26 +44,37 @@ public class Card {
     private Long id;
 
     /**
-     * Номер карты. Хранится в зашифрованном виде (AES).
+     * Номер карты. Хранится в зашифрованном виде (AES), в VARBINARY.
      * Конвертер обеспечит прозрачное шифрование/дешифрование.
+     * Уникальность номера проверяется по cardNumberHmac (шифротекст случаен, индекс по нему бесполезен).
      */
-    @Column(nullable = false, unique = true)
-    @Convert(converter = CardNumberEncryptor.class)
+    @Basic(fetch = FetchType.LAZY)
+    @Column(nullable = false)
+    @Convert(converter = CardNumberBinaryEncryptor.class)
     private String cardNumber;
 
+    /**
+     * Последние 4 цифры номера - для маски номера без расшифровки.
+     * Заполняется вместе с номером; для старых карт - фоновым CardLast4Backfill.
+     */
+    @Column(name = "card_last4", length = 4)
+    private String cardLast4;
+
     /**
      * HMAC от номера карты — для поиска и проверки уникальности.
+     * Хранится как есть, в BINARY(32): индекс компактнее, чем по Base64-строке.
      */
-    @Column(name = "card_number_hmac", nullable = false, unique = true, length = 64)
-    private String cardNumberHmac;
+    @Column(name = "card_number_hmac", nullable = false, unique = true, columnDefinition = "BINARY(32)")
+    private byte[] cardNumberHmac;
 
     /**
-     * Дата валидности карты. В БД храним в виде строки VARCHAR(5).
+     * Дата валидности карты. В БД храним в виде числа yyyymm (INT) с индексом,
+     * чтобы выборка "истекает не позже X" шла диапазоном по индексу.
      * Поскольку Jpa не поддерживает YearMonth, то задаем конвертер для
-     * автоматического преобразования в строку и обратно.
+     * автоматического преобразования в число и обратно.
      */
-    @Convert(converter = YearMonthToStringConverter.class)
-    @Column(nullable = false, length = 7)
+    @Convert(converter = YearMonthToIntConverter.class)
+    @Column(nullable = false)
     private YearMonth expiryDate;
 
     @Enumerated(EnumType.STRING)
@@ -69,6 +87,31 @@ public class Card {
     @Column(name = "user_id", nullable = false, columnDefinition = "BINARY(16)")
     private UUID userId;
 
+    /**
+     * Версия строки для оптимистической блокировки.
+     * Hibernate сам увеличивает её при каждом UPDATE и проверяет в WHERE.
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+
+    public Card(Long id, String cardNumber, byte[] cardNumberHmac, YearMonth expiryDate, CardStatus status, BigDecimal balance, UUID userId) {
+        this(id, cardNumber, cardNumberHmac, expiryDate, status, balance, userId, null);
+    }
+
+    public Card(Long id, String cardNumber, byte[] cardNumberHmac, YearMonth expiryDate, CardStatus status, BigDecimal balance, UUID userId, Long version) {
+        this(id, cardNumber, CardUtil.getLast4(cardNumber), cardNumberHmac, expiryDate, status, balance, userId, version);
+    }
+
+    /**
+     * Номер карты меняется только вместе с его последними цифрами.
+     */
+    public void setCardNumber(String cardNumber) {
+        this.cardNumber = cardNumber;
+        this.cardLast4 = CardUtil.getLast4(cardNumber);
+    }
+
 
     /*
         Обеспечиваем уникальность для каждого объекта.
@@ -79,19 +122,19 @@ public class Card {
         if (o == null || getClass() != o.getClass())
             return false;
         Card card = (Card) o;
-        return cardNumberHmac.equals(card.cardNumberHmac);
+        return Arrays.equals(cardNumberHmac, card.cardNumberHmac);
     }
 
     @Override
     public int hashCode() {
-        return cardNumberHmac.hashCode();
+        return Arrays.hashCode(cardNumberHmac);
     }
 
     @Override
     public String toString() {
         return "Card{" +
                 "id=" + id +
-                ", cardNumber='" + CardUtil.getMaskedNumber(cardNumber) + '\'' +
+                ", cardNumber='" + CardUtil.getMaskedLast4(cardLast4) + '\'' +
                 ", expiryDate=" + expiryDate +
                 ", status=" + status +
                 ", balance=" + balance +
@@ -0,0 +1,49 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Запись журнала операций по карте (списание или зачисление).
+ * Журнал только дополняется: записи пишет LedgerWriter, а через JPA они только читаются.
+ */
+@Entity
+@Immutable
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "card_transactions")
+public class CardTransaction {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Общий идентификатор списания и зачисления одного перевода.
+     */
+    @Column(name = "transfer_id", nullable = false, columnDefinition = "BINARY(16)")
+    private UUID transferId;
+
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(name = "user_id", nullable = false, columnDefinition = "BINARY(16)")
+    private UUID userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private CardTransactionType type;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
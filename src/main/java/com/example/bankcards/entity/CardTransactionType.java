@@ -0,0 +1,9 @@
+package com.example.bankcards.entity;
+
+/**
+ * Тип операции по карте в журнале.
+ */
+public enum CardTransactionType {
+    DEBIT,
+    CREDIT
+}
@@ -0,0 +1,48 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Результат перевода, выполненного с заголовком Idempotency-Key.
+ * Повтор запроса с тем же ключом возвращает этот результат, не трогая карты.
+ * errorCode = 0 - перевод выполнен, иначе код ошибки из BankCardErrorCodes.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "transfer_idempotency")
+public class TransferIdempotency {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false, columnDefinition = "BINARY(16)")
+    private UUID userId;
+
+    @Column(name = "idempotency_key", nullable = false, length = 100)
+    private String idempotencyKey;
+
+    /**
+     * SHA-256 от параметров перевода: тот же ключ с другими параметрами - ошибка клиента.
+     */
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "error_code", nullable = false)
+    private int errorCode;
+
+    @Column(length = 255)
+    private String message;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
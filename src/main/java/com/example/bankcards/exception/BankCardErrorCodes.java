@@ -17,12 +17,22 @@ public class BankCardErrorCodes {
     public static final int CARD_CANNOT_BE_SAME = 10007;
     public static final int CARD_BAD_STATUS = 10008;
     public static final int CARD_NOT_ENOUGHT_FUNDS = 10009;
+    public static final int CARD_INVALID_AMOUNT = 10010;
+    public static final int CARD_CONCURRENT_UPDATE = 10011;
+    public static final int CARD_BATCH_TOO_LARGE = 10012;
+    public static final int CARD_INVALID_IDEMPOTENCY_KEY = 10013;
+    public static final int CARD_IDEMPOTENCY_KEY_REUSED = 10014;
+    public static final int CARD_INVALID_CURSOR = 10015;
+    public static final int CARD_IMPORT_INVALID_ROW = 10016;
+    public static final int CARD_IMPORT_INVALID_FILE = 10017;
 
     public static final int USER_NAME_IS_WRONG = 20003;
     public static final int USER_NOT_FOUND = 20004;
     public static final int USER_ALREADY_EXISTS = 20005;
     public static final int USER_PASSWORD_IS_WRONG = 20006;
     public static final int USER_EMAIL_IS_WRONG = 20007;
+    public static final int USER_INVALID_CURSOR = 20008;
+    public static final int USER_ACCESS_DENIED = 20009;
 
     public static final int ROLE_NOT_FOUND = 30005;
     public static final int ROLE_ILLEGAL = 30006;
@@ -14,4 +14,11 @@ public abstract class BankCardException extends RuntimeException {
     public int getCode() {
         return code;
     }
+
+    /**
+     * Исходное описание ошибки, без оформления наследников в getMessage().
+     */
+    public String getReason() {
+        return super.getMessage();
+    }
 }
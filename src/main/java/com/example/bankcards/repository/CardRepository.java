@@ -1,10 +1,19 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
 /**
  * Работа с БД карт.
  */
@@ -15,6 +24,42 @@ public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificat
      * Проверка наличия карты в БД по её хэшу.
      * @param cardNumberHmac Хэш номера карты.
      */
-    boolean existsByCardNumberHmac(String cardNumberHmac);
+    boolean existsByCardNumberHmac(byte[] cardNumberHmac);
+
+    /**
+     * Списание средств одним UPDATE, с проверкой всех условий прямо в БД.
+     * @param id     Идентификатор карты.
+     * @param userId Владелец карты.
+     * @param amount Сумма списания.
+     * @return Количество изменённых строк: 1 - списано, 0 - условия не выполнены (карты нет, чужая, не активна или мало средств).
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Card c SET c.balance = c.balance - :amount, c.version = c.version + 1 " +
+            "WHERE c.id = :id AND c.userId = :userId " +
+            "AND c.status = com.example.bankcards.entity.CardStatus.ACTIVE AND c.balance >= :amount")
+    int debit(Long id, UUID userId, BigDecimal amount);
+
+    /**
+     * Зачисление средств одним UPDATE, с проверкой владельца и статуса карты.
+     * @param id     Идентификатор карты.
+     * @param userId Владелец карты.
+     * @param amount Сумма зачисления.
+     * @return Количество изменённых строк: 1 - зачислено, 0 - условия не выполнены.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Card c SET c.balance = c.balance + :amount, c.version = c.version + 1 " +
+            "WHERE c.id = :id AND c.userId = :userId " +
+            "AND c.status = com.example.bankcards.entity.CardStatus.ACTIVE")
+    int credit(Long id, UUID userId, BigDecimal amount);
+
+    /**
+     * Выборка карт с блокировкой строк (SELECT ... FOR UPDATE) до конца транзакции.
+     * Строки блокируются одним запросом и строго по возрастанию id, поэтому
+     * встречные транзакции не могут захватить их в разном порядке и получить deadlock.
+     * @param ids Идентификаторы карт.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdForUpdate(Collection<Long> ids);
 
 }
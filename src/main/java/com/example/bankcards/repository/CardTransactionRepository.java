@@ -0,0 +1,17 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardTransaction;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Журнал операций по картам (только чтение, запись - через LedgerWriter).
+ */
+@Repository
+public interface CardTransactionRepository extends JpaRepository<CardTransaction, Long> {
+
+    List<CardTransaction> findAllByCardIdInOrderByIdAsc(Collection<Long> cardIds);
+}
@@ -0,0 +1,31 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.TransferIdempotency;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * БД результатов переводов по ключам идемпотентности.
+ */
+@Repository
+public interface TransferIdempotencyRepository extends JpaRepository<TransferIdempotency, Long> {
+
+    Optional<TransferIdempotency> findByUserIdAndIdempotencyKey(UUID userId, String idempotencyKey);
+
+    /**
+     * Удаление устаревших записей одним запросом (без загрузки сущностей).
+     * @param threshold Записи, созданные раньше, удаляются.
+     * @return Количество удаленных записей.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TransferIdempotency t WHERE t.createdAt < :threshold")
+    int deleteOlderThan(LocalDateTime threshold);
+}
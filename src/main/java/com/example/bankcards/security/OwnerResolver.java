@@ -0,0 +1,44 @@
+package com.example.bankcards.security;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+
+/**
+ * Определяет владельца текущего запроса по JWT-токену: идентификатор пользователя
+ * кладется в токен при его выдаче (поле "user_id", см. AuthSecurityConfig.tokenCustomizer).
+ * Контекст безопасности привязан к потоку запроса, поэтому результат относится только к текущему запросу.
+ */
+@Component
+@Log4j2
+public class OwnerResolver {
+
+    public static final String USER_ID_CLAIM = "user_id";
+
+
+    /**
+     * @return Идентификатор пользователя из токена текущего запроса, или null, если запрос
+     * без JWT (httpBasic, client_credentials без пользователя, внутренние вызовы) или в нем нет user_id.
+     */
+    public UUID currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!(authentication instanceof JwtAuthenticationToken token)) {
+            return null;
+        }
+        String userId = token.getToken().getClaimAsString(USER_ID_CLAIM);
+        if (userId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(userId);
+        } catch (IllegalArgumentException e) {
+            log.warn("Некорректный {} в токене: {}", USER_ID_CLAIM, userId);
+            return null;
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.CardImportStatus;
+import com.example.bankcards.dto.CardIssueResult;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CursorPageDTO;
 import com.example.bankcards.dto.PageDTO;
+import com.example.bankcards.dto.TotalMode;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResult;
 import com.example.bankcards.dto.filters.CardFilter;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.UUID;
 
 
@@ -17,14 +24,27 @@ import java.util.UUID;
 public interface CardService {
     // функционал админа
     CardResponse createCard(CardCreateRequest request);
+    List<CardIssueResult> createCards(List<CardCreateRequest> requests);
+    CardImportStatus importCards(String fileName, boolean restart);
+    CardImportStatus getImportStatus(String fileName);
     CardResponse activateCard(UUID userId, Long id);
     CardResponse blockedCard(UUID userId, Long id);
     void deleteCard(UUID userId, Long id);
-    PageDTO<CardResponse> getAllCards(CardFilter filter, Pageable pageable);
+    PageDTO<CardResponse> getAllCards(CardFilter filter, Pageable pageable, TotalMode totalMode);
+    default PageDTO<CardResponse> getAllCards(CardFilter filter, Pageable pageable) {
+        return getAllCards(filter, pageable, TotalMode.EXACT);
+    }
+    CursorPageDTO<CardResponse> scrollAllCards(CardFilter filter, String cursor, int size, Sort sort);
 
     // функционал юзера
-    PageDTO<CardResponse> getUserCards(UUID userId, CardFilter filter, Pageable pageable);
+    PageDTO<CardResponse> getUserCards(UUID userId, CardFilter filter, Pageable pageable, TotalMode totalMode);
+    default PageDTO<CardResponse> getUserCards(UUID userId, CardFilter filter, Pageable pageable) {
+        return getUserCards(userId, filter, pageable, TotalMode.EXACT);
+    }
+    CursorPageDTO<CardResponse> scrollUserCards(UUID userId, CardFilter filter, String cursor, int size, Sort sort);
     void requestToBlockingCard(UUID userId, Long cardId);
     void transferAmount(TransferRequest request);
+    void transferAmount(TransferRequest request, String idempotencyKey);
+    List<TransferResult> transferBatch(List<TransferRequest> requests);
     BigDecimal getBalance(UUID id, Long cardId);
 }
@@ -1,34 +1,60 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.CardImportStatus;
+import com.example.bankcards.dto.CardIssueResult;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CursorPageDTO;
 import com.example.bankcards.dto.PageDTO;
+import com.example.bankcards.dto.TotalMode;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResult;
 import com.example.bankcards.entity.BlockedCards;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardAction;
 import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.TransferIdempotency;
 import com.example.bankcards.exception.BankCardErrorCodes;
 import com.example.bankcards.exception.BankCardException;
 import com.example.bankcards.exception.CardOperationException;
 import com.example.bankcards.repository.BlockedCardsRepository;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.security.OwnerResolver;
 import com.example.bankcards.dto.filters.CardFilter;
 import com.example.bankcards.dto.filters.CardSpecification;
+import com.example.bankcards.dto.filters.KeysetScroll;
+import com.example.bankcards.service.cache.CardHmacBloomFilter;
+import com.example.bankcards.service.idempotency.IdempotencyStore;
+import com.example.bankcards.service.issuance.BulkCardIssuer;
+import com.example.bankcards.service.issuance.CardFileImporter;
+import com.example.bankcards.service.ledger.LedgerWriter;
 import com.example.bankcards.service.mappers.CardMapper;
+import com.example.bankcards.service.paging.PageCounter;
+import com.example.bankcards.service.retry.RetryExecutor;
+import com.example.bankcards.service.transfer.BatchTransferEngine;
+import com.example.bankcards.service.transfer.TransferEngine;
+import com.example.bankcards.service.validators.CardValidator;
 import com.example.bankcards.util.CardNumberHasher;
 import com.example.bankcards.util.CardUtil;
 import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Pageable;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 
 /**
@@ -41,10 +67,23 @@ import java.util.UUID;
 @Log4j2
 public class CardServiceImpl implements CardService {
 
+    private static final String CARDS_TABLE = "cards";
+
     private final CardRepository cardRepository;
     private final BlockedCardsRepository blockedCardsRepository;
     private final CardMapper cardMapper;
     private final UserService userService;
+    private final TransferEngine transferEngine;
+    private final BatchTransferEngine batchTransferEngine;
+    private final RetryExecutor retryExecutor;
+    private final IdempotencyStore idempotencyStore;
+    private final LedgerWriter ledgerWriter;
+    private final PageCounter pageCounter;
+    private final OwnerResolver ownerResolver;
+    private final CardHmacBloomFilter cardHmacFilter;
+    private final CardValidator cardValidator;
+    private final BulkCardIssuer bulkCardIssuer;
+    private final CardFileImporter cardFileImporter;
 
 
     /**
@@ -54,21 +93,17 @@ public class CardServiceImpl implements CardService {
      */
     @Override
     public CardResponse createCard(CardCreateRequest request) {
-        if (!CardUtil.isCardNumberValid(request.getCardNumber())) {
-            throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_NUMBER, "card number is invalid");
-        }
-        if (!CardUtil.isCardExpiryValid(request.getExpiryDate())) {
-            throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_EXPIRATION, "card expiry is invalid");
-        }
+        cardValidator.validateRequest(request);
         if (!userService.existsUser(request.getUserId())) {
             throw new CardOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist");
         }
         String cardNumber = CardUtil.normalizeCardNumber(request.getCardNumber());
-        String hmac = CardNumberHasher.hmacSha256(cardNumber);
-        if (cardRepository.existsByCardNumberHmac(hmac)) {
+        byte[] hmac = CardNumberHasher.hmacSha256Bytes(cardNumber);
+        // номера, которого точно нет в фильтре, нет и в БД - запрос не нужен
+        if (cardHmacFilter.mightContain(hmac) && cardRepository.existsByCardNumberHmac(hmac)) {
             throw new CardOperationException(BankCardErrorCodes.CARD_ALREADY_EXISTS, "card number already exists");
         }
-        BigDecimal balance = request.getBalance() == null ? BigDecimal.ZERO : request.getBalance();
+        BigDecimal balance = cardValidator.initialBalance(request.getBalance());
 
         Card card = new Card(
                 null,
@@ -81,8 +116,79 @@ public class CardServiceImpl implements CardService {
         );
         try {
             Card res = cardRepository.save(card);
+            cardHmacFilter.put(hmac);
             log.info("Create new card: {}", res);  // номер будет в скрытом виде.
             return cardMapper.toCardResponse(res);
+        } catch (DataIntegrityViolationException e) {
+            // дубликат, которого не было в фильтре (карта создана другой инстанцией или параллельно)
+            if (cardRepository.existsByCardNumberHmac(hmac)) {
+                throw new CardOperationException(BankCardErrorCodes.CARD_ALREADY_EXISTS, "card number already exists");
+            }
+            throw new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage());
+        } catch (Exception e) {
+            if (e instanceof BankCardException) {
+                throw e;
+            }
+            throw new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage());
+        }
+    }
+
+    /**
+     * Пакетный выпуск карт (BulkCardIssuer).
+     * Существование каждого пользователя проверяется один раз на пакет.
+     * @param requests Новые карты.
+     * @return Результат по каждой карте (id или код ошибки).
+     */
+    @Override
+    public List<CardIssueResult> createCards(List<CardCreateRequest> requests) {
+        try {
+            if (requests == null || requests.isEmpty()) {
+                return List.of();
+            }
+            bulkCardIssuer.validateSize(requests);
+            Set<UUID> users = requests.stream()
+                    .filter(Objects::nonNull)
+                    .map(CardCreateRequest::getUserId)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .filter(userService::existsUser)
+                    .collect(Collectors.toSet());
+            return bulkCardIssuer.issue(requests, users);
+        } catch (Exception e) {
+            if (e instanceof BankCardException) {
+                throw e;
+            }
+            throw new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage());
+        }
+    }
+
+    /**
+     * Запуск импорта карт из файла процессинга (CardFileImporter), в фоне.
+     * Прерванный импорт продолжается с последней выпущенной пачки.
+     * @param fileName Имя файла в каталоге импорта (var.card.import.dir).
+     * @param restart  Начать файл заново.
+     * @return Состояние импорта.
+     */
+    @Override
+    public CardImportStatus importCards(String fileName, boolean restart) {
+        try {
+            return cardFileImporter.start(fileName, restart);
+        } catch (Exception e) {
+            if (e instanceof BankCardException) {
+                throw e;
+            }
+            throw new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage());
+        }
+    }
+
+    /**
+     * Состояние импорта карт из файла: позиция, счетчики, первые ошибки по строкам.
+     * @param fileName Имя файла в каталоге импорта.
+     */
+    @Override
+    public CardImportStatus getImportStatus(String fileName) {
+        try {
+            return cardFileImporter.status(fileName);
         } catch (Exception e) {
             if (e instanceof BankCardException) {
                 throw e;
@@ -100,16 +206,20 @@ public class CardServiceImpl implements CardService {
     @Override
     public CardResponse activateCard(UUID userId, Long id) {
         try {
-            Card card = cardRepository.findById(id).orElse(null);
-            if (card == null) {
-                throw new CardOperationException(BankCardErrorCodes.CARD_NOT_FOUND, "card does not exist");
-            }
-            if (!card.getUserId().equals(userId)) {
-                throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_OWNER, "incorrect card owner");
-            }
-            card.setStatus(CardStatus.ACTIVE);
-            Card res = cardRepository.save(card);
-            return cardMapper.toCardResponse(res);
+            CardResponse response = retryExecutor.execute("activate", () -> {
+                Card card = cardRepository.findById(id).orElse(null);
+                if (card == null) {
+                    throw new CardOperationException(BankCardErrorCodes.CARD_NOT_FOUND, "card does not exist");
+                }
+                if (!card.getUserId().equals(userId)) {
+                    throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_OWNER, "incorrect card owner");
+                }
+                card.setStatus(CardStatus.ACTIVE);
+                Card res = cardRepository.save(card);
+                return cardMapper.toCardResponse(res);
+            });
+            transferEngine.statusChanged(id, CardStatus.ACTIVE);
+            return response;
         } catch (Exception e) {
             if (e instanceof BankCardException) {
                 throw e;
@@ -127,16 +237,20 @@ public class CardServiceImpl implements CardService {
     @Override
     public CardResponse blockedCard(UUID userId, Long id) {
         try {
-            Card card = cardRepository.findById(id).orElse(null);
-            if (card == null) {
-                throw new CardOperationException(BankCardErrorCodes.CARD_NOT_FOUND, "card does not exist");
-            }
-            if (!card.getUserId().equals(userId)) {
-                throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_OWNER, "incorrect card owner");
-            }
-            card.setStatus(CardStatus.BLOCKED);
-            Card res = cardRepository.save(card);
-            return cardMapper.toCardResponse(res);
+            CardResponse response = retryExecutor.execute("block", () -> {
+                Card card = cardRepository.findById(id).orElse(null);
+                if (card == null) {
+                    throw new CardOperationException(BankCardErrorCodes.CARD_NOT_FOUND, "card does not exist");
+                }
+                if (!card.getUserId().equals(userId)) {
+                    throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_OWNER, "incorrect card owner");
+                }
+                card.setStatus(CardStatus.BLOCKED);
+                Card res = cardRepository.save(card);
+                return cardMapper.toCardResponse(res);
+            });
+            transferEngine.statusChanged(id, CardStatus.BLOCKED);
+            return response;
         } catch (Exception e) {
             if (e instanceof BankCardException) {
                 throw e;
@@ -161,6 +275,7 @@ public class CardServiceImpl implements CardService {
                 throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_OWNER, "incorrect card owner");
             }
             cardRepository.delete(card);
+            transferEngine.cardRemoved(id);
         } catch (Exception e) {
             if (e instanceof BankCardException) {
                 throw e;
@@ -173,36 +288,76 @@ public class CardServiceImpl implements CardService {
     /**
      * Выборка всех карт из БД с использованием фильтра и пагинации.
      * @param filter   Фильтр.
-     * @param pageable Информация о выбираемой странице.
+     * @param pageable  Информация о выбираемой странице.
+     * @param totalMode Способ подсчета общего количества карт.
      * @return Страница со списком карт.
      */
     @Override
-    public PageDTO<CardResponse> getAllCards(CardFilter filter, Pageable pageable) {
+    public PageDTO<CardResponse> getAllCards(CardFilter filter, Pageable pageable, TotalMode totalMode) {
         try {
-            Page<Card> cards = cardRepository.findAll(CardSpecification.filterBy(filter), pageable);
-            return cardMapper.toPageCard(cards);
+            return findCards(filter, pageable, totalMode);
         } catch (Exception e) {
             throw new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage());
         }
     }
 
+    /**
+     * Keyset-выборка карт из БД с использованием фильтра, без подсчета общего количества.
+     * @param filter Фильтр.
+     * @param cursor Курсор из предыдущей страницы (null - первая страница).
+     * @param size   Размер страницы.
+     * @param sort   Сортировка первой страницы (далее берется из курсора).
+     * @return Страница со списком карт и курсором следующей страницы.
+     */
+    @Override
+    public CursorPageDTO<CardResponse> scrollAllCards(CardFilter filter, String cursor, int size, Sort sort) {
+        try {
+            return scrollCards(filter, cursor, size, sort);
+        } catch (Exception e) {
+            if (e instanceof BankCardException) {
+                throw e;
+            }
+            throw new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage());
+        }
+    }
+
     /**
      * Выборка карт пользователя из БД с использованием фильтра и пагинации.
      * @param userId   Идентификатор пользователя.
      * @param filter   Фильтр.
-     * @param pageable Информация о выбираемой странице.
+     * @param pageable  Информация о выбираемой странице.
+     * @param totalMode Способ подсчета общего количества карт.
      * @return Страница со списком карт.
      */
     @Override
-    public PageDTO<CardResponse> getUserCards(UUID userId, CardFilter filter, Pageable pageable) {
+    public PageDTO<CardResponse> getUserCards(UUID userId, CardFilter filter, Pageable pageable, TotalMode totalMode) {
         try {
-            if (userService.existsUser(userId)) {
-                filter.setUserId(userId);
-                Specification<Card> spec = CardSpecification.filterBy(filter);
-                Page<Card> cards = cardRepository.findAll(spec, pageable);
-                return cardMapper.toPageCard(cards);
+            checkUser(userId);
+            filter.setUserId(userId);
+            return findCards(filter, pageable, totalMode);
+        } catch (Exception e) {
+            if (e instanceof BankCardException) {
+                throw e;
             }
-            throw new CardOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist");
+            throw new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage());
+        }
+    }
+
+    /**
+     * Keyset-выборка карт пользователя из БД с использованием фильтра, без подсчета общего количества.
+     * @param userId Идентификатор пользователя.
+     * @param filter Фильтр.
+     * @param cursor Курсор из предыдущей страницы (null - первая страница).
+     * @param size   Размер страницы.
+     * @param sort   Сортировка первой страницы (далее берется из курсора).
+     * @return Страница со списком карт и курсором следующей страницы.
+     */
+    @Override
+    public CursorPageDTO<CardResponse> scrollUserCards(UUID userId, CardFilter filter, String cursor, int size, Sort sort) {
+        try {
+            checkUser(userId);
+            filter.setUserId(userId);
+            return scrollCards(filter, cursor, size, sort);
         } catch (Exception e) {
             if (e instanceof BankCardException) {
                 throw e;
@@ -219,9 +374,7 @@ public class CardServiceImpl implements CardService {
     @Override
     public void requestToBlockingCard(UUID userId, Long cardId) {
         try {
-            if (!userService.existsUser(userId)) {
-                throw new CardOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist");
-            }
+            checkUser(userId);
             if (blockedCardsRepository.existsBlockedCardsByCardId(cardId)) {
                 throw new CardOperationException(BankCardErrorCodes.CARD_ALREADY_BLOCKED, "card already blocked");
             }
@@ -246,41 +399,119 @@ public class CardServiceImpl implements CardService {
 
     /**
      * Перевод средств между картами пользователя.
+     * Сам перевод выполняет движок, выбранный в var.card.transfer.mode, в той же транзакции
+     * списание и зачисление пишутся в журнал операций. При конфликтах параллельного изменения
+     * карт транзакция повторяется (RetryExecutor).
      * @param request Данные о переводе (владелец, откуда, куда и сколько).
      */
     @Override
-    @Transactional
     public void transferAmount(TransferRequest request) {
         try {
-            if (!userService.existsUser(request.getUserId())) {
-                throw new CardOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist");
-            }
-            Card fromCard = cardRepository.findById(request.getFromCardId()).orElse(null);
-            Card toCard = cardRepository.findById(request.getToCardId()).orElse(null);
-            if (fromCard == null || toCard == null) {
-                throw new CardOperationException(BankCardErrorCodes.CARD_NOT_FOUND, "card not found");
-            }
-            if (fromCard.getId().equals(toCard.getId())) {
-                throw new CardOperationException(BankCardErrorCodes.CARD_CANNOT_BE_SAME, "cards cannot be the same");
+            checkUser(request.getUserId());
+            retryExecutor.execute("transfer", () -> {
+                transferEngine.transfer(request);
+                ledgerWriter.record(request);
+                return null;
+            });
+        } catch (Exception e) {
+            if (e instanceof BankCardException) {
+                throw e;
             }
-            if (!fromCard.getUserId().equals(request.getUserId()) || !toCard.getUserId().equals(request.getUserId())) {
-                throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_OWNER, "user does not own cards");
+            throw new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage());
+        }
+    }
+
+    /**
+     * Перевод средств с ключом идемпотентности (заголовок Idempotency-Key).
+     * Повтор запроса с тем же ключом возвращает сохраненный результат, не трогая карты.
+     * @param request        Данные о переводе.
+     * @param idempotencyKey Ключ идемпотентности (null - обычный перевод).
+     */
+    @Override
+    public void transferAmount(TransferRequest request, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            transferAmount(request);
+            return;
+        }
+        TransferIdempotency stored;
+        try {
+            stored = idempotentTransfer(request, idempotencyKey);
+        } catch (Exception e) {
+            if (e instanceof BankCardException) {
+                throw e;
             }
-            if (fromCard.getStatus() != CardStatus.ACTIVE || toCard.getStatus() != CardStatus.ACTIVE) {
-                throw new CardOperationException(BankCardErrorCodes.CARD_BAD_STATUS, "card status is not active");
+            throw new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage());
+        }
+        if (stored != null) {
+            log.info("Повтор перевода по ключу идемпотентности, пользователь {}", request.getUserId());
+            IdempotencyStore.replay(stored);
+        }
+    }
+
+    /**
+     * @return Сохраненный ранее результат или null, если перевод выполнен сейчас.
+     */
+    private TransferIdempotency idempotentTransfer(TransferRequest request, String key) {
+        idempotencyStore.validateKey(key);
+        UUID userId = request.getUserId();
+        checkUser(userId);
+        String hash = idempotencyStore.requestHash(request);
+        Optional<TransferIdempotency> done = idempotencyStore.find(userId, key, hash);
+        if (done.isPresent()) {
+            return done.get();
+        }
+        try {
+            return retryExecutor.execute("transfer", () -> {
+                // результат мог появиться, пока ждали повтора после конфликта
+                Optional<TransferIdempotency> stored = idempotencyStore.find(userId, key, hash);
+                if (stored.isPresent()) {
+                    return stored.get();
+                }
+                idempotencyStore.saveSuccess(userId, key, hash);
+                transferEngine.transfer(request);
+                ledgerWriter.record(request);
+                return null;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // параллельный запрос с тем же ключом выполнился первым
+            return idempotencyStore.find(userId, key, hash).orElseThrow(() -> e);
+        } catch (CardOperationException e) {
+            idempotencyStore.saveFailure(userId, key, hash, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Пакетный перевод средств: все переводы выполняются в одной транзакции, по порядку.
+     * Существование каждого пользователя проверяется один раз на пакет (по токену, иначе по БД).
+     * @param requests Список переводов.
+     * @return Результат по каждому переводу (успех или код ошибки).
+     */
+    @Override
+    public List<TransferResult> transferBatch(List<TransferRequest> requests) {
+        try {
+            if (requests == null || requests.isEmpty()) {
+                return List.of();
             }
-            if (fromCard.getBalance().compareTo(request.getAmount()) < 0) {
-                throw new CardOperationException(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, "from card does not have enough balance");
+            batchTransferEngine.validateSize(requests);
+            Set<UUID> users = requests.stream()
+                    .map(TransferRequest::getUserId)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .filter(this::isUser)
+                    .collect(Collectors.toSet());
+            if (transferEngine.isWriteBehind()) {
+                return transferEach(requests, users);
             }
-            // списание и зачисление
-            fromCard.setBalance(fromCard.getBalance().subtract(request.getAmount()));
-            toCard.setBalance(toCard.getBalance().add(request.getAmount()));
-            // сохраняем
-            cardRepository.save(fromCard);
-            cardRepository.save(toCard);
-
-            log.info("Осуществлен перевод с карты {} на карту {}", CardUtil.getMaskedNumber(fromCard.getCardNumber()), CardUtil.getMaskedNumber(toCard.getCardNumber()));
-            // TODO: добавить логирование операции!!!
+            return retryExecutor.execute("transfer-batch", () -> {
+                List<TransferResult> results = batchTransferEngine.transfer(requests, users);
+                for (TransferResult result : results) {
+                    if (result.isSuccess()) {
+                        ledgerWriter.record(requests.get(result.getIndex()));
+                    }
+                }
+                return results;
+            });
 
         } catch (Exception e) {
             if (e instanceof BankCardException) {
@@ -290,6 +521,31 @@ public class CardServiceImpl implements CardService {
         }
     }
 
+    /**
+     * Пакет для движка с балансами в памяти: каждый перевод - отдельная команда движка
+     * и своя транзакция журнала. Результаты по-прежнему по каждому переводу.
+     */
+    private List<TransferResult> transferEach(List<TransferRequest> requests, Set<UUID> users) {
+        List<TransferResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            try {
+                if (!users.contains(request.getUserId())) {
+                    throw new CardOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist");
+                }
+                retryExecutor.execute("transfer", () -> {
+                    transferEngine.transfer(request);
+                    ledgerWriter.record(request);
+                    return null;
+                });
+                results.add(TransferResult.ok(i, request));
+            } catch (CardOperationException e) {
+                results.add(TransferResult.failed(i, request, e));
+            }
+        }
+        return results;
+    }
+
     /**
      * Возвращает баланс карты.
      * @param id     Идентификатор пользователя.
@@ -299,9 +555,7 @@ public class CardServiceImpl implements CardService {
     @Override
     public BigDecimal getBalance(UUID id, Long cardId) {
         try {
-            if (!userService.existsUser(id)) {
-                throw new CardOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist");
-            }
+            checkUser(id);
             Card card = cardRepository.findById(cardId).orElse(null);
             if (card == null) {
                 throw new CardOperationException(BankCardErrorCodes.CARD_NOT_FOUND, "card does not exist");
@@ -312,7 +566,7 @@ public class CardServiceImpl implements CardService {
             if (card.getStatus() != CardStatus.ACTIVE) {
                 throw new CardOperationException(BankCardErrorCodes.CARD_BAD_STATUS, "card status is not active");
             }
-            return card.getBalance();
+            return transferEngine.getBalance(cardId).orElse(card.getBalance());
 
         } catch (Exception e) {
             if (e instanceof BankCardException) {
@@ -322,5 +576,62 @@ public class CardServiceImpl implements CardService {
         }
     }
 
+    /*
+        Точный режим - обычный Page (выборка + COUNT(*)), иначе Slice (на строку больше страницы)
+        и количество от PageCounter: из кэша, по статистике таблицы или вовсе без него.
+     */
+    private PageDTO<CardResponse> findCards(CardFilter filter, Pageable pageable, TotalMode totalMode) {
+        Specification<Card> spec = CardSpecification.filterBy(filter);
+        if (totalMode == null || totalMode == TotalMode.EXACT) {
+            Page<Card> cards = cardRepository.findAll(spec, pageable);
+            return cardMapper.toPageCard(cards);
+        }
+        Slice<Card> cards = cardRepository.findBy(spec, query -> query.slice(pageable));
+        long total = pageCounter.count(cards, CARDS_TABLE, CardSpecification.countKey(filter), totalMode,
+                () -> cardRepository.count(spec));
+        return cardMapper.toPageCard(cards, total, totalMode);
+    }
+
+    /*
+        Выбираем на одну строку больше страницы: так узнаем, есть ли продолжение, без COUNT(*).
+     */
+    private CursorPageDTO<CardResponse> scrollCards(CardFilter filter, String cursor, int size, Sort sort) {
+        KeysetScroll.Position position;
+        try {
+            position = CardSpecification.SCROLL.position(cursor, sort);
+        } catch (IllegalArgumentException e) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_CURSOR, e.getMessage());
+        }
+        int limit = KeysetScroll.limitSize(size);
+        Specification<Card> spec = CardSpecification.filterBy(filter).and(CardSpecification.SCROLL.after(position));
+        List<Card> cards = cardRepository.findBy(spec, query -> query
+                .sortBy(CardSpecification.SCROLL.sort(position))
+                .limit(limit + 1)
+                .all());
+        return cardMapper.toCursorPageCard(CardSpecification.SCROLL.window(cards, limit, position));
+    }
 
+    /*
+        Проверка пользователя из запроса. Если в JWT есть user_id, то пользователь уже аутентифицирован
+        при выдаче токена - запрос existsUser в БД не нужен, достаточно сверить id из запроса с id из токена.
+        Без user_id в токене (httpBasic, client_credentials, внутренние вызовы) - проверка по БД, как раньше.
+     */
+    private void checkUser(UUID userId) {
+        UUID owner = ownerResolver.currentUserId();
+        if (owner == null) {
+            if (!userService.existsUser(userId)) {
+                throw new CardOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist");
+            }
+        } else if (!owner.equals(userId)) {
+            throw new CardOperationException(BankCardErrorCodes.USER_ACCESS_DENIED, "user id does not match the token");
+        }
+    }
+
+    /*
+        То же для пакета: переводы чужого пользователя считаются переводами несуществующего.
+     */
+    private boolean isUser(UUID userId) {
+        UUID owner = ownerResolver.currentUserId();
+        return owner == null ? userService.existsUser(userId) : owner.equals(userId);
+    }
 }
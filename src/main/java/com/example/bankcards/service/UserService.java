@@ -1,11 +1,14 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.CursorPageDTO;
 import com.example.bankcards.dto.PageDTO;
 import com.example.bankcards.dto.SignUpRequest;
+import com.example.bankcards.dto.TotalMode;
 import com.example.bankcards.dto.UpdateUserRequest;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.dto.filters.UserFilter;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.util.UUID;
 
@@ -16,7 +19,11 @@ import java.util.UUID;
 public interface UserService {
     Boolean existsUser(UUID userId);
     UserResponse createUser(SignUpRequest userRequest);                         // C
-    PageDTO<UserResponse> getAllUsers(UserFilter filter, Pageable pageable);    // R
+    PageDTO<UserResponse> getAllUsers(UserFilter filter, Pageable pageable, TotalMode totalMode);    // R
+    default PageDTO<UserResponse> getAllUsers(UserFilter filter, Pageable pageable) {
+        return getAllUsers(filter, pageable, TotalMode.EXACT);
+    }
+    CursorPageDTO<UserResponse> scrollAllUsers(UserFilter filter, String cursor, int size, Sort sort);
     UserResponse updateUser(UpdateUserRequest updateUserRequest);               // U
     void deleteUser(UUID userId);                                               // D
 }
@@ -1,7 +1,9 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.CursorPageDTO;
 import com.example.bankcards.dto.PageDTO;
 import com.example.bankcards.dto.SignUpRequest;
+import com.example.bankcards.dto.TotalMode;
 import com.example.bankcards.dto.UpdateUserRequest;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.entity.auth.User;
@@ -10,17 +12,24 @@ import com.example.bankcards.exception.BankCardException;
 import com.example.bankcards.exception.UserOperationException;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.CustomPasswordEncoder;
+import com.example.bankcards.dto.filters.KeysetScroll;
 import com.example.bankcards.dto.filters.UserFilter;
 import com.example.bankcards.dto.filters.UserSpecification;
+import com.example.bankcards.service.cache.UserExistsCache;
 import com.example.bankcards.service.mappers.RoleMapper;
 import com.example.bankcards.service.mappers.UserMapper;
+import com.example.bankcards.service.paging.PageCounter;
 import com.example.bankcards.service.validators.UserValidator;
 import lombok.AllArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.UUID;
 
 
@@ -33,33 +42,83 @@ import java.util.UUID;
 @AllArgsConstructor
 public class UserServiceImpl implements UserService {
 
+    private static final String USERS_TABLE = "users";
+
     private final UserRepository userRepository;
     private final CustomPasswordEncoder customPasswordEncoder;
     private final UserMapper userMapper;
     private final UserValidator userValidator;
     private final RoleMapper roleMapper;
+    private final PageCounter pageCounter;
+    private final UserExistsCache userExistsCache;
 
 
     /**
      * Возвращает список пользователей.
      * @param filter   Фильтр отбора пользователей.
      * @param pageable Пагинация (страница и её размер)
+     * @param totalMode Способ подсчета общего количества пользователей.
      * @return         Страничная выборка пользователей, в соответствии с заданными критериями.
      */
     @Override
-    public PageDTO<UserResponse> getAllUsers(UserFilter filter, Pageable pageable) {
+    public PageDTO<UserResponse> getAllUsers(UserFilter filter, Pageable pageable, TotalMode totalMode) {
         try {
-            Page<User> users = userRepository.findAll(UserSpecification.filterBy(filter), pageable);
-            return userMapper.toPageUser(users);
+            Specification<User> spec = UserSpecification.filterBy(filter);
+            if (totalMode == null || totalMode == TotalMode.EXACT) {
+                Page<User> users = userRepository.findAll(spec, pageable);
+                return userMapper.toPageUser(users);
+            }
+            Slice<User> users = userRepository.findBy(spec, query -> query.slice(pageable));
+            long total = pageCounter.count(users, USERS_TABLE, UserSpecification.countKey(filter), totalMode,
+                    () -> userRepository.count(spec));
+            return userMapper.toPageUser(users, total, totalMode);
         } catch (Exception ignored) {
         }
         return PageDTO.empty();
     }
 
+    /**
+     * Возвращает страницу пользователей по курсору (keyset), без подсчета общего количества.
+     * @param filter Фильтр отбора пользователей.
+     * @param cursor Курсор из предыдущей страницы (null - первая страница).
+     * @param size   Размер страницы.
+     * @param sort   Сортировка первой страницы (далее берется из курсора).
+     * @return       Страница пользователей и курсор следующей страницы.
+     */
+    @Override
+    public CursorPageDTO<UserResponse> scrollAllUsers(UserFilter filter, String cursor, int size, Sort sort) {
+        try {
+            KeysetScroll.Position position;
+            try {
+                position = UserSpecification.SCROLL.position(cursor, sort);
+            } catch (IllegalArgumentException e) {
+                throw new UserOperationException(BankCardErrorCodes.USER_INVALID_CURSOR, e.getMessage());
+            }
+            int limit = KeysetScroll.limitSize(size);
+            List<User> users = userRepository.findBy(
+                    UserSpecification.filterBy(filter).and(UserSpecification.SCROLL.after(position)),
+                    query -> query
+                            .sortBy(UserSpecification.SCROLL.sort(position))
+                            .limit(limit + 1)
+                            .all());
+            return userMapper.toCursorPageUser(UserSpecification.SCROLL.window(users, limit, position));
+        } catch (Exception e) {
+            if (e instanceof BankCardException) {
+                throw e;
+            }
+            throw new UserOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage());
+        }
+    }
+
+    /**
+     * Проверка существования пользователя, через локальный кэш (UserExistsCache).
+     * @param userId Идентификатор пользователя.
+     * @return true, если пользователь есть; false - если нет или БД недоступна.
+     */
     @Override
     public Boolean existsUser(UUID userId) {
         try {
-            return userRepository.existsById(userId);
+            return userExistsCache.exists(userId, userRepository::existsById);
         } catch (Exception ignored) {}
         return false;
     }
@@ -80,8 +139,10 @@ public class UserServiceImpl implements UserService {
             userValidator.validateUserRequest(userRequest);
             // создаем сущность и сохраняем в БД, данные уже проверены.
             User user = userMapper.toSignUpUser(userRequest, roleMapper.toRoles(userRequest.getRoles()));
+            user = userRepository.save(user);
+            userExistsCache.invalidate(user.getId());
 
-            return userMapper.toResponse(userRepository.save(user));
+            return userMapper.toResponse(user);
 
         } catch (Exception e) {
             if (e instanceof BankCardException) {
@@ -136,6 +197,7 @@ public class UserServiceImpl implements UserService {
                 throw new UserOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist");
             }
             userRepository.deleteById(userId);
+            userExistsCache.invalidate(userId);
         } catch (Exception e) {
             if (e instanceof BankCardException) {
                 throw e;
@@ -0,0 +1,96 @@
+package com.example.bankcards.service.backfill;
+
+import com.example.bankcards.config.CardNumberBinaryEncryptor;
+import com.example.bankcards.util.CardUtil;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Заполнение card_last4 для карт, созданных до появления столбца.
+ * Номер в БД зашифрован, поэтому миграция Liquibase этого сделать не может: карты
+ * обрабатываются в фоне небольшими пачками, по возрастанию id (позиция хранится в памяти),
+ * чтобы не блокировать старт сервиса и не нагружать БД. Когда пустых значений не осталось - задача затихает.
+ * Повторный запуск (рестарт, несколько инстанций) безопасен: обновляются только строки с card_last4 IS NULL.
+ */
+@Component
+@Log4j2
+public class CardLast4Backfill {
+
+    private static final String SELECT_SQL =
+            "SELECT id, card_number FROM cards WHERE id > ? AND card_last4 IS NULL ORDER BY id LIMIT ?";
+    private static final String UPDATE_SQL =
+            "UPDATE cards SET card_last4 = ? WHERE id = ? AND card_last4 IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CardNumberBinaryEncryptor cardNumberEncryptor;
+    private final int batchSize;
+
+    private long lastId;
+    private volatile boolean done;
+
+
+    public CardLast4Backfill(JdbcTemplate jdbcTemplate, CardNumberBinaryEncryptor cardNumberEncryptor,
+                             @Value("${var.card.last4-backfill.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cardNumberEncryptor = cardNumberEncryptor;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${var.card.last4-backfill.initial-delay:10s}",
+            fixedDelayString = "${var.card.last4-backfill.interval:1s}")
+    public void run() {
+        if (done) {
+            return;
+        }
+        try {
+            backfillBatch();
+        } catch (Exception e) {
+            log.error("card_last4 backfill failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Обрабатывает очередную пачку карт.
+     * @return Сколько карт обработано (0 - заполнять больше нечего).
+     */
+    public synchronized int backfillBatch() {
+        List<Object[]> rows = jdbcTemplate.query(SELECT_SQL,
+                (rs, rowNum) -> new Object[]{last4(rs.getLong(1), rs.getBytes(2)), rs.getLong(1)},
+                lastId, batchSize);
+        if (rows.isEmpty()) {
+            if (!done) {
+                log.info("card_last4 backfill completed");
+            }
+            done = true;
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SQL, rows);
+        lastId = (Long) rows.get(rows.size() - 1)[1];
+        return rows.size();
+    }
+
+    /**
+     * Сбрасывает позицию: следующий проход начнется с начала таблицы.
+     */
+    public synchronized void reset() {
+        lastId = 0;
+        done = false;
+    }
+
+    /*
+        Карту, которую не удалось расшифровать, пропускаем (останется NULL), остальные не должны страдать.
+     */
+    private String last4(long id, byte[] encrypted) {
+        try {
+            return CardUtil.getLast4(cardNumberEncryptor.convertToEntityAttribute(encrypted));
+        } catch (Exception e) {
+            log.warn("Can't decrypt card {} for card_last4: {}", id, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.bankcards.service.backfill;
+
+import com.example.bankcards.config.CardNumberBinaryEncryptor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перешифровка номеров карт активным ключом после его смены (см. CardKeyProperties).
+ * Таблица обходится пачками по возрастанию id (keyset, по первичному ключу), каждая строка
+ * обновляется отдельным коротким UPDATE - длинных транзакций и блокировок таблицы нет.
+ * Номер меняется только если он не изменился с момента чтения (сравнение со старым значением),
+ * version карты не трогается: расшифрованный номер тот же, и переводам мешать незачем.
+ * Позиция сохраняется в job_checkpoints (своя для каждого активного ключа), после рестарта
+ * обход продолжается с нее. Скорость ограничена var.card.reencrypt.max-rows-per-second:
+ * очередная пачка просто пропускает запуски планировщика, а не блокирует его поток.
+ */
+@Component
+@Log4j2
+public class CardReencryptionJob {
+
+    private static final String JOB_NAME = "card-reencrypt:";
+    private static final String SELECT_SQL =
+            "SELECT id, card_number FROM cards WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String UPDATE_SQL =
+            "UPDATE cards SET card_number = ? WHERE id = ? AND card_number = ?";
+    private static final String LOAD_CHECKPOINT_SQL =
+            "SELECT last_id FROM job_checkpoints WHERE job_name = ?";
+    private static final String SAVE_CHECKPOINT_SQL =
+            "INSERT INTO job_checkpoints (job_name, last_id, updated_at) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE last_id = VALUES(last_id), updated_at = VALUES(updated_at)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CardNumberBinaryEncryptor cardNumberEncryptor;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxRowsPerSecond;
+    private final String jobName;
+
+    private Long lastId;                                            // null - позиция еще не загружена
+    private volatile boolean done;
+    private long nextRunAt;                                         // System.nanoTime() следующей пачки
+
+
+    public CardReencryptionJob(JdbcTemplate jdbcTemplate, CardNumberBinaryEncryptor cardNumberEncryptor,
+                               @Value("${var.card.reencrypt.enabled:true}") boolean enabled,
+                               @Value("${var.card.reencrypt.batch-size:500}") int batchSize,
+                               @Value("${var.card.reencrypt.max-rows-per-second:2000}") int maxRowsPerSecond) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cardNumberEncryptor = cardNumberEncryptor;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxRowsPerSecond = Math.max(maxRowsPerSecond, 1);
+        this.jobName = JOB_NAME + cardNumberEncryptor.getActiveKeyId();
+        this.nextRunAt = System.nanoTime();
+    }
+
+    @Scheduled(initialDelayString = "${var.card.reencrypt.initial-delay:30s}",
+            fixedDelayString = "${var.card.reencrypt.interval:100ms}")
+    public void run() {
+        if (!enabled || done) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (start - nextRunAt < 0) {
+            return;
+        }
+        try {
+            int rows = reencryptBatch();
+            nextRunAt = start + TimeUnit.SECONDS.toNanos(rows) / maxRowsPerSecond;
+        } catch (Exception e) {
+            log.error("Card re-encryption failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Обрабатывает очередную пачку карт, начиная с сохраненной позиции.
+     * @return Сколько карт просмотрено (0 - обход закончен).
+     */
+    public synchronized int reencryptBatch() {
+        if (lastId == null) {
+            List<Long> saved = jdbcTemplate.queryForList(LOAD_CHECKPOINT_SQL, Long.class, jobName);
+            lastId = saved.isEmpty() ? 0L : saved.get(0);
+            log.info("Card re-encryption with key '{}' starts after id {}", cardNumberEncryptor.getActiveKeyId(), lastId);
+        }
+        List<Object[]> rows = jdbcTemplate.query(SELECT_SQL,
+                (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getBytes(2)}, lastId, batchSize);
+        if (rows.isEmpty()) {
+            if (!done) {
+                log.info("Card re-encryption with key '{}' completed", cardNumberEncryptor.getActiveKeyId());
+            }
+            done = true;
+            return 0;
+        }
+
+        List<Object[]> updates = new ArrayList<>();
+        for (Object[] row : rows) {
+            byte[] reencrypted = reencrypt((Long) row[0], (byte[]) row[1]);
+            if (reencrypted != null) {
+                updates.add(new Object[]{reencrypted, row[0], row[1]});
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+        lastId = (Long) rows.get(rows.size() - 1)[0];
+        jdbcTemplate.update(SAVE_CHECKPOINT_SQL, jobName, lastId, Timestamp.from(Instant.now()));
+        return rows.size();
+    }
+
+    /**
+     * Начать обход заново: позиция в БД удаляется.
+     */
+    public synchronized void reset() {
+        jdbcTemplate.update("DELETE FROM job_checkpoints WHERE job_name = ?", jobName);
+        lastId = null;
+        done = false;
+        nextRunAt = System.nanoTime();
+    }
+
+    /*
+        Карту, которую не удалось расшифровать (например, ключ уже удален), пропускаем - остальные не должны страдать.
+     */
+    private byte[] reencrypt(long id, byte[] encrypted) {
+        try {
+            return cardNumberEncryptor.reencrypt(encrypted);
+        } catch (Exception e) {
+            log.warn("Can't re-encrypt card {}: {}", id, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.bankcards.service.cache;
+
+import com.example.bankcards.config.CardHmacBloomProperties;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума по HMAC номеров существующих карт: если номера в фильтре точно нет,
+ * проверка existsByCardNumberHmac (лишний поиск по индексу на каждую карту) не нужна.
+ * Окончательная проверка - уникальный индекс uk_cards_card_number_hmac.
+ * Фильтр строится после старта сервиса, чтением card_number_hmac пачками по возрастанию id,
+ * и пополняется при создании карт. Пока фильтр не построен (или выключен) - ответ всегда "может быть".
+ * Удаление карт фильтр не учитывает (для удаленного номера - лишь лишняя проверка в БД),
+ * карты, созданные другими инстанциями, - тоже: такой дубликат поймает уникальный индекс.
+ * HMAC-SHA256 уже равномерно распределен, поэтому позиции битов берутся прямо из его байт
+ * (двойное хэширование: h1 + i * h2).
+ */
+@Component
+@Log4j2
+public class CardHmacBloomFilter {
+
+    private static final String SELECT_SQL =
+            "SELECT id, card_number_hmac FROM cards WHERE id > ? ORDER BY id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int loadBatchSize;
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    private volatile boolean ready;
+
+
+    public CardHmacBloomFilter(JdbcTemplate jdbcTemplate, CardHmacBloomProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.loadBatchSize = properties.getLoadBatchSize();
+        if (!properties.isEnabled()) {
+            this.bits = null;
+            this.bitCount = 0;
+            this.hashCount = 0;
+            return;
+        }
+        // классические формулы: m = -n * ln(p) / ln(2)^2, k = m / n * ln(2)
+        long n = Math.max(properties.getExpectedCards(), 1);
+        double m = -n * Math.log(properties.getFalsePositiveRate()) / (Math.log(2) * Math.log(2));
+        int words = (int) Math.min(Math.max((long) Math.ceil(m / 64), 1), Integer.MAX_VALUE - 8);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max((int) Math.round(m / n * Math.log(2)), 1);
+    }
+
+    /**
+     * Построение фильтра по картам в БД. Карты, созданные во время построения, добавляет put().
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (bits == null || ready) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            long lastId = 0;
+            long total = 0;
+            List<Long> ids;
+            do {
+                ids = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> {
+                    put(rs.getBytes(2));
+                    return rs.getLong(1);
+                }, lastId, loadBatchSize);
+                if (!ids.isEmpty()) {
+                    lastId = ids.get(ids.size() - 1);
+                    total += ids.size();
+                }
+            } while (ids.size() == loadBatchSize);
+            ready = true;
+            log.info("Card HMAC bloom filter loaded: {} cards, {} bits, {} hashes, {} ms",
+                    total, bitCount, hashCount, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Card HMAC bloom filter not loaded, card numbers will be checked in DB: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return false - карты с таким HMAC точно нет; true - может быть, нужна проверка в БД.
+     */
+    public boolean mightContain(byte[] hmac) {
+        if (!ready || hmac == null || hmac.length < 16) {
+            return true;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(hmac);
+        long h1 = buffer.getLong(0);
+        long h2 = buffer.getLong(8) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Добавляет HMAC созданной карты.
+     */
+    public void put(byte[] hmac) {
+        if (bits == null || hmac == null || hmac.length < 16) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(hmac);
+        long h1 = buffer.getLong(0);
+        long h2 = buffer.getLong(8) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits.get(word) & mask) == 0) {
+                bits.accumulateAndGet(word, mask, (a, b) -> a | b);
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+}
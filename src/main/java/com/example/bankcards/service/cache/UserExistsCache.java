@@ -0,0 +1,72 @@
+package com.example.bankcards.service.cache;
+
+import com.example.bankcards.config.UserExistsCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Локальный кэш существования пользователей: запросы к картам снова и снова проверяют
+ * одних и тех же пользователей, и каждый раз ходить в БД незачем.
+ * Кэшируется и отсутствие пользователя (на меньшее время), чтобы перебор несуществующих id тоже не шел в БД.
+ * Размер и время жизни ограничены (var.user.exists-cache), при создании и удалении пользователя
+ * запись сбрасывается сразу. Попадания и промахи - в метриках cache.gets{cache=bankcards.user.exists}.
+ */
+@Component
+public class UserExistsCache {
+
+    public static final String CACHE_NAME = "bankcards.user.exists";
+
+    private final Cache<UUID, Boolean> cache;
+
+
+    public UserExistsCache(UserExistsCacheProperties properties, MeterRegistry meterRegistry) {
+        long ttl = properties.getTtl().toNanos();
+        long negativeTtl = properties.getNegativeTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getSize())
+                .expireAfter(new Expiry<UUID, Boolean>() {
+                    @Override
+                    public long expireAfterCreate(UUID key, Boolean exists, long currentTime) {
+                        return exists ? ttl : negativeTtl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID key, Boolean exists, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, exists, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID key, Boolean exists, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Существует ли пользователь.
+     * @param userId Идентификатор пользователя.
+     * @param loader Проверка по БД, вызывается только при промахе. Исключение из неё не кэшируется.
+     */
+    public boolean exists(UUID userId, Predicate<UUID> loader) {
+        return cache.get(userId, loader::test);
+    }
+
+    /**
+     * Сбрасывает запись о пользователе (после его создания или удаления).
+     */
+    public void invalidate(UUID userId) {
+        if (userId != null) {
+            cache.invalidate(userId);
+        }
+    }
+}
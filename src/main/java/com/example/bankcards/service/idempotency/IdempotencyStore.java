@@ -0,0 +1,179 @@
+package com.example.bankcards.service.idempotency;
+
+import com.example.bankcards.config.IdempotencyProperties;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.TransferIdempotency;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.BankCardException;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.TransferIdempotencyRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Хранилище результатов переводов по ключам идемпотентности (заголовок Idempotency-Key).
+ * Источник истины - таблица transfer_idempotency (уникальный ключ user_id + idempotency_key),
+ * перед ней - ограниченный локальный кэш (LRU + TTL), чтобы повторы клиентов не ходили в БД.
+ * Успешный результат пишется в транзакции самого перевода, отказ - в отдельной транзакции,
+ * поскольку транзакция перевода при отказе откатывается.
+ */
+@Component
+@Log4j2
+public class IdempotencyStore {
+
+    public static final int MAX_KEY_LENGTH = 100;
+
+    /*
+        Отказы, которые при повторе того же запроса гарантированно повторятся: их и запоминаем.
+        Конфликты, сбои БД и т.п. не сохраняются - клиент должен иметь возможность повторить.
+     */
+    private static final Set<Integer> FINAL_ERRORS = Set.of(
+            BankCardErrorCodes.CARD_NOT_FOUND,
+            BankCardErrorCodes.CARD_CANNOT_BE_SAME,
+            BankCardErrorCodes.CARD_INVALID_OWNER,
+            BankCardErrorCodes.CARD_BAD_STATUS,
+            BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS,
+            BankCardErrorCodes.CARD_INVALID_AMOUNT
+    );
+
+    private final TransferIdempotencyRepository repository;
+    private final IdempotencyProperties properties;
+    private final Cache<String, TransferIdempotency> cache;
+
+
+    public IdempotencyStore(TransferIdempotencyRepository repository, IdempotencyProperties properties) {
+        this.repository = repository;
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    /**
+     * Проверка формата ключа: непустая печатная ASCII-строка до 100 символов.
+     */
+    public void validateKey(String key) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH || !key.chars().allMatch(c -> c > 0x20 && c < 0x7f)) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_IDEMPOTENCY_KEY, "idempotency key is invalid");
+        }
+    }
+
+    /**
+     * Отпечаток параметров перевода (SHA-256, hex).
+     */
+    public String requestHash(TransferRequest request) {
+        String amount = request.getAmount() == null ? "" : request.getAmount().stripTrailingZeros().toPlainString();
+        String data = request.getUserId() + "|" + request.getFromCardId() + "|" + request.getToCardId() + "|" + amount;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Поиск сохраненного результата: сначала в кэше, потом в БД.
+     * @param userId      Владелец ключа.
+     * @param key         Ключ идемпотентности.
+     * @param requestHash Отпечаток текущего запроса.
+     * @return Результат, если запрос с этим ключом уже выполнялся.
+     */
+    public Optional<TransferIdempotency> find(UUID userId, String key, String requestHash) {
+        String cacheKey = cacheKey(userId, key);
+        TransferIdempotency stored = cache.getIfPresent(cacheKey);
+        if (stored == null) {
+            stored = repository.findByUserIdAndIdempotencyKey(userId, key).orElse(null);
+            if (stored == null) {
+                return Optional.empty();
+            }
+            cache.put(cacheKey, stored);
+        }
+        if (!stored.getRequestHash().equals(requestHash)) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_IDEMPOTENCY_KEY_REUSED, "idempotency key was used for another transfer");
+        }
+        return Optional.of(stored);
+    }
+
+    /**
+     * Запись успешного результата в текущей транзакции перевода.
+     * Вызывается до самого перевода: параллельный запрос с тем же ключом будет ждать
+     * на уникальном индексе до коммита и получит DataIntegrityViolationException.
+     * В кэш результат попадает только после коммита.
+     */
+    public void saveSuccess(UUID userId, String key, String requestHash) {
+        TransferIdempotency record = repository.saveAndFlush(
+                new TransferIdempotency(null, userId, key, requestHash, 0, null, LocalDateTime.now()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.put(cacheKey(userId, key), record);
+                }
+            });
+        } else {
+            cache.put(cacheKey(userId, key), record);
+        }
+    }
+
+    /**
+     * Запись отказа в отдельной транзакции (транзакция перевода к этому моменту откачена).
+     * Сохраняются только отказы, которые повторятся при повторе запроса.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void saveFailure(UUID userId, String key, String requestHash, BankCardException e) {
+        if (!FINAL_ERRORS.contains(e.getCode())) {
+            return;
+        }
+        try {
+            TransferIdempotency record = repository.saveAndFlush(
+                    new TransferIdempotency(null, userId, key, requestHash, e.getCode(), e.getReason(), LocalDateTime.now()));
+            cache.put(cacheKey(userId, key), record);
+        } catch (DataIntegrityViolationException ex) {
+            // параллельный запрос с тем же ключом успел сохранить свой результат - он и останется
+            log.debug("Idempotency key already stored: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Воспроизведение сохраненного результата: для отказа - то же исключение.
+     */
+    public static void replay(TransferIdempotency stored) {
+        if (stored.getErrorCode() != 0) {
+            throw new CardOperationException(stored.getErrorCode(), stored.getMessage());
+        }
+    }
+
+    /**
+     * Периодическое удаление устаревших записей из БД (кэш вытесняет их сам).
+     */
+    @Scheduled(fixedDelayString = "${var.card.idempotency.cleanup-interval:10m}")
+    public void cleanup() {
+        int deleted = repository.deleteOlderThan(LocalDateTime.now().minus(properties.getTtl()));
+        if (deleted > 0) {
+            log.info("Удалено устаревших ключей идемпотентности: {}", deleted);
+        }
+    }
+
+    private static String cacheKey(UUID userId, String key) {
+        return userId + ":" + key;
+    }
+}
@@ -0,0 +1,346 @@
+package com.example.bankcards.service.issuance;
+
+import com.example.bankcards.config.CardNumberBinaryEncryptor;
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.CardIssueResult;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.BankCardException;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.service.cache.CardHmacBloomFilter;
+import com.example.bankcards.service.validators.CardValidator;
+import com.example.bankcards.util.CardDateUtil;
+import com.example.bankcards.util.CardNumberHasher;
+import com.example.bankcards.util.CardUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пакетный выпуск карт.
+ * Проверка, нормализация номера, HMAC и шифрование - параллельно (это основная нагрузка на CPU)
+ * в собственном пуле из var.card.issue.threads потоков, а не в общем ForkJoinPool: большой пакет
+ * не занимает потоки, нужные остальному приложению. Если пул занят другими пакетами, часть работы
+ * выполняет вызывающий поток. Затем дубликаты отсеиваются внутри пакета и одним запросом IN (...) на кусок (только те номера,
+ * которые "могут быть" в фильтре Блума), а карты вставляются многострочными INSERT-ами
+ * по chunk-size строк (как журнал операций в LedgerWriter): Hibernate с IDENTITY-ключом батчи вставок не делает.
+ * Id карт возвращает драйвер (generated keys многострочного INSERT).
+ * Каждый кусок - отдельный оператор: если он не прошел (например, номер параллельно создали в другом месте),
+ * кусок вставляется построчно, чтобы ошибку получила только своя карта. Пакет целиком не откатывается.
+ */
+@Component
+@Log4j2
+public class BulkCardIssuer {
+
+    private static final String INSERT =
+            "INSERT INTO cards (card_number, card_last4, card_number_hmac, expiry_date, status, balance, user_id, version) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final int COLUMNS = 7;
+    private static final String EXISTS_SQL = "SELECT card_number_hmac FROM cards WHERE card_number_hmac IN ";
+    private static final int MAX_PLACEHOLDERS = 65_535;                         // ограничение протокола MySQL
+    // меньше карт на поток не делим: передача задачи в пул дороже подготовки нескольких карт
+    private static final int MIN_SLICE = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CardNumberBinaryEncryptor cardNumberEncryptor;
+    private final CardValidator cardValidator;
+    private final CardHmacBloomFilter cardHmacFilter;
+    private final int maxBatchSize;
+    private final int chunkSize;
+    private final int threads;
+    private final ThreadPoolExecutor executor;
+
+
+    /*
+        Подготовленная к вставке карта.
+     */
+    private record Row(int index, byte[] cardNumber, String last4, byte[] hmac, int expiry, BigDecimal balance, byte[] userId) {
+    }
+
+
+    public BulkCardIssuer(JdbcTemplate jdbcTemplate, CardNumberBinaryEncryptor cardNumberEncryptor,
+                          CardValidator cardValidator, CardHmacBloomFilter cardHmacFilter,
+                          @Value("${var.card.issue.batch-max-size:100000}") int maxBatchSize,
+                          @Value("${var.card.issue.chunk-size:1000}") int chunkSize,
+                          @Value("${var.card.issue.threads:4}") int threads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cardNumberEncryptor = cardNumberEncryptor;
+        this.cardValidator = cardValidator;
+        this.cardHmacFilter = cardHmacFilter;
+        this.maxBatchSize = maxBatchSize;
+        this.chunkSize = Math.min(Math.max(chunkSize, 1), MAX_PLACEHOLDERS / COLUMNS);
+        this.threads = Math.max(threads, 1);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.threads),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "card-issue-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // очередь полна или пул остановлен - часть выполняет вызывающий поток
+                (runnable, pool) -> runnable.run());
+    }
+
+    /**
+     * Проверка размера пакета (var.card.issue.batch-max-size).
+     */
+    public void validateSize(List<CardCreateRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_BATCH_TOO_LARGE, "batch is too large, max " + maxBatchSize);
+        }
+    }
+
+    /**
+     * Выпуск пакета карт.
+     * @param requests Новые карты.
+     * @param users    Существующие пользователи из запросов (карты остальных отклоняются).
+     * @return Результаты по каждой карте, в том же порядке.
+     */
+    public List<CardIssueResult> issue(List<CardCreateRequest> requests, Set<UUID> users) {
+        validateSize(requests);
+        long start = System.nanoTime();
+        CardIssueResult[] results = new CardIssueResult[requests.size()];
+        Row[] rows = new Row[requests.size()];
+
+        prepareAll(requests, users, rows, results);
+
+        List<Row> unique = rejectDuplicates(rows, results);
+        int issued = 0;
+        for (int from = 0; from < unique.size(); from += chunkSize) {
+            issued += insertChunk(unique.subList(from, Math.min(from + chunkSize, unique.size())), results);
+        }
+        log.info("Issued {} of {} cards in {} ms", issued, requests.size(), (System.nanoTime() - start) / 1_000_000);
+        return Arrays.asList(results);
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+
+    /*
+        Подготовка карт частями по числу потоков пула; ошибка карты - в её результат.
+     */
+    private void prepareAll(List<CardCreateRequest> requests, Set<UUID> users, Row[] rows, CardIssueResult[] results) {
+        int slices = Math.min(threads, (requests.size() + MIN_SLICE - 1) / MIN_SLICE);
+        if (slices <= 1) {
+            prepareRange(0, requests.size(), requests, users, rows, results);
+            return;
+        }
+        int sliceSize = (requests.size() + slices - 1) / slices;
+        List<Future<?>> futures = new ArrayList<>(slices);
+        try {
+            for (int from = 0; from < requests.size(); from += sliceSize) {
+                int start = from;
+                int end = Math.min(from + sliceSize, requests.size());
+                futures.add(executor.submit(() -> prepareRange(start, end, requests, users, rows, results)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, "card issue interrupted");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getCause().getMessage());
+        }
+    }
+
+    private void prepareRange(int from, int to, List<CardCreateRequest> requests, Set<UUID> users,
+                              Row[] rows, CardIssueResult[] results) {
+        for (int i = from; i < to; i++) {
+            try {
+                rows[i] = prepare(i, requests.get(i), users);
+            } catch (Exception e) {
+                results[i] = CardIssueResult.failed(i, toBankCardException(e));
+            }
+        }
+    }
+
+    private Row prepare(int index, CardCreateRequest request, Set<UUID> users) {
+        cardValidator.validateRequest(request);
+        if (!users.contains(request.getUserId())) {
+            throw new CardOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist");
+        }
+        BigDecimal balance = cardValidator.initialBalance(request.getBalance());
+        String cardNumber = CardUtil.normalizeCardNumber(request.getCardNumber());
+        return new Row(index,
+                cardNumberEncryptor.convertToDatabaseColumn(cardNumber),
+                CardUtil.getLast4(cardNumber),
+                CardNumberHasher.hmacSha256Bytes(cardNumber),
+                CardDateUtil.toDbInt(request.getExpiryDate()),
+                balance,
+                toBytes(request.getUserId()));
+    }
+
+    /*
+        Повтор номера внутри пакета - ошибка у второго и следующих, уже существующие в БД - у всех.
+     */
+    private List<Row> rejectDuplicates(Row[] rows, CardIssueResult[] results) {
+        List<Row> unique = new ArrayList<>(rows.length);
+        Set<ByteBuffer> seen = new HashSet<>();
+        List<Row> maybeExisting = new ArrayList<>();
+        for (Row row : rows) {
+            if (row == null) {
+                continue;
+            }
+            if (!seen.add(ByteBuffer.wrap(row.hmac()))) {
+                results[row.index()] = CardIssueResult.failed(row.index(),
+                        new CardOperationException(BankCardErrorCodes.CARD_ALREADY_EXISTS, "card number is repeated in the batch"));
+                continue;
+            }
+            unique.add(row);
+            if (cardHmacFilter.mightContain(row.hmac())) {
+                maybeExisting.add(row);
+            }
+        }
+        Set<ByteBuffer> existing = findExisting(maybeExisting);
+        if (existing.isEmpty()) {
+            return unique;
+        }
+        List<Row> result = new ArrayList<>(unique.size());
+        for (Row row : unique) {
+            if (existing.contains(ByteBuffer.wrap(row.hmac()))) {
+                results[row.index()] = CardIssueResult.failed(row.index(),
+                        new CardOperationException(BankCardErrorCodes.CARD_ALREADY_EXISTS, "card number already exists"));
+            } else {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    private Set<ByteBuffer> findExisting(List<Row> rows) {
+        Set<ByteBuffer> existing = new HashSet<>();
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            List<Row> chunk = rows.subList(from, Math.min(from + chunkSize, rows.size()));
+            String sql = EXISTS_SQL + placeholders(chunk.size());
+            Object[] args = chunk.stream().map(Row::hmac).toArray();
+            jdbcTemplate.query(sql, rs -> {
+                existing.add(ByteBuffer.wrap(rs.getBytes(1)));
+            }, args);
+        }
+        return existing;
+    }
+
+    /*
+        Кусок одним INSERT; при ошибке - построчно.
+        @return Сколько карт вставлено.
+     */
+    private int insertChunk(List<Row> chunk, CardIssueResult[] results) {
+        try {
+            List<Long> ids = insert(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                Row row = chunk.get(i);
+                cardHmacFilter.put(row.hmac());
+                results[row.index()] = CardIssueResult.ok(row.index(), ids.get(i));
+            }
+            return chunk.size();
+        } catch (DataAccessException e) {
+            log.warn("Bulk insert of {} cards failed, inserting one by one: {}", chunk.size(), e.getMessage());
+        }
+        int issued = 0;
+        for (Row row : chunk) {
+            try {
+                Long id = insert(List.of(row)).get(0);
+                cardHmacFilter.put(row.hmac());
+                results[row.index()] = CardIssueResult.ok(row.index(), id);
+                issued++;
+            } catch (DataIntegrityViolationException e) {
+                results[row.index()] = CardIssueResult.failed(row.index(),
+                        new CardOperationException(BankCardErrorCodes.CARD_ALREADY_EXISTS, "card number already exists"));
+            } catch (DataAccessException e) {
+                results[row.index()] = CardIssueResult.failed(row.index(),
+                        new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage()));
+            }
+        }
+        return issued;
+    }
+
+    private List<Long> insert(List<Row> rows) {
+        StringBuilder sql = new StringBuilder(INSERT.length() + rows.size() * (ROW.length() + 1)).append(INSERT);
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(ROW);
+        }
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS);
+            int p = 1;
+            for (Row row : rows) {
+                ps.setBytes(p++, row.cardNumber());
+                ps.setString(p++, row.last4());
+                ps.setBytes(p++, row.hmac());
+                ps.setInt(p++, row.expiry());
+                ps.setString(p++, CardStatus.ACTIVE.name());
+                ps.setBigDecimal(p++, row.balance());
+                ps.setBytes(p++, row.userId());
+            }
+            return ps;
+        }, keys);
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (Map<String, Object> key : keys.getKeyList()) {
+            ids.add(((Number) key.values().iterator().next()).longValue());
+        }
+        if (ids.size() != rows.size()) {
+            throw new IllegalStateException("generated keys: " + ids.size() + ", rows: " + rows.size());
+        }
+        return ids;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 2 + 1).append('(');
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.append(')').toString();
+    }
+
+    private static BankCardException toBankCardException(Exception e) {
+        if (e instanceof BankCardException bankCardException) {
+            return bankCardException;
+        }
+        return new CardOperationException(BankCardErrorCodes.UNKNOWN_ERROR_CODE, e.getMessage());
+    }
+
+    /*
+        UUID хранится в BINARY(16) так же, как его пишет Hibernate: старшие 8 байт, затем младшие.
+     */
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
@@ -0,0 +1,422 @@
+package com.example.bankcards.service.issuance;
+
+import com.example.bankcards.config.CardImportProperties;
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.CardImportStatus;
+import com.example.bankcards.dto.CardIssueResult;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.service.UserService;
+import com.example.bankcards.util.CardDateUtil;
+import com.example.bankcards.util.CardNumberHasher;
+import com.example.bankcards.util.CardUtil;
+import com.example.bankcards.util.DbNamedLock;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Импорт карт из файлов процессинга (CSV/NDJSON) в каталоге var.card.import.dir.
+ * Файл читается потоком чтения (CardFileReader, через отображение в память) пачками по chunk-size строк,
+ * пачки через очередь емкостью queue-capacity передаются потоку выпуска (BulkCardIssuer).
+ * Если выпуск не успевает, очередь заполняется и чтение ждет - в heap не больше queue-capacity + 2 пачек.
+ * После выпуска каждой пачки ее конец (смещение в файле) сохраняется в job_checkpoints: после сбоя
+ * или рестарта импорт продолжается с последней выпущенной пачки (resume-on-startup - автоматически).
+ * Позиция только растет: запоздавшая запись не откатит её назад.
+ * Строки пачки, прерванной сбоем, читаются повторно. Уникальный индекс по HMAC номера не дает создать
+ * дубликаты, а карты, выпущенные из этой пачки до сбоя (тот же номер, владелец и срок), считаются
+ * повторно прочитанными (replayed), а не ошибками.
+ * Файл импортирует одна инстанция сервиса: на время импорта она держит блокировку с именем задачи
+ * (DbNamedLock), остальные видят импорт выполняющимся и не запускают его.
+ * Файл идентифицируется именем и после выкладки не должен меняться.
+ */
+@Component
+@Log4j2
+public class CardFileImporter {
+
+    private static final String JOB_NAME = "card-import:";
+    private static final int MAX_FILE_NAME = 64 - JOB_NAME.length();    // job_checkpoints.job_name - VARCHAR(64)
+    private static final String LOAD_CHECKPOINT_SQL =
+            "SELECT last_id FROM job_checkpoints WHERE job_name = ?";
+    private static final String SAVE_CHECKPOINT_SQL =
+            "INSERT INTO job_checkpoints (job_name, last_id, updated_at) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE last_id = GREATEST(last_id, VALUES(last_id)), updated_at = VALUES(updated_at)";
+    private static final String DELETE_CHECKPOINT_SQL =
+            "DELETE FROM job_checkpoints WHERE job_name = ?";
+    private static final String INTERRUPTED_SQL =
+            "SELECT job_name, last_id FROM job_checkpoints WHERE job_name LIKE 'card-import:%'";
+    private static final String EXISTING_CARDS_SQL =
+            "SELECT card_number_hmac, user_id, expiry_date FROM cards WHERE card_number_hmac IN ";
+    // признак конца файла в очереди пачек
+    private static final CardFileReader.Chunk END = new CardFileReader.Chunk(-1, List.of(), new long[0], List.of());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final UserService userService;
+    private final BulkCardIssuer bulkCardIssuer;
+    private final CardImportProperties properties;
+    private final Path dir;
+    private final ExecutorService executor;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+
+    public CardFileImporter(JdbcTemplate jdbcTemplate, DataSource dataSource, UserService userService,
+                            BulkCardIssuer bulkCardIssuer, CardImportProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.userService = userService;
+        this.bulkCardIssuer = bulkCardIssuer;
+        this.properties = properties;
+        this.dir = Path.of(properties.getDir()).toAbsolutePath().normalize();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "card-import-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запуск (или продолжение с сохраненной позиции) импорта файла. Импорт выполняется в фоне.
+     * @param fileName Имя файла в каталоге импорта.
+     * @param restart  Начать файл заново, без учета сохраненной позиции.
+     * @return Состояние импорта. Уже выполняющийся (в том числе другой инстанцией) или завершенный
+     *         импорт не перезапускается.
+     */
+    public synchronized CardImportStatus start(String fileName, boolean restart) {
+        Path file = resolve(fileName);
+        ImportJob job = jobs.get(fileName);
+        if (job != null && job.state == CardImportStatus.State.RUNNING) {
+            return job.status();
+        }
+        DbNamedLock claim = DbNamedLock.tryAcquire(dataSource, JOB_NAME + fileName, 0);
+        if (claim == null) {
+            CardImportStatus status = status(fileName);
+            status.setState(CardImportStatus.State.RUNNING);
+            status.setMessage("import is running on another instance");
+            return status;
+        }
+        try {
+            long size = fileSize(file);
+            Long saved = restart ? null : loadCheckpoint(fileName);
+            long position = saved == null ? 0 : saved;
+            if (position > size) {
+                log.warn("Card import '{}': saved position {} is beyond the file size {}, starting over", fileName, position, size);
+                saved = null;
+                position = 0;
+            }
+            if (saved == null) {
+                // позиция сохраняется только вперед, поэтому новый проход записывает её заново с нуля
+                jdbcTemplate.update(DELETE_CHECKPOINT_SQL, JOB_NAME + fileName);
+                saveCheckpoint(fileName, 0);
+            }
+            job = new ImportJob(fileName, file, size, position, claim);
+            job.resumed = saved != null;
+            if (saved != null && position == size) {
+                claim.close();
+                job.state = CardImportStatus.State.COMPLETED;
+                return job.status();
+            }
+            ImportJob started = job;
+            executor.submit(() -> run(started));
+            jobs.put(fileName, job);
+            log.info("Card import '{}' started at offset {} of {}", fileName, position, size);
+            return job.status();
+        } catch (RuntimeException e) {
+            claim.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Состояние импорта файла.
+     * @param fileName Имя файла в каталоге импорта.
+     */
+    public CardImportStatus status(String fileName) {
+        Path file = resolve(fileName);
+        ImportJob job = jobs.get(fileName);
+        if (job != null) {
+            return job.status();
+        }
+        long size = fileSize(file);
+        Long saved = loadCheckpoint(fileName);
+        job = new ImportJob(fileName, file, size, saved == null ? 0 : saved, null);
+        if (saved == null) {
+            job.state = CardImportStatus.State.NOT_STARTED;
+        } else if (saved == size) {
+            job.state = CardImportStatus.State.COMPLETED;
+        } else {
+            job.state = CardImportStatus.State.INTERRUPTED;
+        }
+        return job.status();
+    }
+
+    /**
+     * Продолжение импортов, прерванных остановкой или сбоем сервиса.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        if (!properties.isResumeOnStartup()) {
+            return;
+        }
+        try {
+            List<String> interrupted = jdbcTemplate.query(INTERRUPTED_SQL, (rs, rowNum) -> rs.getString(1).substring(JOB_NAME.length()));
+            for (String fileName : interrupted) {
+                try {
+                    if (status(fileName).getState() == CardImportStatus.State.INTERRUPTED) {
+                        start(fileName, false);
+                    }
+                } catch (Exception e) {
+                    log.warn("Card import '{}' can't be resumed: {}", fileName, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Can't resume card imports: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        jobs.values().forEach(job -> job.stopped = true);
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+
+    /*
+        Поток выпуска: берет пачки из очереди, выпускает карты и сохраняет позицию.
+     */
+    private void run(ImportJob job) {
+        BlockingQueue<CardFileReader.Chunk> queue = new ArrayBlockingQueue<>(Math.max(properties.getQueueCapacity(), 1));
+        Future<?> reader = executor.submit(() -> read(job, queue));
+        try {
+            // пачку с сохраненной позиции сбой мог прервать после выпуска карт, но до сохранения позиции
+            boolean replayed = job.resumed;
+            CardFileReader.Chunk chunk;
+            while ((chunk = queue.take()) != END) {
+                issue(job, chunk, replayed);
+                replayed = false;
+                saveCheckpoint(job.fileName, chunk.endOffset());
+                job.position = chunk.endOffset();
+                logProgress(job, chunk);
+            }
+            reader.get();
+            saveCheckpoint(job.fileName, job.fileSize);
+            job.position = job.fileSize;
+            job.state = CardImportStatus.State.COMPLETED;
+            log.info("Card import '{}' completed: {} rows, {} cards issued, {} replayed, {} rejected",
+                    job.fileName, job.rows.get(), job.issued.get(), job.replayed.get(), job.rejected.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.state = CardImportStatus.State.INTERRUPTED;
+            log.info("Card import '{}' interrupted at offset {}", job.fileName, job.position);
+        } catch (Exception e) {
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            job.message = cause.getMessage();
+            job.state = CardImportStatus.State.FAILED;
+            log.error("Card import '{}' failed at offset {}: {}", job.fileName, job.position, cause.getMessage());
+        } finally {
+            job.stopped = true;
+            reader.cancel(true);
+            job.claim.close();
+        }
+    }
+
+    /*
+        Поток чтения: пачки в очередь; put() ждет, пока поток выпуска не освободит место.
+     */
+    private Void read(ImportJob job, BlockingQueue<CardFileReader.Chunk> queue) throws IOException, InterruptedException {
+        try (CardFileReader reader = new CardFileReader(job.file, CardFileReader.Format.of(job.fileName), job.position,
+                (int) Math.min(properties.getMapSize().toBytes(), Integer.MAX_VALUE))) {
+            CardFileReader.Chunk chunk;
+            while (!job.stopped && (chunk = reader.read(Math.max(properties.getChunkSize(), 1))) != null) {
+                queue.put(chunk);
+            }
+        } finally {
+            if (!job.stopped) {
+                queue.put(END);
+            }
+        }
+        return null;
+    }
+
+    private void issue(ImportJob job, CardFileReader.Chunk chunk, boolean replayed) {
+        List<CardCreateRequest> requests = chunk.requests();
+        chunk.errors().forEach(job::reject);
+        if (!requests.isEmpty()) {
+            Set<UUID> users = requests.stream()
+                    .map(CardCreateRequest::getUserId)
+                    .distinct()
+                    .filter(userService::existsUser)
+                    .collect(Collectors.toSet());
+            List<CardIssueResult> results = bulkCardIssuer.issue(requests, users);
+            Set<Integer> issuedBefore = replayed ? findIssuedBefore(requests, results) : Set.of();
+            for (CardIssueResult result : results) {
+                if (result.isSuccess()) {
+                    job.issued.incrementAndGet();
+                } else if (issuedBefore.contains(result.getIndex())) {
+                    job.replayed.incrementAndGet();
+                } else {
+                    job.reject(new CardImportStatus.RowError(chunk.offsets()[result.getIndex()], result.getErrorCode(), result.getMessage()));
+                }
+            }
+        }
+        job.rows.addAndGet(chunk.rows());
+    }
+
+    /*
+        Строки повторно прочитанной пачки, отклоненные как существующие, карты которых совпадают с уже
+        выпущенными по номеру (HMAC), владельцу и сроку - их выпустил прерванный запуск. Повтор номера
+        внутри пачки засчитывается один раз, остальные повторы остаются ошибками.
+     */
+    private Set<Integer> findIssuedBefore(List<CardCreateRequest> requests, List<CardIssueResult> results) {
+        Map<ByteBuffer, Integer> candidates = new HashMap<>();
+        for (CardIssueResult result : results) {
+            if (!result.isSuccess() && result.getErrorCode() == BankCardErrorCodes.CARD_ALREADY_EXISTS) {
+                String cardNumber = CardUtil.normalizeCardNumber(requests.get(result.getIndex()).getCardNumber());
+                candidates.putIfAbsent(ByteBuffer.wrap(CardNumberHasher.hmacSha256Bytes(cardNumber)), result.getIndex());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        Set<Integer> issuedBefore = new HashSet<>();
+        Object[] hmacs = candidates.keySet().stream().map(ByteBuffer::array).toArray();
+        String sql = EXISTING_CARDS_SQL + "(" + "?,".repeat(hmacs.length - 1) + "?)";
+        jdbcTemplate.query(sql, rs -> {
+            Integer index = candidates.get(ByteBuffer.wrap(rs.getBytes(1)));
+            CardCreateRequest request = requests.get(index);
+            ByteBuffer userId = ByteBuffer.wrap(rs.getBytes(2));
+            if (new UUID(userId.getLong(), userId.getLong()).equals(request.getUserId())
+                    && rs.getInt(3) == CardDateUtil.toDbInt(request.getExpiryDate())) {
+                issuedBefore.add(index);
+            }
+        }, hmacs);
+        return issuedBefore;
+    }
+
+    private void logProgress(ImportJob job, CardFileReader.Chunk chunk) {
+        int percent = job.fileSize == 0 ? 100 : (int) (chunk.endOffset() * 100 / job.fileSize);
+        if (percent / 10 > job.loggedPercent / 10) {
+            job.loggedPercent = percent;
+            log.info("Card import '{}': {}%, {} rows, {} cards issued, {} rejected",
+                    job.fileName, percent, job.rows.get(), job.issued.get(), job.rejected.get());
+        }
+    }
+
+    /*
+        Только файлы непосредственно в каталоге импорта, поддерживаемого формата.
+        Имя вместе с префиксом задачи должно поместиться в job_checkpoints.job_name.
+     */
+    private Path resolve(String fileName) {
+        if (fileName == null || fileName.isBlank() || fileName.length() > MAX_FILE_NAME || fileName.startsWith(".")
+                || fileName.indexOf('/') >= 0 || fileName.indexOf('\\') >= 0) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_IMPORT_INVALID_FILE, "invalid file name");
+        }
+        if (CardFileReader.Format.of(fileName) == null) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_IMPORT_INVALID_FILE, "unsupported file format, expected .csv or .ndjson");
+        }
+        Path file = dir.resolve(fileName).normalize();
+        if (!file.getParent().equals(dir) || !Files.isRegularFile(file)) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_IMPORT_INVALID_FILE, "file not found");
+        }
+        return file;
+    }
+
+    private static long fileSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_IMPORT_INVALID_FILE, "file is not readable");
+        }
+    }
+
+    private Long loadCheckpoint(String fileName) {
+        List<Long> saved = jdbcTemplate.queryForList(LOAD_CHECKPOINT_SQL, Long.class, JOB_NAME + fileName);
+        return saved.isEmpty() ? null : saved.get(0);
+    }
+
+    private void saveCheckpoint(String fileName, long position) {
+        jdbcTemplate.update(SAVE_CHECKPOINT_SQL, JOB_NAME + fileName, position, Timestamp.from(Instant.now()));
+    }
+
+
+    /*
+        Импорт одного файла: позиция и счетчики текущего запуска.
+     */
+    private final class ImportJob {
+        private final String fileName;
+        private final Path file;
+        private final long fileSize;
+        // блокировка файла этой инстанцией; null - импорт здесь не выполняется
+        private final DbNamedLock claim;
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong issued = new AtomicLong();
+        private final AtomicLong replayed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final List<CardImportStatus.RowError> errors = new ArrayList<>();
+        private volatile long position;
+        private volatile CardImportStatus.State state = CardImportStatus.State.RUNNING;
+        private volatile String message;
+        private volatile boolean stopped;
+        // продолжение прерванного импорта
+        private boolean resumed;
+        private int loggedPercent;
+
+        private ImportJob(String fileName, Path file, long fileSize, long position, DbNamedLock claim) {
+            this.fileName = fileName;
+            this.file = file;
+            this.fileSize = fileSize;
+            this.claim = claim;
+            this.position = position;
+            this.loggedPercent = fileSize == 0 ? 0 : (int) (position * 100 / fileSize);
+        }
+
+        private void reject(CardImportStatus.RowError error) {
+            rejected.incrementAndGet();
+            synchronized (errors) {
+                if (errors.size() < properties.getMaxErrors()) {
+                    errors.add(error);
+                }
+            }
+        }
+
+        private CardImportStatus status() {
+            List<CardImportStatus.RowError> firstErrors;
+            synchronized (errors) {
+                firstErrors = List.copyOf(errors);
+            }
+            return new CardImportStatus(fileName, state, fileSize, position, rows.get(), issued.get(), replayed.get(), rejected.get(),
+                    message, firstErrors);
+        }
+    }
+}
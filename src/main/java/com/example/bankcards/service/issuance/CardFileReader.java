@@ -0,0 +1,522 @@
+package com.example.bankcards.service.issuance;
+
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.CardImportStatus;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.util.CardDateUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Чтение файла с картами процессинга пачками строк.
+ * Файл не загружается в heap: он отображается в память окнами по mapSize байт (MappedByteBuffer),
+ * строки разбираются прямо в отображенных байтах, без промежуточных String, split() и регулярных выражений.
+ * Новые объекты на строку - только сами данные карты (UUID, номер, сумма, CardCreateRequest).
+ * Номер карты здесь не проверяется: проверка (CardUtil) - общая с остальным выпуском, в CardValidator.
+ * Форматы (по расширению файла):
+ *   CSV    - userId,cardNumber,expiryDate[,balance], необязательная строка заголовка, значения можно брать в кавычки;
+ *   NDJSON - по объекту на строку: {"userId":"...","cardNumber":"...","expiryDate":"2028-08","balance":"100.50"}.
+ * Срок действия - "yyyy-MM" или "yyyy/MM". Пустые строки пропускаются.
+ */
+public class CardFileReader implements Closeable {
+
+    public enum Format {
+        CSV,
+        NDJSON;
+
+        /**
+         * Формат по расширению файла (.csv, .ndjson, .jsonl), или null, если формат не поддерживается.
+         */
+        public static Format of(String fileName) {
+            String name = fileName.toLowerCase();
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+                return NDJSON;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Пачка прочитанных строк.
+     * @param endOffset Позиция в файле сразу после последней строки пачки.
+     * @param requests  Разобранные карты.
+     * @param offsets   Смещение строки в файле для каждой карты из requests.
+     * @param errors    Строки, которые не удалось разобрать.
+     */
+    public record Chunk(long endOffset, List<CardCreateRequest> requests, long[] offsets, List<CardImportStatus.RowError> errors) {
+        public int rows() {
+            return requests.size() + errors.size();
+        }
+    }
+
+
+    private static final int USER_ID = 0;
+    private static final int CARD_NUMBER = 1;
+    private static final int EXPIRY_DATE = 2;
+    private static final int BALANCE = 3;
+    private static final int FIELDS = 4;
+    private static final byte[][] JSON_KEYS = {
+            ascii("userId"), ascii("cardNumber"), ascii("expiryDate"), ascii("balance")};
+    private static final byte[][] CSV_HEADERS = {ascii("userId"), ascii("user_id")};
+    private static final byte[] NULL = ascii("null");
+    private static final int UUID_LENGTH = 36;
+
+    private final FileChannel channel;
+    private final Format format;
+    private final long size;
+    private final int mapSize;
+
+    private MappedByteBuffer buffer;
+    private long bufferStart;                                       // смещение начала окна в файле
+    private long position;                                          // смещение следующей непрочитанной строки
+
+    // текущая строка (в координатах окна) и границы ее полей: [start, end), start < 0 - поля нет
+    private int lineStart;
+    private int lineEnd;
+    private final int[] fieldStart = new int[FIELDS];
+    private final int[] fieldEnd = new int[FIELDS];
+    private char[] chars = new char[32];
+
+
+    /**
+     * @param file     Файл.
+     * @param format   Формат файла.
+     * @param offset   С какой позиции читать (начало строки, например, сохраненная позиция импорта).
+     * @param mapSize  Размер окна отображения, байт. Строка не может быть длиннее.
+     */
+    public CardFileReader(Path file, Format format, long offset, int mapSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.format = format;
+        this.size = channel.size();
+        this.mapSize = Math.max(mapSize, 1);
+        this.position = Math.min(Math.max(offset, 0), size);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Читает очередную пачку строк.
+     * @param maxRows Максимум строк (непустых) в пачке.
+     * @return Пачка, или null, если файл прочитан до конца.
+     * @throws IOException Ошибка чтения или строка длиннее окна отображения.
+     */
+    public Chunk read(int maxRows) throws IOException {
+        if (position >= size) {
+            return null;
+        }
+        List<CardCreateRequest> requests = new ArrayList<>(maxRows);
+        long[] offsets = new long[maxRows];
+        List<CardImportStatus.RowError> errors = new ArrayList<>();
+        while (requests.size() + errors.size() < maxRows && position < size) {
+            long offset = position;
+            nextLine();
+            trimLine();
+            if (lineStart == lineEnd || (offset == 0 && isCsvHeader())) {
+                continue;
+            }
+            try {
+                CardCreateRequest request = parseLine();
+                offsets[requests.size()] = offset;
+                requests.add(request);
+            } catch (CardOperationException e) {
+                errors.add(new CardImportStatus.RowError(offset, e.getCode(), e.getMessage()));
+            }
+        }
+        return new Chunk(position, requests, Arrays.copyOf(offsets, requests.size()), errors);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;                                              // окно освободит GC, явного unmap в JDK нет
+        channel.close();
+    }
+
+
+    /*
+        Находит конец строки, начиная с position; окно сдвигается на начало строки, если она в него не вошла целиком.
+     */
+    private void nextLine() throws IOException {
+        while (true) {
+            if (buffer == null || position >= bufferStart + buffer.limit()) {
+                map(position);
+            }
+            int from = (int) (position - bufferStart);
+            int limit = buffer.limit();
+            for (int i = from; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    lineStart = from;
+                    lineEnd = i;
+                    position = bufferStart + i + 1;
+                    return;
+                }
+            }
+            if (bufferStart + limit >= size) {                      // последняя строка без перевода строки
+                lineStart = from;
+                lineEnd = limit;
+                position = size;
+                return;
+            }
+            if (from == 0) {
+                throw new IOException("line at offset " + position + " is longer than " + mapSize + " bytes");
+            }
+            map(position);
+        }
+    }
+
+    private void map(long offset) throws IOException {
+        bufferStart = offset;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(mapSize, size - offset));
+    }
+
+    private void trimLine() {
+        while (lineStart < lineEnd && isSpace(buffer.get(lineStart))) {
+            lineStart++;
+        }
+        while (lineEnd > lineStart && isSpace(buffer.get(lineEnd - 1))) {
+            lineEnd--;
+        }
+    }
+
+    private boolean isCsvHeader() {
+        if (format != Format.CSV) {
+            return false;
+        }
+        int end = lineStart;
+        while (end < lineEnd && buffer.get(end) != ',') {
+            end++;
+        }
+        int start = lineStart;
+        if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        for (byte[] header : CSV_HEADERS) {
+            if (equalsIgnoreCase(start, end, header)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CardCreateRequest parseLine() {
+        Arrays.fill(fieldStart, -1);
+        Arrays.fill(fieldEnd, -1);
+        if (format == Format.CSV) {
+            splitCsv();
+        } else {
+            splitJson();
+        }
+        return new CardCreateRequest(
+                parseUuid(),
+                fieldStart[CARD_NUMBER] < 0 ? null : string(fieldStart[CARD_NUMBER], fieldEnd[CARD_NUMBER]),
+                parseExpiry(),
+                parseBalance());
+    }
+
+    /*
+        CSV: поля через запятую, пробелы вокруг полей и кавычки (без экранирования внутри) отбрасываются.
+     */
+    private void splitCsv() {
+        int field = 0;
+        int i = lineStart;
+        while (true) {
+            if (field == FIELDS) {
+                throw invalidRow("expected userId,cardNumber,expiryDate[,balance]");
+            }
+            while (i < lineEnd && isSpace(buffer.get(i))) {
+                i++;
+            }
+            int start = i;
+            int end;
+            if (i < lineEnd && buffer.get(i) == '"') {
+                start = ++i;
+                while (i < lineEnd && buffer.get(i) != '"') {
+                    i++;
+                }
+                if (i == lineEnd) {
+                    throw invalidRow("unterminated quote");
+                }
+                end = i++;
+                while (i < lineEnd && isSpace(buffer.get(i))) {
+                    i++;
+                }
+                if (i < lineEnd && buffer.get(i) != ',') {
+                    throw invalidRow("unexpected character after quote");
+                }
+            } else {
+                while (i < lineEnd && buffer.get(i) != ',') {
+                    i++;
+                }
+                end = i;
+                while (end > start && isSpace(buffer.get(end - 1))) {
+                    end--;
+                }
+            }
+            fieldStart[field] = start;
+            fieldEnd[field] = end;
+            field++;
+            if (i == lineEnd) {
+                break;
+            }
+            i++;                                                    // запятая
+        }
+        if (field < EXPIRY_DATE + 1) {
+            throw invalidRow("expected userId,cardNumber,expiryDate[,balance]");
+        }
+    }
+
+    /*
+        NDJSON: плоский объект; значения - строки (без escape-последовательностей), числа или null.
+        Неизвестные ключи пропускаются.
+     */
+    private void splitJson() {
+        int i = skipSpaces(lineStart);
+        if (i == lineEnd || buffer.get(i) != '{') {
+            throw invalidRow("expected JSON object");
+        }
+        i = skipSpaces(i + 1);
+        if (i < lineEnd && buffer.get(i) == '}') {
+            i++;
+        } else {
+            while (true) {
+                if (i == lineEnd || buffer.get(i) != '"') {
+                    throw invalidRow("expected JSON key");
+                }
+                int keyStart = i + 1;
+                i = closingQuote(keyStart);
+                int field = jsonKey(keyStart, i);
+                i = skipSpaces(i + 1);
+                if (i == lineEnd || buffer.get(i) != ':') {
+                    throw invalidRow("expected ':'");
+                }
+                i = skipSpaces(i + 1);
+                int start;
+                int end;
+                if (i < lineEnd && buffer.get(i) == '"') {
+                    start = i + 1;
+                    end = closingQuote(start);
+                    i = end + 1;
+                } else {
+                    start = i;
+                    while (i < lineEnd && buffer.get(i) != ',' && buffer.get(i) != '}' && !isSpace(buffer.get(i))) {
+                        i++;
+                    }
+                    end = i;
+                    if (start == end) {
+                        throw invalidRow("expected JSON value");
+                    }
+                    if (equalsIgnoreCase(start, end, NULL)) {
+                        start = -1;
+                        end = -1;
+                    }
+                }
+                if (field >= 0) {
+                    fieldStart[field] = start;
+                    fieldEnd[field] = end;
+                }
+                i = skipSpaces(i);
+                if (i < lineEnd && buffer.get(i) == ',') {
+                    i = skipSpaces(i + 1);
+                    continue;
+                }
+                if (i < lineEnd && buffer.get(i) == '}') {
+                    i++;
+                    break;
+                }
+                throw invalidRow("expected ',' or '}'");
+            }
+        }
+        if (skipSpaces(i) != lineEnd) {
+            throw invalidRow("unexpected characters after JSON object");
+        }
+    }
+
+    private int closingQuote(int from) {
+        for (int i = from; i < lineEnd; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                return i;
+            }
+            if (b == '\\') {
+                throw invalidRow("escape sequences are not supported");
+            }
+        }
+        throw invalidRow("unterminated string");
+    }
+
+    private int jsonKey(int start, int end) {
+        for (int field = 0; field < FIELDS; field++) {
+            if (equalsIgnoreCase(start, end, JSON_KEYS[field])) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    /*
+        UUID вида 8-4-4-4-12 шестнадцатеричных цифр, без UUID.fromString() и промежуточной строки.
+     */
+    private UUID parseUuid() {
+        int start = fieldStart[USER_ID];
+        if (start < 0 || fieldEnd[USER_ID] - start != UUID_LENGTH) {
+            throw invalidRow("userId is invalid");
+        }
+        long msb = 0;
+        long lsb = 0;
+        int digits = 0;
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            byte b = buffer.get(start + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (b != '-') {
+                    throw invalidRow("userId is invalid");
+                }
+                continue;
+            }
+            int value = hex(b);
+            if (value < 0) {
+                throw invalidRow("userId is invalid");
+            }
+            if (digits++ < 16) {
+                msb = (msb << 4) | value;
+            } else {
+                lsb = (lsb << 4) | value;
+            }
+        }
+        return new UUID(msb, lsb);
+    }
+
+    /*
+        "yyyy-MM" или "yyyy/MM"; пустое значение - null (карту отклонит CardValidator).
+     */
+    private YearMonth parseExpiry() {
+        int start = fieldStart[EXPIRY_DATE];
+        int end = fieldEnd[EXPIRY_DATE];
+        if (start < 0 || start == end) {
+            return null;
+        }
+        byte separator = end - start == 7 ? buffer.get(start + 4) : 0;
+        if (separator != '-' && separator != '/') {
+            throw invalidRow("expiryDate is invalid");
+        }
+        int year = digits(start, 4);
+        int month = digits(start + 5, 2);
+        YearMonth expiry = year < 0 || month < 0 ? null : CardDateUtil.fromDbInt(year * 100 + month);
+        if (expiry == null) {
+            throw invalidRow("expiryDate is invalid");
+        }
+        return expiry;
+    }
+
+    private BigDecimal parseBalance() {
+        int start = fieldStart[BALANCE];
+        int end = fieldEnd[BALANCE];
+        if (start < 0 || start == end) {
+            return null;
+        }
+        int length = fill(start, end);
+        try {
+            return new BigDecimal(chars, 0, length);
+        } catch (NumberFormatException e) {
+            throw invalidRow("balance is invalid");
+        }
+    }
+
+    private String string(int start, int end) {
+        return new String(chars, 0, fill(start, end));
+    }
+
+    /*
+        Байты поля в рабочий буфер символов (ASCII; остальное номер карты все равно не пройдет проверку).
+     */
+    private int fill(int start, int end) {
+        int length = end - start;
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (buffer.get(start + i) & 0xff);
+        }
+        return length;
+    }
+
+    private int digits(int from, int count) {
+        int result = 0;
+        for (int i = from; i < from + count; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            result = result * 10 + (b - '0');
+        }
+        return result;
+    }
+
+    private int skipSpaces(int i) {
+        while (i < lineEnd && isSpace(buffer.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean equalsIgnoreCase(int start, int end, byte[] value) {
+        if (end - start != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (Character.toLowerCase(buffer.get(start + i)) != Character.toLowerCase(value[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hex(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static byte[] ascii(String value) {
+        byte[] bytes = new byte[value.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) value.charAt(i);
+        }
+        return bytes;
+    }
+
+    private static CardOperationException invalidRow(String message) {
+        return new CardOperationException(BankCardErrorCodes.CARD_IMPORT_INVALID_ROW, message);
+    }
+}
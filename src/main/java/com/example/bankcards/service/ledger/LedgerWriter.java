@@ -0,0 +1,116 @@
+package com.example.bankcards.service.ledger;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.CardTransactionType;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Запись журнала операций по картам (card_transactions).
+ * Записи копятся в буфере текущей транзакции и уходят в БД перед её коммитом
+ * многострочными INSERT-ами (по CHUNK_SIZE строк), то есть вся транзакция
+ * (один перевод или целый пакет) платит за журнал одним-двумя обращениями к БД.
+ * Вызывать только внутри транзакции перевода: журнал фиксируется вместе с балансами или не фиксируется вовсе.
+ */
+@Component
+@Log4j2
+public class LedgerWriter {
+
+    static final int CHUNK_SIZE = 500;
+    private static final String INSERT = "INSERT INTO card_transactions (transfer_id, card_id, user_id, type, amount, created_at) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+
+    public LedgerWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Добавление в журнал списания и зачисления перевода.
+     * @param request Выполненный перевод.
+     */
+    public void record(TransferRequest request) {
+        UUID transferId = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        List<Entry> buffer = currentBuffer();
+        buffer.add(new Entry(transferId, request.getFromCardId(), request.getUserId(), CardTransactionType.DEBIT, request.getAmount(), now));
+        buffer.add(new Entry(transferId, request.getToCardId(), request.getUserId(), CardTransactionType.CREDIT, request.getAmount(), now));
+    }
+
+    /*
+        Буфер привязан к транзакции как ресурс; при первом обращении регистрируем его сброс перед коммитом.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Entry> currentBuffer() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Ledger entries can only be recorded inside a transaction");
+        }
+        List<Entry> buffer = (List<Entry>) TransactionSynchronizationManager.getResource(this);
+        if (buffer == null) {
+            List<Entry> entries = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, entries);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    writeEntries(entries);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(LedgerWriter.this);
+                }
+            });
+            buffer = entries;
+        }
+        return buffer;
+    }
+
+    private void writeEntries(List<Entry> entries) {
+        for (int from = 0; from < entries.size(); from += CHUNK_SIZE) {
+            List<Entry> chunk = entries.subList(from, Math.min(from + CHUNK_SIZE, entries.size()));
+            StringBuilder sql = new StringBuilder(INSERT.length() + chunk.size() * (ROW.length() + 1)).append(INSERT);
+            Object[] args = new Object[chunk.size() * 6];
+            int i = 0;
+            for (Entry entry : chunk) {
+                if (i > 0) {
+                    sql.append(',');
+                }
+                sql.append(ROW);
+                args[i++] = toBytes(entry.transferId());
+                args[i++] = entry.cardId();
+                args[i++] = toBytes(entry.userId());
+                args[i++] = entry.type().name();
+                args[i++] = entry.amount();
+                args[i++] = Timestamp.valueOf(entry.createdAt());
+            }
+            jdbcTemplate.update(sql.toString(), args);
+        }
+        log.debug("Записано в журнал операций: {}", entries.size());
+    }
+
+    /*
+        UUID хранится в BINARY(16) так же, как его пишет Hibernate: старшие 8 байт, затем младшие.
+     */
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    private record Entry(UUID transferId, Long cardId, UUID userId, CardTransactionType type, BigDecimal amount, LocalDateTime createdAt) {
+    }
+}
@@ -1,10 +1,14 @@
 package com.example.bankcards.service.mappers;
 
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CursorPageDTO;
 import com.example.bankcards.dto.PageDTO;
+import com.example.bankcards.dto.TotalMode;
+import com.example.bankcards.dto.filters.KeysetScroll;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.util.CardUtil;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Component;
 
 /**
@@ -16,7 +20,7 @@ public class CardMapper {
     public CardResponse toCardResponse(Card card) {
         return new CardResponse(
                 card.getId(),
-                CardUtil.getMaskedNumber(card.getCardNumber()),
+                CardUtil.getMaskedLast4(card.getCardLast4()),      // номер не расшифровывается
                 card.getExpiryDate(),
                 card.getStatus(),
                 card.getBalance(),
@@ -27,4 +31,16 @@ public class CardMapper {
     public PageDTO<CardResponse> toPageCard(Page<Card> cards) {
         return cards == null ? PageDTO.empty() : new PageDTO<>(cards.map(this::toCardResponse));
     }
+
+    public PageDTO<CardResponse> toPageCard(Slice<Card> cards, long total, TotalMode totalMode) {
+        return cards == null ? PageDTO.empty() : new PageDTO<>(cards.map(this::toCardResponse), total, totalMode);
+    }
+
+    public CursorPageDTO<CardResponse> toCursorPageCard(KeysetScroll.Window<Card> cards) {
+        return cards == null ? CursorPageDTO.empty() : new CursorPageDTO<>(
+                cards.content().stream().map(this::toCardResponse).toList(),
+                cards.content().size(),
+                cards.nextCursor()
+        );
+    }
 }
@@ -1,15 +1,19 @@
 package com.example.bankcards.service.mappers;
 
+import com.example.bankcards.dto.CursorPageDTO;
 import com.example.bankcards.dto.PageDTO;
 import com.example.bankcards.dto.SignUpRequest;
+import com.example.bankcards.dto.TotalMode;
 import com.example.bankcards.dto.UpdateUserRequest;
 import com.example.bankcards.dto.UserResponse;
+import com.example.bankcards.dto.filters.KeysetScroll;
 import com.example.bankcards.entity.auth.Role;
 import com.example.bankcards.entity.auth.User;
 import com.example.bankcards.security.CustomPasswordEncoder;
 import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Component;
 
 import java.util.Set;
@@ -86,5 +90,29 @@ public class UserMapper {
         return users == null ? PageDTO.empty() : new PageDTO<>(users.map(this::toResponse));
     }
 
+    /**
+     * Конвертация выборки User без точного подсчета (Slice) в выборку DTO.
+     * @param users     Выборка User.
+     * @param total     Общее количество (возможно приблизительное), -1 - неизвестно.
+     * @param totalMode Как получено количество.
+     * @return Выборка объектов класса UserResponse.
+     */
+    public PageDTO<UserResponse> toPageUser(Slice<User> users, long total, TotalMode totalMode) {
+        return users == null ? PageDTO.empty() : new PageDTO<>(users.map(this::toResponse), total, totalMode);
+    }
+
+    /**
+     * Преобразование keyset-выборки User в страницу по курсору.
+     * @param users Выборка User.
+     * @return Страница объектов класса UserResponse.
+     */
+    public CursorPageDTO<UserResponse> toCursorPageUser(KeysetScroll.Window<User> users) {
+        return users == null ? CursorPageDTO.empty() : new CursorPageDTO<>(
+                users.content().stream().map(this::toResponse).toList(),
+                users.content().size(),
+                users.nextCursor()
+        );
+    }
+
 
 }
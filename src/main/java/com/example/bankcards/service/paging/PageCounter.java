@@ -0,0 +1,90 @@
+package com.example.bankcards.service.paging;
+
+import com.example.bankcards.config.PageCountProperties;
+import com.example.bankcards.dto.TotalMode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Общее количество элементов для страничных выборок, без COUNT(*) на каждую страницу.
+ * Точное количество кэшируется на короткое время по нормализованному фильтру,
+ * для выборки без фильтра можно взять оценку из статистики таблицы (information_schema.tables).
+ */
+@Component
+@Log4j2
+public class PageCounter {
+
+    public static final long UNKNOWN = -1;
+
+    private static final String ESTIMATE_SQL =
+            "SELECT table_rows FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<CountKey, Long> cache;
+
+
+    /*
+        Ключ кэша: таблица и нормализованный фильтр (null - без фильтра), estimated - оценка по статистике.
+     */
+    private record CountKey(String table, Object filter, boolean estimated) {}
+
+
+    public PageCounter(JdbcTemplate jdbcTemplate, PageCountProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheSize())
+                .expireAfterWrite(properties.getCacheTtl())
+                .build();
+    }
+
+    /**
+     * Возвращает общее количество элементов выборки.
+     * Если страница последняя, количество известно и так, запросов не делается.
+     * @param slice  Выбранная страница.
+     * @param table  Имя таблицы в БД (для оценки по статистике).
+     * @param filter Нормализованный фильтр, с корректными equals/hashCode; null - выборка без фильтра.
+     * @param mode   Способ подсчета.
+     * @param exact  Точный подсчет (COUNT(*)).
+     * @return Количество элементов, или UNKNOWN для режима NONE.
+     */
+    public long count(Slice<?> slice, String table, Object filter, TotalMode mode, LongSupplier exact) {
+        if (!slice.hasNext() && (slice.getNumberOfElements() > 0 || slice.isFirst())) {
+            return (slice.getPageable().isPaged() ? slice.getPageable().getOffset() : 0) + slice.getNumberOfElements();
+        }
+        return switch (mode) {
+            case NONE -> UNKNOWN;
+            case EXACT -> exact.getAsLong();
+            case CACHED -> cached(table, filter, exact);
+            case ESTIMATED -> filter == null ? estimated(table, exact) : cached(table, filter, exact);
+        };
+    }
+
+    private long cached(String table, Object filter, LongSupplier exact) {
+        return cache.get(new CountKey(table, filter, false), key -> exact.getAsLong());
+    }
+
+    /*
+        Для InnoDB table_rows - приблизительное значение (погрешность до десятков процентов),
+        зато без чтения таблицы. Если статистики нет - считаем точно (с кэшем).
+     */
+    private long estimated(String table, LongSupplier exact) {
+        Long rows = cache.get(new CountKey(table, null, true), key -> estimate(table));
+        return rows != null ? rows : cached(table, null, exact);
+    }
+
+    private Long estimate(String table) {
+        try {
+            return jdbcTemplate.queryForObject(ESTIMATE_SQL, Long.class, table);
+        } catch (DataAccessException e) {
+            log.warn("Can't estimate rows of '{}': {}", table, e.getMessage());
+            return null;
+        }
+    }
+}
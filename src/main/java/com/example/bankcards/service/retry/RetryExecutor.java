@@ -0,0 +1,79 @@
+package com.example.bankcards.service.retry;
+
+import com.example.bankcards.config.RetryProperties;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Выполняет операцию в отдельной транзакции и повторяет её при конфликтах параллельного
+ * изменения (ConcurrencyFailureException: устаревшая @Version, deadlock, таймаут блокировки).
+ * Повтор возможен только целой транзакцией, поэтому вызывать нужно вне @Transactional.
+ * Между попытками - экспоненциальная пауза со случайным разбросом (full jitter), чтобы
+ * конфликтующие запросы не повторялись синхронно.
+ * Число повторов пишется в метрику bankcards.card.retries с тегом operation.
+ */
+@Component
+@Log4j2
+public class RetryExecutor {
+
+    public static final String RETRIES_METRIC = "bankcards.card.retries";
+    public static final String EXHAUSTED_METRIC = "bankcards.card.retries.exhausted";
+
+    private final TransactionTemplate transactionTemplate;
+    private final RetryProperties properties;
+    private final MeterRegistry meterRegistry;
+
+
+    public RetryExecutor(PlatformTransactionManager transactionManager, RetryProperties properties, MeterRegistry meterRegistry) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Выполнение операции с повторами.
+     * @param operation Имя операции (тег метрики), например "transfer".
+     * @param action    Тело операции, выполняется внутри транзакции.
+     * @return Результат операции.
+     */
+    public <T> T execute(String operation, Supplier<T> action) {
+        int maxAttempts = Math.max(properties.getMaxAttempts(), 1);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter(EXHAUSTED_METRIC, "operation", operation).increment();
+                    log.warn("Operation '{}' failed after {} attempts: {}", operation, attempt, e.getMessage());
+                    throw new CardOperationException(BankCardErrorCodes.CARD_CONCURRENT_UPDATE, "card was modified concurrently, try again");
+                }
+                meterRegistry.counter(RETRIES_METRIC, "operation", operation).increment();
+                log.debug("Operation '{}' conflict on attempt {}: {}", operation, attempt, e.getMessage());
+                pause(attempt);
+            }
+        }
+    }
+
+    private void pause(int attempt) {
+        long base = properties.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20);
+        long limit = Math.min(base, properties.getMaxBackoff().toMillis());
+        if (limit <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(limit + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CardOperationException(BankCardErrorCodes.CARD_CONCURRENT_UPDATE, "operation interrupted");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.validators.TransferValidator;
+import lombok.AllArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Перевод через два условных UPDATE (списание и зачисление), без предварительной загрузки карт.
+ * Все проверки (владелец, статус, остаток) выполняет сама БД в WHERE, а об успехе судим
+ * по количеству изменённых строк. Так перевод стоит два запроса вместо четырёх, и параллельные
+ * переводы с одной карты не теряют обновления: UPDATE блокирует строку до конца транзакции.
+ * Карты загружаются только при отказе, чтобы вернуть клиенту точную причину.
+ * Режим по умолчанию (var.card.transfer.mode: atomic).
+ */
+@Component
+@ConditionalOnProperty(prefix = "var.card.transfer", name = "mode", havingValue = "atomic", matchIfMissing = true)
+@AllArgsConstructor
+@Log4j2
+public class AtomicTransferEngine implements TransferEngine {
+
+    private final CardRepository cardRepository;
+    private final TransferValidator transferValidator;
+
+
+    @Override
+    @Transactional
+    public void transfer(TransferRequest request) {
+        transferValidator.validateRequest(request);
+
+        // строки обновляем строго по возрастанию id, иначе встречные переводы A->B и B->A
+        // захватят блокировки в разном порядке и получат deadlock.
+        if (request.getFromCardId() < request.getToCardId()) {
+            debit(request);
+            credit(request);
+        } else {
+            credit(request);
+            debit(request);
+        }
+        log.info("Осуществлен перевод с карты id={} на карту id={}", request.getFromCardId(), request.getToCardId());
+    }
+
+    private void debit(TransferRequest request) {
+        if (cardRepository.debit(request.getFromCardId(), request.getUserId(), request.getAmount()) == 0) {
+            throw rejection(request);
+        }
+    }
+
+    private void credit(TransferRequest request) {
+        if (cardRepository.credit(request.getToCardId(), request.getUserId(), request.getAmount()) == 0) {
+            throw rejection(request);
+        }
+    }
+
+    /**
+     * Выясняет причину отказа. Исключение откатит уже выполненную половину перевода.
+     */
+    private CardOperationException rejection(TransferRequest request) {
+        Card fromCard = cardRepository.findById(request.getFromCardId()).orElse(null);
+        Card toCard = cardRepository.findById(request.getToCardId()).orElse(null);
+        transferValidator.validateCards(request, fromCard, toCard);
+        // все проверки прошли, значит состояние карт изменилось между запросами
+        return new CardOperationException(BankCardErrorCodes.CARD_BAD_STATUS, "card state changed during transfer");
+    }
+}
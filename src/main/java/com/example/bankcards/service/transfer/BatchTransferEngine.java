@@ -0,0 +1,128 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResult;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.validators.TransferValidator;
+import com.example.bankcards.util.Money;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетный перевод средств (payroll и прочие массовые операции).
+ * Все карты пакета захватываются одним SELECT ... FOR UPDATE в порядке возрастания id,
+ * переводы применяются в памяти строго по порядку (каждый видит результат предыдущих),
+ * балансы при этом ведутся в копейках (long), без промежуточных BigDecimal,
+ * а изменённые карты уходят в БД при коммите одним JDBC-батчем (hibernate.jdbc.batch_size).
+ * Ошибка отдельного перевода не откатывает пакет - она попадает в его результат.
+ */
+@Component
+@Log4j2
+public class BatchTransferEngine {
+
+    private final CardRepository cardRepository;
+    private final TransferValidator transferValidator;
+    private final int maxBatchSize;
+
+
+    public BatchTransferEngine(CardRepository cardRepository, TransferValidator transferValidator,
+                               @Value("${var.card.transfer.batch-max-size:1000}") int maxBatchSize) {
+        this.cardRepository = cardRepository;
+        this.transferValidator = transferValidator;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Проверка размера пакета (var.card.transfer.batch-max-size).
+     */
+    public void validateSize(List<TransferRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_BATCH_TOO_LARGE, "batch is too large, max " + maxBatchSize);
+        }
+    }
+
+    /**
+     * Выполнение пакета переводов в одной транзакции.
+     * @param requests Переводы, в порядке выполнения.
+     * @param users    Существующие пользователи из запросов (переводы остальных отклоняются).
+     * @return Результаты переводов, в том же порядке.
+     */
+    @Transactional
+    public List<TransferResult> transfer(List<TransferRequest> requests, Set<UUID> users) {
+        validateSize(requests);
+
+        // проверки без обращения к БД, заодно собираем все затронутые карты
+        TransferResult[] results = new TransferResult[requests.size()];
+        long[] amounts = new long[requests.size()];
+        Set<Long> ids = new TreeSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            try {
+                if (!users.contains(request.getUserId())) {
+                    throw new CardOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist");
+                }
+                amounts[i] = transferValidator.validateRequest(request);
+                ids.add(request.getFromCardId());
+                ids.add(request.getToCardId());
+            } catch (CardOperationException e) {
+                results[i] = TransferResult.failed(i, request, e);
+            }
+        }
+
+        Map<Long, Card> cards = ids.isEmpty()
+                ? Map.of()
+                : cardRepository.findAllByIdForUpdate(ids).stream().collect(Collectors.toMap(Card::getId, Function.identity()));
+        // балансы на время пакета ведем в копейках, в сущности пишем один раз в конце
+        Map<Long, long[]> balances = new HashMap<>(cards.size() * 2);
+        cards.values().forEach(card -> balances.put(card.getId(), new long[]{Money.toMinor(card.getBalance())}));
+
+        int succeeded = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            TransferRequest request = requests.get(i);
+            Card fromCard = cards.get(request.getFromCardId());
+            Card toCard = cards.get(request.getToCardId());
+            try {
+                transferValidator.validateCardsState(request, fromCard, toCard);
+                long[] from = balances.get(fromCard.getId());
+                long[] to = balances.get(toCard.getId());
+                if (from[0] < amounts[i]) {
+                    throw transferValidator.notEnoughFunds();
+                }
+                long credited = Money.add(to[0], amounts[i]);
+                from[0] = Money.subtract(from[0], amounts[i]);
+                to[0] = credited;
+                results[i] = TransferResult.ok(i, request);
+                succeeded++;
+            } catch (CardOperationException e) {
+                results[i] = TransferResult.failed(i, request, e);
+            } catch (ArithmeticException e) {
+                results[i] = TransferResult.failed(i, request,
+                        new CardOperationException(BankCardErrorCodes.CARD_INVALID_AMOUNT, "balance overflow"));
+            }
+        }
+        if (succeeded > 0) {
+            cards.values().forEach(card -> {
+                long balance = balances.get(card.getId())[0];
+                if (balance != Money.toMinor(card.getBalance())) {
+                    card.setBalance(Money.toBigDecimal(balance));
+                }
+            });
+        }
+
+        log.info("Выполнен пакет переводов: успешно {}, отклонено {}, карт затронуто {}",
+                succeeded, requests.size() - succeeded, cards.size());
+        return Arrays.asList(results);
+    }
+}
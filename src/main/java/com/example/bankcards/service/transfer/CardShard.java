@@ -0,0 +1,301 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.util.Money;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Шард движка ShardedTransferEngine: один поток-исполнитель и принадлежащие ему карты.
+ * Состояние карт читается и меняется только командами в потоке шарда, поэтому не требует
+ * синхронизации. Очередь команд ограничена: при переполнении отправитель ждет.
+ * Сам шард в БД не ходит: карту загружает вызывающий поток (у него уже есть соединение
+ * транзакции) и передает шарду через install(), дальше она живет в памяти.
+ * Балансы и резервы хранятся в копейках (long): перевод не создает объектов.
+ * Карты, с которыми давно не было переводов, выгружаются (evictIdle()), если их баланс уже записан
+ * в БД и незавершенных переводов с ними нет; при следующем переводе карта снова читается из БД.
+ */
+class CardShard {
+
+    /**
+     * Состояние карты в памяти шарда.
+     */
+    static final class CardState {
+        final Long id;
+        final UUID userId;
+        CardStatus status;
+        long balance;
+        // зарезервировано переводами, ждущими коммита транзакции
+        long held;
+        // сумма операций журнала сессии, учтенных в balance (в начале сессии у всех карт ноль)
+        long applied;
+        // баланс еще не записан в БД
+        boolean dirty;
+        // начатые переводы с этой картой (проверка/резерв сделаны, ждут коммита или отката)
+        int pending;
+        // баланс в памяти мог разойтись с журналом, карта ждет перечитывания из БД
+        boolean stale;
+        // время загрузки или последнего перевода (System.nanoTime())
+        long lastUsed;
+
+        CardState(Card card) {
+            this.id = card.getId();
+            this.userId = card.getUserId();
+            this.status = card.getStatus();
+            this.balance = Money.toMinor(card.getBalance());
+            this.lastUsed = System.nanoTime();
+        }
+
+        long available() {
+            return balance - held;
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    private final Map<Long, CardState> cards = new HashMap<>();
+    private final List<CardState> dirty = new ArrayList<>();
+    private final List<CardState> stale = new ArrayList<>();
+
+
+    CardShard(int index, int queueCapacity) {
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "card-shard-" + index);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("card shard is stopped");
+                    }
+                    try {
+                        pool.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("interrupted while waiting for card shard", e);
+                    }
+                });
+    }
+
+    <T> Future<T> submit(Callable<T> command) {
+        return executor.submit(command);
+    }
+
+    void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    /**
+     * Как execute(), но ожидание места в очереди не прерывается: команда завершения перевода
+     * не должна потеряться. Флаг прерывания потока восстанавливается. Отказ - только у остановленного шарда.
+     */
+    void executeUninterruptibly(Runnable command) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    executor.execute(command);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    if (executor.isShutdown()) {
+                        throw e;
+                    }
+                    interrupted |= Thread.interrupted();
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /*
+        Все методы ниже вызываются только из потока шарда.
+     */
+
+    CardState card(Long id) {
+        return cards.get(id);
+    }
+
+    /**
+     * Добавление загруженной из БД карты. Если карта уже в памяти, актуальна именно она.
+     */
+    void install(Card card) {
+        cards.putIfAbsent(card.getId(), new CardState(card));
+    }
+
+    /**
+     * Карта участвует в начатом переводе; каждый enlist() закрывается ровно одним из
+     * release(), debit(), credit(), leave() или invalidate().
+     */
+    void enlist(CardState card) {
+        card.pending++;
+        card.lastUsed = System.nanoTime();
+    }
+
+    void hold(CardState card, long amount) {
+        card.held = Money.add(card.held, amount);
+    }
+
+    void release(Long id, long amount) {
+        CardState card = cards.get(id);
+        if (card != null) {
+            card.held = Math.max(card.held - amount, 0);
+            card.pending--;
+        }
+    }
+
+    void leave(Long id) {
+        CardState card = cards.get(id);
+        if (card != null) {
+            card.pending--;
+        }
+    }
+
+    /*
+        Новые значения считаются до изменения карты: при переполнении карта остается нетронутой.
+     */
+    void debit(Long id, long amount) {
+        CardState card = cards.get(id);
+        if (card != null) {
+            long balance = Money.subtract(card.balance, amount);
+            long applied = Money.subtract(card.applied, amount);
+            card.held = Math.max(card.held - amount, 0);
+            card.balance = balance;
+            card.applied = applied;
+            card.pending--;
+            markDirty(card);
+        }
+    }
+
+    void credit(Long id, long amount) {
+        CardState card = cards.get(id);
+        if (card != null) {
+            long balance = Money.add(card.balance, amount);
+            long applied = Money.add(card.applied, amount);
+            card.balance = balance;
+            card.applied = applied;
+            card.pending--;
+            markDirty(card);
+        }
+    }
+
+    /**
+     * Перевод с картой завершен, но его результат в памяти не применен (исход коммита неизвестен
+     * или применение упало). Резерв не снимается, новые переводы карта не принимает; когда начатые
+     * переводы завершатся, карта перечитывается из БД (readyToReload() / reload()).
+     */
+    void invalidate(Long id) {
+        CardState card = cards.get(id);
+        if (card != null) {
+            card.pending--;
+            if (!card.stale) {
+                card.stale = true;
+                stale.add(card);
+            }
+        }
+    }
+
+    /**
+     * Карты, ждущие перечитывания, у которых не осталось начатых переводов.
+     */
+    List<Long> readyToReload() {
+        List<Long> ids = new ArrayList<>();
+        for (CardState card : stale) {
+            if (card.pending == 0) {
+                ids.add(card.id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Баланс карты, перечитанный из БД и журнала. Начатых переводов у карты нет, поэтому резерв обнуляется.
+     */
+    void reload(Long id, long balance, long applied) {
+        CardState card = cards.get(id);
+        if (card == null || !card.stale || card.pending != 0) {
+            return;
+        }
+        card.balance = balance;
+        card.applied = applied;
+        card.held = 0;
+        card.stale = false;
+        stale.remove(card);
+        if (card.dirty) {
+            card.dirty = false;
+            dirty.remove(card);
+        }
+    }
+
+    void remove(Long id) {
+        CardState card = cards.remove(id);
+        if (card != null && card.dirty) {
+            card.dirty = false;
+            dirty.remove(card);
+        }
+        if (card != null && card.stale) {
+            stale.remove(card);
+        }
+    }
+
+    /**
+     * Выгрузка карт без переводов дольше idleNanos. Выгружаются только карты, баланс которых совпадает
+     * с записанным в БД: не измененные после сброса, без резерва и начатых переводов, не ждущие перечитывания.
+     * @return Идентификаторы выгруженных карт.
+     */
+    List<Long> evictIdle(long idleNanos) {
+        long now = System.nanoTime();
+        List<Long> evicted = new ArrayList<>();
+        Iterator<CardState> iterator = cards.values().iterator();
+        while (iterator.hasNext()) {
+            CardState card = iterator.next();
+            if (!card.dirty && !card.stale && card.pending == 0 && card.held == 0 && now - card.lastUsed >= idleNanos) {
+                iterator.remove();
+                evicted.add(card.id);
+            }
+        }
+        return evicted;
+    }
+
+    void markDirty(Long id) {
+        CardState card = cards.get(id);
+        if (card != null) {
+            markDirty(card);
+        }
+    }
+
+    private void markDirty(CardState card) {
+        if (!card.dirty) {
+            card.dirty = true;
+            dirty.add(card);
+        }
+    }
+
+    /**
+     * Снимок измененных балансов для записи в БД: строки (balance, ledger_applied_sum, id).
+     * Здесь, на границе с JDBC, копейки переводятся в BigDecimal.
+     */
+    List<Object[]> drainDirty() {
+        List<Object[]> rows = new ArrayList<>(dirty.size());
+        for (CardState card : dirty) {
+            rows.add(new Object[]{Money.toBigDecimal(card.balance), Money.toBigDecimal(card.applied), card.id});
+            card.dirty = false;
+        }
+        dirty.clear();
+        return rows;
+    }
+}
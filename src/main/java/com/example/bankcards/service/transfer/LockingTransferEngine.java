@@ -0,0 +1,54 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.validators.TransferValidator;
+import lombok.AllArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Перевод с пессимистической блокировкой обеих карт (var.card.transfer.mode: locking).
+ * Обе строки захватываются одним SELECT ... FOR UPDATE в порядке возрастания id,
+ * после чего проверки и изменение баланса выполняются над уже заблокированными картами.
+ * Встречные переводы между "горячими" картами выстраиваются в очередь, а не в deadlock.
+ */
+@Component
+@ConditionalOnProperty(prefix = "var.card.transfer", name = "mode", havingValue = "locking")
+@AllArgsConstructor
+@Log4j2
+public class LockingTransferEngine implements TransferEngine {
+
+    private final CardRepository cardRepository;
+    private final TransferValidator transferValidator;
+
+
+    @Override
+    @Transactional
+    public void transfer(TransferRequest request) {
+        transferValidator.validateRequest(request);
+
+        List<Card> cards = cardRepository.findAllByIdForUpdate(List.of(request.getFromCardId(), request.getToCardId()));
+        Card fromCard = findCard(cards, request.getFromCardId());
+        Card toCard = findCard(cards, request.getToCardId());
+        transferValidator.validateCards(request, fromCard, toCard);
+
+        // списание и зачисление, в БД попадут при коммите транзакции
+        fromCard.setBalance(fromCard.getBalance().subtract(request.getAmount()));
+        toCard.setBalance(toCard.getBalance().add(request.getAmount()));
+
+        log.info("Осуществлен перевод с карты id={} на карту id={}", fromCard.getId(), toCard.getId());
+    }
+
+    private Card findCard(List<Card> cards, Long id) {
+        return cards.stream()
+                .filter(card -> card.getId().equals(id))
+                .findFirst()
+                .orElse(null);
+    }
+}
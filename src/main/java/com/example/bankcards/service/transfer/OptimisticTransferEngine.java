@@ -0,0 +1,45 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.validators.TransferValidator;
+import lombok.AllArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Перевод без блокировок строк (var.card.transfer.mode: optimistic).
+ * Карты читаются обычным SELECT, а при записи Hibernate проверяет @Version: если карту
+ * успели изменить, коммит завершится ObjectOptimisticLockingFailureException и вызывающий
+ * RetryExecutor повторит перевод целиком. Когда переводы затрагивают разные карты
+ * (обычная нагрузка), никто никого не ждёт.
+ */
+@Component
+@ConditionalOnProperty(prefix = "var.card.transfer", name = "mode", havingValue = "optimistic")
+@AllArgsConstructor
+@Log4j2
+public class OptimisticTransferEngine implements TransferEngine {
+
+    private final CardRepository cardRepository;
+    private final TransferValidator transferValidator;
+
+
+    @Override
+    @Transactional
+    public void transfer(TransferRequest request) {
+        transferValidator.validateRequest(request);
+
+        Card fromCard = cardRepository.findById(request.getFromCardId()).orElse(null);
+        Card toCard = cardRepository.findById(request.getToCardId()).orElse(null);
+        transferValidator.validateCards(request, fromCard, toCard);
+
+        // списание и зачисление, версия проверится при коммите
+        fromCard.setBalance(fromCard.getBalance().subtract(request.getAmount()));
+        toCard.setBalance(toCard.getBalance().add(request.getAmount()));
+
+        log.info("Осуществлен перевод с карты id={} на карту id={}", fromCard.getId(), toCard.getId());
+    }
+}
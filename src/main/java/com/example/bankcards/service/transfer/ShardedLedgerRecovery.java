@@ -0,0 +1,169 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.util.DbNamedLock;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Восстановление балансов после аварийной остановки шардированного движка (ShardedTransferEngine).
+ * Движок пишет балансы в БД с задержкой, но каждый перевод фиксируется в журнале card_transactions
+ * в транзакции вызывающего. Вместе с balance движок пишет ledger_applied_sum - сумму операций журнала
+ * текущей сессии, уже учтенных в balance; начало сессии (последний id журнала перед ней) хранится
+ * в job_checkpoints. Незаписанная часть баланса карты - сумма её операций журнала после начала сессии
+ * минус ledger_applied_sum. Суммы не зависят от порядка коммитов, поэтому переводы, зафиксированные
+ * не в порядке id журнала, тоже не теряются.
+ * Восстановление выполняется при старте в любом режиме переводов, до приема запросов: остальные движки
+ * меняют balance сразу, и их операции не должны попасть в сессию шардированного движка.
+ * Сессией владеет одна инстанция: на всё время сессии она держит именованную блокировку MySQL
+ * (DbNamedLock). Пока владелец жив, восстановление в других инстанциях
+ * не выполняется, а второй шардированный движок не стартует. Блокировка снимается при остановке
+ * движка или вместе с соединением, если процесс владельца упал.
+ */
+@Component
+@Log4j2
+public class ShardedLedgerRecovery {
+
+    static final String JOB_NAME = "sharded-transfer";
+
+    private static final String LOAD_CHECKPOINT_SQL = "SELECT last_id FROM job_checkpoints WHERE job_name = ?";
+    private static final String SAVE_CHECKPOINT_SQL =
+            "INSERT INTO job_checkpoints (job_name, last_id, updated_at) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE last_id = VALUES(last_id), updated_at = VALUES(updated_at)";
+    private static final String DELETE_CHECKPOINT_SQL = "DELETE FROM job_checkpoints WHERE job_name = ?";
+    private static final String LAST_LEDGER_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM card_transactions";
+    private static final String SESSION_SUM =
+            "SELECT COALESCE(SUM(CASE WHEN t.type = 'DEBIT' THEN -t.amount ELSE t.amount END), 0) " +
+            "FROM card_transactions t WHERE t.card_id = cards.id AND t.id > ?";
+    // присваивания однотабличного UPDATE выполняются слева направо: balance считается по старому ledger_applied_sum
+    private static final String RECOVER_SQL =
+            "UPDATE cards SET balance = balance + (" + SESSION_SUM + ") - ledger_applied_sum, " +
+            "ledger_applied_sum = 0, version = version + 1 " +
+            "WHERE id IN (SELECT card_id FROM card_transactions WHERE id > ?)";
+    private static final String RELOAD_SQL =
+            "UPDATE cards SET balance = balance + (" + SESSION_SUM + ") - ledger_applied_sum, " +
+            "ledger_applied_sum = (" + SESSION_SUM + "), version = version + 1 WHERE id = ?";
+    private static final String SELECT_CARD_SQL = "SELECT balance, ledger_applied_sum FROM cards WHERE id = ?";
+    // сколько новый шардированный движок ждет, пока блокировку отпустит предыдущий владелец
+    private static final int OWNER_WAIT_SECONDS = 10;
+
+    /**
+     * Сессия шардированного движка: начало сессии и соединение, держащее блокировку владельца.
+     * Закрывается при остановке движка, после финального сброса балансов.
+     */
+    public static final class Session implements AutoCloseable {
+        private final DbNamedLock owner;
+        private final long start;
+
+        private Session(DbNamedLock owner, long start) {
+            this.owner = owner;
+            this.start = start;
+        }
+
+        /**
+         * @return Последний id журнала перед сессией.
+         */
+        public long start() {
+            return start;
+        }
+
+        @Override
+        public void close() {
+            owner.close();
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSource dataSource;
+
+
+    public ShardedLedgerRecovery(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Дописывает в balance операции журнала, не записанные прошлой сессией движка, и закрывает её.
+     * Без сохраненной сессии ничего не делает. Пока сессией владеет живой шардированный движок
+     * (в этой или другой инстанции), ничего не меняет: его балансы в памяти новее, чем в БД.
+     */
+    @PostConstruct
+    public void recover() {
+        DbNamedLock lock = DbNamedLock.tryAcquire(dataSource, JOB_NAME, 0);
+        if (lock == null) {
+            log.warn("Sharded transfer session is owned by a running engine, card balance recovery skipped");
+            return;
+        }
+        try {
+            recoverOwned();
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * Начало сессии шардированного движка: захват блокировки владельца, восстановление прошлой сессии
+     * и сохранение начала новой. Вызывается до приема переводов; после него ledger_applied_sum всех карт
+     * равен нулю.
+     * @return Сессия; закрывается при остановке движка.
+     * @throws IllegalStateException Сессией владеет другой работающий движок.
+     */
+    public Session startSession() {
+        DbNamedLock owner = DbNamedLock.tryAcquire(dataSource, JOB_NAME, OWNER_WAIT_SECONDS);
+        if (owner == null) {
+            throw new IllegalStateException("Sharded transfer session is owned by another running engine");
+        }
+        try {
+            recoverOwned();
+            long start = transactionTemplate.execute(status -> {
+                Long sessionStart = jdbcTemplate.queryForObject(LAST_LEDGER_ID_SQL, Long.class);
+                jdbcTemplate.update(SAVE_CHECKPOINT_SQL, JOB_NAME, sessionStart, Timestamp.from(Instant.now()));
+                return sessionStart;
+            });
+            return new Session(owner, start);
+        } catch (RuntimeException e) {
+            owner.close();
+            throw e;
+        }
+    }
+
+    private void recoverOwned() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> saved = jdbcTemplate.queryForList(LOAD_CHECKPOINT_SQL, Long.class, JOB_NAME);
+            if (saved.isEmpty()) {
+                return;
+            }
+            long sessionStart = saved.get(0);
+            int cards = jdbcTemplate.update(RECOVER_SQL, sessionStart, sessionStart);
+            jdbcTemplate.update(DELETE_CHECKPOINT_SQL, JOB_NAME);
+            log.info("Card balances recovered from card_transactions after id {}: {} cards", sessionStart, cards);
+        });
+    }
+
+    /**
+     * Восстановление одной карты посреди сессии: balance приводится к журналу, а ledger_applied_sum -
+     * к сумме всех операций карты в сессии. Для карты, баланс которой в памяти движка разошелся
+     * с журналом; переводов с ней в этот момент быть не должно.
+     * @param sessionStart Начало сессии (результат startSession()).
+     * @param cardId       Идентификатор карты.
+     * @return Строка (balance, ledger_applied_sum) карты или null, если карты уже нет.
+     */
+    public Object[] reloadCard(long sessionStart, Long cardId) {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.update(RELOAD_SQL, sessionStart, sessionStart, cardId);
+            List<Object[]> rows = jdbcTemplate.query(SELECT_CARD_SQL,
+                    (rs, rowNum) -> new Object[]{rs.getBigDecimal(1), rs.getBigDecimal(2)}, cardId);
+            return rows.isEmpty() ? null : rows.get(0);
+        });
+    }
+}
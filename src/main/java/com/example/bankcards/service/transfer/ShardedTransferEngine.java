@@ -0,0 +1,448 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.config.ShardedEngineProperties;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.validators.TransferValidator;
+import com.example.bankcards.util.Money;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Перевод через шардированные балансы в памяти (var.card.transfer.mode: sharded).
+ * Карты распределены по N однопоточным шардам по hash(id), и баланс карты меняет только
+ * поток её шарда - без блокировок строк в БД на горячем пути. Из БД карта читается один раз,
+ * дальше баланс и резерв ведутся в копейках (Money), в BigDecimal - только при записи в БД.
+ * Перевод выполняется в два шага: сначала проверка карты-приемника и резерв суммы на карте-источнике
+ * (на их шардах), затем, после коммита транзакции вызывающего (журнал, ключ идемпотентности),
+ * списание и зачисление. При откате транзакции резерв снимается. Если исход коммита неизвестен
+ * или его результат не удалось применить, резерв остается, а карты перечитываются из БД и журнала,
+ * как только завершатся начатые с ними переводы; до этого новые переводы с ними отклоняются.
+ * Измененные балансы пишутся в БД фоновым потоком пакетными UPDATE (write-behind) с увеличением
+ * version, поэтому JPA-операции над картами (активация, блокировка) видят конфликт и повторяются.
+ * Тем же UPDATE пишется ledger_applied_sum - сумма учтенных в балансе операций журнала сессии:
+ * переводы, зафиксированные в журнале card_transactions, но не попавшие в БД до аварийной остановки,
+ * дописывает ShardedLedgerRecovery при следующем старте, до приема переводов.
+ * Карты без переводов дольше idle-eviction выгружаются из памяти шардов (после записи их балансов).
+ * Рассчитан на одну инстанцию сервиса: балансы в памяти не разделяются между узлами. Сессией владеет
+ * один движок (блокировка в ShardedLedgerRecovery): второй шардированный движок не стартует, пока жив первый.
+ */
+@Component
+@ConditionalOnProperty(prefix = "var.card.transfer", name = "mode", havingValue = "sharded")
+@Log4j2
+public class ShardedTransferEngine implements TransferEngine {
+
+    private static final String UPDATE_BALANCE = "UPDATE cards SET balance = ?, ledger_applied_sum = ?, version = version + 1 WHERE id = ?";
+
+    private final CardRepository cardRepository;
+    private final TransferValidator transferValidator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardedEngineProperties properties;
+    private final ShardedLedgerRecovery recovery;
+    private final ShardedLedgerRecovery.Session session;
+    private final CardShard[] shards;
+    private final ScheduledExecutorService flusher;
+    // карты, уже переданные шардам (читается без обращения к шарду)
+    private final Set<Long> loaded = ConcurrentHashMap.newKeySet();
+
+
+    public ShardedTransferEngine(CardRepository cardRepository, TransferValidator transferValidator, JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager, ShardedEngineProperties properties,
+                                 ShardedLedgerRecovery recovery) {
+        this.cardRepository = cardRepository;
+        this.transferValidator = transferValidator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.recovery = recovery;
+        this.session = recovery.startSession();
+        this.shards = new CardShard[Math.max(properties.getShards(), 1)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new CardShard(i, properties.getQueueCapacity());
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "card-shard-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getFlushInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        long evictionInterval = Math.max(properties.getIdleEviction().toMillis(), interval);
+        flusher.scheduleWithFixedDelay(this::evictIdleQuietly, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+        log.info("Sharded transfer engine started: {} shards", shards.length);
+    }
+
+    @Override
+    public void transfer(TransferRequest request) {
+        long amount = transferValidator.validateRequest(request);
+        Long fromId = request.getFromCardId();
+        Long toId = request.getToCardId();
+        CardShard from = shardOf(fromId);
+        CardShard to = shardOf(toId);
+
+        // шаг 1: проверки и резерв; карту, выгруженную из шарда между загрузкой и командой, читаем еще раз
+        ensureLoaded(from, fromId);
+        ensureLoaded(to, toId);
+        if (!begin(request, from, to, amount, false)) {
+            ensureLoaded(from, fromId);
+            ensureLoaded(to, toId);
+            begin(request, from, to, amount, true);
+        }
+
+        // шаг 2: фиксация вместе с транзакцией вызывающего
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        commit(from, to, fromId, toId, amount);
+                    } else if (status == STATUS_ROLLED_BACK) {
+                        complete(from, fromId, () -> from.release(fromId, amount));
+                        complete(to, toId, () -> to.leave(toId));
+                    } else {
+                        // коммит мог пройти: резерв не снимаем, балансы карт перечитываются из БД и журнала
+                        log.error("Transfer outcome is unknown, cards id={} and id={} will be reloaded", fromId, toId);
+                        complete(from, fromId, () -> from.invalidate(fromId));
+                        complete(to, toId, () -> to.invalidate(toId));
+                    }
+                }
+            });
+        } else {
+            commit(from, to, fromId, toId, amount);
+        }
+        log.info("Осуществлен перевод с карты id={} на карту id={}", fromId, toId);
+    }
+
+    @Override
+    public boolean isWriteBehind() {
+        return true;
+    }
+
+    @Override
+    public Optional<BigDecimal> getBalance(Long cardId) {
+        CardShard shard = shardOf(cardId);
+        return call(shard, () -> {
+            CardShard.CardState card = shard.card(cardId);
+            return Optional.ofNullable(card == null ? null : Money.toBigDecimal(card.balance));
+        });
+    }
+
+    @Override
+    public void statusChanged(Long cardId, CardStatus status) {
+        CardShard shard = shardOf(cardId);
+        shard.execute(() -> {
+            CardShard.CardState card = shard.card(cardId);
+            if (card != null) {
+                card.status = status;
+            }
+        });
+    }
+
+    @Override
+    public void cardRemoved(Long cardId) {
+        CardShard shard = shardOf(cardId);
+        shard.execute(() -> shard.remove(cardId));
+        loaded.remove(cardId);
+    }
+
+    /**
+     * Проверки карт и резерв суммы на их шардах.
+     * @param lastAttempt false - вместо ошибки "карта не найдена" вернуть false (карта могла быть выгружена).
+     * @return false, если карты нет в шарде и перевод ничего не зарезервировал.
+     */
+    private boolean begin(TransferRequest request, CardShard from, CardShard to, long amount, boolean lastAttempt) {
+        Long fromId = request.getFromCardId();
+        Long toId = request.getToCardId();
+        if (from == to) {
+            return call(from, () -> {
+                CardShard.CardState card = from.card(toId);
+                if (!lastAttempt && (card == null || from.card(fromId) == null)) {
+                    return false;
+                }
+                checkCard(request, card);
+                reserve(request, from, amount);
+                from.enlist(card);
+                return true;
+            });
+        }
+        boolean toFound = call(to, () -> {
+            CardShard.CardState card = to.card(toId);
+            if (!lastAttempt && card == null) {
+                return false;
+            }
+            checkCard(request, card);
+            to.enlist(card);
+            return true;
+        });
+        if (!toFound) {
+            return false;
+        }
+        boolean fromFound;
+        try {
+            fromFound = call(from, () -> {
+                if (!lastAttempt && from.card(fromId) == null) {
+                    return false;
+                }
+                reserve(request, from, amount);
+                return true;
+            });
+        } catch (RuntimeException e) {
+            complete(to, toId, () -> to.leave(toId));
+            throw e;
+        }
+        if (!fromFound) {
+            complete(to, toId, () -> to.leave(toId));
+        }
+        return fromFound;
+    }
+
+    /**
+     * Запись измененных балансов всех шардов в БД одной транзакцией, затем перечитывание карт,
+     * баланс которых в памяти разошелся с журналом.
+     * При ошибке записи карты снова помечаются измененными и будут записаны следующим сбросом.
+     */
+    public synchronized void flush() {
+        writeDirty();
+        reloadStale();
+    }
+
+    private void writeDirty() {
+        List<Future<List<Object[]>>> snapshots = new ArrayList<>(shards.length);
+        for (CardShard shard : shards) {
+            snapshots.add(shard.submit(shard::drainDirty));
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (Future<List<Object[]>> snapshot : snapshots) {
+            rows.addAll(await(snapshot));
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int batchSize = Math.max(properties.getFlushBatchSize(), 1);
+                for (int from = 0; from < rows.size(); from += batchSize) {
+                    jdbcTemplate.batchUpdate(UPDATE_BALANCE, rows.subList(from, Math.min(from + batchSize, rows.size())));
+                }
+            });
+            log.debug("Записано балансов карт: {}", rows.size());
+        } catch (RuntimeException e) {
+            for (Object[] row : rows) {
+                Long id = (Long) row[2];
+                CardShard shard = shardOf(id);
+                shard.execute(() -> shard.markDirty(id));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Выгрузка из шардов карт без переводов дольше idle-eviction. Выполняется под той же блокировкой,
+     * что и сброс: карта, баланс которой снят для записи, не выгрузится до коммита этой записи.
+     */
+    public synchronized void evictIdle() {
+        long idleNanos = properties.getIdleEviction().toNanos();
+        List<Future<List<Long>>> results = new ArrayList<>(shards.length);
+        for (CardShard shard : shards) {
+            results.add(shard.submit(() -> shard.evictIdle(idleNanos)));
+        }
+        int evicted = 0;
+        for (Future<List<Long>> result : results) {
+            List<Long> ids = await(result);
+            ids.forEach(loaded::remove);
+            evicted += ids.size();
+        }
+        if (evicted > 0) {
+            log.debug("Выгружено карт из памяти шардов: {}", evicted);
+        }
+    }
+
+    /**
+     * Остановка: финальный сброс балансов, затем освобождение сессии для следующего движка.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(properties.getCommandTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            flush();
+            for (CardShard shard : shards) {
+                shard.shutdown();
+            }
+            for (CardShard shard : shards) {
+                shard.awaitTermination(properties.getCommandTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    /*
+        Карта уже не принимает переводы, а начатые с ней завершены, поэтому в БД её пара
+        (balance, ledger_applied_sum) согласована, и верный баланс считается по журналу так же,
+        как при восстановлении после остановки.
+     */
+    private void reloadStale() {
+        for (CardShard shard : shards) {
+            for (Long id : await(shard.submit(shard::readyToReload))) {
+                Object[] row = recovery.reloadCard(session.start(), id);
+                if (row == null) {
+                    continue;
+                }
+                long balance = Money.toMinor((BigDecimal) row[0]);
+                long applied = Money.toMinor((BigDecimal) row[1]);
+                shard.execute(() -> shard.reload(id, balance, applied));
+                log.info("Card id={} reloaded from card_transactions", id);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Card balances flush failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    private void evictIdleQuietly() {
+        try {
+            evictIdle();
+        } catch (Exception e) {
+            log.warn("Idle cards eviction failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Первая загрузка карты из БД - в потоке вызывающего, не шарда: поток шарда не должен
+     * ждать соединение из пула, которое держат ожидающие его же вызывающие.
+     * Команда install() встает в очередь шарда раньше любых команд, отправленных после неё.
+     */
+    private void ensureLoaded(CardShard shard, Long cardId) {
+        if (loaded.contains(cardId)) {
+            return;
+        }
+        cardRepository.findById(cardId).ifPresent(card -> {
+            shard.execute(() -> shard.install(card));
+            loaded.add(cardId);
+        });
+    }
+
+    private void commit(CardShard from, CardShard to, Long fromId, Long toId, long amount) {
+        complete(from, fromId, () -> from.debit(fromId, amount));
+        complete(to, toId, () -> to.credit(toId, amount));
+    }
+
+    /**
+     * Завершение перевода на шарде карты. Команда не должна потеряться: при заполненной очереди
+     * ждем без прерывания, а если она упала, карта помечается на перечитывание из БД.
+     * Остановленный шард (остановка сервиса) команду уже не примет: перевод есть в журнале,
+     * и баланс восстановит ShardedLedgerRecovery при следующем старте.
+     */
+    private void complete(CardShard shard, Long cardId, Runnable command) {
+        try {
+            shard.executeUninterruptibly(() -> {
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    log.error("Transfer completion failed, card id={} will be reloaded: {}", cardId, e.getMessage());
+                    shard.invalidate(cardId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.error("Card shard is stopped, transfer completion for card id={} is left to recovery on next start", cardId);
+        }
+    }
+
+    private static void reserve(TransferRequest request, CardShard shard, long amount) {
+        CardShard.CardState card = shard.card(request.getFromCardId());
+        checkCard(request, card);
+        if (card.available() < amount) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, "from card does not have enough balance");
+        }
+        shard.hold(card, amount);
+        shard.enlist(card);
+    }
+
+    private static void checkCard(TransferRequest request, CardShard.CardState card) {
+        if (card == null) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_NOT_FOUND, "card not found");
+        }
+        if (!card.userId.equals(request.getUserId())) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_OWNER, "user does not own cards");
+        }
+        if (card.status != CardStatus.ACTIVE) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_BAD_STATUS, "card status is not active");
+        }
+        if (card.stale) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_CONCURRENT_UPDATE, "card balance is being reloaded, try again");
+        }
+    }
+
+    private CardShard shardOf(Long cardId) {
+        return shards[Math.floorMod(Long.hashCode(cardId), shards.length)];
+    }
+
+    /**
+     * Выполнение команды в потоке шарда с ожиданием результата.
+     * Если шард не успел взять команду за command-timeout, она отменяется и клиент получает
+     * CARD_CONCURRENT_UPDATE; уже начатую команду дожидаемся, чтобы не потерять резерв.
+     */
+    private <T> T call(CardShard shard, Callable<T> command) {
+        Future<T> future;
+        try {
+            future = shard.submit(command);
+        } catch (RejectedExecutionException e) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_CONCURRENT_UPDATE, "card shard is unavailable");
+        }
+        try {
+            return future.get(properties.getCommandTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (future.cancel(false)) {
+                throw new CardOperationException(BankCardErrorCodes.CARD_CONCURRENT_UPDATE, "card shard is busy, try again");
+            }
+            return await(future);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CardOperationException(BankCardErrorCodes.CARD_CONCURRENT_UPDATE, "operation interrupted");
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CardOperationException(BankCardErrorCodes.CARD_CONCURRENT_UPDATE, "operation interrupted");
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException cause) {
+            return cause;
+        }
+        return new IllegalStateException(e.getCause());
+    }
+}
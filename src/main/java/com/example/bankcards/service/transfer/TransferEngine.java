@@ -0,0 +1,51 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Движок перевода средств между картами.
+ * Существование пользователя проверяет вызывающая сторона, движок отвечает только за
+ * корректное списание/зачисление. В случае ошибок выбрасывается CardOperationException.
+ * Движки, которые держат балансы в памяти, дополнительно получают уведомления об изменении
+ * карт в обход движка и отдают актуальный баланс.
+ */
+public interface TransferEngine {
+
+    /**
+     * Перевод средств.
+     * @param request Данные о переводе (владелец, откуда, куда и сколько).
+     */
+    void transfer(TransferRequest request);
+
+    /**
+     * Балансы хранятся в памяти движка и пишутся в БД с задержкой (write-behind).
+     * Пакетные переводы в этом случае также идут через движок.
+     */
+    default boolean isWriteBehind() {
+        return false;
+    }
+
+    /**
+     * Актуальный баланс карты, если он отличается от БД.
+     * @param cardId Идентификатор карты.
+     */
+    default Optional<BigDecimal> getBalance(Long cardId) {
+        return Optional.empty();
+    }
+
+    /**
+     * Статус карты изменён в БД (активация, блокировка).
+     */
+    default void statusChanged(Long cardId, CardStatus status) {
+    }
+
+    /**
+     * Карта удалена из БД.
+     */
+    default void cardRemoved(Long cardId) {
+    }
+}
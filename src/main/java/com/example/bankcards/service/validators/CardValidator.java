@@ -0,0 +1,49 @@
+package com.example.bankcards.service.validators;
+
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.util.CardUtil;
+import com.example.bankcards.util.Money;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * Валидатор запросов на создание карт (по одной и пакетом).
+ */
+@Component
+public class CardValidator {
+
+    /**
+     * Проверка номера (16 цифр, алгоритм Луна) и срока действия карты, без обращения к БД.
+     * @param request Данные новой карты.
+     */
+    public void validateRequest(CardCreateRequest request) {
+        if (!CardUtil.isCardNumberValid(request.getCardNumber()) || !CardUtil.isLuhnValid(request.getCardNumber())) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_NUMBER, "card number is invalid");
+        }
+        if (!CardUtil.isCardExpiryValid(request.getExpiryDate())) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_EXPIRATION, "card expiry is invalid");
+        }
+    }
+
+    /**
+     * Начальный баланс карты: не отрицательный, не больше 2 знаков после запятой.
+     * @return Баланс с 2 знаками после запятой.
+     */
+    public BigDecimal initialBalance(BigDecimal balance) {
+        if (balance == null) {
+            return Money.toBigDecimal(0);
+        }
+        try {
+            long minor = Money.toMinor(balance);
+            if (minor >= 0) {
+                return Money.toBigDecimal(minor);
+            }
+        } catch (ArithmeticException ignored) {
+            // больше 2 знаков после запятой или слишком большая сумма
+        }
+        throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_AMOUNT, "initial balance is invalid");
+    }
+}
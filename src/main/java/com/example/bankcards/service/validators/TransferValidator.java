@@ -0,0 +1,82 @@
+package com.example.bankcards.service.validators;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.util.Money;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * Валидатор запросов на перевод средств между картами.
+ */
+@Component
+public class TransferValidator {
+
+    public static final int MAX_AMOUNT_SCALE = Money.SCALE;
+
+
+    /**
+     * Проверка самого запроса, без обращения к БД.
+     * @param request Данные о переводе.
+     * @return Сумма перевода в копейках.
+     */
+    public long validateRequest(TransferRequest request) {
+        if (request.getFromCardId() == null || request.getToCardId() == null) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_NOT_FOUND, "card not found");
+        }
+        if (request.getFromCardId().equals(request.getToCardId())) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_CANNOT_BE_SAME, "cards cannot be the same");
+        }
+        BigDecimal amount = request.getAmount();
+        long minor;
+        try {
+            // больше 2 знаков после запятой или вне диапазона long - ArithmeticException
+            minor = amount == null ? 0 : Money.toMinor(amount);
+        } catch (ArithmeticException e) {
+            minor = 0;
+        }
+        if (minor <= 0) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_AMOUNT, "amount is invalid");
+        }
+        return minor;
+    }
+
+    /**
+     * Проверка возможности перевода между картами, в их текущем состоянии.
+     * @param request  Данные о переводе.
+     * @param fromCard Карта-источник (null, если не найдена).
+     * @param toCard   Карта-приемник (null, если не найдена).
+     */
+    public void validateCards(TransferRequest request, Card fromCard, Card toCard) {
+        validateCardsState(request, fromCard, toCard);
+        if (fromCard.getBalance().compareTo(request.getAmount()) < 0) {
+            throw notEnoughFunds();
+        }
+    }
+
+    /**
+     * Те же проверки, кроме остатка: когда баланс ведется отдельно от сущности (в копейках).
+     */
+    public void validateCardsState(TransferRequest request, Card fromCard, Card toCard) {
+        if (fromCard == null || toCard == null) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_NOT_FOUND, "card not found");
+        }
+        if (fromCard.getId().equals(toCard.getId())) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_CANNOT_BE_SAME, "cards cannot be the same");
+        }
+        if (!fromCard.getUserId().equals(request.getUserId()) || !toCard.getUserId().equals(request.getUserId())) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_INVALID_OWNER, "user does not own cards");
+        }
+        if (fromCard.getStatus() != CardStatus.ACTIVE || toCard.getStatus() != CardStatus.ACTIVE) {
+            throw new CardOperationException(BankCardErrorCodes.CARD_BAD_STATUS, "card status is not active");
+        }
+    }
+
+    public CardOperationException notEnoughFunds() {
+        return new CardOperationException(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, "from card does not have enough balance");
+    }
+}
@@ -1,38 +1,54 @@
 package com.example.bankcards.util;
 
-import lombok.extern.log4j.Log4j2;
-
 import java.time.YearMonth;
 
 
-@Log4j2
+/**
+ * Дата действия карты в БД - целое число yyyymm (202808).
+ * Для реалистичного диапазона дат (CACHE_FROM_YEAR..CACHE_TO_YEAR) объекты YearMonth
+ * созданы заранее и переиспользуются (YearMonth неизменяем): через конвертер проходит каждая загруженная карта.
+ */
 public class CardDateUtil {
 
+    private static final int CACHE_FROM_YEAR = 2000;
+    private static final int CACHE_TO_YEAR = 2099;
+
+    private static final YearMonth[] YEAR_MONTHS = new YearMonth[(CACHE_TO_YEAR - CACHE_FROM_YEAR + 1) * 12];
+
+    static {
+        for (int i = 0; i < YEAR_MONTHS.length; i++) {
+            YEAR_MONTHS[i] = YearMonth.of(CACHE_FROM_YEAR + i / 12, i % 12 + 1);
+        }
+    }
+
+
     /**
-     * Преобразует YearMonth в строку для хранения/сравнения в БД
+     * Преобразует YearMonth в число yyyymm для хранения/сравнения в БД.
+     * Порядок чисел совпадает с порядком дат, поэтому "не позже X" - диапазон по индексу.
      */
-    public static String toDbString(YearMonth yearMonth) {
+    public static Integer toDbInt(YearMonth yearMonth) {
         if (yearMonth == null)
             return null;
-        return String.format("%04d/%02d", yearMonth.getYear(), yearMonth.getMonthValue());
+        return yearMonth.getYear() * 100 + yearMonth.getMonthValue();
     }
 
     /**
-     * Преобразует строку из БД в YearMonth
-     * @param dbString Дата в строковом формате "2028/08"
+     * Преобразует число yyyymm из БД в YearMonth
+     * @param yyyymm Дата в виде числа 202808
+     * @return Дата, или null, если месяц вне 1..12.
      */
-    public static YearMonth toYearMonth(String dbString) {
-        if (dbString == null || !dbString.matches("^\\d{4}/(0[1-9]|1[0-2])$")) {
+    public static YearMonth fromDbInt(Integer yyyymm) {
+        if (yyyymm == null || yyyymm < 0) {
             return null;
         }
-        String[] parts = dbString.split("/");
-        try {
-            int year = Integer.parseInt(parts[0]);
-            int month = Integer.parseInt(parts[1]);
-            return YearMonth.of(year, month);
-        } catch (NumberFormatException e) {
-            log.error("Error parsing String('{}') to YearMonth", dbString);
+        int year = yyyymm / 100;
+        int month = yyyymm % 100;
+        if (month < 1 || month > 12 || year > 9999) {
             return null;
         }
+        if (year >= CACHE_FROM_YEAR && year <= CACHE_TO_YEAR) {
+            return YEAR_MONTHS[(year - CACHE_FROM_YEAR) * 12 + month - 1];
+        }
+        return YearMonth.of(year, month);
     }
-}
\ No newline at end of file
+}
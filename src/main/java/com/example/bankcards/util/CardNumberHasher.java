@@ -5,31 +5,111 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.Base64;
 
 /**
  * Шифрование строки (номера карты) по алгоритму HMAC-SHA256.
  * Выдает стабильный хэш, пригодный для поиска карты в БД по её номеру.
+ * Ключ готовится один раз, каждый поток работает со своей копией (clone) уже
+ * инициализированного Mac, поэтому на вызов нет ни поиска провайдера, ни инициализации ключа.
+ * Байты ключа и номера берутся в UTF-8 (для ASCII - то же, что и прежняя кодировка по умолчанию).
  */
 @Component
 public class CardNumberHasher {
 
     private static final String HMAC_ALGO = "HmacSHA256";
-    private static String hmacSecret;
+    private static final int DIGEST_LENGTH = 32;
+    private static final int BUFFER_LENGTH = 64;                    // с запасом для номера карты с разделителями
+
+    private static volatile Engine engine;
 
     public CardNumberHasher(@Value("${var.card.hmac.secret}") String secret) {
-        CardNumberHasher.hmacSecret = secret;
+        CardNumberHasher.engine = new Engine(secret);
     }
 
     public static String hmacSha256(String cardNumber) {
         try {
-            Mac mac = Mac.getInstance(HMAC_ALGO);
-            SecretKeySpec keySpec = new SecretKeySpec(hmacSecret.getBytes(), HMAC_ALGO);
-            mac.init(keySpec);
-            byte[] hash = mac.doFinal(cardNumber.getBytes());
-            return Base64.getEncoder().encodeToString(hash);
+            return Base64.getEncoder().encodeToString(engine.hmac(cardNumber));
         } catch (Exception e) {
             throw new IllegalStateException("Ошибка при вычислении HMAC-SHA256", e);
         }
     }
+
+    /**
+     * HMAC-SHA256 в исходном виде, без Base64 - так он хранится в БД (BINARY(32)).
+     * @return Новый массив из 32 байт.
+     */
+    public static byte[] hmacSha256Bytes(String cardNumber) {
+        try {
+            return engine.hmac(cardNumber).clone();                 // буфер потока переиспользуется
+        } catch (Exception e) {
+            throw new IllegalStateException("Ошибка при вычислении HMAC-SHA256", e);
+        }
+    }
+
+
+    /*
+        Mac с готовым ключом и рабочие буферы потока.
+     */
+    private static final class State {
+        private final Mac mac;
+        private final byte[] input = new byte[BUFFER_LENGTH];
+        private final byte[] digest = new byte[DIGEST_LENGTH];
+
+        private State(Mac mac) {
+            this.mac = mac;
+        }
+    }
+
+    private static final class Engine {
+        private final Mac prototype;
+        private final ThreadLocal<State> states = ThreadLocal.withInitial(this::newState);
+
+        private Engine(String secret) {
+            try {
+                prototype = Mac.getInstance(HMAC_ALGO);
+                prototype.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGO));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Ошибка инициализации HMAC-SHA256", e);
+            }
+        }
+
+        private State newState() {
+            try {
+                return new State((Mac) prototype.clone());
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException("Провайдер не поддерживает копирование Mac", e);
+            }
+        }
+
+        /*
+            Номер карты - ASCII: символы кладем прямо в буфер потока, без getBytes().
+            Прочие строки (не ASCII или слишком длинные) - через UTF-8.
+         */
+        private byte[] hmac(String value) throws GeneralSecurityException {
+            State state = states.get();
+            Mac mac = state.mac;
+            int length = value.length();
+            if (length <= BUFFER_LENGTH && fillAscii(value, state.input)) {
+                mac.update(state.input, 0, length);
+            } else {
+                mac.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            mac.doFinal(state.digest, 0);                           // doFinal сбрасывает Mac для следующего вызова
+            return state.digest;
+        }
+
+        private static boolean fillAscii(String value, byte[] buffer) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c > 0x7f) {
+                    return false;
+                }
+                buffer[i] = (byte) c;
+            }
+            return true;
+        }
+    }
 }
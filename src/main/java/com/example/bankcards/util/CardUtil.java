@@ -5,19 +5,41 @@ import java.time.YearMonth;
 
 /**
  * Утилиты для удобной работы с номерами карт.
+ * Номер разбирается за один проход по символам, без регулярных выражений:
+ * цифры считаются, всё остальное (пробелы, дефисы и т.п.) - разделители и пропускается.
+ * Номер валиден, если в нем ровно 16 цифр.
  */
 public class CardUtil {
 
+    private static final int CARD_DIGITS = 16;
+    private static final int NORMALIZED_LENGTH = 19;                // "1111 2222 3333 4444"
+    private static final String INVALID_MASK = "???? ???? ???? ????";
+
+    /*
+        Результат разбора номера упакован в long, чтобы не создавать объект на каждый вызов:
+        биты 0-15 - последние 4 цифры (по 4 бита на цифру), 16-23 - количество цифр (не больше 255),
+        бит 24 - выполнено ли условие алгоритма Луна.
+     */
+    private static final int COUNT_SHIFT = 16;
+    private static final long LUHN_BIT = 1L << 24;
+
+
     /**
      * Валидация номера карты.
      * @param cardNumber Номер карты, с любым разделением номеров (1111-2222..., 11112222..., etc.)
      */
     public static boolean isCardNumberValid(String cardNumber) {
-        String number = normalizeCardNumber(cardNumber == null ? "" : cardNumber.trim());
-        if (number.length() != 19) {
-            return false;
-        }
-        return number.matches("^\\d{4} \\d{4} \\d{4} \\d{4}$");
+        return digits(scan(cardNumber)) == CARD_DIGITS;
+    }
+
+    /**
+     * Проверка контрольной цифры номера карты по алгоритму Луна.
+     * @param cardNumber Номер карты, с любым разделением номеров.
+     * @return true, если номер валиден и контрольная цифра сходится.
+     */
+    public static boolean isLuhnValid(String cardNumber) {
+        long scan = scan(cardNumber);
+        return digits(scan) == CARD_DIGITS && (scan & LUHN_BIT) != 0;
     }
 
     /**
@@ -31,19 +53,32 @@ public class CardUtil {
     /**
      * Нормализация формата карты.
      * @param cardNumber Номер карты, с любым разделением номеров (1111-2222..., 11112222..., etc.)
-     * @return Номер карты, вида "1111 2222 3333 4444"
+     * @return Номер карты, вида "1111 2222 3333 4444", или пустая строка, если номер не валиден.
      */
     public static String normalizeCardNumber(String cardNumber) {
-        if (cardNumber == null || cardNumber.length() < 16) {
+        if (cardNumber == null || cardNumber.length() < CARD_DIGITS) {
             return "";
         }
-        // убираем все лишние символы и пробелы
-        String card = cardNumber.replaceAll("\\D", "");
-        if (card.length() != 16) {
-            return "";
+        if (isNormalized(cardNumber)) {
+            return cardNumber;                                      // уже в нужном виде - без копирования
         }
-        // разбиваем по 4 цифры с пробелом
-        return card.replaceAll("(.{4})(?!$)", "$1 ");
+        char[] out = new char[NORMALIZED_LENGTH];
+        int count = 0;
+        for (int i = 0; i < cardNumber.length(); i++) {
+            char c = cardNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                continue;
+            }
+            if (count == CARD_DIGITS) {
+                return "";
+            }
+            out[count + count / 4] = c;
+            if (count % 4 == 3 && count < CARD_DIGITS - 1) {
+                out[count + count / 4 + 1] = ' ';
+            }
+            count++;
+        }
+        return count == CARD_DIGITS ? new String(out) : "";
     }
 
     /**
@@ -52,12 +87,120 @@ public class CardUtil {
      * @return Номер карты в виде "**** **** **** NNNN", или "???? ???? ???? ????" в случае не валидного номера карты.
      */
     public static String getMaskedNumber(String cardNumber) {
-        String number = CardUtil.normalizeCardNumber(cardNumber);
-        if (CardUtil.isCardNumberValid(number)) {
-            return "**** **** **** " + number.substring(number.length() - 4);
+        long scan = scan(cardNumber);
+        if (digits(scan) != CARD_DIGITS) {
+            return INVALID_MASK;
+        }
+        char[] out = {'*', '*', '*', '*', ' ', '*', '*', '*', '*', ' ', '*', '*', '*', '*', ' ', '0', '0', '0', '0'};
+        putLast4(scan, out, NORMALIZED_LENGTH - 4);
+        return new String(out);
+    }
+
+    /**
+     * Последние 4 цифры номера карты.
+     * @param cardNumber Номер карты в любом формате.
+     * @return 4 цифры, или null, если номер не валиден.
+     */
+    public static String getLast4(String cardNumber) {
+        long scan = scan(cardNumber);
+        if (digits(scan) != CARD_DIGITS) {
+            return null;
+        }
+        char[] out = new char[4];
+        putLast4(scan, out, 0);
+        return new String(out);
+    }
+
+    /**
+     * Нормализация последних цифр номера карты, введенных пользователем.
+     * @param last4 Последние цифры в любом формате ("4444", "*4444", "**** 4444").
+     * @return 4 цифры, или null, если цифр не 4.
+     */
+    public static String normalizeLast4(String last4) {
+        long scan = scan(last4);
+        if (digits(scan) != 4) {
+            return null;
+        }
+        if (last4.length() == 4) {
+            return last4;
+        }
+        char[] out = new char[4];
+        putLast4(scan, out, 0);
+        return new String(out);
+    }
+
+    /**
+     * Маска номера карты по его последним 4 цифрам, без расшифровки самого номера.
+     * @param last4 Последние 4 цифры номера.
+     * @return Номер карты в виде "**** **** **** NNNN", или "???? ???? ???? ????", если цифры неизвестны.
+     */
+    public static String getMaskedLast4(String last4) {
+        if (last4 == null || last4.length() != 4) {
+            return INVALID_MASK;
+        }
+        return "**** **** **** " + last4;
+    }
+
+
+    /*
+        Один проход по строке: количество цифр, последние 4 цифры и контрольная сумма Луна.
+        Сумма Луна считается сразу в двух вариантах (удваивается каждая чётная или каждая нечётная
+        цифра слева), т.к. какие цифры удваивать (каждую вторую справа) станет ясно только в конце.
+     */
+    private static long scan(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int count = 0;
+        int last4 = 0;
+        int sumEven = 0;                                            // удвоены цифры с чётным индексом
+        int sumOdd = 0;                                             // удвоены цифры с нечётным индексом
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                continue;
+            }
+            int digit = c - '0';
+            int doubled = digit < 5 ? digit * 2 : digit * 2 - 9;
+            if ((count & 1) == 0) {
+                sumEven += doubled;
+                sumOdd += digit;
+            } else {
+                sumEven += digit;
+                sumOdd += doubled;
+            }
+            last4 = ((last4 << 4) | digit) & 0xFFFF;
+            if (count < 0xFF) {
+                count++;
+            }
         }
-        return "???? ???? ???? ????";
+        boolean luhn = count > 0 && ((count & 1) == 0 ? sumEven : sumOdd) % 10 == 0;
+        return last4 | ((long) count << COUNT_SHIFT) | (luhn ? LUHN_BIT : 0);
+    }
+
+    private static int digits(long scan) {
+        return (int) (scan >>> COUNT_SHIFT) & 0xFF;
     }
 
+    private static void putLast4(long scan, char[] out, int offset) {
+        for (int i = 0; i < 4; i++) {
+            out[offset + i] = (char) ('0' + ((scan >>> ((3 - i) * 4)) & 0xF));
+        }
+    }
 
+    /*
+        Строка уже вида "1111 2222 3333 4444".
+     */
+    private static boolean isNormalized(String value) {
+        if (value.length() != NORMALIZED_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < NORMALIZED_LENGTH; i++) {
+            char c = value.charAt(i);
+            if (i % 5 == 4 ? c != ' ' : c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
 }
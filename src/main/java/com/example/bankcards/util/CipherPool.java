@@ -0,0 +1,52 @@
+package com.example.bankcards.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Ограниченный пул объектов Cipher одного алгоритма.
+ * Cipher.getInstance() - поиск провайдера и создание объекта, делать его на каждую строку дорого,
+ * а сам Cipher не потокобезопасен. ThreadLocal не подходит для виртуальных потоков
+ * (их может быть сколько угодно), поэтому объекты берутся из общего пула:
+ * если пул пуст - создается новый, если полон - возвращаемый просто отбрасывается.
+ * Ожидания нет, так что пул не ограничивает параллелизм, а только число хранимых объектов.
+ * Инициализацию (ключ, IV) выполняет вызывающая сторона при каждом использовании.
+ */
+public final class CipherPool {
+
+    private final String algorithm;
+    private final ArrayBlockingQueue<Cipher> pool;
+
+
+    public CipherPool(String algorithm, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.algorithm = algorithm;
+        this.pool = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Берет Cipher из пула (или создает новый). Вернуть - через release().
+     */
+    public Cipher borrow() throws NoSuchPaddingException, NoSuchAlgorithmException {
+        Cipher cipher = pool.poll();
+        return cipher != null ? cipher : Cipher.getInstance(algorithm);
+    }
+
+    /**
+     * Возвращает Cipher в пул. После ошибки шифрования объект возвращать не следует.
+     */
+    public void release(Cipher cipher) {
+        pool.offer(cipher);
+    }
+
+    /**
+     * Количество свободных объектов в пуле.
+     */
+    public int available() {
+        return pool.size();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.bankcards.util;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Именованная блокировка MySQL (GET_LOCK) для владения задачей между инстанциями сервиса.
+ * GET_LOCK действует в пределах соединения, поэтому блокировка держит отдельное соединение из пула
+ * (а не берется через JdbcTemplate, который возвращает соединение в пул после каждого запроса).
+ * Снимается close() или вместе с соединением, если процесс владельца упал.
+ */
+@Log4j2
+public final class DbNamedLock implements AutoCloseable {
+
+    // длина имени блокировки в MySQL
+    public static final int MAX_NAME = 64;
+
+    private static final String GET_LOCK_SQL = "SELECT GET_LOCK(?, ?)";
+    private static final String RELEASE_LOCK_SQL = "SELECT RELEASE_LOCK(?)";
+
+    private final String name;
+    private final SingleConnectionDataSource connection;
+
+
+    private DbNamedLock(String name, SingleConnectionDataSource connection) {
+        this.name = name;
+        this.connection = connection;
+    }
+
+    /**
+     * Захват блокировки.
+     * @param dataSource     Пул соединений; одно соединение занято, пока блокировка не снята.
+     * @param name           Имя блокировки, не длиннее MAX_NAME.
+     * @param timeoutSeconds Сколько ждать, если блокировку держит другое соединение.
+     * @return Блокировка или null, если её не отпустили за timeoutSeconds.
+     */
+    public static DbNamedLock tryAcquire(DataSource dataSource, String name, int timeoutSeconds) {
+        SingleConnectionDataSource connection;
+        try {
+            connection = new SingleConnectionDataSource(dataSource.getConnection(), false);
+        } catch (SQLException e) {
+            throw new CannotGetJdbcConnectionException("Failed to obtain connection for lock " + name, e);
+        }
+        try {
+            Integer locked = new JdbcTemplate(connection).queryForObject(GET_LOCK_SQL, Integer.class, name, timeoutSeconds);
+            if (locked != null && locked == 1) {
+                return new DbNamedLock(name, connection);
+            }
+        } catch (RuntimeException e) {
+            connection.destroy();
+            throw e;
+        }
+        connection.destroy();
+        return null;
+    }
+
+    @Override
+    public void close() {
+        try {
+            new JdbcTemplate(connection).queryForObject(RELEASE_LOCK_SQL, Integer.class, name);
+        } catch (RuntimeException e) {
+            log.warn("Lock {} release failed: {}", name, e.getMessage());
+        } finally {
+            connection.destroy();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.bankcards.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежная сумма как целое число минимальных единиц (копеек, центов), 2 знака после запятой.
+ * Сравнение и арифметика над long не создают объектов, в отличие от BigDecimal, поэтому
+ * на горячем пути переводов балансы держим в копейках, а в BigDecimal переводим только
+ * на границе (DTO, сущности, JDBC). Переполнение - ArithmeticException, а не тихий перенос.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+
+    private Money() {
+    }
+
+    /**
+     * Сумма в копейках, без потери точности.
+     * @throws ArithmeticException если знаков после запятой больше 2 или сумма не помещается в long.
+     */
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+}
@@ -1,24 +1,42 @@
 package com.example.bankcards;
 
+import com.example.bankcards.config.CardHmacBloomProperties;
 import com.example.bankcards.dto.CardCreateRequest;
 import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.security.OwnerResolver;
 import com.example.bankcards.service.CardServiceImpl;
 import com.example.bankcards.service.UserService;
+import com.example.bankcards.service.cache.CardHmacBloomFilter;
+import com.example.bankcards.service.idempotency.IdempotencyStore;
+import com.example.bankcards.service.issuance.BulkCardIssuer;
+import com.example.bankcards.service.issuance.CardFileImporter;
+import com.example.bankcards.service.ledger.LedgerWriter;
 import com.example.bankcards.service.mappers.CardMapper;
+import com.example.bankcards.service.paging.PageCounter;
+import com.example.bankcards.service.retry.RetryExecutor;
+import com.example.bankcards.service.transfer.BatchTransferEngine;
+import com.example.bankcards.service.transfer.TransferEngine;
+import com.example.bankcards.service.validators.CardValidator;
 import com.example.bankcards.util.CardNumberHasher;
 import com.example.bankcards.util.CardUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.YearMonth;
 import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
 
 @ExtendWith(MockitoExtension.class)
 public abstract class BaseCardServiceTest {
@@ -28,6 +46,29 @@ public abstract class BaseCardServiceTest {
     protected UserService userService;
     @Mock
     protected CardMapper cardMapper;
+    @Mock
+    protected TransferEngine transferEngine;
+    @Mock
+    protected BatchTransferEngine batchTransferEngine;
+    @Mock
+    protected RetryExecutor retryExecutor;
+    @Mock
+    protected IdempotencyStore idempotencyStore;
+    @Mock
+    protected LedgerWriter ledgerWriter;
+    @Mock
+    protected PageCounter pageCounter;
+    @Mock
+    protected BulkCardIssuer bulkCardIssuer;
+    @Mock
+    protected CardFileImporter cardFileImporter;
+    @Spy
+    protected CardValidator cardValidator = new CardValidator();
+    @Spy
+    protected OwnerResolver ownerResolver = new OwnerResolver();
+    // фильтр не построен: наличие номера всегда проверяется в БД
+    @Spy
+    protected CardHmacBloomFilter cardHmacFilter = new CardHmacBloomFilter(null, new CardHmacBloomProperties());
 
     @InjectMocks
     protected CardServiceImpl cardService;
@@ -36,7 +77,7 @@ public abstract class BaseCardServiceTest {
     protected UUID userId;
     protected Long cardId;
     protected String cardNumber;
-    protected String cardNumberHmac;
+    protected byte[] cardNumberHmac;
     protected String cardEncodeNumber;
     protected YearMonth expiryDate;
     protected BigDecimal balance;
@@ -55,7 +96,7 @@ public abstract class BaseCardServiceTest {
         userId = UUID.randomUUID();
         cardId = 1L;
         cardNumber = "1111222233334444";
-        cardNumberHmac = CardNumberHasher.hmacSha256(CardUtil.normalizeCardNumber(cardNumber));
+        cardNumberHmac = CardNumberHasher.hmacSha256Bytes(CardUtil.normalizeCardNumber(cardNumber));
         cardEncodeNumber = "**** **** **** 4444";
         expiryDate = YearMonth.now().plusYears(3);
         balance = BigDecimal.valueOf(100);
@@ -65,6 +106,9 @@ public abstract class BaseCardServiceTest {
         cardResponse = new CardResponse(cardId, cardEncodeNumber, expiryDate, CardStatus.ACTIVE, balance, userId);
 
         card = new Card(cardId, cardNumber, cardNumberHmac, expiryDate, CardStatus.ACTIVE, balance, userId);
+
+        // повтор операций прозрачен для тестов: просто выполняем тело
+        lenient().when(retryExecutor.execute(anyString(), any())).thenAnswer(i -> ((Supplier<?>) i.getArgument(1)).get());
     }
 
 }
@@ -0,0 +1,90 @@
+package com.example.bankcards.benchmarks;
+
+import com.example.bankcards.config.CardNumberEncryptor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шифрование/расшифровка номера карты: прежняя реализация (Cipher.getInstance() на каждый вызов,
+ * промежуточный ByteBuffer и копии массивов) против CardNumberEncryptor с пулом Cipher.
+ * Запуск: mvn test-compile, затем main() этого класса
+ * или java -cp target/test-classes:<classpath> org.openjdk.jmh.Main CardNumberEncryptorBenchmark.
+ * Несколько потоков: -t 8; аллокации: -prof gc.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardNumberEncryptorBenchmark {
+
+    private static final String SECRET = "CS3mf6u9VSWwN+JoOGj3Vlv5jqQUfJppxWVRbO+er4g=";
+    private static final String NUMBER = "1111 2222 3333 4444";
+
+    private CardNumberEncryptor encryptor;
+    private SecretKeySpec key;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private String encrypted;
+
+
+    @Setup
+    public void setup() {
+        encryptor = new CardNumberEncryptor(SECRET);
+        key = new SecretKeySpec(Base64.getDecoder().decode(SECRET), "AES");
+        encrypted = encryptor.convertToDatabaseColumn(NUMBER);
+    }
+
+    @Benchmark
+    public String encryptLegacy() throws Exception {
+        byte[] iv = new byte[12];
+        secureRandom.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        byte[] ciphertext = cipher.doFinal(NUMBER.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer byteBuffer = ByteBuffer.allocate(iv.length + ciphertext.length);
+        byteBuffer.put(iv);
+        byteBuffer.put(ciphertext);
+        return Base64.getEncoder().encodeToString(byteBuffer.array());
+    }
+
+    @Benchmark
+    public String encryptPooled() {
+        return encryptor.convertToDatabaseColumn(NUMBER);
+    }
+
+    @Benchmark
+    public String decryptLegacy() throws Exception {
+        byte[] decoded = Base64.getDecoder().decode(encrypted);
+        ByteBuffer byteBuffer = ByteBuffer.wrap(decoded);
+        byte[] iv = new byte[12];
+        byteBuffer.get(iv);
+        byte[] ciphertext = new byte[byteBuffer.remaining()];
+        byteBuffer.get(ciphertext);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        return new String(cipher.doFinal(ciphertext), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String decryptPooled() {
+        return encryptor.convertToEntityAttribute(encrypted);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardNumberEncryptorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
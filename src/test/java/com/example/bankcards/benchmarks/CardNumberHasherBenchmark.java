@@ -0,0 +1,57 @@
+package com.example.bankcards.benchmarks;
+
+import com.example.bankcards.util.CardNumberHasher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HMAC-SHA256 номера карты: прежняя реализация (Mac.getInstance() и SecretKeySpec на каждый вызов)
+ * против CardNumberHasher с готовым ключом и копией Mac на поток.
+ * Запуск: mvn test-compile, затем main() этого класса
+ * или java -cp target/test-classes:<classpath> org.openjdk.jmh.Main CardNumberHasherBenchmark.
+ * Несколько потоков: -t 8; аллокации: -prof gc.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardNumberHasherBenchmark {
+
+    private static final String SECRET = "Nn2lEsSSml1Rnp9ctqH1dz6LgjsCC7nxmCqB1TXghx0=";
+    private static final String NUMBER = "1111 2222 3333 4444";
+
+
+    @Setup
+    public void setup() {
+        new CardNumberHasher(SECRET);
+    }
+
+    @Benchmark
+    public String hmacLegacy() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        SecretKeySpec keySpec = new SecretKeySpec(SECRET.getBytes(), "HmacSHA256");
+        mac.init(keySpec);
+        byte[] hash = mac.doFinal(NUMBER.getBytes());
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    @Benchmark
+    public String hmacReused() {
+        return CardNumberHasher.hmacSha256(NUMBER);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardNumberHasherBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
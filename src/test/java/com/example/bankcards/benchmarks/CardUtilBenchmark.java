@@ -0,0 +1,104 @@
+package com.example.bankcards.benchmarks;
+
+import com.example.bankcards.util.CardUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор номера карты: прежняя реализация CardUtil (replaceAll и matches на каждый вызов)
+ * против однопроходного разбора без регулярных выражений.
+ * Номера - в разных форматах: с дефисами, слитно и уже нормализованный.
+ * Запуск: mvn test-compile, затем main() этого класса
+ * или java -cp target/test-classes:<classpath> org.openjdk.jmh.Main CardUtilBenchmark.
+ * Аллокации: -prof gc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardUtilBenchmark {
+
+    @Param({"1111-2222-3333-4444", "1111222233334444", "1111 2222 3333 4444"})
+    public String number;
+
+
+    @Benchmark
+    public boolean isValidLegacy() {
+        return Legacy.isCardNumberValid(number);
+    }
+
+    @Benchmark
+    public boolean isValidScanner() {
+        return CardUtil.isCardNumberValid(number);
+    }
+
+    @Benchmark
+    public boolean isLuhnValidScanner() {
+        return CardUtil.isLuhnValid(number);
+    }
+
+    @Benchmark
+    public String normalizeLegacy() {
+        return Legacy.normalizeCardNumber(number);
+    }
+
+    @Benchmark
+    public String normalizeScanner() {
+        return CardUtil.normalizeCardNumber(number);
+    }
+
+    @Benchmark
+    public String maskLegacy() {
+        return Legacy.getMaskedNumber(number);
+    }
+
+    @Benchmark
+    public String maskScanner() {
+        return CardUtil.getMaskedNumber(number);
+    }
+
+
+    /*
+        Прежняя реализация CardUtil.
+     */
+    static class Legacy {
+        static boolean isCardNumberValid(String cardNumber) {
+            String number = normalizeCardNumber(cardNumber == null ? "" : cardNumber.trim());
+            if (number.length() != 19) {
+                return false;
+            }
+            return number.matches("^\\d{4} \\d{4} \\d{4} \\d{4}$");
+        }
+
+        static String normalizeCardNumber(String cardNumber) {
+            if (cardNumber == null || cardNumber.length() < 16) {
+                return "";
+            }
+            String card = cardNumber.replaceAll("\\D", "");
+            if (card.length() != 16) {
+                return "";
+            }
+            return card.replaceAll("(.{4})(?!$)", "$1 ");
+        }
+
+        static String getMaskedNumber(String cardNumber) {
+            String number = normalizeCardNumber(cardNumber);
+            if (isCardNumberValid(number)) {
+                return "**** **** **** " + number.substring(number.length() - 4);
+            }
+            return "???? ???? ???? ????";
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardUtilBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.bankcards.benchmarks;
+
+import com.example.bankcards.util.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение перевода (проверка остатка, списание, зачисление) на BigDecimal и на копейках (long).
+ * Запуск: собрать тесты (mvn test-compile) и выполнить main() этого класса,
+ * либо java -cp target/test-classes:<classpath> org.openjdk.jmh.Main MoneyBenchmark.
+ * Аллокации смотреть с профилировщиком gc: -prof gc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+
+    private static final int TRANSFERS = 1024;
+
+    private BigDecimal[] amounts;
+    private long[] minorAmounts;
+
+    // переводы идут попеременно A -> B и B -> A, чтобы остаток не кончался
+    private BigDecimal balanceA;
+    private BigDecimal balanceB;
+    private long minorA;
+    private long minorB;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        amounts = new BigDecimal[TRANSFERS];
+        minorAmounts = new long[TRANSFERS];
+        for (int i = 0; i < TRANSFERS; i++) {
+            amounts[i] = BigDecimal.valueOf(ThreadLocalRandom.current().nextLong(1, 100_000), 2);
+            minorAmounts[i] = Money.toMinor(amounts[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetBalances() {
+        balanceA = new BigDecimal("1000000.00");
+        balanceB = new BigDecimal("1000000.00");
+        minorA = Money.toMinor(balanceA);
+        minorB = Money.toMinor(balanceB);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRANSFERS)
+    public void bigDecimal(Blackhole bh) {
+        for (int i = 0; i < TRANSFERS; i++) {
+            BigDecimal amount = amounts[i];
+            if ((i & 1) == 0) {
+                if (balanceA.compareTo(amount) >= 0) {
+                    balanceA = balanceA.subtract(amount);
+                    balanceB = balanceB.add(amount);
+                }
+            } else if (balanceB.compareTo(amount) >= 0) {
+                balanceB = balanceB.subtract(amount);
+                balanceA = balanceA.add(amount);
+            }
+        }
+        bh.consume(balanceA);
+        bh.consume(balanceB);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRANSFERS)
+    public void minorUnits(Blackhole bh) {
+        for (int i = 0; i < TRANSFERS; i++) {
+            long amount = minorAmounts[i];
+            if ((i & 1) == 0) {
+                if (minorA >= amount) {
+                    minorA = Money.subtract(minorA, amount);
+                    minorB = Money.add(minorB, amount);
+                }
+            } else if (minorB >= amount) {
+                minorB = Money.subtract(minorB, amount);
+                minorA = Money.add(minorA, amount);
+            }
+        }
+        bh.consume(minorA);
+        bh.consume(minorB);
+    }
+
+    /*
+        С переводом суммы запроса на границе (как в движке: BigDecimal из DTO -> копейки).
+     */
+    @Benchmark
+    @OperationsPerInvocation(TRANSFERS)
+    public void minorUnitsWithConversion(Blackhole bh) {
+        for (int i = 0; i < TRANSFERS; i++) {
+            long amount = Money.toMinor(amounts[i]);
+            if ((i & 1) == 0) {
+                if (minorA >= amount) {
+                    minorA = Money.subtract(minorA, amount);
+                    minorB = Money.add(minorB, amount);
+                }
+            } else if (minorB >= amount) {
+                minorB = Money.subtract(minorB, amount);
+                minorA = Money.add(minorA, amount);
+            }
+        }
+        bh.consume(minorA);
+        bh.consume(minorB);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MoneyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.bankcards.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CardNumberBinaryEncryptorTest {
+
+    private static final String SECRET = "CS3mf6u9VSWwN+JoOGj3Vlv5jqQUfJppxWVRbO+er4g=";
+    private static final String SECRET_2 = "Nn2lEsSSml1Rnp9ctqH1dz6LgjsCC7nxmCqB1TXghx0=";
+
+    private final CardNumberEncryptor textEncryptor = new CardNumberEncryptor(SECRET, 4);
+    private final CardNumberBinaryEncryptor encryptor = new CardNumberBinaryEncryptor(textEncryptor);
+
+    /*
+        Шифрование и расшифровка: [2]["k1"][IV][ciphertext + tag], без Base64.
+     */
+    @Test
+    void roundTrip() {
+        String number = "1111 2222 3333 4444";
+        byte[] stored = encryptor.convertToDatabaseColumn(number);
+
+        assertEquals(2, stored[0]);
+        assertEquals("k1", new String(stored, 1, 2, StandardCharsets.US_ASCII));
+        assertEquals(1 + 2 + 12 + number.length() + 16, stored.length);
+        assertEquals(number, encryptor.convertToEntityAttribute(stored));
+        assertFalse(Arrays.equals(stored, encryptor.convertToDatabaseColumn(number)));
+        assertNull(encryptor.convertToDatabaseColumn(null));
+        assertNull(encryptor.convertToEntityAttribute(null));
+    }
+
+    /*
+        Данные текстового формата, переведенные в бинарный так же, как это делает миграция
+        (Base64 раскодирован, перед ним длина и идентификатор ключа), расшифровываются.
+     */
+    @Test
+    void readsMigratedTextFormat() {
+        String number = "5555 6666 7777 8888";
+        String text = textEncryptor.convertToDatabaseColumn(number);
+        byte[] payload = Base64.getDecoder().decode(text.substring(3));
+
+        byte[] migrated = new byte[3 + payload.length];
+        migrated[0] = 2;
+        migrated[1] = 'k';
+        migrated[2] = '1';
+        System.arraycopy(payload, 0, migrated, 3, payload.length);
+        assertEquals(number, encryptor.convertToEntityAttribute(migrated));
+
+        // старый формат без идентификатора ключа
+        byte[] legacy = new byte[1 + payload.length];
+        System.arraycopy(payload, 0, legacy, 1, payload.length);
+        assertNull(encryptor.keyId(legacy));
+        assertEquals(number, encryptor.convertToEntityAttribute(legacy));
+    }
+
+    /*
+        Смена ключа: перешифровка только того, что зашифровано не активным ключом.
+     */
+    @Test
+    void reencrypt() {
+        String number = "1111 2222 3333 4444";
+        byte[] old = encryptor.convertToDatabaseColumn(number);
+        CardNumberBinaryEncryptor rotated = new CardNumberBinaryEncryptor(
+                new CardNumberEncryptor(Map.of("k1", SECRET, "k2", SECRET_2), "k2", SECRET, 4));
+
+        byte[] reencrypted = rotated.reencrypt(old);
+        assertEquals("k2", rotated.keyId(reencrypted));
+        assertEquals(number, rotated.convertToEntityAttribute(reencrypted));
+        assertNull(rotated.reencrypt(reencrypted));
+    }
+
+    /*
+        Поврежденные данные и неизвестный ключ - ошибка.
+     */
+    @Test
+    void invalidData() {
+        byte[] stored = encryptor.convertToDatabaseColumn("1111 2222 3333 4444");
+        stored[stored.length - 1] ^= 1;
+
+        assertThrows(IllegalStateException.class, () -> encryptor.convertToEntityAttribute(stored));
+        assertThrows(IllegalStateException.class, () -> encryptor.convertToEntityAttribute(new byte[0]));
+        assertThrows(IllegalStateException.class, () -> encryptor.convertToEntityAttribute(new byte[]{5, 'k'}));
+        byte[] unknown = encryptor.convertToDatabaseColumn("1111 2222 3333 4444");
+        unknown[2] = '9';
+        assertThrows(IllegalStateException.class, () -> encryptor.convertToEntityAttribute(unknown));
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.bankcards.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CardNumberEncryptorTest {
+
+    private static final String SECRET = "CS3mf6u9VSWwN+JoOGj3Vlv5jqQUfJppxWVRbO+er4g=";
+    private static final String SECRET_2 = "Nn2lEsSSml1Rnp9ctqH1dz6LgjsCC7nxmCqB1TXghx0=";
+
+    CardNumberEncryptor encryptor;
+
+    @BeforeEach
+    void setup() {
+        encryptor = new CardNumberEncryptor(SECRET, 4);
+    }
+
+    /*
+        Шифрование и расшифровка, случайный IV - разный шифротекст.
+     */
+    @Test
+    void roundTrip() {
+        String number = "1111 2222 3333 4444";
+        String first = encryptor.convertToDatabaseColumn(number);
+        String second = encryptor.convertToDatabaseColumn(number);
+
+        assertNotEquals(first, second);
+        assertEquals(number, encryptor.convertToEntityAttribute(first));
+        assertEquals(number, encryptor.convertToEntityAttribute(second));
+        assertNull(encryptor.convertToDatabaseColumn(null));
+        assertNull(encryptor.convertToEntityAttribute(null));
+    }
+
+    /*
+        Старый формат (IV + ciphertext через ByteBuffer, без идентификатора ключа) расшифровывается,
+        а новые данные - тот же формат с префиксом ключа "k1:".
+     */
+    @Test
+    void compatibleWithStoredFormat() throws Exception {
+        String number = "5555 6666 7777 8888";
+        SecretKeySpec key = new SecretKeySpec(Base64.getDecoder().decode(SECRET), "AES");
+        byte[] iv = new byte[12];
+        iv[0] = 42;
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        byte[] ciphertext = cipher.doFinal(number.getBytes(StandardCharsets.UTF_8));
+        String stored = Base64.getEncoder().encodeToString(
+                ByteBuffer.allocate(iv.length + ciphertext.length).put(iv).put(ciphertext).array());
+
+        assertEquals(number, encryptor.convertToEntityAttribute(stored));
+
+        String stored2 = encryptor.convertToDatabaseColumn(number);
+        assertTrue(stored2.startsWith("k1:"));
+        byte[] encrypted = Base64.getDecoder().decode(stored2.substring(3));
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, encrypted, 0, 12));
+        assertEquals(number, new String(cipher.doFinal(encrypted, 12, encrypted.length - 12), StandardCharsets.UTF_8));
+    }
+
+    /*
+        Поврежденные данные - ошибка, а следующая операция работает (сбойный Cipher в пул не возвращается).
+     */
+    @Test
+    void tamperedData() {
+        byte[] encrypted = Base64.getDecoder().decode(encryptor.convertToDatabaseColumn("1111 2222 3333 4444").substring(3));
+        encrypted[encrypted.length - 1] ^= 1;
+        String tampered = "k1:" + Base64.getEncoder().encodeToString(encrypted);
+
+        assertThrows(IllegalStateException.class, () -> encryptor.convertToEntityAttribute(tampered));
+        assertThrows(IllegalStateException.class, () -> encryptor.convertToEntityAttribute("AAAA"));
+        assertEquals("1111 2222 3333 4444", encryptor.convertToEntityAttribute(encryptor.convertToDatabaseColumn("1111 2222 3333 4444")));
+    }
+
+    /*
+        Смена ключа: новые данные шифруются новым ключом, старые читаются прежним и перешифровываются.
+     */
+    @Test
+    void keyRotation() {
+        String number = "1111 2222 3333 4444";
+        String oldData = encryptor.convertToDatabaseColumn(number);
+        CardNumberEncryptor rotated = new CardNumberEncryptor(Map.of("k1", SECRET, "k2", SECRET_2), "k2", SECRET, 4);
+
+        String newData = rotated.convertToDatabaseColumn(number);
+        assertEquals("k2", rotated.keyId(newData));
+        assertEquals(number, rotated.convertToEntityAttribute(oldData));
+        assertNull(rotated.reencrypt(newData));
+
+        String reencrypted = rotated.reencrypt(oldData);
+        assertEquals("k2", rotated.keyId(reencrypted));
+        assertEquals(number, rotated.convertToEntityAttribute(reencrypted));
+        // старый ключ убран - новые данные читаются, k1 уже нет
+        CardNumberEncryptor onlyNew = new CardNumberEncryptor(Map.of("k2", SECRET_2), "k2", null, 4);
+        assertEquals(number, onlyNew.convertToEntityAttribute(reencrypted));
+        assertThrows(IllegalStateException.class, () -> onlyNew.convertToEntityAttribute(oldData));
+    }
+
+    /*
+        Некорректная конфигурация ключей.
+     */
+    @Test
+    void invalidKeys() {
+        assertThrows(IllegalArgumentException.class, () -> new CardNumberEncryptor(Map.of("k1", SECRET), "k2", null, 4));
+        assertThrows(IllegalArgumentException.class, () -> new CardNumberEncryptor(Map.of("k:1", SECRET), "k:1", null, 4));
+        assertThrows(IllegalArgumentException.class, () -> new CardNumberEncryptor(Map.of("k1", "AAAA"), "k1", null, 4));
+    }
+
+    /*
+        Параллельная работа: потоков больше емкости пула, результаты корректны.
+     */
+    @Test
+    void concurrentUse() throws Exception {
+        Set<String> ciphertexts = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Boolean>> results = IntStream.range(0, 1000)
+                    .mapToObj(i -> executor.submit(() -> {
+                        String number = String.format("1111 2222 3333 %04d", i);
+                        String encrypted = encryptor.convertToDatabaseColumn(number);
+                        ciphertexts.add(encrypted);
+                        return number.equals(encryptor.convertToEntityAttribute(encrypted));
+                    }))
+                    .toList();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1000, ciphertexts.size());
+    }
+}
@@ -246,7 +246,7 @@ public class CardControllerAdminTest extends BaseCardControllerTest {
             PageDTO<CardResponse> response = new PageDTO<>(List.of(cardResponse), 1, 1, 10, 0);
             CardFilter filter = new CardFilter(null, null, CardStatus.ACTIVE, null);
 
-            when(cardService.getAllCards(any(CardFilter.class), any(Pageable.class))).thenReturn(response);
+            when(cardService.getAllCards(any(CardFilter.class), any(Pageable.class), eq(TotalMode.EXACT))).thenReturn(response);
 
             // выполняем и проверяем
             mockMvc.perform(post("/api/cards/get-all")
@@ -263,7 +263,7 @@ public class CardControllerAdminTest extends BaseCardControllerTest {
                     .andExpect(jsonPath("$.totalPages").value(1))
                     .andExpect(jsonPath("$.totalElements").value(1));
 
-            verify(cardService, times(1)).getAllCards(any(CardFilter.class), any(Pageable.class));
+            verify(cardService, times(1)).getAllCards(any(CardFilter.class), any(Pageable.class), eq(TotalMode.EXACT));
         }
 
         @Test
@@ -275,14 +275,14 @@ public class CardControllerAdminTest extends BaseCardControllerTest {
                             .contentType(MediaType.APPLICATION_JSON)
                             .content(objectMapper.writeValueAsString(new CardFilter())))
                     .andExpect(status().isForbidden());
-            verify(cardService, never()).getAllCards(any(CardFilter.class), any(Pageable.class));
+            verify(cardService, never()).getAllCards(any(CardFilter.class), any(Pageable.class), eq(TotalMode.EXACT));
         }
 
         @Test
         @DisplayName("Пустой результат")
         @WithMockUser(roles = "ADMIN")
         void emptyResult() throws Exception {
-            when(cardService.getAllCards(any(CardFilter.class), any(Pageable.class)))
+            when(cardService.getAllCards(any(CardFilter.class), any(Pageable.class), eq(TotalMode.EXACT)))
                     .thenReturn(PageDTO.empty());
 
             mockMvc.perform(post("/api/cards/get-all")
@@ -294,14 +294,14 @@ public class CardControllerAdminTest extends BaseCardControllerTest {
                     .andExpect(jsonPath("$.content", hasSize(0)))
                     .andExpect(jsonPath("$.totalPages").value(0))
                     .andExpect(jsonPath("$.totalElements").value(0));
-            verify(cardService, times(1)).getAllCards(any(CardFilter.class), any(Pageable.class));
+            verify(cardService, times(1)).getAllCards(any(CardFilter.class), any(Pageable.class), eq(TotalMode.EXACT));
         }
 
         @Test
         @DisplayName("Ошибка в сервисном слое")
         @WithMockUser(roles = "ADMIN")
         void exception() throws Exception {
-            doThrow(new CardOperationException(101, "Database error")).when(cardService).getAllCards(any(CardFilter.class), any(Pageable.class));
+            doThrow(new CardOperationException(101, "Database error")).when(cardService).getAllCards(any(CardFilter.class), any(Pageable.class), eq(TotalMode.EXACT));
 
             // выполняем и проверяем
             mockMvc.perform(post("/api/cards/get-all")
@@ -30,6 +30,8 @@ import java.util.UUID;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNull;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
@@ -50,7 +52,7 @@ public class CardControllerUserTest extends BaseCardControllerTest {
             PageDTO<CardResponse> response = new PageDTO<>(List.of(cardResponse), 1, 1, 10, 0);
             CardFilter filter = new CardFilter(null, null, CardStatus.ACTIVE, null);
 
-            when(cardService.getUserCards(eq(userId), any(CardFilter.class), any(Pageable.class))).thenReturn(response);
+            when(cardService.getUserCards(eq(userId), any(CardFilter.class), any(Pageable.class), eq(TotalMode.EXACT))).thenReturn(response);
 
             mockMvc.perform(post("/api/cards/get-cards/" + userId)
                             .with(csrf())
@@ -66,7 +68,7 @@ public class CardControllerUserTest extends BaseCardControllerTest {
                     .andExpect(jsonPath("$.totalPages").value(1))
                     .andExpect(jsonPath("$.totalElements").value(1));
 
-            verify(cardService, times(1)).getUserCards(eq(userId), any(CardFilter.class), any(Pageable.class));
+            verify(cardService, times(1)).getUserCards(eq(userId), any(CardFilter.class), any(Pageable.class), eq(TotalMode.EXACT));
         }
 
         @Test
@@ -77,14 +79,14 @@ public class CardControllerUserTest extends BaseCardControllerTest {
                             .contentType(MediaType.APPLICATION_JSON)
                             .content(objectMapper.writeValueAsString(new CardFilter())))
                     .andExpect(status().isUnauthorized());
-            verify(cardService, never()).getUserCards(eq(userId), any(CardFilter.class), any(Pageable.class));
+            verify(cardService, never()).getUserCards(eq(userId), any(CardFilter.class), any(Pageable.class), eq(TotalMode.EXACT));
         }
 
         @Test
         @DisplayName("Пустой результат")
         @WithMockUser(roles = "USER")
         void emptyResult() throws Exception {
-            when(cardService.getUserCards(eq(userId), any(CardFilter.class), any(Pageable.class))).thenReturn(PageDTO.empty());
+            when(cardService.getUserCards(eq(userId), any(CardFilter.class), any(Pageable.class), eq(TotalMode.EXACT))).thenReturn(PageDTO.empty());
 
             mockMvc.perform(post("/api/cards/get-cards/" + userId)
                             .with(csrf())
@@ -101,7 +103,7 @@ public class CardControllerUserTest extends BaseCardControllerTest {
         @DisplayName("Ошибка в сервисном слое")
         @WithMockUser(roles = "USER")
         void exception() throws Exception {
-            doThrow(new CardOperationException(101, "Database error")).when(cardService).getUserCards(eq(userId), any(CardFilter.class), any(Pageable.class));
+            doThrow(new CardOperationException(101, "Database error")).when(cardService).getUserCards(eq(userId), any(CardFilter.class), any(Pageable.class), eq(TotalMode.EXACT));
 
             // выполняем и проверяем
             mockMvc.perform(post("/api/cards/get-cards/" + userId)
@@ -167,7 +169,7 @@ public class CardControllerUserTest extends BaseCardControllerTest {
         @DisplayName("Позитивный сценарий")
         @WithMockUser(roles = "USER")
         void success() throws Exception {
-            doNothing().when(cardService).transferAmount(any(TransferRequest.class));
+            doNothing().when(cardService).transferAmount(any(TransferRequest.class), isNull());
 
             mockMvc.perform(post("/api/cards/transfer")
                             .with(csrf())
@@ -175,7 +177,23 @@ public class CardControllerUserTest extends BaseCardControllerTest {
                             .content(objectMapper.writeValueAsString(new TransferRequest())))
                     .andExpect(status().isOk());
 
-            verify(cardService, times(1)).transferAmount(any(TransferRequest.class));
+            verify(cardService, times(1)).transferAmount(any(TransferRequest.class), isNull());
+        }
+
+        @Test
+        @DisplayName("Перевод с ключом идемпотентности")
+        @WithMockUser(roles = "USER")
+        void successWithIdempotencyKey() throws Exception {
+            doNothing().when(cardService).transferAmount(any(TransferRequest.class), eq("key-1"));
+
+            mockMvc.perform(post("/api/cards/transfer")
+                            .with(csrf())
+                            .header("Idempotency-Key", "key-1")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new TransferRequest())))
+                    .andExpect(status().isOk());
+
+            verify(cardService, times(1)).transferAmount(any(TransferRequest.class), eq("key-1"));
         }
 
         @Test
@@ -186,14 +204,14 @@ public class CardControllerUserTest extends BaseCardControllerTest {
                             .contentType(MediaType.APPLICATION_JSON)
                             .content(objectMapper.writeValueAsString(new TransferRequest())))
                     .andExpect(status().isUnauthorized());
-            verify(cardService, never()).transferAmount(any(TransferRequest.class));
+            verify(cardService, never()).transferAmount(any(TransferRequest.class), any());
         }
 
         @Test
         @DisplayName("Ошибка в сервисном слое")
         @WithMockUser(roles = "USER")
         void exception() throws Exception {
-            doThrow(new CardOperationException(101, "Database error")).when(cardService).transferAmount(any(TransferRequest.class));
+            doThrow(new CardOperationException(101, "Database error")).when(cardService).transferAmount(any(TransferRequest.class), isNull());
             mockMvc.perform(post("/api/cards/transfer")
                             .with(csrf())
                             .contentType(MediaType.APPLICATION_JSON)
@@ -207,6 +225,64 @@ public class CardControllerUserTest extends BaseCardControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("POST /api/cards/transfer/batch")
+    class TransferBatch {
+
+        @Test
+        @DisplayName("Позитивный сценарий")
+        @WithMockUser(roles = "USER")
+        void success() throws Exception {
+            TransferRequest request = new TransferRequest(userId, cardId, 2L, new BigDecimal("10.00"));
+            List<TransferResult> results = List.of(
+                    TransferResult.ok(0, request),
+                    TransferResult.failed(1, request, new CardOperationException(10009, "from card does not have enough balance")));
+            when(cardService.transferBatch(anyList())).thenReturn(results);
+
+            mockMvc.perform(post("/api/cards/transfer/batch")
+                            .with(csrf())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(List.of(request, request))))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(jsonPath("$", hasSize(2)))
+                    .andExpect(jsonPath("$[0].success").value(true))
+                    .andExpect(jsonPath("$[1].success").value(false))
+                    .andExpect(jsonPath("$[1].index").value(1))
+                    .andExpect(jsonPath("$[1].errorCode").value(10009));
+
+            verify(cardService, times(1)).transferBatch(anyList());
+        }
+
+        @Test
+        @DisplayName("Не авторизированный пользователь")
+        void unauthorized() throws Exception {
+            mockMvc.perform(post("/api/cards/transfer/batch")
+                            .with(csrf())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(List.of(new TransferRequest()))))
+                    .andExpect(status().isUnauthorized());
+            verify(cardService, never()).transferBatch(anyList());
+        }
+
+        @Test
+        @DisplayName("Ошибка в сервисном слое")
+        @WithMockUser(roles = "USER")
+        void exception() throws Exception {
+            doThrow(new CardOperationException(101, "Database error")).when(cardService).transferBatch(anyList());
+            mockMvc.perform(post("/api/cards/transfer/batch")
+                            .with(csrf())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(List.of(new TransferRequest()))))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.errorCode").value(101))
+                    .andExpect(jsonPath("$.status").value(HttpStatus.BAD_REQUEST.value()))
+                    .andExpect(jsonPath("$.message", Matchers.containsString("Database error")))
+                    .andExpect(jsonPath("$.path").value("/api/cards/transfer/batch"))
+                    .andExpect(jsonPath("$.error").value(HttpStatus.BAD_REQUEST.name()));
+        }
+    }
+
     @Nested
     @DisplayName("GET /api/users/balance/{id}/{cardId}")
     class GetUserBalance {
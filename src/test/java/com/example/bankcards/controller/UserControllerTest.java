@@ -1,6 +1,8 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.CursorPageDTO;
 import com.example.bankcards.dto.PageDTO;
+import com.example.bankcards.dto.TotalMode;
 import com.example.bankcards.dto.SignUpRequest;
 import com.example.bankcards.dto.UpdateUserRequest;
 import com.example.bankcards.dto.UserResponse;
@@ -16,6 +18,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -78,7 +81,7 @@ public class UserControllerTest {
     void getAllUsers_success() throws Exception {
         // моки
         PageDTO<UserResponse> page = new PageDTO<>(List.of(user), 1, 1, 10, 0);
-        when(userService.getAllUsers(any(UserFilter.class), any(Pageable.class))).thenReturn(page);
+        when(userService.getAllUsers(any(UserFilter.class), any(Pageable.class), eq(TotalMode.EXACT))).thenReturn(page);
 
         // выполняем и проверяем
         mockMvc.perform(post("/api/users/get-all")
@@ -94,6 +97,26 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.content[0].userName").value(username));
     }
 
+    /*
+        Режим подсчета передается в сервис.
+     */
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void getAllUsers_withTotalMode() throws Exception {
+        PageDTO<UserResponse> page = new PageDTO<>(List.of(user), -1, -1, 10, 0, true, TotalMode.NONE);
+        when(userService.getAllUsers(any(UserFilter.class), any(Pageable.class), eq(TotalMode.NONE))).thenReturn(page);
+
+        mockMvc.perform(post("/api/users/get-all")
+                        .param("total", "NONE")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserFilter())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(-1))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.totalMode").value("NONE"));
+    }
+
     /*
         Проверяем отказ в доступе по недостатку прав.
      */
@@ -114,7 +137,7 @@ public class UserControllerTest {
     @Test
     @WithMockUser(roles = "ADMIN")
     void getAllUsers_shouldReturnErrorResponseOnException() throws Exception {
-        when(userService.getAllUsers(any(UserFilter.class), any(Pageable.class)))
+        when(userService.getAllUsers(any(UserFilter.class), any(Pageable.class), eq(TotalMode.EXACT)))
                 .thenThrow(new CardOperationException(101, "Database error"));
 
         mockMvc.perform(post("/api/users/get-all")
@@ -129,6 +152,49 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.error").value(HttpStatus.BAD_REQUEST.name()));
     }
 
+/*
+ * endpoint: /api/users/get-all/scroll
+ */
+
+    /*
+        Позитивный сценарий: курсор, размер и сортировка передаются в сервис.
+     */
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void scrollAllUsers_success() throws Exception {
+        // моки
+        CursorPageDTO<UserResponse> page = new CursorPageDTO<>(List.of(user), 1, "next");
+        when(userService.scrollAllUsers(any(UserFilter.class), eq("prev"), eq(5), eq(Sort.by(Sort.Direction.DESC, "username"))))
+                .thenReturn(page);
+
+        // выполняем и проверяем
+        mockMvc.perform(post("/api/users/get-all/scroll")
+                        .param("cursor", "prev")
+                        .param("size", "5")
+                        .param("sort", "username,desc")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserFilter())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].userId").value(userId.toString()))
+                .andExpect(jsonPath("$.nextCursor").value("next"))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+
+    /*
+        Проверяем отказ в доступе по недостатку прав.
+     */
+    @Test
+    @WithMockUser(roles = "USER")
+    void scrollAllUsers_fail_forbidden() throws Exception {
+        mockMvc.perform(post("/api/users/get-all/scroll")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserFilter())))
+                .andExpect(status().isForbidden());
+    }
+
 
     /*
      * endpoint: /api/users/create
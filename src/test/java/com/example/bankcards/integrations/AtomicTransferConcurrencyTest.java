@@ -0,0 +1,10 @@
+package com.example.bankcards.integrations;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Нагрузочная проверка режима условных UPDATE.
+ */
+@TestPropertySource(properties = "var.card.transfer.mode=atomic")
+class AtomicTransferConcurrencyTest extends BaseTransferConcurrencyTest {
+}
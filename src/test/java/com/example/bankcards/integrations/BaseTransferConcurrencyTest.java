@@ -0,0 +1,124 @@
+package com.example.bankcards.integrations;
+
+import com.example.bankcards.BasicIntegrationTests;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.CardTransaction;
+import com.example.bankcards.entity.CardTransactionType;
+import com.example.bankcards.entity.auth.User;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardNumberHasher;
+import com.example.bankcards.util.CardUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Нагрузочная проверка переводов между несколькими "горячими" картами.
+ * Тысячи встречных переводов из нескольких потоков: деньги не должны появляться или исчезать,
+ * баланс не должен уходить в минус, а БД не должна отвечать deadlock-ами.
+ * Режим перевода задают наследники через var.card.transfer.mode.
+ */
+abstract class BaseTransferConcurrencyTest extends BasicIntegrationTests {
+
+    private static final int CARDS = 4;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS = 4000;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+
+    @Autowired
+    private CardService cardService;
+    @Autowired
+    private CardTransactionRepository cardTransactionRepository;
+
+    private User user;
+    private List<Long> cardIds;
+
+
+    @BeforeEach
+    void setup() {
+        user = userRepository.save(new User(null, "Ivan", "12345678", "test@mail.com", true, new HashSet<>()));
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            String number = CardUtil.normalizeCardNumber(String.format("4000 0000 0000 %04d", i));
+            Card card = new Card(null, number, CardNumberHasher.hmacSha256Bytes(number), YearMonth.now().plusYears(3),
+                    CardStatus.ACTIVE, INITIAL_BALANCE, user.getId());
+            cardIds.add(cardRepository.save(card).getId());
+        }
+    }
+
+    @Test
+    void concurrentTransfers_conserveMoney() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger rejected = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < TRANSFERS; i++) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int from = random.nextInt(CARDS);
+            int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 50_000), 2);
+            TransferRequest request = new TransferRequest(user.getId(), cardIds.get(from), cardIds.get(to), amount);
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    cardService.transferAmount(request);
+                } catch (CardOperationException e) {
+                    if (e.getCode() == BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS) {
+                        rejected.incrementAndGet();
+                    } else {
+                        failures.add(e);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertThat(failures).as("Не должно быть deadlock-ов и прочих ошибок").isEmpty();
+        assertThat(rejected.get()).as("Часть переводов должна упереться в остаток").isLessThan(TRANSFERS);
+
+        awaitPersisted();
+        List<Card> cards = cardRepository.findAllById(cardIds);
+        BigDecimal total = cards.stream().map(Card::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(total).as("Сумма на картах не меняется").isEqualByComparingTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(CARDS)));
+        assertThat(cards).as("Баланс не уходит в минус").allSatisfy(card -> assertThat(card.getBalance().signum()).isNotNegative());
+
+        List<CardTransaction> ledger = cardTransactionRepository.findAllByCardIdInOrderByIdAsc(cardIds);
+        assertThat(ledger).as("Каждый перевод - списание и зачисление").hasSize(2 * (TRANSFERS - rejected.get()));
+        assertThat(cards).as("Баланс сходится с журналом").allSatisfy(card -> {
+            BigDecimal expected = ledger.stream()
+                    .filter(entry -> entry.getCardId().equals(card.getId()))
+                    .map(entry -> entry.getType() == CardTransactionType.CREDIT ? entry.getAmount() : entry.getAmount().negate())
+                    .reduce(INITIAL_BALANCE, BigDecimal::add);
+            assertThat(card.getBalance()).isEqualByComparingTo(expected);
+        });
+    }
+
+    /**
+     * Дождаться записи балансов в БД (для движков с отложенной записью).
+     */
+    protected void awaitPersisted() {
+    }
+}
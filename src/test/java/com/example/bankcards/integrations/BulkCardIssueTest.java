@@ -0,0 +1,135 @@
+package com.example.bankcards.integrations;
+
+import com.example.bankcards.BasicIntegrationTests;
+import com.example.bankcards.config.CardNumberBinaryEncryptor;
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.CardIssueResult;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.auth.User;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardNumberHasher;
+import com.example.bankcards.util.CardUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@TestPropertySource(properties = {"var.card.issue.chunk-size=2", "var.card.issue.threads=3"})
+class BulkCardIssueTest extends BasicIntegrationTests {
+
+    private static final YearMonth EXPIRY = YearMonth.of(2031, 5);
+
+    @Autowired
+    private CardService cardService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CardNumberBinaryEncryptor cardNumberEncryptor;
+
+    private UUID userId;
+
+
+    @BeforeEach
+    void setup() {
+        User user = userRepository.save(new User(null, "Ivan", "12345678", "test@mail.com", true, new HashSet<>()));
+        userId = user.getId();
+    }
+
+    /*
+        Тест пакетного выпуска: карты вставляются пачками (chunk-size меньше пакета),
+        ошибки получают только свои строки.
+     */
+    @Test
+    void createCards_mixedBatch() {
+        String existing = cardNumber(100);
+        cardRepository.save(new Card(null, existing, CardNumberHasher.hmacSha256Bytes(existing), EXPIRY,
+                CardStatus.ACTIVE, BigDecimal.ZERO, userId));
+
+        List<CardCreateRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            requests.add(new CardCreateRequest(userId, cardNumber(i), EXPIRY, new BigDecimal("10.50")));
+        }
+        requests.add(new CardCreateRequest(userId, cardNumber(1), EXPIRY, BigDecimal.ZERO));               // повтор в пакете
+        requests.add(new CardCreateRequest(userId, existing, EXPIRY, BigDecimal.ZERO));                    // уже есть в БД
+        requests.add(new CardCreateRequest(UUID.randomUUID(), cardNumber(7), EXPIRY, BigDecimal.ZERO));    // нет пользователя
+        requests.add(new CardCreateRequest(userId, "4000 0000 0000 0001", EXPIRY, BigDecimal.ZERO));       // не проходит Луна
+
+        List<CardIssueResult> results = cardService.createCards(requests);
+
+        assertThat(results).extracting(CardIssueResult::getIndex).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8);
+        assertThat(results.subList(0, 5)).allMatch(CardIssueResult::isSuccess);
+        assertThat(results.subList(5, 9)).extracting(CardIssueResult::getErrorCode).containsExactly(
+                BankCardErrorCodes.CARD_ALREADY_EXISTS, BankCardErrorCodes.CARD_ALREADY_EXISTS,
+                BankCardErrorCodes.USER_NOT_FOUND, BankCardErrorCodes.CARD_INVALID_NUMBER);
+
+        for (int i = 0; i < 5; i++) {
+            Card card = cardRepository.findById(results.get(i).getCardId()).orElseThrow();
+            byte[] stored = jdbcTemplate.queryForObject("SELECT card_number FROM cards WHERE id = ?", byte[].class, card.getId());
+            assertThat(cardNumberEncryptor.convertToEntityAttribute(stored)).isEqualTo(cardNumber(i));
+            assertThat(card.getCardNumberHmac()).isEqualTo(CardNumberHasher.hmacSha256Bytes(cardNumber(i)));
+            assertThat(card.getExpiryDate()).isEqualTo(EXPIRY);
+            assertThat(card.getUserId()).isEqualTo(userId);
+            assertThat(card.getStatus()).isEqualTo(CardStatus.ACTIVE);
+            assertThat(card.getBalance()).isEqualByComparingTo("10.50");
+            assertThat(card.getCardLast4()).isEqualTo(cardNumber(i).substring(15));
+        }
+        Integer expiry = jdbcTemplate.queryForObject("SELECT expiry_date FROM cards WHERE id = ?", Integer.class, results.get(0).getCardId());
+        assertThat(expiry).isEqualTo(203105);
+        assertThat(cardRepository.count()).isEqualTo(6);
+
+        // повторный выпуск тех же номеров - все уже существуют
+        List<CardIssueResult> again = cardService.createCards(requests.subList(0, 5));
+        assertThat(again).extracting(CardIssueResult::getErrorCode).containsOnly(BankCardErrorCodes.CARD_ALREADY_EXISTS);
+    }
+
+
+    /*
+        Тест большого пакета: подготовка карт делится между потоками пула выпуска,
+        результаты остаются на своих местах.
+     */
+    @Test
+    void createCards_largeBatch() {
+        List<CardCreateRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            requests.add(new CardCreateRequest(i % 100 == 99 ? UUID.randomUUID() : userId, cardNumber(i), EXPIRY, BigDecimal.ONE));
+        }
+
+        List<CardIssueResult> results = cardService.createCards(requests);
+
+        assertThat(results).extracting(CardIssueResult::getIndex).containsExactlyElementsOf(
+                IntStream.range(0, 500).boxed().toList());
+        for (CardIssueResult result : results) {
+            assertThat(result.isSuccess()).isEqualTo(result.getIndex() % 100 != 99);
+        }
+        assertThat(cardRepository.count()).isEqualTo(495);
+    }
+
+
+    /*
+        Номер "4000 0000 0000 NNNN" с верной контрольной цифрой (последняя цифра подбирается по алгоритму Луна).
+     */
+    private static String cardNumber(int n) {
+        String body = String.format("4000 0000 0000 %03d", n);
+        for (int check = 0; check < 10; check++) {
+            String number = body + check;
+            if (CardUtil.isLuhnValid(number)) {
+                return number;
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.bankcards.integrations;
+
+import com.example.bankcards.BasicIntegrationTests;
+import com.example.bankcards.dto.CardImportStatus;
+import com.example.bankcards.entity.auth.User;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardUtil;
+import com.example.bankcards.util.DbNamedLock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class CardFileImportTest extends BasicIntegrationTests {
+
+    private static final Path IMPORT_DIR = createImportDir();
+    private static final int CARDS = 20;
+
+    @Autowired
+    private CardService cardService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+
+    private UUID userId;
+
+
+    @DynamicPropertySource
+    static void importProperties(DynamicPropertyRegistry registry) {
+        registry.add("var.card.import.dir", IMPORT_DIR::toString);
+        registry.add("var.card.import.chunk-size", () -> "3");
+        registry.add("var.card.import.queue-capacity", () -> "1");
+        registry.add("var.card.import.map-size", () -> "256B");
+    }
+
+    @BeforeEach
+    void setup() {
+        User user = userRepository.save(new User(null, "Ivan", "12345678", "test@mail.com", true, new HashSet<>()));
+        userId = user.getId();
+        jdbcTemplate.update("DELETE FROM job_checkpoints WHERE job_name LIKE 'card-import:%'");
+    }
+
+    /*
+        Тест импорта CSV: карты выпущены пачками, ошибки строк в статусе, позиция сохранена в БД.
+     */
+    @Test
+    void importCsv_completes() throws Exception {
+        StringBuilder content = new StringBuilder("userId,cardNumber,expiryDate,balance\n");
+        for (int i = 0; i < CARDS; i++) {
+            content.append(userId).append(',').append(cardNumber(i)).append(",2031-05,10.00\n");
+        }
+        long badOffset = content.length();
+        content.append(userId).append(",4000 0000 0000 0001,2031-05\n");                   // не проходит Луна
+        content.append("not-a-uuid,").append(cardNumber(99)).append(",2031-05\n");
+        Path file = write("cards.csv", content.toString());
+
+        CardImportStatus status = await("cards.csv", cardService.importCards("cards.csv", false));
+
+        assertEquals(CardImportStatus.State.COMPLETED, status.getState());
+        assertThat(status.getRows()).isEqualTo(CARDS + 2);
+        assertThat(status.getIssued()).isEqualTo(CARDS);
+        assertThat(status.getRejected()).isEqualTo(2);
+        assertThat(status.getErrors()).extracting(CardImportStatus.RowError::getErrorCode)
+                .containsExactlyInAnyOrder(BankCardErrorCodes.CARD_INVALID_NUMBER, BankCardErrorCodes.CARD_IMPORT_INVALID_ROW);
+        assertThat(status.getErrors()).extracting(CardImportStatus.RowError::getOffset).contains(badOffset);
+        assertThat(cardRepository.count()).isEqualTo(CARDS);
+        assertThat(checkpoint("cards.csv")).isEqualTo(Files.size(file));
+
+        // завершенный файл повторно не импортируется
+        assertEquals(CardImportStatus.State.COMPLETED, cardService.importCards("cards.csv", false).getState());
+    }
+
+    /*
+        Тест продолжения после сбоя: импорт идет с сохраненной позиции, карты из прерванной пачки не дублируются,
+        а уже выпущенные до сбоя считаются повторно прочитанными, а не ошибками.
+     */
+    @Test
+    void importNdjson_resumesFromCheckpoint() throws Exception {
+        StringBuilder content = new StringBuilder();
+        long resumeAt = 0;
+        for (int i = 0; i < CARDS; i++) {
+            if (i == 12) {
+                resumeAt = content.length();
+            }
+            content.append("{\"userId\":\"").append(userId).append("\",\"cardNumber\":\"").append(cardNumber(i))
+                    .append("\",\"expiryDate\":\"2031-05\"}\n");
+        }
+        write("cards.ndjson", content.toString());
+
+        // "сбой": карты до 15-й уже выпущены, а сохранена позиция только до 12-й
+        cardService.importCards("cards.ndjson", false);
+        await("cards.ndjson", cardService.getImportStatus("cards.ndjson"));
+        jdbcTemplate.update("DELETE FROM cards WHERE card_last4 IN (?, ?, ?, ?, ?)",
+                last4(15), last4(16), last4(17), last4(18), last4(19));
+        jdbcTemplate.update("UPDATE job_checkpoints SET last_id = ? WHERE job_name = ?", resumeAt, "card-import:cards.ndjson");
+
+        CardImportStatus status = await("cards.ndjson", cardService.importCards("cards.ndjson", false));
+        assertThat(status.getRows()).isEqualTo(CARDS - 12);
+        assertThat(status.getIssued()).isEqualTo(5);
+        assertThat(status.getReplayed()).isEqualTo(3);
+        assertThat(status.getRejected()).isZero();
+        assertThat(status.getErrors()).isEmpty();
+        assertThat(cardRepository.count()).isEqualTo(CARDS);
+    }
+
+    /*
+        Тест продолжения с позиции: строки до нее не читаются.
+     */
+    @Test
+    void importCsv_startsAtSavedPosition() throws Exception {
+        StringBuilder content = new StringBuilder();
+        long resumeAt = 0;
+        for (int i = 0; i < CARDS; i++) {
+            if (i == 8) {
+                resumeAt = content.length();
+            }
+            content.append(userId).append(',').append(cardNumber(i)).append(",2031-05\n");
+        }
+        write("resume.csv", content.toString());
+        jdbcTemplate.update("INSERT INTO job_checkpoints (job_name, last_id, updated_at) VALUES (?, ?, NOW())",
+                "card-import:resume.csv", resumeAt);
+        assertEquals(CardImportStatus.State.INTERRUPTED, cardService.getImportStatus("resume.csv").getState());
+
+        CardImportStatus status = await("resume.csv", cardService.importCards("resume.csv", false));
+
+        assertThat(status.getRows()).isEqualTo(CARDS - 8);
+        assertThat(status.getIssued()).isEqualTo(CARDS - 8);
+        assertThat(cardRepository.count()).isEqualTo(CARDS - 8);
+    }
+
+    /*
+        Тест владения импортом: файл, захваченный другой инстанцией, здесь не импортируется.
+     */
+    @Test
+    void importCsv_claimedElsewhere() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < CARDS; i++) {
+            content.append(userId).append(',').append(cardNumber(i)).append(",2031-05\n");
+        }
+        write("claimed.csv", content.toString());
+
+        try (DbNamedLock ignored = DbNamedLock.tryAcquire(dataSource, "card-import:claimed.csv", 0)) {
+            CardImportStatus status = cardService.importCards("claimed.csv", false);
+
+            assertEquals(CardImportStatus.State.RUNNING, status.getState());
+            assertThat(status.getMessage()).contains("another instance");
+            assertThat(cardRepository.count()).isZero();
+        }
+        CardImportStatus status = await("claimed.csv", cardService.importCards("claimed.csv", false));
+        assertEquals(CardImportStatus.State.COMPLETED, status.getState());
+        assertThat(cardRepository.count()).isEqualTo(CARDS);
+    }
+
+    /*
+        Импортируются только файлы из каталога импорта.
+     */
+    @Test
+    void importCards_invalidFile() {
+        for (String name : new String[]{"../cards.csv", "missing.csv", "cards.txt", ".hidden.csv"}) {
+            CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.importCards(name, false));
+            assertEquals(BankCardErrorCodes.CARD_IMPORT_INVALID_FILE, ex.getCode());
+        }
+    }
+
+
+    private CardImportStatus await(String fileName, CardImportStatus status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (status.getState() == CardImportStatus.State.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            status = cardService.getImportStatus(fileName);
+        }
+        return status;
+    }
+
+    private Long checkpoint(String fileName) {
+        return jdbcTemplate.queryForObject("SELECT last_id FROM job_checkpoints WHERE job_name = ?", Long.class, "card-import:" + fileName);
+    }
+
+    private static Path write(String name, String content) throws IOException {
+        return Files.writeString(IMPORT_DIR.resolve(name), content, StandardCharsets.UTF_8);
+    }
+
+    private static Path createImportDir() {
+        try {
+            return Files.createTempDirectory("card-import");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String last4(int n) {
+        return cardNumber(n).substring(15);
+    }
+
+    /*
+        Номер "4000 0000 0000 NNNN" с верной контрольной цифрой.
+     */
+    private static String cardNumber(int n) {
+        String body = String.format("4000 0000 0000 %03d", n);
+        for (int check = 0; check < 10; check++) {
+            if (CardUtil.isLuhnValid(body + check)) {
+                return body + check;
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.bankcards.integrations;
+
+import com.example.bankcards.BasicIntegrationTests;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.auth.User;
+import com.example.bankcards.service.backfill.CardLast4Backfill;
+import com.example.bankcards.util.CardNumberHasher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class CardLast4BackfillTest extends BasicIntegrationTests {
+
+    private static final int CARDS = 5;
+
+    @Autowired
+    private CardLast4Backfill backfill;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Long> cardIds;
+
+
+    @BeforeEach
+    void setup() {
+        User user = userRepository.save(new User(null, "Ivan", "12345678", "test@mail.com", true, new HashSet<>()));
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            String number = String.format("400000000000%04d", i);
+            Card card = new Card(null, number, CardNumberHasher.hmacSha256Bytes(number), YearMonth.now().plusYears(3),
+                    CardStatus.ACTIVE, BigDecimal.TEN, user.getId());
+            cardIds.add(cardRepository.save(card).getId());
+        }
+        backfill.reset();
+    }
+
+    /*
+        Тест заполнения card_last4 у карт, созданных до появления столбца.
+     */
+    @Test
+    void backfill_fillsMissingLast4() {
+        jdbcTemplate.update("UPDATE cards SET card_last4 = NULL");
+
+        int total = 0;
+        int processed;
+        while ((processed = backfill.backfillBatch()) > 0) {
+            total += processed;
+        }
+
+        assertThat(total).isEqualTo(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            String last4 = jdbcTemplate.queryForObject("SELECT card_last4 FROM cards WHERE id = ?", String.class, cardIds.get(i));
+            assertThat(last4).isEqualTo(String.format("%04d", i));
+        }
+        assertThat(backfill.backfillBatch()).isZero();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.bankcards.integrations;
+
+import com.example.bankcards.BasicIntegrationTests;
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.PageDTO;
+import com.example.bankcards.dto.filters.CardFilter;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.auth.User;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardNumberHasher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class CardListingTest extends BasicIntegrationTests {
+
+    private static final int CARDS = 5;
+
+    @Autowired
+    private CardService cardService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Long> cardIds;
+    private UUID userId;
+
+
+    @BeforeEach
+    void setup() {
+        User user = userRepository.save(new User(null, "Ivan", "12345678", "test@mail.com", true, new HashSet<>()));
+        userId = user.getId();
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            String number = String.format("400000000000%04d", i);
+            Card card = new Card(null, number, CardNumberHasher.hmacSha256Bytes(number), YearMonth.now().plusYears(3),
+                    CardStatus.ACTIVE, BigDecimal.TEN, user.getId());
+            cardIds.add(cardRepository.save(card).getId());
+        }
+    }
+
+    /*
+        Тест выборки карт: маска номера строится по card_last4, без расшифровки номера.
+     */
+    @Test
+    void getAllCards_masksFromLast4() {
+        PageDTO<CardResponse> page = cardService.getAllCards(new CardFilter(), PageRequest.of(0, 10, Sort.by("id")));
+
+        assertThat(page.getContent()).extracting(CardResponse::getCardNumber)
+                .containsExactly("**** **** **** 0000", "**** **** **** 0001", "**** **** **** 0002",
+                        "**** **** **** 0003", "**** **** **** 0004");
+    }
+
+    /*
+        Тест поиска карт по последним цифрам номера, в т.ч. среди карт пользователя.
+     */
+    @Test
+    void getAllCards_filterByLast4() {
+        CardFilter filter = new CardFilter();
+        filter.setLast4("*0003");
+        PageDTO<CardResponse> page = cardService.getAllCards(filter, PageRequest.of(0, 10));
+
+        assertThat(page.getContent()).extracting(CardResponse::getId).containsExactly(cardIds.get(3));
+        assertThat(page.getTotalElements()).isEqualTo(1);
+
+        filter.setUserId(userId);
+        assertThat(cardService.getAllCards(filter, PageRequest.of(0, 10)).getContent()).hasSize(1);
+
+        filter.setUserId(UUID.randomUUID());
+        assertThat(cardService.getAllCards(filter, PageRequest.of(0, 10)).getContent()).isEmpty();
+    }
+
+    /*
+        Тест некорректных последних цифр: карт не находится.
+     */
+    @Test
+    void getAllCards_invalidLast4() {
+        CardFilter filter = new CardFilter();
+        filter.setLast4("03");
+
+        assertThat(cardService.getAllCards(filter, PageRequest.of(0, 10)).getContent()).isEmpty();
+    }
+
+    /*
+        Тест фильтра по сроку действия: в БД хранится число yyyymm, выбираются карты, истекающие не позже даты.
+     */
+    @Test
+    void getAllCards_filterByExpiry() {
+        YearMonth base = YearMonth.of(2030, 11);
+        for (int i = 0; i < CARDS; i++) {
+            Card card = cardRepository.findById(cardIds.get(i)).orElseThrow();
+            card.setExpiryDate(base.plusMonths(i));
+            cardRepository.save(card);
+        }
+        Integer stored = jdbcTemplate.queryForObject("SELECT expiry_date FROM cards WHERE id = ?", Integer.class, cardIds.get(2));
+        assertThat(stored).isEqualTo(203101);
+
+        CardFilter filter = new CardFilter();
+        filter.setExpiryDate(YearMonth.of(2031, 1));
+        PageDTO<CardResponse> page = cardService.getAllCards(filter, PageRequest.of(0, 10, Sort.by("id")));
+
+        assertThat(page.getContent()).extracting(CardResponse::getId).containsExactly(cardIds.get(0), cardIds.get(1), cardIds.get(2));
+        assertThat(page.getContent()).extracting(CardResponse::getExpiryDate)
+                .containsExactly(YearMonth.of(2030, 11), YearMonth.of(2030, 12), YearMonth.of(2031, 1));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.bankcards.integrations;
+
+import com.example.bankcards.BasicIntegrationTests;
+import com.example.bankcards.config.CardNumberBinaryEncryptor;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.auth.User;
+import com.example.bankcards.service.backfill.CardReencryptionJob;
+import com.example.bankcards.util.CardNumberHasher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class CardReencryptionJobTest extends BasicIntegrationTests {
+
+    private static final int CARDS = 7;
+
+    @Autowired
+    private CardReencryptionJob job;
+    @Autowired
+    private CardNumberBinaryEncryptor cardNumberEncryptor;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Long> cardIds;
+
+
+    @BeforeEach
+    void setup() throws Exception {
+        User user = userRepository.save(new User(null, "Ivan", "12345678", "test@mail.com", true, new HashSet<>()));
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            String number = String.format("4000 0000 0000 %04d", i);
+            Card card = new Card(null, number, CardNumberHasher.hmacSha256Bytes(number), YearMonth.now().plusYears(3),
+                    CardStatus.ACTIVE, BigDecimal.TEN, user.getId());
+            Long id = cardRepository.save(card).getId();
+            cardIds.add(id);
+            // половина карт - в старом формате, без идентификатора ключа
+            if (i % 2 == 0) {
+                jdbcTemplate.update("UPDATE cards SET card_number = ? WHERE id = ?", legacyEncrypt(number), id);
+            }
+        }
+        job.reset();
+    }
+
+    /*
+        Тест перешифровки: все карты переходят на активный ключ, номера не меняются, version не трогается.
+     */
+    @Test
+    void reencrypt_allCards() {
+        int total = 0;
+        int processed;
+        while ((processed = job.reencryptBatch()) > 0) {
+            total += processed;
+        }
+
+        assertThat(total).isEqualTo(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            byte[] stored = jdbcTemplate.queryForObject("SELECT card_number FROM cards WHERE id = ?", byte[].class, cardIds.get(i));
+            assertThat(cardNumberEncryptor.keyId(stored)).isEqualTo(cardNumberEncryptor.getActiveKeyId());
+            assertThat(cardNumberEncryptor.convertToEntityAttribute(stored)).isEqualTo(String.format("4000 0000 0000 %04d", i));
+            assertThat(jdbcTemplate.queryForObject("SELECT version FROM cards WHERE id = ?", Long.class, cardIds.get(i))).isZero();
+        }
+    }
+
+    /*
+        Тест продолжения обхода с сохраненной позиции (как после рестарта сервиса).
+     */
+    @Test
+    void reencrypt_resumesFromCheckpoint() {
+        // имитируем рестарт: позиции в памяти нет (reset), в БД сохранена позиция после 4-й карты
+        jdbcTemplate.update("INSERT INTO job_checkpoints (job_name, last_id, updated_at) VALUES (?, ?, NOW())",
+                "card-reencrypt:" + cardNumberEncryptor.getActiveKeyId(), cardIds.get(3));
+        int total = 0;
+        int processed;
+        while ((processed = job.reencryptBatch()) > 0) {
+            total += processed;
+        }
+
+        assertThat(total).isEqualTo(CARDS - 4);
+        byte[] skipped = jdbcTemplate.queryForObject("SELECT card_number FROM cards WHERE id = ?", byte[].class, cardIds.get(2));
+        assertThat(cardNumberEncryptor.keyId(skipped)).isNull();
+        byte[] done = jdbcTemplate.queryForObject("SELECT card_number FROM cards WHERE id = ?", byte[].class, cardIds.get(4));
+        assertThat(cardNumberEncryptor.keyId(done)).isEqualTo(cardNumberEncryptor.getActiveKeyId());
+    }
+
+
+    private byte[] legacyEncrypt(String number) throws Exception {
+        SecretKeySpec key = new SecretKeySpec(Base64.getDecoder().decode("CS3mf6u9VSWwN+JoOGj3Vlv5jqQUfJppxWVRbO+er4g="), "AES");
+        byte[] iv = new byte[12];
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        byte[] ciphertext = cipher.doFinal(number.getBytes(StandardCharsets.UTF_8));
+        // [0] - ключ старого формата, без идентификатора
+        byte[] stored = new byte[1 + iv.length + ciphertext.length];
+        System.arraycopy(iv, 0, stored, 1, iv.length);
+        System.arraycopy(ciphertext, 0, stored, 1 + iv.length, ciphertext.length);
+        return stored;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.bankcards.integrations;
+
+import com.example.bankcards.BasicIntegrationTests;
+import liquibase.change.Change;
+import liquibase.change.core.AddColumnChange;
+import liquibase.change.core.AddNotNullConstraintChange;
+import liquibase.change.core.CreateIndexChange;
+import liquibase.change.core.DropColumnChange;
+import liquibase.change.core.RawSQLChange;
+import liquibase.change.core.RenameColumnChange;
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.parser.ChangeLogParserFactory;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import liquibase.resource.ResourceAccessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class CardsExpiryMigrationTest extends BasicIntegrationTests {
+
+    private static final String CHANGELOG = "db/migration/13-cards-expiry-int.yaml";
+    private static final String TABLE = "cards_expiry_migration";
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+
+    @BeforeEach
+    void setup() {
+        dropTable();
+        // таблица в виде cards до changeset 16: срок действия строкой "yyyy/MM"
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " (id BIGINT PRIMARY KEY, expiry_date VARCHAR(7) NOT NULL)");
+        jdbcTemplate.batchUpdate("INSERT INTO " + TABLE + " (id, expiry_date) VALUES (?, ?)", List.of(
+                new Object[]{1, "2025/01"}, new Object[]{2, "2029/12"}, new Object[]{3, "2030/09"}, new Object[]{4, "2099/10"}));
+    }
+
+    @AfterEach
+    void dropTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE);
+    }
+
+    /*
+        Тест changeset 16: строки "yyyy/MM" переводятся в число yyyymm, столбец INT NOT NULL с индексом.
+     */
+    @Test
+    void changeSet16_convertsExpiryToInt() throws Exception {
+        migrate();
+
+        assertThat(jdbcTemplate.queryForList("SELECT expiry_date FROM " + TABLE + " ORDER BY id", Integer.class))
+                .containsExactly(202501, 202912, 203009, 209910);
+        Map<String, Object> column = jdbcTemplate.queryForMap(
+                "SELECT DATA_TYPE, IS_NULLABLE FROM information_schema.COLUMNS"
+                        + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = 'expiry_date'", TABLE);
+        assertThat(column.get("DATA_TYPE").toString()).isEqualToIgnoringCase("int");
+        assertThat(column.get("IS_NULLABLE")).isEqualTo("NO");
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT COLUMN_NAME FROM information_schema.STATISTICS"
+                        + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = 'idx_cards_expiry'", String.class, TABLE))
+                .containsExactly("expiry_date");
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT COLUMN_NAME FROM information_schema.COLUMNS"
+                        + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? ORDER BY COLUMN_NAME", String.class, TABLE))
+                .containsExactly("expiry_date", "id");
+    }
+
+
+    /*
+        Выполняет изменения changeset 16 из файла миграции над тестовой таблицей вместо cards.
+     */
+    private void migrate() throws Exception {
+        ResourceAccessor resources = new ClassLoaderResourceAccessor();
+        DatabaseChangeLog changeLog = ChangeLogParserFactory.getInstance().getParser(CHANGELOG, resources)
+                .parse(CHANGELOG, new ChangeLogParameters(), resources);
+        ChangeSet changeSet = changeLog.getChangeSet(CHANGELOG, "andrei", "16");
+        assertThat(changeSet).isNotNull();
+
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            for (Change change : changeSet.getChanges()) {
+                retarget(change);
+                database.executeStatements(change, changeLog, List.of());
+            }
+            database.commit();
+        }
+    }
+
+    private static void retarget(Change change) {
+        if (change instanceof AddColumnChange c) {
+            c.setTableName(TABLE);
+        } else if (change instanceof RawSQLChange c) {
+            assertThat(c.getSql()).startsWith("UPDATE cards ");
+            c.setSql(c.getSql().replaceFirst("^UPDATE cards ", "UPDATE " + TABLE + " "));
+        } else if (change instanceof DropColumnChange c) {
+            c.setTableName(TABLE);
+        } else if (change instanceof RenameColumnChange c) {
+            c.setTableName(TABLE);
+        } else if (change instanceof AddNotNullConstraintChange c) {
+            c.setTableName(TABLE);
+        } else if (change instanceof CreateIndexChange c) {
+            c.setTableName(TABLE);
+        } else {
+            throw new IllegalStateException("Неизвестное изменение в changeset 16: " + change.getClass().getSimpleName());
+        }
+    }
+}
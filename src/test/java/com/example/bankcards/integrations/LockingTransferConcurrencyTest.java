@@ -0,0 +1,10 @@
+package com.example.bankcards.integrations;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Нагрузочная проверка режима с упорядоченной пессимистической блокировкой.
+ */
+@TestPropertySource(properties = "var.card.transfer.mode=locking")
+class LockingTransferConcurrencyTest extends BaseTransferConcurrencyTest {
+}
@@ -0,0 +1,11 @@
+package com.example.bankcards.integrations;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Нагрузочная проверка режима с @Version и повторами при конфликтах.
+ * Повторов на четырёх горячих картах будет много, поэтому попыток даём с запасом.
+ */
+@TestPropertySource(properties = {"var.card.transfer.mode=optimistic", "var.card.retry.max-attempts=50"})
+class OptimisticTransferConcurrencyTest extends BaseTransferConcurrencyTest {
+}
@@ -0,0 +1,202 @@
+package com.example.bankcards.integrations;
+
+import com.example.bankcards.BasicIntegrationTests;
+import com.example.bankcards.config.ShardedEngineProperties;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.auth.User;
+import com.example.bankcards.service.ledger.LedgerWriter;
+import com.example.bankcards.service.transfer.ShardedLedgerRecovery;
+import com.example.bankcards.service.transfer.ShardedTransferEngine;
+import com.example.bankcards.service.validators.TransferValidator;
+import com.example.bankcards.util.CardNumberHasher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class ShardedLedgerRecoveryTest extends BasicIntegrationTests {
+
+    @Autowired
+    private ShardedLedgerRecovery recovery;
+    @Autowired
+    private LedgerWriter ledgerWriter;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private UUID userId;
+    private Long card1;
+    private Long card2;
+
+
+    @BeforeEach
+    void setup() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        User user = userRepository.save(new User(null, "Ivan", "12345678", "test@mail.com", true, new HashSet<>()));
+        userId = user.getId();
+        card1 = saveCard("4000000000000002");
+        card2 = saveCard("4000000000000010");
+    }
+
+    /*
+        Тест аварийной остановки: движок остановлен без сброса, переводы есть только в журнале.
+        При старте следующего движка незаписанная часть балансов восстанавливается по журналу,
+        уже записанная и откаченные переводы второй раз не учитываются.
+     */
+    @Test
+    void crashBeforeFlush_balancesRecovered() throws InterruptedException {
+        ShardedTransferEngine crashed = engine();
+        transfer(crashed, card1, card2, "30");
+        transfer(crashed, card2, card1, "5");
+        crashed.flush();
+        transfer(crashed, card1, card2, "10");
+        transactionTemplate.executeWithoutResult(status -> {
+            transferAndRecord(crashed, card1, card2, "50");
+            status.setRollbackOnly();
+        });
+        transfer(crashed, card2, card1, "0.01");
+        // "падение": ни shutdown(), ни очередного сброса
+        crash();
+        assertThat(balance(card1)).isEqualByComparingTo("75");
+        assertThat(balance(card2)).isEqualByComparingTo("125");
+
+        ShardedTransferEngine restarted = engine();
+        assertThat(balance(card1)).isEqualByComparingTo("65.01");
+        assertThat(balance(card2)).isEqualByComparingTo("134.99");
+        assertThat(jdbcTemplate.queryForList("SELECT ledger_applied_sum FROM cards WHERE id IN (?, ?)", BigDecimal.class, card1, card2))
+                .allMatch(sum -> sum.signum() == 0);
+
+        // повторное падение: записанное новой сессией не учитывается дважды
+        transfer(restarted, card1, card2, "1");
+        restarted.flush();
+        transfer(restarted, card1, card2, "2");
+        crash();
+
+        ShardedTransferEngine third = engine();
+        try {
+            assertThat(balance(card1)).isEqualByComparingTo("62.01");
+            assertThat(balance(card2)).isEqualByComparingTo("137.99");
+        } finally {
+            third.shutdown();
+        }
+    }
+
+    /*
+        Тест чистой остановки: финальный сброс уже записал всё, восстановлению нечего дописывать.
+     */
+    @Test
+    void cleanShutdown_nothingToRecover() throws InterruptedException {
+        ShardedTransferEngine engine = engine();
+        transfer(engine, card1, card2, "40");
+        engine.shutdown();
+
+        recovery.recover();
+
+        assertThat(balance(card1)).isEqualByComparingTo("60");
+        assertThat(balance(card2)).isEqualByComparingTo("140");
+    }
+
+    /*
+        Тест владения сессией: пока движок жив, восстановление не трогает балансы,
+        а второй шардированный движок не стартует.
+     */
+    @Test
+    void sessionOwned_recoverySkipped() throws InterruptedException {
+        ShardedTransferEngine engine = engine();
+        try {
+            transfer(engine, card1, card2, "30");
+
+            recovery.recover();
+
+            assertThat(balance(card1)).isEqualByComparingTo("100");
+            assertThat(balance(card2)).isEqualByComparingTo("100");
+            assertThatThrownBy(this::engine).isInstanceOf(IllegalStateException.class);
+        } finally {
+            engine.shutdown();
+        }
+        assertThat(balance(card1)).isEqualByComparingTo("70");
+        assertThat(balance(card2)).isEqualByComparingTo("130");
+    }
+
+    /*
+        Тест перечитывания одной карты посреди сессии: баланс и учтенная сумма приводятся к журналу.
+     */
+    @Test
+    void reloadCard_matchesLedger() throws InterruptedException {
+        ShardedTransferEngine engine = engine();
+        try {
+            transfer(engine, card1, card2, "30");
+            engine.flush();
+            transfer(engine, card1, card2, "10");
+            Long sessionStart = jdbcTemplate.queryForObject("SELECT last_id FROM job_checkpoints WHERE job_name = 'sharded-transfer'", Long.class);
+
+            Object[] row = recovery.reloadCard(sessionStart, card1);
+
+            assertThat((BigDecimal) row[0]).isEqualByComparingTo("60");
+            assertThat((BigDecimal) row[1]).isEqualByComparingTo("-40");
+            assertThat(balance(card1)).isEqualByComparingTo("60");
+            assertThat(balance(card2)).isEqualByComparingTo("130");
+        } finally {
+            engine.shutdown();
+        }
+        assertThat(balance(card2)).isEqualByComparingTo("140");
+    }
+
+
+    /*
+        Движок с "бесконечным" интервалом сброса: балансы попадают в БД только по явному flush().
+     */
+    private ShardedTransferEngine engine() {
+        ShardedEngineProperties properties = new ShardedEngineProperties();
+        properties.setShards(2);
+        properties.setFlushInterval(Duration.ofHours(1));
+        return new ShardedTransferEngine(cardRepository, new TransferValidator(), jdbcTemplate, transactionManager, properties, recovery);
+    }
+
+    /*
+        Падение процесса движка: вместе с его соединением БД освобождает и блокировку сессии.
+     */
+    private void crash() {
+        Long owner = jdbcTemplate.queryForObject("SELECT IS_USED_LOCK('sharded-transfer')", Long.class);
+        jdbcTemplate.execute("KILL " + owner);
+    }
+
+    /*
+        Перевод так же, как его выполняет CardService: движок и журнал в одной транзакции.
+     */
+    private void transfer(ShardedTransferEngine engine, Long from, Long to, String amount) {
+        transactionTemplate.executeWithoutResult(status -> transferAndRecord(engine, from, to, amount));
+    }
+
+    private void transferAndRecord(ShardedTransferEngine engine, Long from, Long to, String amount) {
+        TransferRequest request = new TransferRequest(userId, from, to, new BigDecimal(amount));
+        engine.transfer(request);
+        ledgerWriter.record(request);
+    }
+
+    private BigDecimal balance(Long cardId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM cards WHERE id = ?", BigDecimal.class, cardId);
+    }
+
+    private Long saveCard(String number) {
+        Card card = new Card(null, number, CardNumberHasher.hmacSha256Bytes(number), YearMonth.now().plusYears(3),
+                CardStatus.ACTIVE, new BigDecimal("100"), userId);
+        return cardRepository.save(card).getId();
+    }
+}
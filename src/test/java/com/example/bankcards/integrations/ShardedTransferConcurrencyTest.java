@@ -0,0 +1,23 @@
+package com.example.bankcards.integrations;
+
+import com.example.bankcards.service.transfer.ShardedTransferEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Нагрузочная проверка шардированного движка с отложенной записью балансов.
+ * Контекст закрывается после класса: его движок держит сессию, и другим тестам она нужна свободной.
+ */
+@DirtiesContext
+@TestPropertySource(properties = {"var.card.transfer.mode=sharded", "var.card.sharded.shards=2"})
+class ShardedTransferConcurrencyTest extends BaseTransferConcurrencyTest {
+
+    @Autowired
+    private ShardedTransferEngine transferEngine;
+
+    @Override
+    protected void awaitPersisted() {
+        transferEngine.flush();
+    }
+}
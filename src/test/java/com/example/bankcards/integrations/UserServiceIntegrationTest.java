@@ -2,6 +2,7 @@ package com.example.bankcards.integrations;
 
 import com.example.bankcards.BasicIntegrationTests;
 import com.example.bankcards.dto.SignUpRequest;
+import com.example.bankcards.dto.TotalMode;
 import com.example.bankcards.dto.UpdateUserRequest;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.dto.filters.UserFilter;
@@ -17,7 +18,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -272,6 +275,79 @@ class UserServiceIntegrationTest extends BasicIntegrationTests {
             assertThat(page).isNotNull();
             assertThat(page.getContent()).hasSize(1);
         }
+
+        @Test
+        @DisplayName("Пагинация без точного подсчета")
+        void getPageWithoutExactCount() {
+            Pageable pageable = PageRequest.of(0, 2);
+            UserFilter userFilter = new UserFilter();
+
+            // без подсчета: только признак следующей страницы
+            var page = userService.getAllUsers(userFilter, pageable, TotalMode.NONE);
+            assertThat(page.getContent()).hasSize(2);
+            assertThat(page.isHasNext()).isTrue();
+            assertThat(page.getTotalElements()).isEqualTo(-1);
+            assertThat(page.getTotalPages()).isEqualTo(-1);
+
+            // на последней странице количество известно и так
+            page = userService.getAllUsers(userFilter, PageRequest.of(1, 2), TotalMode.NONE);
+            assertThat(page.getContent()).hasSize(1);
+            assertThat(page.isHasNext()).isFalse();
+            assertThat(page.getTotalElements()).isEqualTo(3);
+
+            page = userService.getAllUsers(new UserFilter(null, null, true, null), PageRequest.of(0, 1), TotalMode.CACHED);
+            assertThat(page.getTotalElements()).isEqualTo(3);
+            assertThat(page.getTotalPages()).isEqualTo(3);
+
+            // оценка по статистике таблицы: не меньше уже выбранного
+            page = userService.getAllUsers(userFilter, pageable, TotalMode.ESTIMATED);
+            assertThat(page.getContent()).hasSize(2);
+            assertThat(page.getTotalElements()).isGreaterThanOrEqualTo(3);
+            assertThat(page.getTotalMode()).isEqualTo(TotalMode.ESTIMATED);
+        }
+
+        @Test
+        @DisplayName("Пагинация по курсору, сортировка по имени")
+        void scrollByUsername() {
+            UserFilter userFilter = new UserFilter();
+
+            var page = userService.scrollAllUsers(userFilter, null, 2, Sort.by(Sort.Direction.DESC, "username"));
+            assertThat(page.getContent()).extracting(UserResponse::getUserName).containsExactly("Sergey", "Mark");
+            assertThat(page.isHasNext()).isTrue();
+
+            // сортировка берется из курсора
+            page = userService.scrollAllUsers(userFilter, page.getNextCursor(), 2, Sort.unsorted());
+            assertThat(page.getContent()).extracting(UserResponse::getUserName).containsExactly("Ivan");
+            assertThat(page.isHasNext()).isFalse();
+            assertThat(page.getNextCursor()).isNull();
+        }
+
+        @Test
+        @DisplayName("Пагинация по курсору, по id")
+        void scrollById() {
+            List<UUID> uuids = new ArrayList<>();
+            String cursor = null;
+            do {
+                var page = userService.scrollAllUsers(new UserFilter(), cursor, 1, Sort.unsorted());
+                assertThat(page.getContent()).hasSize(1);
+                uuids.add(page.getContent().get(0).getUserId());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            assertThat(uuids).containsExactlyInAnyOrder(defaultUser.getId(), twoUser.getId(), threeUser.getId());
+        }
+
+        @Test
+        @DisplayName("Пагинация по курсору, некорректный курсор")
+        void scrollInvalidCursor() {
+            UserOperationException ex = assertThrows(UserOperationException.class,
+                    () -> userService.scrollAllUsers(new UserFilter(), "not-a-cursor", 2, Sort.unsorted()));
+            assertEquals(BankCardErrorCodes.USER_INVALID_CURSOR, ex.getCode());
+
+            ex = assertThrows(UserOperationException.class,
+                    () -> userService.scrollAllUsers(new UserFilter(), null, 2, Sort.by("password")));
+            assertEquals(BankCardErrorCodes.USER_INVALID_CURSOR, ex.getCode());
+        }
     }
 
 }
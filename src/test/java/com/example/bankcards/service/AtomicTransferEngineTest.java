@@ -0,0 +1,180 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.transfer.AtomicTransferEngine;
+import com.example.bankcards.service.validators.TransferValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AtomicTransferEngineTest {
+
+    @Mock
+    CardRepository cardRepository;
+    @Spy
+    TransferValidator transferValidator;
+
+    @InjectMocks
+    AtomicTransferEngine transferEngine;
+
+    UUID userId;
+    TransferRequest transferRequest;
+    Card cardFrom;
+    Card cardTo;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     */
+    @BeforeEach
+    void setup() {
+        userId = UUID.randomUUID();
+        YearMonth expiryDate = YearMonth.now().plusYears(3);
+        transferRequest = new TransferRequest(userId, 1L, 2L, new BigDecimal("30.0"));
+        cardFrom = new Card(1L, "1111222233334444", "hmac-1".getBytes(), expiryDate, CardStatus.ACTIVE, BigDecimal.valueOf(100), userId);
+        cardTo = new Card(2L, "5555666677778888", "hmac-2".getBytes(), expiryDate, CardStatus.ACTIVE, BigDecimal.valueOf(100), userId);
+    }
+
+    /*
+        Успешный перевод: сначала списание, потом зачисление (id по возрастанию).
+     */
+    @Test
+    void transfer_success() {
+        when(cardRepository.debit(1L, userId, transferRequest.getAmount())).thenReturn(1);
+        when(cardRepository.credit(2L, userId, transferRequest.getAmount())).thenReturn(1);
+
+        assertDoesNotThrow(() -> transferEngine.transfer(transferRequest));
+
+        InOrder order = inOrder(cardRepository);
+        order.verify(cardRepository).debit(1L, userId, transferRequest.getAmount());
+        order.verify(cardRepository).credit(2L, userId, transferRequest.getAmount());
+        verify(cardRepository, never()).findById(any());
+        verify(cardRepository, never()).save(any());
+    }
+
+    /*
+        Встречный перевод: строки всё равно обновляются по возрастанию id.
+     */
+    @Test
+    void transfer_success_reverseOrder() {
+        transferRequest = new TransferRequest(userId, 2L, 1L, new BigDecimal("30.0"));
+        when(cardRepository.credit(1L, userId, transferRequest.getAmount())).thenReturn(1);
+        when(cardRepository.debit(2L, userId, transferRequest.getAmount())).thenReturn(1);
+
+        assertDoesNotThrow(() -> transferEngine.transfer(transferRequest));
+
+        InOrder order = inOrder(cardRepository);
+        order.verify(cardRepository).credit(1L, userId, transferRequest.getAmount());
+        order.verify(cardRepository).debit(2L, userId, transferRequest.getAmount());
+    }
+
+    /*
+        Тест на попытку использования для перевода одной и той же карты.
+     */
+    @Test
+    void transfer_failure_sameCard() {
+        transferRequest.setToCardId(transferRequest.getFromCardId());
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> transferEngine.transfer(transferRequest));
+
+        assertEquals(BankCardErrorCodes.CARD_CANNOT_BE_SAME, ex.getCode());
+        verifyNoInteractions(cardRepository);
+    }
+
+    /*
+        Тест на некорректную сумму перевода.
+     */
+    @Test
+    void transfer_failure_invalidAmount() {
+        for (BigDecimal amount : new BigDecimal[] {null, BigDecimal.ZERO, new BigDecimal("-10"), new BigDecimal("0.001")}) {
+            transferRequest.setAmount(amount);
+
+            CardOperationException ex = assertThrows(CardOperationException.class, () -> transferEngine.transfer(transferRequest));
+
+            assertEquals(BankCardErrorCodes.CARD_INVALID_AMOUNT, ex.getCode());
+        }
+        verifyNoInteractions(cardRepository);
+    }
+
+    /*
+        Тест на недостаток средств: списание не прошло, причину берём из состояния карт.
+     */
+    @Test
+    void transfer_failure_notEnoughFunds() {
+        transferRequest.setAmount(new BigDecimal("101"));
+        when(cardRepository.debit(1L, userId, transferRequest.getAmount())).thenReturn(0);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(cardFrom));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(cardTo));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> transferEngine.transfer(transferRequest));
+
+        assertEquals(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, ex.getCode());
+        verify(cardRepository, never()).credit(any(), any(), any());
+    }
+
+    /*
+        Тест на отсутствие карты-источника.
+     */
+    @Test
+    void transfer_failure_cardNotFound() {
+        when(cardRepository.debit(1L, userId, transferRequest.getAmount())).thenReturn(0);
+        when(cardRepository.findById(1L)).thenReturn(Optional.empty());
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(cardTo));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> transferEngine.transfer(transferRequest));
+
+        assertEquals(BankCardErrorCodes.CARD_NOT_FOUND, ex.getCode());
+    }
+
+    /*
+        Тест на попытку перевести на чужую карту: списание прошло, зачисление нет.
+     */
+    @Test
+    void transfer_failure_wrongOwner() {
+        cardTo.setUserId(UUID.randomUUID());
+        when(cardRepository.debit(1L, userId, transferRequest.getAmount())).thenReturn(1);
+        when(cardRepository.credit(2L, userId, transferRequest.getAmount())).thenReturn(0);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(cardFrom));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(cardTo));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> transferEngine.transfer(transferRequest));
+
+        assertEquals(BankCardErrorCodes.CARD_INVALID_OWNER, ex.getCode());
+    }
+
+    /*
+        Тест на попытку операции с не активной картой.
+     */
+    @Test
+    void transfer_failure_cardNotActive() {
+        cardTo.setStatus(CardStatus.BLOCKED);
+        when(cardRepository.debit(1L, userId, transferRequest.getAmount())).thenReturn(1);
+        when(cardRepository.credit(2L, userId, transferRequest.getAmount())).thenReturn(0);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(cardFrom));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(cardTo));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> transferEngine.transfer(transferRequest));
+
+        assertEquals(BankCardErrorCodes.CARD_BAD_STATUS, ex.getCode());
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResult;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.transfer.BatchTransferEngine;
+import com.example.bankcards.service.validators.TransferValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BatchTransferEngineTest {
+
+    @Mock
+    CardRepository cardRepository;
+
+    BatchTransferEngine transferEngine;
+
+    UUID userId;
+    Card card1;
+    Card card2;
+    Card card3;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     */
+    @BeforeEach
+    void setup() {
+        transferEngine = new BatchTransferEngine(cardRepository, new TransferValidator(), 3);
+        userId = UUID.randomUUID();
+        YearMonth expiryDate = YearMonth.now().plusYears(3);
+        card1 = new Card(1L, "1111222233334444", "hmac-1".getBytes(), expiryDate, CardStatus.ACTIVE, BigDecimal.valueOf(100), userId);
+        card2 = new Card(2L, "5555666677778888", "hmac-2".getBytes(), expiryDate, CardStatus.ACTIVE, BigDecimal.valueOf(100), userId);
+        card3 = new Card(3L, "9999000011112222", "hmac-3".getBytes(), expiryDate, CardStatus.ACTIVE, BigDecimal.valueOf(100), userId);
+    }
+
+    /*
+        Переводы применяются по порядку: второй перевод использует деньги, пришедшие первым.
+        Все карты загружаются одним запросом.
+     */
+    @Test
+    void transfer_success_inOrder() {
+        List<TransferRequest> requests = List.of(
+                new TransferRequest(userId, 1L, 2L, new BigDecimal("100")),
+                new TransferRequest(userId, 2L, 3L, new BigDecimal("150")));
+        when(cardRepository.findAllByIdForUpdate(Set.of(1L, 2L, 3L))).thenReturn(List.of(card1, card2, card3));
+
+        List<TransferResult> results = transferEngine.transfer(requests, Set.of(userId));
+
+        assertTrue(results.stream().allMatch(TransferResult::isSuccess));
+        assertEquals(0, card1.getBalance().compareTo(BigDecimal.ZERO));
+        assertEquals(0, card2.getBalance().compareTo(new BigDecimal("50")));
+        assertEquals(0, card3.getBalance().compareTo(new BigDecimal("250")));
+        verify(cardRepository, times(1)).findAllByIdForUpdate(any());
+        verify(cardRepository, never()).findById(any());
+    }
+
+    /*
+        Ошибки отдельных переводов попадают в результат и не мешают остальным.
+     */
+    @Test
+    void transfer_partialFailure() {
+        UUID unknownUser = UUID.randomUUID();
+        List<TransferRequest> requests = List.of(
+                new TransferRequest(userId, 1L, 2L, new BigDecimal("500")),
+                new TransferRequest(userId, 1L, 1L, new BigDecimal("1")),
+                new TransferRequest(unknownUser, 1L, 2L, new BigDecimal("1")));
+        when(cardRepository.findAllByIdForUpdate(Set.of(1L, 2L))).thenReturn(List.of(card1, card2));
+
+        List<TransferResult> results = transferEngine.transfer(requests, Set.of(userId));
+
+        assertEquals(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, results.get(0).getErrorCode());
+        assertEquals(BankCardErrorCodes.CARD_CANNOT_BE_SAME, results.get(1).getErrorCode());
+        assertEquals(BankCardErrorCodes.USER_NOT_FOUND, results.get(2).getErrorCode());
+        assertTrue(results.stream().noneMatch(TransferResult::isSuccess));
+        assertEquals(BigDecimal.valueOf(100), card1.getBalance());
+        assertEquals(BigDecimal.valueOf(100), card2.getBalance());
+    }
+
+    /*
+        Перевод на неактивную или несуществующую карту отклоняется, остальные выполняются.
+     */
+    @Test
+    void transfer_cardNotActiveOrMissing() {
+        card3.setStatus(CardStatus.BLOCKED);
+        List<TransferRequest> requests = List.of(
+                new TransferRequest(userId, 1L, 3L, new BigDecimal("10")),
+                new TransferRequest(userId, 1L, 4L, new BigDecimal("10")),
+                new TransferRequest(userId, 1L, 2L, new BigDecimal("10")));
+        when(cardRepository.findAllByIdForUpdate(Set.of(1L, 2L, 3L, 4L))).thenReturn(List.of(card1, card2, card3));
+
+        List<TransferResult> results = transferEngine.transfer(requests, Set.of(userId));
+
+        assertEquals(BankCardErrorCodes.CARD_BAD_STATUS, results.get(0).getErrorCode());
+        assertEquals(BankCardErrorCodes.CARD_NOT_FOUND, results.get(1).getErrorCode());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(0, card1.getBalance().compareTo(new BigDecimal("90")));
+        assertEquals(0, card2.getBalance().compareTo(new BigDecimal("110")));
+    }
+
+    /*
+        Слишком большой пакет отклоняется целиком.
+     */
+    @Test
+    void transfer_failure_batchTooLarge() {
+        TransferRequest request = new TransferRequest(userId, 1L, 2L, BigDecimal.ONE);
+        List<TransferRequest> requests = List.of(request, request, request, request);
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> transferEngine.transfer(requests, Set.of(userId)));
+
+        assertEquals(BankCardErrorCodes.CARD_BATCH_TOO_LARGE, ex.getCode());
+        verifyNoInteractions(cardRepository);
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.CardImportStatus;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.service.issuance.CardFileReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class CardFileReaderTest {
+
+    private static final UUID USER = UUID.fromString("812ec722-9ade-4d65-abf5-d97caf65ef31");
+
+    @TempDir
+    Path dir;
+
+
+    /*
+        Тест CSV: заголовок, кавычки, пробелы, CRLF, пустые строки и строка без перевода строки в конце.
+     */
+    @Test
+    void csv_parsesRows() throws IOException {
+        Path file = write("cards.csv", """
+                userId,cardNumber,expiryDate,balance\r
+                812ec722-9ade-4d65-abf5-d97caf65ef31,4000 0000 0000 0002,2029-08,100.50\r
+
+                "812EC722-9ADE-4D65-ABF5-D97CAF65EF31" , "4000-0000-0000-0010" , 2030/01
+                812ec722-9ade-4d65-abf5-d97caf65ef31,4000000000000028,2031-12,""".stripTrailing());
+
+        try (CardFileReader reader = new CardFileReader(file, CardFileReader.Format.CSV, 0, 1024)) {
+            CardFileReader.Chunk chunk = reader.read(10);
+
+            assertThat(chunk.errors()).isEmpty();
+            assertThat(chunk.requests()).containsExactly(
+                    new CardCreateRequest(USER, "4000 0000 0000 0002", YearMonth.of(2029, 8), new BigDecimal("100.50")),
+                    new CardCreateRequest(USER, "4000-0000-0000-0010", YearMonth.of(2030, 1), null),
+                    new CardCreateRequest(USER, "4000000000000028", YearMonth.of(2031, 12), null));
+            assertThat(chunk.endOffset()).isEqualTo(Files.size(file));
+            assertNull(reader.read(10));
+        }
+    }
+
+    /*
+        Тест NDJSON: порядок ключей любой, неизвестные ключи пропускаются, null - пустое значение.
+     */
+    @Test
+    void ndjson_parsesRows() throws IOException {
+        Path file = write("cards.ndjson", """
+                {"userId":"812ec722-9ade-4d65-abf5-d97caf65ef31","cardNumber":"4000 0000 0000 0002","expiryDate":"2029-08","balance":100.50}
+                { "batch": 7, "balance": null, "expiryDate": "2030/01", "cardNumber": "4000000000000010", "userId": "812ec722-9ade-4d65-abf5-d97caf65ef31" }
+                """);
+
+        try (CardFileReader reader = new CardFileReader(file, CardFileReader.Format.NDJSON, 0, 1024)) {
+            CardFileReader.Chunk chunk = reader.read(10);
+
+            assertThat(chunk.errors()).isEmpty();
+            assertThat(chunk.requests()).containsExactly(
+                    new CardCreateRequest(USER, "4000 0000 0000 0002", YearMonth.of(2029, 8), new BigDecimal("100.50")),
+                    new CardCreateRequest(USER, "4000000000000010", YearMonth.of(2030, 1), null));
+        }
+    }
+
+    /*
+        Тест некорректных строк: ошибка со смещением строки, остальные строки читаются.
+     */
+    @Test
+    void invalidRows_reportedWithOffset() throws IOException {
+        String good = "812ec722-9ade-4d65-abf5-d97caf65ef31,4000000000000002,2029-08\n";
+        String[] bad = {
+                "812ec722-9ade-4d65-abf5,4000000000000002,2029-08\n",
+                "812ec722-9ade-4d65-abf5-d97caf65ef31,4000000000000002\n",
+                "812ec722-9ade-4d65-abf5-d97caf65ef31,4000000000000002,2029-13\n",
+                "812ec722-9ade-4d65-abf5-d97caf65ef31,4000000000000002,2029-08,ten\n",
+                "812ec722-9ade-4d65-abf5-d97caf65ef31,4000000000000002,2029-08,1,2\n",
+                "812ec722-9ade-4d65-abf5-d97caf65ef31,\"4000000000000002,2029-08\n"};
+        StringBuilder content = new StringBuilder(good);
+        List<Long> offsets = new ArrayList<>();
+        for (String line : bad) {
+            offsets.add((long) content.length());
+            content.append(line);
+        }
+        content.append(good);
+        Path file = write("cards.csv", content.toString());
+
+        try (CardFileReader reader = new CardFileReader(file, CardFileReader.Format.CSV, 0, 1024)) {
+            CardFileReader.Chunk chunk = reader.read(100);
+
+            assertThat(chunk.requests()).hasSize(2);
+            assertThat(chunk.offsets()).containsExactly(0, content.length() - good.length());
+            assertThat(chunk.errors()).extracting(CardImportStatus.RowError::getOffset).containsExactlyElementsOf(offsets);
+            assertThat(chunk.errors()).extracting(CardImportStatus.RowError::getErrorCode)
+                    .containsOnly(BankCardErrorCodes.CARD_IMPORT_INVALID_ROW);
+        }
+    }
+
+    /*
+        Тест некорректных строк NDJSON.
+     */
+    @Test
+    void ndjson_invalidRows() throws IOException {
+        Path file = write("cards.ndjson", """
+                ["812ec722-9ade-4d65-abf5-d97caf65ef31"]
+                {"userId":"812ec722-9ade-4d65-abf5-d97caf65ef31","cardNumber":"4000\\u00200000"}
+                {"userId":"812ec722-9ade-4d65-abf5-d97caf65ef31","cardNumber":"4000000000000002"
+                {"cardNumber":"4000000000000002","expiryDate":"2029-08"}
+                {"userId":"812ec722-9ade-4d65-abf5-d97caf65ef31","cardNumber":"4000000000000002"} tail
+                """);
+
+        try (CardFileReader reader = new CardFileReader(file, CardFileReader.Format.NDJSON, 0, 1024)) {
+            CardFileReader.Chunk chunk = reader.read(100);
+
+            assertThat(chunk.requests()).isEmpty();
+            assertThat(chunk.errors()).hasSize(5);
+        }
+    }
+
+    /*
+        Тест чтения пачками через маленькое окно отображения: строки на границе окон не теряются,
+        чтение продолжается с позиции конца пачки (как после рестарта импорта).
+     */
+    @Test
+    void chunks_acrossWindows_andResume() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            content.append(USER).append(',').append(String.format("4000 0000 0000 %04d", i)).append(",2029-08,").append(i).append('\n');
+        }
+        Path file = write("cards.csv", content.toString());
+
+        List<CardCreateRequest> all = new ArrayList<>();
+        long resumeAt;
+        try (CardFileReader reader = new CardFileReader(file, CardFileReader.Format.CSV, 0, 100)) {
+            CardFileReader.Chunk first = reader.read(7);
+            assertThat(first.rows()).isEqualTo(7);
+            all.addAll(first.requests());
+            resumeAt = first.endOffset();
+        }
+        try (CardFileReader reader = new CardFileReader(file, CardFileReader.Format.CSV, resumeAt, 100)) {
+            CardFileReader.Chunk chunk;
+            while ((chunk = reader.read(7)) != null) {
+                assertThat(chunk.errors()).isEmpty();
+                all.addAll(chunk.requests());
+            }
+        }
+
+        assertThat(all).hasSize(50);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(String.format("4000 0000 0000 %04d", i), all.get(i).getCardNumber());
+            assertEquals(new BigDecimal(i), all.get(i).getBalance());
+        }
+    }
+
+    /*
+        Строка длиннее окна отображения - ошибка чтения файла.
+     */
+    @Test
+    void lineLongerThanWindow_fails() throws IOException {
+        Path file = write("cards.csv", USER + ",4000000000000002,2029-08\n" + USER + ",4000000000000002,2029-08\n");
+
+        try (CardFileReader reader = new CardFileReader(file, CardFileReader.Format.CSV, 0, 20)) {
+            assertThrows(IOException.class, () -> reader.read(10));
+        }
+    }
+
+    /*
+        Формат файла по расширению.
+     */
+    @Test
+    void format_byExtension() {
+        assertEquals(CardFileReader.Format.CSV, CardFileReader.Format.of("cards.CSV"));
+        assertEquals(CardFileReader.Format.NDJSON, CardFileReader.Format.of("cards.ndjson"));
+        assertEquals(CardFileReader.Format.NDJSON, CardFileReader.Format.of("cards.jsonl"));
+        assertNull(CardFileReader.Format.of("cards.xlsx"));
+    }
+
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content, StandardCharsets.UTF_8);
+    }
+}
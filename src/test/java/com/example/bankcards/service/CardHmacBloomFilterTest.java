@@ -0,0 +1,144 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.CardHmacBloomProperties;
+import com.example.bankcards.service.cache.CardHmacBloomFilter;
+import com.example.bankcards.util.CardNumberHasher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CardHmacBloomFilterTest {
+
+    private static final int CARDS = 10_000;
+
+    @Mock
+    JdbcTemplate jdbcTemplate;
+
+    CardHmacBloomProperties properties;
+
+    @BeforeEach
+    void setup() {
+        new CardNumberHasher("test-secret");
+        properties = new CardHmacBloomProperties();
+        properties.setExpectedCards(CARDS);
+        properties.setLoadBatchSize(1_000);
+    }
+
+    private static byte[] hmac(int i) {
+        return CardNumberHasher.hmacSha256Bytes(String.format("4000 0000 %04d %04d", i / 10_000, i % 10_000));
+    }
+
+    /*
+        Построение по БД пачками: все карты из БД "могут быть", доля ложных срабатываний - около заданной.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void load_fromDb() {
+        // HMAC-SHA256 равномерно распределен - для фильтра достаточно случайных 32 байт
+        Random random = new Random(42);
+        byte[][] hmacs = new byte[2 * CARDS + 1][];
+        for (int i = 1; i < hmacs.length; i++) {
+            hmacs[i] = new byte[32];
+            random.nextBytes(hmacs[i]);
+        }
+        // ResultSet текущей строки: getLong(1) - id, getBytes(2) - HMAC
+        AtomicLong row = new AtomicLong();
+        ResultSet rs = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getLong" -> row.get();
+                    case "getBytes" -> hmacs[(int) row.get()];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), anyLong(), eq(1_000))).thenAnswer(i -> {
+            long lastId = i.getArgument(2);
+            RowMapper<Long> mapper = i.getArgument(1);
+            List<Long> ids = new ArrayList<>();
+            for (long id = lastId + 1; id <= Math.min(lastId + 1_000, CARDS); id++) {
+                row.set(id);
+                ids.add(mapper.mapRow(rs, ids.size()));
+            }
+            return ids;
+        });
+        CardHmacBloomFilter filter = new CardHmacBloomFilter(jdbcTemplate, properties);
+
+        filter.load();
+
+        assertTrue(filter.isReady());
+        verify(jdbcTemplate, times(11)).query(anyString(), any(RowMapper.class), anyLong(), eq(1_000));
+        for (int i = 1; i <= CARDS; i++) {
+            assertTrue(filter.mightContain(hmacs[i]));
+        }
+        int falsePositives = 0;
+        for (int i = CARDS + 1; i <= 2 * CARDS; i++) {
+            if (filter.mightContain(hmacs[i])) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < CARDS * 0.02, "false positives: " + falsePositives);
+    }
+
+    /*
+        Пока фильтр не построен (или выключен) - всегда "может быть".
+     */
+    @Test
+    void notReady_alwaysMaybe() {
+        CardHmacBloomFilter filter = new CardHmacBloomFilter(jdbcTemplate, properties);
+        assertTrue(filter.mightContain(hmac(1)));
+
+        properties.setEnabled(false);
+        CardHmacBloomFilter disabled = new CardHmacBloomFilter(jdbcTemplate, properties);
+        disabled.load();
+        disabled.put(hmac(1));
+
+        assertFalse(disabled.isReady());
+        assertTrue(disabled.mightContain(hmac(2)));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    /*
+        Ошибка БД при построении: фильтр не используется, сервис работает как раньше.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void load_dbError() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), anyLong(), anyInt()))
+                .thenThrow(new IllegalStateException("db is down"));
+        CardHmacBloomFilter filter = new CardHmacBloomFilter(jdbcTemplate, properties);
+
+        assertDoesNotThrow(filter::load);
+
+        assertFalse(filter.isReady());
+        assertTrue(filter.mightContain(hmac(1)));
+    }
+
+    /*
+        Добавленные после построения карты находятся.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void put_afterLoad() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), anyLong(), anyInt())).thenReturn(List.of());
+        CardHmacBloomFilter filter = new CardHmacBloomFilter(jdbcTemplate, properties);
+        filter.load();
+
+        assertFalse(filter.mightContain(hmac(7)));
+        filter.put(hmac(7));
+        assertTrue(filter.mightContain(hmac(7)));
+    }
+}
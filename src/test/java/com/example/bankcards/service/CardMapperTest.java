@@ -38,7 +38,7 @@ public class CardMapperTest {
         Long cardId = 1L;
         UUID userId = UUID.randomUUID();
         String cardNumber = "1111222233334444";
-        String cardNumberHmac = CardNumberHasher.hmacSha256(cardNumber);
+        byte[] cardNumberHmac = CardNumberHasher.hmacSha256Bytes(cardNumber);
         YearMonth expiry = YearMonth.now().plusYears(3);
         Card card = new Card(cardId, cardNumber, cardNumberHmac, expiry, CardStatus.ACTIVE, new BigDecimal("100.50"), userId);
 
@@ -55,6 +55,19 @@ public class CardMapperTest {
         assertThat(response.getCardNumber()).isEqualTo("**** **** **** 4444");
     }
 
+    /*
+        Маска строится только по последним цифрам: номер карты (ленивый, зашифрованный) не нужен.
+     */
+    @Test
+    void toCardResponse_masksFromLast4() {
+        Card card = new Card(1L, null, "4444", "hmac".getBytes(), YearMonth.now().plusYears(3),
+                CardStatus.ACTIVE, BigDecimal.ONE, UUID.randomUUID(), null);
+
+        CardResponse response = cardMapper.toCardResponse(card);
+
+        assertThat(response.getCardNumber()).isEqualTo("**** **** **** 4444");
+    }
+
     /*
         Проверяем конвертацию с пагинацией.
      */
@@ -64,7 +77,7 @@ public class CardMapperTest {
         Card card1 = new Card(
                 1L,
                 "1111222233334444",
-                CardNumberHasher.hmacSha256(CardUtil.normalizeCardNumber("1111222233334444")),
+                CardNumberHasher.hmacSha256Bytes(CardUtil.normalizeCardNumber("1111222233334444")),
                 YearMonth.now().plusYears(3),
                 CardStatus.ACTIVE,
                 BigDecimal.ZERO,
@@ -73,7 +86,7 @@ public class CardMapperTest {
         Card card2 = new Card(
                 2L,
                 "5555 6666 7777 8888",
-                CardNumberHasher.hmacSha256(CardUtil.normalizeCardNumber("5555 6666 7777 8888")),
+                CardNumberHasher.hmacSha256Bytes(CardUtil.normalizeCardNumber("5555 6666 7777 8888")),
                 YearMonth.now().plusYears(3),
                 CardStatus.BLOCKED,
                 new BigDecimal("42.00"),
@@ -0,0 +1,88 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BaseCardServiceTest;
+import com.example.bankcards.dto.CardCreateRequest;
+import com.example.bankcards.dto.CardIssueResult;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+
+public class CardServiceCreateBatchTest extends BaseCardServiceTest {
+
+    /*
+        Тест пакетного выпуска: пользователи проверяются по одному разу, выпуск - в BulkCardIssuer.
+     */
+    @Test
+    void createCards_success() {
+        UUID unknownUser = UUID.randomUUID();
+        List<CardCreateRequest> requests = List.of(
+                cardCreateRequest,
+                new CardCreateRequest(userId, "4000 0000 0000 0002", expiryDate, BigDecimal.ZERO),
+                new CardCreateRequest(unknownUser, "4000 0000 0000 0010", expiryDate, BigDecimal.ZERO));
+        List<CardIssueResult> results = List.of(
+                CardIssueResult.ok(0, 1L),
+                CardIssueResult.ok(1, 2L),
+                CardIssueResult.failed(2, new CardOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist")));
+        when(userService.existsUser(userId)).thenReturn(true);
+        when(userService.existsUser(unknownUser)).thenReturn(false);
+        when(bulkCardIssuer.issue(requests, Set.of(userId))).thenReturn(results);
+
+        assertEquals(results, cardService.createCards(requests));
+
+        verify(bulkCardIssuer).validateSize(requests);
+        verify(userService, times(1)).existsUser(userId);
+        verify(userService, times(1)).existsUser(unknownUser);
+        verifyNoInteractions(cardRepository);
+    }
+
+    /*
+        Пустой пакет не обращается ни к БД, ни к выпуску.
+     */
+    @Test
+    void createCards_empty() {
+        assertTrue(cardService.createCards(List.of()).isEmpty());
+
+        verifyNoInteractions(bulkCardIssuer, userService);
+    }
+
+    /*
+        Слишком большой пакет отклоняется до проверки пользователей.
+     */
+    @Test
+    void createCards_failure_tooLarge() {
+        doThrow(new CardOperationException(BankCardErrorCodes.CARD_BATCH_TOO_LARGE, "batch is too large"))
+                .when(bulkCardIssuer).validateSize(anyList());
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.createCards(List.of(cardCreateRequest)));
+
+        assertEquals(BankCardErrorCodes.CARD_BATCH_TOO_LARGE, ex.getCode());
+        verifyNoInteractions(userService);
+        verify(bulkCardIssuer, never()).issue(anyList(), any());
+    }
+
+    /*
+        Непредвиденные ошибки пакета заворачиваются в CardOperationException.
+     */
+    @Test
+    void createCards_failure_unknownError() {
+        when(userService.existsUser(userId)).thenReturn(true);
+        when(bulkCardIssuer.issue(anyList(), any())).thenThrow(new IllegalStateException("db is down"));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.createCards(List.of(cardCreateRequest)));
+
+        assertEquals(BankCardErrorCodes.UNKNOWN_ERROR_CODE, ex.getCode());
+    }
+}
@@ -3,14 +3,19 @@ package com.example.bankcards.service;
 import com.example.bankcards.BaseCardServiceTest;
 import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.BankCardErrorCodes;
 import com.example.bankcards.exception.CardOperationException;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.math.BigDecimal;
 import java.time.YearMonth;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.*;
 
 
@@ -25,7 +30,7 @@ public class CardServiceCreateTest extends BaseCardServiceTest {
     void cardCreateTest_success() {
         // моки
         when(userService.existsUser(cardCreateRequest.getUserId())).thenReturn(Boolean.TRUE);
-        when(cardRepository.existsByCardNumberHmac(cardNumberHmac)).thenReturn(Boolean.FALSE);
+        when(cardRepository.existsByCardNumberHmac(aryEq(cardNumberHmac))).thenReturn(Boolean.FALSE);
         when(cardRepository.save(any(Card.class))).thenReturn(card);
         when(cardMapper.toCardResponse(card)).thenReturn(cardResponse);
 
@@ -55,6 +60,22 @@ public class CardServiceCreateTest extends BaseCardServiceTest {
         verifyNoMoreInteractions(userService, cardRepository, cardMapper);
     }
 
+    /*
+        Тест на номер карты с неверной контрольной цифрой (алгоритм Луна).
+     */
+    @Test
+    void cardCreateTest_failure_CardNumberLuhn() {
+        // моки
+        cardCreateRequest.setCardNumber("1111 2222 3333 4445");
+
+        // выполняем
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.createCard(cardCreateRequest));
+
+        // проверка
+        assertEquals(BankCardErrorCodes.CARD_INVALID_NUMBER, ex.getCode());
+        verifyNoMoreInteractions(userService, cardRepository, cardMapper);
+    }
+
     /*
         Тест на неверную дату.
      */
@@ -91,11 +112,62 @@ public class CardServiceCreateTest extends BaseCardServiceTest {
     void cardCreateTest_failure_CardAlreadyExists() {
         // моки
         when(userService.existsUser(cardCreateRequest.getUserId())).thenReturn(Boolean.TRUE);
-        when(cardRepository.existsByCardNumberHmac(cardNumberHmac)).thenReturn(Boolean.TRUE);
+        when(cardRepository.existsByCardNumberHmac(aryEq(cardNumberHmac))).thenReturn(Boolean.TRUE);
 
         // выполняем
         assertThrows(CardOperationException.class, () -> cardService.createCard(cardCreateRequest));
 
         verifyNoMoreInteractions(cardRepository, cardMapper);
     }
+
+    /*
+        Тест на некорректный начальный баланс: отрицательный или больше 2 знаков после запятой.
+     */
+    @Test
+    void cardCreateTest_failure_BalanceInvalid() {
+        when(userService.existsUser(cardCreateRequest.getUserId())).thenReturn(Boolean.TRUE);
+        when(cardRepository.existsByCardNumberHmac(aryEq(cardNumberHmac))).thenReturn(Boolean.FALSE);
+
+        cardCreateRequest.setBalance(new BigDecimal("-1.00"));
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.createCard(cardCreateRequest));
+        assertEquals(BankCardErrorCodes.CARD_INVALID_AMOUNT, ex.getCode());
+
+        cardCreateRequest.setBalance(new BigDecimal("1.001"));
+        ex = assertThrows(CardOperationException.class, () -> cardService.createCard(cardCreateRequest));
+        assertEquals(BankCardErrorCodes.CARD_INVALID_AMOUNT, ex.getCode());
+
+        verify(cardRepository, never()).save(any(Card.class));
+    }
+
+    /*
+        Тест на номер, которого точно нет в фильтре Блума: без запроса existsByCardNumberHmac.
+     */
+    @Test
+    void cardCreateTest_bloomMiss_noProbe() {
+        when(userService.existsUser(cardCreateRequest.getUserId())).thenReturn(Boolean.TRUE);
+        doReturn(false).when(cardHmacFilter).mightContain(any());
+        when(cardRepository.save(any(Card.class))).thenReturn(card);
+        when(cardMapper.toCardResponse(card)).thenReturn(cardResponse);
+
+        assertThat(cardService.createCard(cardCreateRequest)).isEqualTo(cardResponse);
+
+        verify(cardRepository, never()).existsByCardNumberHmac(any());
+        verify(cardHmacFilter).put(aryEq(cardNumberHmac));
+    }
+
+    /*
+        Тест на дубликат, пропущенный фильтром: его ловит уникальный индекс.
+     */
+    @Test
+    void cardCreateTest_failure_duplicateByConstraint() {
+        when(userService.existsUser(cardCreateRequest.getUserId())).thenReturn(Boolean.TRUE);
+        doReturn(false).when(cardHmacFilter).mightContain(any());
+        when(cardRepository.save(any(Card.class))).thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+        when(cardRepository.existsByCardNumberHmac(aryEq(cardNumberHmac))).thenReturn(Boolean.TRUE);
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.createCard(cardCreateRequest));
+
+        assertEquals(BankCardErrorCodes.CARD_ALREADY_EXISTS, ex.getCode());
+        verify(cardHmacFilter, never()).put(any());
+    }
 }
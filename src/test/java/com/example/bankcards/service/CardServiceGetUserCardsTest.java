@@ -2,24 +2,35 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.BaseCardServiceTest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CursorPageDTO;
 import com.example.bankcards.dto.PageDTO;
 import com.example.bankcards.dto.filters.CardFilter;
+import com.example.bankcards.dto.filters.CardSpecification;
+import com.example.bankcards.dto.filters.KeysetScroll;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.BankCardErrorCodes;
 import com.example.bankcards.exception.CardOperationException;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.time.YearMonth;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.ArgumentMatchers.any;
@@ -74,6 +85,72 @@ public class CardServiceGetUserCardsTest extends BaseCardServiceTest {
         );
     }
 
+    /*
+        Тест выборки по курсору: выбирается на одну строку больше страницы,
+        лишняя строка не возвращается, а курсор указывает на последнюю выданную.
+     */
+    @Test
+    void testScrollUserCards_success() {
+        Card second = new Card(cardId + 1, cardEncodeNumber, "hmac-2".getBytes(), YearMonth.of(2031, 1), CardStatus.ACTIVE, balance, userId);
+        Card third = new Card(cardId + 2, cardEncodeNumber, "hmac-3".getBytes(), YearMonth.of(2032, 1), CardStatus.ACTIVE, balance, userId);
+        CursorPageDTO<CardResponse> expected = new CursorPageDTO<>(List.of(cardResponse), 1, "cursor");
+
+        when(userService.existsUser(userId)).thenReturn(true);
+        when(cardRepository.findBy(anySpec(), any())).thenReturn(List.of(card, second, third));
+        when(cardMapper.toCursorPageCard(any())).thenReturn(expected);
+
+        CursorPageDTO<CardResponse> result = cardService.scrollUserCards(userId, new CardFilter(), null, 2, Sort.by("expiryDate"));
+
+        assertEquals(expected, result);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<KeysetScroll.Window<Card>> captor = ArgumentCaptor.forClass(KeysetScroll.Window.class);
+        verify(cardMapper).toCursorPageCard(captor.capture());
+        assertEquals(List.of(card, second), captor.getValue().content());
+        assertNotNull(captor.getValue().nextCursor());
+
+        // курсор указывает на вторую карту, сортировка сохраняется в нем
+        KeysetScroll.Position position = CardSpecification.SCROLL.position(captor.getValue().nextCursor(), Sort.unsorted());
+        assertEquals("expiryDate", position.attribute());
+        assertEquals(Sort.Direction.ASC, position.direction());
+        assertEquals(YearMonth.of(2031, 1), position.key());
+        assertEquals(second.getId(), position.id());
+        assertFalse(position.isFirst());
+    }
+
+    /*
+        Тест последней страницы: курсора продолжения нет.
+     */
+    @Test
+    void testScrollUserCards_lastPage() {
+        when(userService.existsUser(userId)).thenReturn(true);
+        when(cardRepository.findBy(anySpec(), any())).thenReturn(List.of(card));
+
+        cardService.scrollUserCards(userId, new CardFilter(), null, 2, Sort.unsorted());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<KeysetScroll.Window<Card>> captor = ArgumentCaptor.forClass(KeysetScroll.Window.class);
+        verify(cardMapper).toCursorPageCard(captor.capture());
+        assertEquals(List.of(card), captor.getValue().content());
+        assertNull(captor.getValue().nextCursor());
+    }
+
+    /*
+        Тест на некорректный курсор и неподдерживаемую сортировку.
+     */
+    @Test
+    void testScrollUserCards_failure_invalidCursor() {
+        when(userService.existsUser(userId)).thenReturn(true);
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () ->
+                cardService.scrollUserCards(userId, new CardFilter(), "AAAA", 10, Sort.unsorted()));
+        assertEquals(BankCardErrorCodes.CARD_INVALID_CURSOR, ex.getCode());
+
+        ex = assertThrows(CardOperationException.class, () ->
+                cardService.scrollUserCards(userId, new CardFilter(), null, 10, Sort.by("balance")));
+        assertEquals(BankCardErrorCodes.CARD_INVALID_CURSOR, ex.getCode());
+        verify(cardRepository, never()).findBy(anySpec(), any());
+    }
+
     // хэлпер, чтобы IDEA не ругалась на any(Specification.class)
     static <T> Specification<T> anySpec() {
         return ArgumentMatchers.any();
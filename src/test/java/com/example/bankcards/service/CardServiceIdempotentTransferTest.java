@@ -0,0 +1,139 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BaseCardServiceTest;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.TransferIdempotency;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CardServiceIdempotentTransferTest extends BaseCardServiceTest {
+
+    static final String KEY = "key-1";
+    static final String HASH = "hash";
+
+    TransferRequest transferRequest;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     */
+    @BeforeEach
+    public void setup() {
+        super.setup();
+        transferRequest = new TransferRequest(userId, 1L, 2L, new BigDecimal("30.0"));
+        lenient().when(userService.existsUser(userId)).thenReturn(true);
+        lenient().when(idempotencyStore.requestHash(transferRequest)).thenReturn(HASH);
+    }
+
+    /*
+        Первый запрос с ключом: результат сохраняется, перевод выполняет движок.
+     */
+    @Test
+    void transfer_firstRequest() {
+        when(idempotencyStore.find(userId, KEY, HASH)).thenReturn(Optional.empty());
+
+        assertDoesNotThrow(() -> cardService.transferAmount(transferRequest, KEY));
+
+        verify(idempotencyStore).saveSuccess(userId, KEY, HASH);
+        verify(transferEngine).transfer(transferRequest);
+    }
+
+    /*
+        Повтор успешного перевода: карты не трогаем.
+     */
+    @Test
+    void transfer_replaySuccess() {
+        when(idempotencyStore.find(userId, KEY, HASH)).thenReturn(Optional.of(stored(0, null)));
+
+        assertDoesNotThrow(() -> cardService.transferAmount(transferRequest, KEY));
+
+        verifyNoInteractions(transferEngine, retryExecutor);
+        verify(idempotencyStore, never()).saveSuccess(any(), anyString(), anyString());
+    }
+
+    /*
+        Повтор отклоненного перевода возвращает ту же ошибку.
+     */
+    @Test
+    void transfer_replayFailure() {
+        when(idempotencyStore.find(userId, KEY, HASH))
+                .thenReturn(Optional.of(stored(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, "from card does not have enough balance")));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest, KEY));
+
+        assertEquals(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, ex.getCode());
+        assertEquals("from card does not have enough balance", ex.getReason());
+        verifyNoInteractions(transferEngine);
+    }
+
+    /*
+        Отказ движка сохраняется отдельно (транзакция перевода откатывается).
+     */
+    @Test
+    void transfer_engineRejected_failureStored() {
+        CardOperationException rejection = new CardOperationException(BankCardErrorCodes.CARD_BAD_STATUS, "card status is not active");
+        when(idempotencyStore.find(userId, KEY, HASH)).thenReturn(Optional.empty());
+        doThrow(rejection).when(transferEngine).transfer(transferRequest);
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest, KEY));
+
+        assertSame(rejection, ex);
+        verify(idempotencyStore).saveFailure(userId, KEY, HASH, rejection);
+    }
+
+    /*
+        Параллельный запрос с тем же ключом успел первым: возвращаем его результат.
+     */
+    @Test
+    void transfer_concurrentDuplicate() {
+        when(idempotencyStore.find(userId, KEY, HASH))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(stored(0, null)));
+        doThrow(new DuplicateKeyException("uk_transfer_idempotency_key")).when(idempotencyStore).saveSuccess(userId, KEY, HASH);
+
+        assertDoesNotThrow(() -> cardService.transferAmount(transferRequest, KEY));
+
+        verifyNoInteractions(transferEngine);
+    }
+
+    /*
+        Некорректный ключ отклоняется до обращения к БД.
+     */
+    @Test
+    void transfer_invalidKey() {
+        doThrow(new CardOperationException(BankCardErrorCodes.CARD_INVALID_IDEMPOTENCY_KEY, "idempotency key is invalid"))
+                .when(idempotencyStore).validateKey(anyString());
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest, " "));
+
+        assertEquals(BankCardErrorCodes.CARD_INVALID_IDEMPOTENCY_KEY, ex.getCode());
+        verifyNoInteractions(transferEngine, cardRepository);
+    }
+
+    /*
+        Без ключа - обычный перевод.
+     */
+    @Test
+    void transfer_withoutKey() {
+        assertDoesNotThrow(() -> cardService.transferAmount(transferRequest, null));
+
+        verify(transferEngine).transfer(transferRequest);
+        verifyNoInteractions(idempotencyStore);
+    }
+
+    private TransferIdempotency stored(int errorCode, String message) {
+        return new TransferIdempotency(1L, userId, KEY, HASH, errorCode, message, LocalDateTime.now());
+    }
+}
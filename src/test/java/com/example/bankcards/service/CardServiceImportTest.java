@@ -0,0 +1,57 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BaseCardServiceTest;
+import com.example.bankcards.dto.CardImportStatus;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+
+public class CardServiceImportTest extends BaseCardServiceTest {
+
+    private final CardImportStatus status = new CardImportStatus("cards.csv", CardImportStatus.State.RUNNING,
+            1000, 0, 0, 0, 0, 0, null, List.of());
+
+    /*
+        Тест запуска импорта: выполняет CardFileImporter.
+     */
+    @Test
+    void importCards_success() {
+        when(cardFileImporter.start("cards.csv", true)).thenReturn(status);
+
+        assertEquals(status, cardService.importCards("cards.csv", true));
+
+        verifyNoInteractions(cardRepository, userService);
+    }
+
+    /*
+        Ошибки импортера (например, файла нет) передаются как есть.
+     */
+    @Test
+    void importCards_failure_invalidFile() {
+        when(cardFileImporter.start("../cards.csv", false))
+                .thenThrow(new CardOperationException(BankCardErrorCodes.CARD_IMPORT_INVALID_FILE, "invalid file name"));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.importCards("../cards.csv", false));
+
+        assertEquals(BankCardErrorCodes.CARD_IMPORT_INVALID_FILE, ex.getCode());
+    }
+
+    /*
+        Непредвиденные ошибки заворачиваются в CardOperationException.
+     */
+    @Test
+    void getImportStatus_failure_unknownError() {
+        when(cardFileImporter.status("cards.csv")).thenThrow(new IllegalStateException("db is down"));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.getImportStatus("cards.csv"));
+
+        assertEquals(BankCardErrorCodes.UNKNOWN_ERROR_CODE, ex.getCode());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.BaseCardServiceTest;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResult;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.BlockedCardsRepository;
+import com.example.bankcards.security.OwnerResolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Владелец запроса берется из JWT (user_id): существование пользователя в БД не проверяется.
+ */
+public class CardServiceOwnerTest extends BaseCardServiceTest {
+
+    @Mock
+    private BlockedCardsRepository blockedCardsRepository;
+
+    @BeforeEach
+    public void setup() {
+        super.setup();
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("user")
+                .claim(OwnerResolver.USER_ID_CLAIM, userId.toString())
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /*
+        Тест запроса баланса своей карты: без запроса existsUser.
+     */
+    @Test
+    void balance_ownerFromToken() {
+        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
+
+        assertEquals(balance, cardService.getBalance(userId, cardId));
+
+        verifyNoInteractions(userService);
+    }
+
+    /*
+        Тест на чужой id в запросе: отказ, до карт дело не доходит.
+     */
+    @Test
+    void balance_failure_otherUser() {
+        CardOperationException ex = assertThrows(CardOperationException.class,
+                () -> cardService.getBalance(UUID.randomUUID(), cardId));
+
+        assertEquals(BankCardErrorCodes.USER_ACCESS_DENIED, ex.getCode());
+        verifyNoInteractions(userService, cardRepository);
+    }
+
+    /*
+        Тест перевода и запроса на блокировку от владельца из токена.
+     */
+    @Test
+    void transferAndBlocking_ownerFromToken() {
+        TransferRequest request = new TransferRequest(userId, 1L, 2L, new BigDecimal("30.0"));
+        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
+
+        assertDoesNotThrow(() -> cardService.transferAmount(request));
+        assertDoesNotThrow(() -> cardService.requestToBlockingCard(userId, cardId));
+
+        verify(transferEngine).transfer(request);
+        verify(blockedCardsRepository).save(any());
+        verifyNoInteractions(userService);
+    }
+
+    /*
+        Тест пакета: переводы чужого пользователя не выполняются, БД о пользователях не спрашивается.
+     */
+    @Test
+    void transferBatch_ownerFromToken() {
+        UUID otherUser = UUID.randomUUID();
+        List<TransferRequest> requests = List.of(
+                new TransferRequest(userId, 1L, 2L, new BigDecimal("10.00")),
+                new TransferRequest(otherUser, 3L, 4L, new BigDecimal("10.00")));
+        List<TransferResult> results = List.of(TransferResult.ok(0, requests.get(0)));
+        when(batchTransferEngine.transfer(requests, Set.of(userId))).thenReturn(results);
+
+        assertEquals(results, cardService.transferBatch(requests));
+
+        verifyNoInteractions(userService);
+    }
+}
@@ -2,26 +2,25 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.BaseCardServiceTest;
 import com.example.bankcards.dto.TransferRequest;
-import com.example.bankcards.entity.Card;
-import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.dto.TransferResult;
+import com.example.bankcards.exception.BankCardErrorCodes;
 import com.example.bankcards.exception.CardOperationException;
-import com.example.bankcards.util.CardNumberHasher;
-import com.example.bankcards.util.CardUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
-import java.util.Optional;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 public class CardServiceTransferTest extends BaseCardServiceTest {
 
     TransferRequest transferRequest;
-    Card cardTo;
 
     /**
      * Подготавливаем данные для каждого тестового метода.
@@ -30,29 +29,19 @@ public class CardServiceTransferTest extends BaseCardServiceTest {
     public void setup() {
         super.setup();
         transferRequest = new TransferRequest(userId, 1L, 2L, new BigDecimal("30.0"));
-        cardTo = new Card(2L, "5555666677778888", CardNumberHasher.hmacSha256(CardUtil.normalizeCardNumber("5555666677778888")), expiryDate, CardStatus.ACTIVE, balance, userId);
     }
 
     /*
-        Тест с корректными данными.
+        Тест с корректными данными: перевод выполняет движок.
      */
     @Test
     void transferCard_success() {
-        // моки
         when(userService.existsUser(transferRequest.getUserId())).thenReturn(true);
-        when(cardRepository.findById(transferRequest.getFromCardId())).thenReturn(Optional.ofNullable(card));
-        when(cardRepository.findById(transferRequest.getToCardId())).thenReturn(Optional.ofNullable(cardTo));
-        when(cardRepository.save(any())).thenAnswer(i -> i.getArgument(0));
 
-        // выполняем
         assertDoesNotThrow(() -> cardService.transferAmount(transferRequest));
 
-        // проверяем
-        assertEquals(new BigDecimal("70.0"), card.getBalance());
-        assertEquals(new BigDecimal("130.0"), cardTo.getBalance());
-
-        verify(cardRepository).save(card);
-        verify(cardRepository).save(cardTo);
+        verify(transferEngine).transfer(transferRequest);
+        verify(ledgerWriter).record(transferRequest);
     }
 
     /*
@@ -64,117 +53,87 @@ public class CardServiceTransferTest extends BaseCardServiceTest {
 
         assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest));
 
+        verifyNoInteractions(transferEngine);
         verifyNoMoreInteractions(cardRepository);
     }
 
     /*
-        Тест на отсутствие одной из карт.
-     */
-    @Test
-    void transferCard_failure_cardNotFoundFrom() {
-        when(userService.existsUser(transferRequest.getUserId())).thenReturn(true);
-        when(cardRepository.findById(transferRequest.getFromCardId())).thenReturn(Optional.empty());
-        when(cardRepository.findById(transferRequest.getToCardId())).thenReturn(Optional.ofNullable(cardTo));
-
-        assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest));
-
-        verify(cardRepository, never()).save(any());
-    }
-
-    /*
-        Тест на отсутствие одной из карт.
-     */
-    @Test
-    void transferCard_failure_cardNotFoundTo() {
-        when(userService.existsUser(transferRequest.getUserId())).thenReturn(true);
-        when(cardRepository.findById(transferRequest.getFromCardId())).thenReturn(Optional.ofNullable(card));
-        when(cardRepository.findById(transferRequest.getToCardId())).thenReturn(Optional.empty());
-
-        assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest));
-
-        verify(cardRepository, never()).save(any());
-    }
-
-    /*
-        Тест на попытку использования для перевода одной и той же карты.
+        Ошибки движка пробрасываются как есть.
      */
     @Test
-    void transferCard_failure_cardAlreadyUsed() {
+    void transferCard_failure_engineRejected() {
         when(userService.existsUser(transferRequest.getUserId())).thenReturn(true);
-        when(cardRepository.findById(transferRequest.getFromCardId())).thenReturn(Optional.ofNullable(card));
-        when(cardRepository.findById(transferRequest.getToCardId())).thenReturn(Optional.ofNullable(cardTo));
-        card.setId(cardTo.getId());
+        doThrow(new CardOperationException(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, "from card does not have enough balance"))
+                .when(transferEngine).transfer(any());
 
-        assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest));
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest));
 
-        verify(cardRepository, never()).save(any());
+        assertEquals(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, ex.getCode());
+        verifyNoInteractions(ledgerWriter);
     }
 
     /*
-        Тест на попытку перевести другому пользователю.
+        Непредвиденные ошибки заворачиваются в CardOperationException.
      */
     @Test
-    void transferCard_failure_WrongUserId() {
+    void transferCard_failure_unknownError() {
         when(userService.existsUser(transferRequest.getUserId())).thenReturn(true);
-        when(cardRepository.findById(transferRequest.getFromCardId())).thenReturn(Optional.ofNullable(card));
-        when(cardRepository.findById(transferRequest.getToCardId())).thenReturn(Optional.ofNullable(cardTo));
-        cardTo.setUserId(UUID.randomUUID());
+        doThrow(new IllegalStateException("db is down")).when(transferEngine).transfer(any());
 
-        assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest));
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest));
 
-        verify(cardRepository, never()).save(any());
+        assertEquals(BankCardErrorCodes.UNKNOWN_ERROR_CODE, ex.getCode());
     }
 
     /*
-        Тест на попытку операции с не активной картой.
+        Пакетный перевод: каждый пользователь проверяется один раз, в движок передаются только существующие,
+        в журнал попадают только выполненные переводы.
      */
     @Test
-    void transferCard_failure_cardNotActiveFrom() {
-        when(userService.existsUser(transferRequest.getUserId())).thenReturn(true);
-        when(cardRepository.findById(transferRequest.getFromCardId())).thenReturn(Optional.ofNullable(card));
-        when(cardRepository.findById(transferRequest.getToCardId())).thenReturn(Optional.ofNullable(cardTo));
-        card.setStatus(CardStatus.BLOCKED);
-
-        assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest));
-
-        verify(cardRepository, never()).save(any());
+    void transferBatch_success() {
+        UUID unknownUser = UUID.randomUUID();
+        List<TransferRequest> requests = List.of(
+                transferRequest,
+                new TransferRequest(userId, 2L, 1L, new BigDecimal("10.00")),
+                new TransferRequest(unknownUser, 3L, 4L, new BigDecimal("10.00")));
+        List<TransferResult> results = List.of(
+                TransferResult.ok(0, requests.get(0)),
+                TransferResult.ok(1, requests.get(1)),
+                TransferResult.failed(2, requests.get(2), new CardOperationException(BankCardErrorCodes.USER_NOT_FOUND, "user does not exist")));
+        when(userService.existsUser(userId)).thenReturn(true);
+        when(userService.existsUser(unknownUser)).thenReturn(false);
+        when(batchTransferEngine.transfer(requests, Set.of(userId))).thenReturn(results);
+
+        assertEquals(results, cardService.transferBatch(requests));
+
+        verify(userService, times(1)).existsUser(userId);
+        verify(userService, times(1)).existsUser(unknownUser);
+        verify(ledgerWriter).record(requests.get(0));
+        verify(ledgerWriter).record(requests.get(1));
+        verify(ledgerWriter, never()).record(requests.get(2));
     }
 
     /*
-        Тест на попытку операции с не активной картой.
+        Пустой пакет не обращается ни к БД, ни к движку.
      */
     @Test
-    void transferCard_failure_cardNotActiveTo() {
-        when(userService.existsUser(transferRequest.getUserId())).thenReturn(true);
-        when(cardRepository.findById(transferRequest.getFromCardId())).thenReturn(Optional.ofNullable(card));
-        when(cardRepository.findById(transferRequest.getToCardId())).thenReturn(Optional.ofNullable(cardTo));
-        cardTo.setStatus(CardStatus.BLOCKED);
-
-        assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest));
+    void transferBatch_empty() {
+        assertTrue(cardService.transferBatch(List.of()).isEmpty());
 
-        verify(cardRepository, never()).save(any());
+        verifyNoInteractions(batchTransferEngine, userService);
     }
 
     /*
-        Тест на недостаток средств.
+        Непредвиденные ошибки пакета заворачиваются в CardOperationException.
      */
     @Test
-    void transferCard_failure_WrongBalance() {
-        // моки
-        when(userService.existsUser(transferRequest.getUserId())).thenReturn(true);
-        when(cardRepository.findById(transferRequest.getFromCardId())).thenReturn(Optional.ofNullable(card));
-        when(cardRepository.findById(transferRequest.getToCardId())).thenReturn(Optional.ofNullable(cardTo));
-        transferRequest.setAmount(card.getBalance().add(BigDecimal.ONE));
-
-        // выполняем
-        assertThrows(CardOperationException.class, () -> cardService.transferAmount(transferRequest));
+    void transferBatch_failure_unknownError() {
+        when(userService.existsUser(userId)).thenReturn(true);
+        when(batchTransferEngine.transfer(anyList(), any())).thenThrow(new IllegalStateException("db is down"));
 
-        // проверяем
-        assertEquals(card.getBalance(), balance);
-        assertEquals(card.getBalance(), balance);
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> cardService.transferBatch(List.of(transferRequest)));
 
-        verify(cardRepository, never()).save(any());
+        assertEquals(BankCardErrorCodes.UNKNOWN_ERROR_CODE, ex.getCode());
     }
 
-
 }
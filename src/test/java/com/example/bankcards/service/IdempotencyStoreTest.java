@@ -0,0 +1,109 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.IdempotencyProperties;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.TransferIdempotency;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.TransferIdempotencyRepository;
+import com.example.bankcards.service.idempotency.IdempotencyStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyStoreTest {
+
+    @Mock
+    TransferIdempotencyRepository repository;
+
+    IdempotencyStore store;
+    UUID userId;
+    TransferRequest request;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     */
+    @BeforeEach
+    void setup() {
+        store = new IdempotencyStore(repository, new IdempotencyProperties());
+        userId = UUID.randomUUID();
+        request = new TransferRequest(userId, 1L, 2L, new BigDecimal("10.50"));
+    }
+
+    /*
+        Отпечаток не зависит от записи суммы, но зависит от параметров перевода.
+     */
+    @Test
+    void requestHash_stable() {
+        String hash = store.requestHash(request);
+
+        assertEquals(hash, store.requestHash(new TransferRequest(userId, 1L, 2L, new BigDecimal("10.5"))));
+        assertNotEquals(hash, store.requestHash(new TransferRequest(userId, 2L, 1L, new BigDecimal("10.50"))));
+        assertEquals(64, hash.length());
+    }
+
+    /*
+        Повторный поиск обслуживается кэшем.
+     */
+    @Test
+    void find_cached() {
+        String hash = store.requestHash(request);
+        TransferIdempotency stored = new TransferIdempotency(1L, userId, "key", hash, 0, null, LocalDateTime.now());
+        when(repository.findByUserIdAndIdempotencyKey(userId, "key")).thenReturn(Optional.of(stored));
+
+        assertSame(stored, store.find(userId, "key", hash).orElseThrow());
+        assertSame(stored, store.find(userId, "key", hash).orElseThrow());
+
+        verify(repository, times(1)).findByUserIdAndIdempotencyKey(userId, "key");
+    }
+
+    /*
+        Тот же ключ с другими параметрами перевода - ошибка.
+     */
+    @Test
+    void find_keyReused() {
+        TransferIdempotency stored = new TransferIdempotency(1L, userId, "key", "other", 0, null, LocalDateTime.now());
+        when(repository.findByUserIdAndIdempotencyKey(userId, "key")).thenReturn(Optional.of(stored));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> store.find(userId, "key", store.requestHash(request)));
+
+        assertEquals(BankCardErrorCodes.CARD_IDEMPOTENCY_KEY_REUSED, ex.getCode());
+    }
+
+    /*
+        Временные ошибки не сохраняются, чтобы клиент мог повторить запрос.
+     */
+    @Test
+    void saveFailure_onlyFinalErrors() {
+        when(repository.saveAndFlush(any())).thenAnswer(i -> i.getArgument(0));
+
+        store.saveFailure(userId, "key", "hash", new CardOperationException(BankCardErrorCodes.CARD_CONCURRENT_UPDATE, "try again"));
+        verify(repository, never()).saveAndFlush(any());
+
+        store.saveFailure(userId, "key", "hash", new CardOperationException(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, "no money"));
+        verify(repository, times(1)).saveAndFlush(any());
+    }
+
+    /*
+        Проверка формата ключа.
+     */
+    @Test
+    void validateKey() {
+        assertDoesNotThrow(() -> store.validateKey("5f0c7a5e-2b1d-4b6e-9a4e-1c2d3e4f5a6b"));
+        assertThrows(CardOperationException.class, () -> store.validateKey(""));
+        assertThrows(CardOperationException.class, () -> store.validateKey("key with spaces"));
+        assertThrows(CardOperationException.class, () -> store.validateKey("k".repeat(IdempotencyStore.MAX_KEY_LENGTH + 1)));
+    }
+}
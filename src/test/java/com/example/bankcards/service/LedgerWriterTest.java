@@ -0,0 +1,98 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.service.ledger.LedgerWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LedgerWriterTest {
+
+    @Mock
+    JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    LedgerWriter ledgerWriter;
+
+    UUID userId;
+
+    /**
+     * Имитируем транзакцию: включаем синхронизацию, как это делает менеджер транзакций.
+     */
+    @BeforeEach
+    void setup() {
+        userId = UUID.randomUUID();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void cleanup() {
+        TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    /*
+        Все записи транзакции уходят в БД одним многострочным INSERT перед коммитом.
+     */
+    @Test
+    void record_flushedBeforeCommit() {
+        ledgerWriter.record(new TransferRequest(userId, 1L, 2L, new BigDecimal("10.00")));
+        ledgerWriter.record(new TransferRequest(userId, 2L, 3L, new BigDecimal("5.00")));
+        verifyNoInteractions(jdbcTemplate);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.beforeCommit(false));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(1)).update(sql.capture(), args.capture());
+        assertEquals(4, sql.getValue().split("\\(\\?").length - 1);
+        assertEquals(24, args.getValue().length);
+        assertEquals(1L, args.getValue()[1]);
+        assertEquals("DEBIT", args.getValue()[3]);
+        assertEquals(2L, args.getValue()[7]);
+        assertEquals("CREDIT", args.getValue()[9]);
+    }
+
+    /*
+        Откат транзакции - журнал не пишется.
+     */
+    @Test
+    void record_rollback() {
+        ledgerWriter.record(new TransferRequest(userId, 1L, 2L, new BigDecimal("10.00")));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        assertFalse(TransactionSynchronizationManager.hasResource(ledgerWriter));
+    }
+
+    /*
+        Вне транзакции журнал не пишется - это ошибка программиста.
+     */
+    @Test
+    void record_outsideTransaction() {
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThrows(IllegalStateException.class,
+                () -> ledgerWriter.record(new TransferRequest(userId, 1L, 2L, BigDecimal.ONE)));
+
+        TransactionSynchronizationManager.initSynchronization();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.transfer.LockingTransferEngine;
+import com.example.bankcards.service.validators.TransferValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LockingTransferEngineTest {
+
+    @Mock
+    CardRepository cardRepository;
+    @Spy
+    TransferValidator transferValidator;
+
+    @InjectMocks
+    LockingTransferEngine transferEngine;
+
+    UUID userId;
+    TransferRequest transferRequest;
+    Card cardFrom;
+    Card cardTo;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     */
+    @BeforeEach
+    void setup() {
+        userId = UUID.randomUUID();
+        YearMonth expiryDate = YearMonth.now().plusYears(3);
+        transferRequest = new TransferRequest(userId, 2L, 1L, new BigDecimal("30.0"));
+        cardFrom = new Card(2L, "1111222233334444", "hmac-1".getBytes(), expiryDate, CardStatus.ACTIVE, BigDecimal.valueOf(100), userId);
+        cardTo = new Card(1L, "5555666677778888", "hmac-2".getBytes(), expiryDate, CardStatus.ACTIVE, BigDecimal.valueOf(100), userId);
+    }
+
+    /*
+        Успешный перевод: обе карты блокируются одним запросом, баланс меняется в памяти.
+     */
+    @Test
+    void transfer_success() {
+        when(cardRepository.findAllByIdForUpdate(List.of(2L, 1L))).thenReturn(List.of(cardTo, cardFrom));
+
+        assertDoesNotThrow(() -> transferEngine.transfer(transferRequest));
+
+        assertEquals(new BigDecimal("70.0"), cardFrom.getBalance());
+        assertEquals(new BigDecimal("130.0"), cardTo.getBalance());
+        verify(cardRepository, times(1)).findAllByIdForUpdate(any());
+        verify(cardRepository, never()).findById(any());
+    }
+
+    /*
+        Тест на отсутствие одной из карт.
+     */
+    @Test
+    void transfer_failure_cardNotFound() {
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(cardFrom));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> transferEngine.transfer(transferRequest));
+
+        assertEquals(BankCardErrorCodes.CARD_NOT_FOUND, ex.getCode());
+        assertEquals(BigDecimal.valueOf(100), cardFrom.getBalance());
+    }
+
+    /*
+        Тест на недостаток средств.
+     */
+    @Test
+    void transfer_failure_notEnoughFunds() {
+        transferRequest.setAmount(new BigDecimal("100.01"));
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(cardTo, cardFrom));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> transferEngine.transfer(transferRequest));
+
+        assertEquals(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, ex.getCode());
+        assertEquals(BigDecimal.valueOf(100), cardFrom.getBalance());
+        assertEquals(BigDecimal.valueOf(100), cardTo.getBalance());
+    }
+
+    /*
+        Тест на попытку операции с не активной картой.
+     */
+    @Test
+    void transfer_failure_cardNotActive() {
+        cardFrom.setStatus(CardStatus.EXPIRED);
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(cardTo, cardFrom));
+
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> transferEngine.transfer(transferRequest));
+
+        assertEquals(BankCardErrorCodes.CARD_BAD_STATUS, ex.getCode());
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.PageCountProperties;
+import com.example.bankcards.dto.TotalMode;
+import com.example.bankcards.dto.filters.UserFilter;
+import com.example.bankcards.service.paging.PageCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PageCounterTest {
+
+    @Mock
+    JdbcTemplate jdbcTemplate;
+
+    PageCounter counter;
+    AtomicInteger exactCalls;
+    LongSupplier exact;
+
+    // не последняя страница: количество неизвестно без подсчета
+    Slice<String> middle = new SliceImpl<>(List.of("a", "b"), PageRequest.of(1, 2), true);
+
+    @BeforeEach
+    void setup() {
+        counter = new PageCounter(jdbcTemplate, new PageCountProperties());
+        exactCalls = new AtomicInteger();
+        exact = () -> {
+            exactCalls.incrementAndGet();
+            return 100;
+        };
+    }
+
+    /*
+        На последней странице количество известно без запросов, в любом режиме.
+     */
+    @Test
+    void count_lastPage_noQuery() {
+        Slice<String> last = new SliceImpl<>(List.of("a"), PageRequest.of(2, 2), false);
+
+        assertEquals(5, counter.count(last, "users", null, TotalMode.EXACT, exact));
+        assertEquals(5, counter.count(last, "users", null, TotalMode.NONE, exact));
+        assertEquals(0, exactCalls.get());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    /*
+        NONE - без подсчета.
+     */
+    @Test
+    void count_none() {
+        assertEquals(PageCounter.UNKNOWN, counter.count(middle, "users", null, TotalMode.NONE, exact));
+        assertEquals(0, exactCalls.get());
+    }
+
+    /*
+        CACHED - один COUNT на фильтр, равные фильтры делят запись кэша.
+     */
+    @Test
+    void count_cached() {
+        assertEquals(100, counter.count(middle, "users", new UserFilter("Iv", null, null, null), TotalMode.CACHED, exact));
+        assertEquals(100, counter.count(middle, "users", new UserFilter("Iv", null, null, null), TotalMode.CACHED, exact));
+        assertEquals(1, exactCalls.get());
+
+        counter.count(middle, "users", new UserFilter("Ma", null, null, null), TotalMode.CACHED, exact);
+        counter.count(middle, "cards", new UserFilter("Iv", null, null, null), TotalMode.CACHED, exact);
+        assertEquals(3, exactCalls.get());
+    }
+
+    /*
+        ESTIMATED без фильтра - статистика таблицы, с фильтром - как CACHED.
+     */
+    @Test
+    void count_estimated() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), eq("cards"))).thenReturn(12345L);
+
+        assertEquals(12345, counter.count(middle, "cards", null, TotalMode.ESTIMATED, exact));
+        assertEquals(12345, counter.count(middle, "cards", null, TotalMode.ESTIMATED, exact));
+        assertEquals(0, exactCalls.get());
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(Long.class), eq("cards"));
+
+        assertEquals(100, counter.count(middle, "cards", new UserFilter(null, null, true, null), TotalMode.ESTIMATED, exact));
+        assertEquals(1, exactCalls.get());
+    }
+
+    /*
+        Нет статистики - точный подсчет.
+     */
+    @Test
+    void count_estimated_fallback() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), eq("cards"))).thenThrow(new EmptyResultDataAccessException(1));
+
+        assertEquals(100, counter.count(middle, "cards", null, TotalMode.ESTIMATED, exact));
+        assertEquals(1, exactCalls.get());
+    }
+}
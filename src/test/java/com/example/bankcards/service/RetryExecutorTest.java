@@ -0,0 +1,94 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.RetryProperties;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.service.retry.RetryExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RetryExecutorTest {
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    SimpleMeterRegistry meterRegistry;
+    RetryExecutor retryExecutor;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     */
+    @BeforeEach
+    void setup() {
+        RetryProperties properties = new RetryProperties();
+        properties.setMaxAttempts(3);
+        properties.setInitialBackoff(Duration.ofMillis(1));
+        properties.setMaxBackoff(Duration.ofMillis(2));
+        meterRegistry = new SimpleMeterRegistry();
+        retryExecutor = new RetryExecutor(transactionManager, properties, meterRegistry);
+    }
+
+    /*
+        Конфликт версий повторяется в новой транзакции и считается в метрике.
+     */
+    @Test
+    void execute_retriesOnConflict() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = retryExecutor.execute("transfer", () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Card", 1L);
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, calls.get());
+        verify(transactionManager, times(3)).getTransaction(any());
+        assertEquals(2.0, meterRegistry.counter(RetryExecutor.RETRIES_METRIC, "operation", "transfer").count());
+    }
+
+    /*
+        Попытки кончились - отдаём понятный код ошибки.
+     */
+    @Test
+    void execute_failsWhenAttemptsExhausted() {
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> retryExecutor.execute("activate", () -> {
+            throw new ObjectOptimisticLockingFailureException("Card", 1L);
+        }));
+
+        assertEquals(BankCardErrorCodes.CARD_CONCURRENT_UPDATE, ex.getCode());
+        assertEquals(2.0, meterRegistry.counter(RetryExecutor.RETRIES_METRIC, "operation", "activate").count());
+        assertEquals(1.0, meterRegistry.counter(RetryExecutor.EXHAUSTED_METRIC, "operation", "activate").count());
+    }
+
+    /*
+        Бизнес-ошибки не повторяются.
+     */
+    @Test
+    void execute_doesNotRetryBusinessErrors() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(CardOperationException.class, () -> retryExecutor.execute("block", () -> {
+            calls.incrementAndGet();
+            throw new CardOperationException(BankCardErrorCodes.CARD_NOT_FOUND, "card does not exist");
+        }));
+
+        assertEquals(1, calls.get());
+        assertEquals(0.0, meterRegistry.counter(RetryExecutor.RETRIES_METRIC, "operation", "block").count());
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.ShardedEngineProperties;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.BankCardErrorCodes;
+import com.example.bankcards.exception.CardOperationException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.transfer.ShardedLedgerRecovery;
+import com.example.bankcards.service.transfer.ShardedTransferEngine;
+import com.example.bankcards.service.validators.TransferValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ShardedTransferEngineTest {
+
+    @Mock
+    CardRepository cardRepository;
+    @Mock
+    JdbcTemplate jdbcTemplate;
+    @Mock
+    PlatformTransactionManager transactionManager;
+    @Mock
+    ShardedLedgerRecovery recovery;
+    @Mock
+    ShardedLedgerRecovery.Session session;
+
+    ShardedTransferEngine transferEngine;
+
+    UUID userId;
+    Card card1;
+    Card card2;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     * Фоновые сброс и выгрузка практически отключены, балансы пишем в БД явным flush(),
+     * карты выгружаем явным evictIdle().
+     */
+    @BeforeEach
+    void setup() {
+        ShardedEngineProperties properties = new ShardedEngineProperties();
+        properties.setShards(2);
+        properties.setFlushInterval(Duration.ofHours(1));
+        properties.setIdleEviction(Duration.ZERO);
+        when(recovery.startSession()).thenReturn(session);
+        transferEngine = new ShardedTransferEngine(cardRepository, new TransferValidator(), jdbcTemplate, transactionManager, properties, recovery);
+
+        userId = UUID.randomUUID();
+        YearMonth expiryDate = YearMonth.now().plusYears(3);
+        card1 = new Card(1L, "1111222233334444", "hmac-1".getBytes(), expiryDate, CardStatus.ACTIVE, BigDecimal.valueOf(100), userId);
+        card2 = new Card(2L, "5555666677778888", "hmac-2".getBytes(), expiryDate, CardStatus.ACTIVE, BigDecimal.valueOf(100), userId);
+        lenient().when(cardRepository.findById(1L)).thenReturn(Optional.of(card1));
+        lenient().when(cardRepository.findById(2L)).thenReturn(Optional.of(card2));
+    }
+
+    @AfterEach
+    void cleanup() throws InterruptedException {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        transferEngine.shutdown();
+    }
+
+    /*
+        Сессия движка (с восстановлением незаписанных балансов прошлой) начинается до приема переводов.
+     */
+    @Test
+    void start_recoversBeforeTransfers() {
+        verify(recovery).startSession();
+        verifyNoInteractions(cardRepository, jdbcTemplate);
+    }
+
+    /*
+        Перевод между шардами без транзакции применяется сразу, баланс отдается из памяти.
+        Карты читаются из БД один раз.
+     */
+    @Test
+    void transfer_success() {
+        transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("30")));
+        transferEngine.transfer(new TransferRequest(userId, 2L, 1L, new BigDecimal("5")));
+
+        assertEquals(0, new BigDecimal("75").compareTo(transferEngine.getBalance(1L).orElseThrow()));
+        assertEquals(0, new BigDecimal("125").compareTo(transferEngine.getBalance(2L).orElseThrow()));
+        verify(cardRepository, times(1)).findById(1L);
+        verify(cardRepository, times(1)).findById(2L);
+    }
+
+    /*
+        Резерв учитывается до коммита: второй перевод не может потратить те же деньги.
+        Откат транзакции снимает резерв.
+     */
+    @Test
+    void transfer_reservedUntilCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("80")));
+
+        CardOperationException ex = assertThrows(CardOperationException.class,
+                () -> transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("30"))));
+        assertEquals(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, ex.getCode());
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(transferEngine.getBalance(1L).orElseThrow()));
+        assertDoesNotThrow(() -> transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("30"))));
+    }
+
+    /*
+        После коммита сумма списывается и зачисляется.
+     */
+    @Test
+    void transfer_appliedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("40")));
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(transferEngine.getBalance(1L).orElseThrow()));
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(0, new BigDecimal("60").compareTo(transferEngine.getBalance(1L).orElseThrow()));
+        assertEquals(0, new BigDecimal("140").compareTo(transferEngine.getBalance(2L).orElseThrow()));
+    }
+
+    /*
+        Исход коммита неизвестен: резерв не снимается, карты не принимают переводы до перечитывания,
+        а перечитываются, только когда начатые с ними переводы завершены.
+        Перевод, упавший на резерве, не оставляет карту-приемник "занятой".
+     */
+    @Test
+    void transfer_unknownOutcome_cardsReloaded() {
+        assertEquals(BankCardErrorCodes.CARD_NOT_ENOUGHT_FUNDS, assertThrows(CardOperationException.class,
+                () -> transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("500")))).getCode());
+        TransactionSynchronizationManager.initSynchronization();
+        transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("40")));
+        complete(TransactionSynchronization.STATUS_UNKNOWN);
+
+        assertEquals(BankCardErrorCodes.CARD_CONCURRENT_UPDATE, assertThrows(CardOperationException.class,
+                () -> transferEngine.transfer(new TransferRequest(userId, 2L, 1L, BigDecimal.ONE))).getCode());
+
+        // коммит на самом деле прошел
+        when(recovery.reloadCard(0L, 1L)).thenReturn(new Object[]{new BigDecimal("60"), new BigDecimal("-40")});
+        when(recovery.reloadCard(0L, 2L)).thenReturn(new Object[]{new BigDecimal("140"), new BigDecimal("40")});
+        transferEngine.flush();
+
+        assertEquals(0, new BigDecimal("60").compareTo(transferEngine.getBalance(1L).orElseThrow()));
+        assertEquals(0, new BigDecimal("140").compareTo(transferEngine.getBalance(2L).orElseThrow()));
+        assertDoesNotThrow(() -> transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("60"))));
+    }
+
+    /*
+        Результат коммита не удалось применить (переполнение баланса): перевод не теряется молча,
+        карта перечитывается из БД.
+     */
+    @Test
+    void transfer_completionFailed_cardReloaded() {
+        card2.setBalance(new BigDecimal("92233720368547758.00"));
+        transferEngine.transfer(new TransferRequest(userId, 1L, 2L, BigDecimal.ONE));
+
+        assertEquals(BankCardErrorCodes.CARD_CONCURRENT_UPDATE, assertThrows(CardOperationException.class,
+                () -> transferEngine.transfer(new TransferRequest(userId, 2L, 1L, BigDecimal.ONE))).getCode());
+
+        when(recovery.reloadCard(0L, 2L)).thenReturn(new Object[]{new BigDecimal("100"), BigDecimal.ZERO});
+        transferEngine.flush();
+
+        verify(recovery, never()).reloadCard(0L, 1L);
+        assertEquals(0, new BigDecimal("99").compareTo(transferEngine.getBalance(1L).orElseThrow()));
+        assertDoesNotThrow(() -> transferEngine.transfer(new TransferRequest(userId, 2L, 1L, BigDecimal.ONE)));
+    }
+
+    /*
+        Проверки карт: чужая, неактивная, несуществующая.
+     */
+    @Test
+    void transfer_failure_cardChecks() {
+        card2.setStatus(CardStatus.BLOCKED);
+        when(cardRepository.findById(3L)).thenReturn(Optional.empty());
+
+        assertEquals(BankCardErrorCodes.CARD_BAD_STATUS, assertThrows(CardOperationException.class,
+                () -> transferEngine.transfer(new TransferRequest(userId, 1L, 2L, BigDecimal.ONE))).getCode());
+        assertEquals(BankCardErrorCodes.CARD_NOT_FOUND, assertThrows(CardOperationException.class,
+                () -> transferEngine.transfer(new TransferRequest(userId, 1L, 3L, BigDecimal.ONE))).getCode());
+        assertEquals(BankCardErrorCodes.CARD_INVALID_OWNER, assertThrows(CardOperationException.class,
+                () -> transferEngine.transfer(new TransferRequest(UUID.randomUUID(), 2L, 1L, BigDecimal.ONE))).getCode());
+
+        transferEngine.statusChanged(2L, CardStatus.ACTIVE);
+        assertDoesNotThrow(() -> transferEngine.transfer(new TransferRequest(userId, 1L, 2L, BigDecimal.ONE)));
+    }
+
+    /*
+        Сброс пишет только измененные карты одним пакетом (баланс и учтенную сумму журнала), повторный сброс ничего не пишет.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_writeBehind() {
+        transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("30")));
+
+        transferEngine.flush();
+        transferEngine.flush();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), rows.capture());
+        assertEquals(2, rows.getValue().size());
+        assertTrue(rows.getValue().stream().anyMatch(row -> row[2].equals(1L) && new BigDecimal("70").compareTo((BigDecimal) row[0]) == 0
+                && new BigDecimal("-30").compareTo((BigDecimal) row[1]) == 0));
+        assertTrue(rows.getValue().stream().anyMatch(row -> row[2].equals(2L) && new BigDecimal("130").compareTo((BigDecimal) row[0]) == 0
+                && new BigDecimal("30").compareTo((BigDecimal) row[1]) == 0));
+    }
+
+    /*
+        Ошибка записи - балансы будут записаны следующим сбросом.
+     */
+    @Test
+    void flush_failureRetried() {
+        transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("30")));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new IllegalStateException("db is down")).thenReturn(new int[0]);
+
+        assertThrows(IllegalStateException.class, () -> transferEngine.flush());
+        transferEngine.flush();
+
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+    }
+
+    /*
+        Выгружаются только записанные в БД карты без начатых переводов; выгруженная карта
+        при следующем переводе снова читается из БД.
+     */
+    @Test
+    void evictIdle_onlyFlushedCards() {
+        TransactionSynchronizationManager.initSynchronization();
+        transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("30")));
+        transferEngine.evictIdle();
+        assertTrue(transferEngine.getBalance(1L).isPresent());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        transferEngine.evictIdle();
+        assertTrue(transferEngine.getBalance(1L).isPresent());
+        assertTrue(transferEngine.getBalance(2L).isPresent());
+
+        transferEngine.flush();
+        transferEngine.evictIdle();
+        assertTrue(transferEngine.getBalance(1L).isEmpty());
+        assertTrue(transferEngine.getBalance(2L).isEmpty());
+
+        card1.setBalance(new BigDecimal("70"));
+        card2.setBalance(new BigDecimal("130"));
+        transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("70")));
+        assertEquals(0, BigDecimal.ZERO.compareTo(transferEngine.getBalance(1L).orElseThrow()));
+        assertEquals(0, new BigDecimal("200").compareTo(transferEngine.getBalance(2L).orElseThrow()));
+        verify(cardRepository, times(2)).findById(1L);
+        verify(cardRepository, times(2)).findById(2L);
+    }
+
+    /*
+        Остановка пишет балансы и только потом освобождает сессию для следующего движка.
+     */
+    @Test
+    void shutdown_flushesThenReleasesSession() throws InterruptedException {
+        transferEngine.transfer(new TransferRequest(userId, 1L, 2L, new BigDecimal("30")));
+
+        transferEngine.shutdown();
+
+        InOrder order = inOrder(jdbcTemplate, session);
+        order.verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        order.verify(session).close();
+        // cleanup() останавливает движок теста еще раз
+        transferEngine = new ShardedTransferEngine(cardRepository, new TransferValidator(), jdbcTemplate, transactionManager,
+                new ShardedEngineProperties(), recovery);
+    }
+
+    private void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.afterCompletion(status));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.UserExistsCacheProperties;
+import com.example.bankcards.service.cache.UserExistsCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserExistsCacheTest {
+
+    SimpleMeterRegistry registry;
+    UserExistsCache cache;
+    AtomicInteger dbCalls;
+
+    @BeforeEach
+    void setup() {
+        registry = new SimpleMeterRegistry();
+        cache = new UserExistsCache(new UserExistsCacheProperties(), registry);
+        dbCalls = new AtomicInteger();
+    }
+
+    private Predicate<UUID> db(boolean exists) {
+        return id -> {
+            dbCalls.incrementAndGet();
+            return exists;
+        };
+    }
+
+    /*
+        Повторные проверки одного пользователя идут в БД один раз.
+     */
+    @Test
+    void exists_cached() {
+        UUID userId = UUID.randomUUID();
+
+        assertTrue(cache.exists(userId, db(true)));
+        assertTrue(cache.exists(userId, db(true)));
+        assertTrue(cache.exists(userId, db(true)));
+
+        assertEquals(1, dbCalls.get());
+        assertEquals(2.0, gets("hit"));
+        assertEquals(1.0, gets("miss"));
+    }
+
+    /*
+        Отсутствие пользователя тоже кэшируется.
+     */
+    @Test
+    void exists_negativeCached() {
+        UUID userId = UUID.randomUUID();
+
+        assertFalse(cache.exists(userId, db(false)));
+        assertFalse(cache.exists(userId, db(true)));
+
+        assertEquals(1, dbCalls.get());
+    }
+
+    /*
+        После сброса записи пользователь снова проверяется по БД.
+     */
+    @Test
+    void invalidate() {
+        UUID userId = UUID.randomUUID();
+        assertFalse(cache.exists(userId, db(false)));
+
+        cache.invalidate(userId);
+        cache.invalidate(null);
+
+        assertTrue(cache.exists(userId, db(true)));
+        assertEquals(2, dbCalls.get());
+    }
+
+    /*
+        Ошибка БД не кэшируется.
+     */
+    @Test
+    void exists_errorNotCached() {
+        UUID userId = UUID.randomUUID();
+
+        assertThrows(IllegalStateException.class, () -> cache.exists(userId, id -> {
+            throw new IllegalStateException("db is down");
+        }));
+
+        assertTrue(cache.exists(userId, db(true)));
+        assertEquals(1, dbCalls.get());
+    }
+
+    private double gets(String result) {
+        return registry.get("cache.gets").tag("cache", UserExistsCache.CACHE_NAME).tag("result", result)
+                .functionCounter().count();
+    }
+}
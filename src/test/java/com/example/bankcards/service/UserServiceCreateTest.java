@@ -8,6 +8,7 @@ import com.example.bankcards.entity.auth.User;
 import com.example.bankcards.exception.UserOperationException;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.CustomPasswordEncoder;
+import com.example.bankcards.service.cache.UserExistsCache;
 import com.example.bankcards.service.mappers.RoleMapper;
 import com.example.bankcards.service.mappers.UserMapper;
 import com.example.bankcards.service.validators.UserValidator;
@@ -38,6 +39,8 @@ public class UserServiceCreateTest {
     private UserValidator userValidator;
     @Mock
     private RoleMapper roleMapper;
+    @Mock
+    private UserExistsCache userExistsCache;
 
 
     // тестируем UserService
@@ -101,6 +104,7 @@ public class UserServiceCreateTest {
         assertEquals(response.isEnabled(), enabled);
         verify(userValidator).validateUserRequest(signUpRequest);     // проверяем, не забыли ли валидацию
         verify(userRepository).save(user);                          // и что сохраняли в БД
+        verify(userExistsCache).invalidate(userId);                 // и сбросили кэш существования
     }
 
     /*
@@ -2,6 +2,7 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.exception.UserOperationException;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.cache.UserExistsCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,6 +21,8 @@ import static org.mockito.Mockito.*;
 public class UserServiceDeleteTest {
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private UserExistsCache userExistsCache;
 
     // тестируем UserService
     @InjectMocks
@@ -51,6 +54,7 @@ public class UserServiceDeleteTest {
 
         // проверяем
         verify(userRepository).deleteById(userId);
+        verify(userExistsCache).invalidate(userId);
     }
 
     /*
@@ -66,6 +70,7 @@ public class UserServiceDeleteTest {
 
         // проверяем
         verify(userRepository, never()).deleteById(userId);
+        verifyNoInteractions(userExistsCache);
     }
 
 }
@@ -1,11 +1,13 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.dto.PageDTO;
+import com.example.bankcards.dto.TotalMode;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.dto.filters.UserFilter;
 import com.example.bankcards.entity.auth.User;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.mappers.UserMapper;
+import com.example.bankcards.service.paging.PageCounter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,11 +19,16 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.domain.Specification;
 
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import java.util.List;
 import static org.mockito.Mockito.when;
@@ -35,6 +42,9 @@ public class UserServiceReadTest {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private PageCounter pageCounter;
+
     // тестируем UserService
     @InjectMocks
     private UserServiceImpl userService;
@@ -65,6 +75,27 @@ public class UserServiceReadTest {
         assertSame(expected, result);
     }
 
+    /*
+        Выборка без точного подсчета: Slice без COUNT(*), количество - от PageCounter.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAllUsers_withoutExactCount() {
+        Pageable pageable = PageRequest.of(0, 10);
+        Slice<User> slice = new SliceImpl<>(List.of(new User()), pageable, true);
+        PageDTO<UserResponse> expected = new PageDTO<>();
+
+        when(userRepository.findBy(anySpec(), any())).thenReturn(slice);
+        when(pageCounter.count(eq(slice), eq("users"), eq(null), eq(TotalMode.CACHED), any())).thenReturn(42L);
+        when(userMapper.toPageUser(slice, 42L, TotalMode.CACHED)).thenReturn(expected);
+
+        PageDTO<UserResponse> result = userService.getAllUsers(new UserFilter(), pageable, TotalMode.CACHED);
+
+        assertSame(expected, result);
+        verify(userRepository, never()).findAll(anySpec(), any(Pageable.class));
+        verify(userRepository, never()).count(anySpec());
+    }
+
     /*
         Проверка реакции на ошибку БД. Должна вернуть пустой список.
      */
@@ -0,0 +1,43 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class CardDateUtilTest {
+
+    /*
+        Тест числового формата yyyymm: порядок чисел совпадает с порядком дат.
+     */
+    @Test
+    void toDbInt() {
+        assertThat(CardDateUtil.toDbInt(YearMonth.of(2028, 8))).isEqualTo(202808);
+        assertThat(CardDateUtil.toDbInt(YearMonth.of(2028, 12))).isLessThan(CardDateUtil.toDbInt(YearMonth.of(2029, 1)));
+        assertThat(CardDateUtil.toDbInt(null)).isNull();
+    }
+
+    /*
+        Тест разбора: в диапазоне кэша - один и тот же объект, за его пределами - новый.
+     */
+    @Test
+    void fromDbInt() {
+        assertThat(CardDateUtil.fromDbInt(202808)).isEqualTo(YearMonth.of(2028, 8));
+        assertThat(CardDateUtil.fromDbInt(202808)).isSameAs(CardDateUtil.fromDbInt(202808));
+        assertThat(CardDateUtil.fromDbInt(215001)).isEqualTo(YearMonth.of(2150, 1));
+        assertThat(CardDateUtil.fromDbInt(81203)).isEqualTo(YearMonth.of(812, 3));
+    }
+
+    /*
+        Тест некорректных значений: null.
+     */
+    @Test
+    void fromDbInt_invalid() {
+        assertThat(CardDateUtil.fromDbInt(null)).isNull();
+        assertThat(CardDateUtil.fromDbInt(202813)).isNull();
+        assertThat(CardDateUtil.fromDbInt(202800)).isNull();
+        assertThat(CardDateUtil.fromDbInt(-202808)).isNull();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CardNumberHasherTest {
+
+    private static final String SECRET = "Nn2lEsSSml1Rnp9ctqH1dz6LgjsCC7nxmCqB1TXghx0=";
+
+    @BeforeEach
+    void setup() {
+        new CardNumberHasher(SECRET);
+    }
+
+    // прежняя реализация: новый Mac и ключ на каждый вызов
+    private static String reference(String value) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return Base64.getEncoder().encodeToString(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /*
+        Результат совпадает с прежней реализацией (значения в БД остаются валидными), повторный вызов - тот же.
+     */
+    @Test
+    void sameAsReference() throws Exception {
+        for (String value : List.of("1111 2222 3333 4444", "5555 6666 7777 8888", "", "x".repeat(100), "номер карты")) {
+            assertEquals(reference(value), CardNumberHasher.hmacSha256(value));
+            assertEquals(reference(value), CardNumberHasher.hmacSha256(value));
+        }
+    }
+
+    /*
+        Байтовый вариант - тот же HMAC без Base64, каждый раз в новом массиве.
+     */
+    @Test
+    void bytesSameAsReference() throws Exception {
+        byte[] first = CardNumberHasher.hmacSha256Bytes("1111 2222 3333 4444");
+        byte[] second = CardNumberHasher.hmacSha256Bytes("5555 6666 7777 8888");
+
+        assertEquals(32, first.length);
+        assertArrayEquals(Base64.getDecoder().decode(reference("1111 2222 3333 4444")), first);
+        assertArrayEquals(Base64.getDecoder().decode(reference("5555 6666 7777 8888")), second);
+    }
+
+    /*
+        null - ошибка, как и раньше, и она не портит состояние потока.
+     */
+    @Test
+    void nullValue() throws Exception {
+        assertThrows(IllegalStateException.class, () -> CardNumberHasher.hmacSha256(null));
+        assertEquals(reference("1111 2222 3333 4444"), CardNumberHasher.hmacSha256("1111 2222 3333 4444"));
+    }
+
+    /*
+        Параллельные вызовы дают корректный результат (у каждого потока свой Mac).
+     */
+    @Test
+    void concurrentUse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = IntStream.range(0, 2000)
+                    .mapToObj(i -> executor.submit(() -> {
+                        String number = String.format("1111 2222 3333 %04d", i);
+                        return reference(number).equals(CardNumberHasher.hmacSha256(number));
+                    }))
+                    .toList();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class CardUtilTest {
+
+    /*
+        Тест валидации и нормализации номера: разделители любые, цифр ровно 16.
+     */
+    @Test
+    void normalizeCardNumber() {
+        assertThat(CardUtil.normalizeCardNumber("1111222233334444")).isEqualTo("1111 2222 3333 4444");
+        assertThat(CardUtil.normalizeCardNumber("1111-2222-3333-4444")).isEqualTo("1111 2222 3333 4444");
+        assertThat(CardUtil.normalizeCardNumber(" 1111 2222 3333 4444 ")).isEqualTo("1111 2222 3333 4444");
+        assertThat(CardUtil.normalizeCardNumber("1111 2222 3333 4444")).isEqualTo("1111 2222 3333 4444");
+        assertThat(CardUtil.normalizeCardNumber("1111 2222 3333 44445")).isEmpty();
+        assertThat(CardUtil.normalizeCardNumber("1111 2222 3333 444")).isEmpty();
+        assertThat(CardUtil.normalizeCardNumber(null)).isEmpty();
+
+        assertThat(CardUtil.isCardNumberValid("1111-2222 3333x4444")).isTrue();
+        assertThat(CardUtil.isCardNumberValid("1234567890")).isFalse();
+        assertThat(CardUtil.isCardNumberValid("11112222333344445")).isFalse();
+        assertThat(CardUtil.isCardNumberValid(null)).isFalse();
+    }
+
+    /*
+        Тест маски полного номера.
+     */
+    @Test
+    void getMaskedNumber() {
+        assertThat(CardUtil.getMaskedNumber("1111-2222-3333-4567")).isEqualTo("**** **** **** 4567");
+        assertThat(CardUtil.getMaskedNumber("1111 2222 3333 0009")).isEqualTo("**** **** **** 0009");
+        assertThat(CardUtil.getMaskedNumber("1111")).isEqualTo("???? ???? ???? ????");
+        assertThat(CardUtil.getMaskedNumber(null)).isEqualTo("???? ???? ???? ????");
+    }
+
+    /*
+        Тест контрольной цифры по алгоритму Луна.
+     */
+    @Test
+    void isLuhnValid() {
+        assertThat(CardUtil.isLuhnValid("4111 1111 1111 1111")).isTrue();
+        assertThat(CardUtil.isLuhnValid("1111-2222-3333-4444")).isTrue();
+        assertThat(CardUtil.isLuhnValid("4000000000000002")).isTrue();
+        assertThat(CardUtil.isLuhnValid("4111 1111 1111 1112")).isFalse();
+        assertThat(CardUtil.isLuhnValid("5555 6666 7777 8888")).isFalse();
+        // 15 цифр - не номер карты, даже если сумма сходится
+        assertThat(CardUtil.isLuhnValid("378282246310005")).isFalse();
+        assertThat(CardUtil.isLuhnValid(null)).isFalse();
+    }
+
+    /*
+        Тест получения последних цифр из номера в разных форматах.
+     */
+    @Test
+    void getLast4_validNumber() {
+        assertThat(CardUtil.getLast4("1111222233334444")).isEqualTo("4444");
+        assertThat(CardUtil.getLast4("1111 2222 3333 4444")).isEqualTo("4444");
+        assertThat(CardUtil.getLast4("1111-2222-3333-4444")).isEqualTo("4444");
+    }
+
+    /*
+        Тест невалидного номера: цифры не выдаются.
+     */
+    @Test
+    void getLast4_invalidNumber() {
+        assertThat(CardUtil.getLast4(null)).isNull();
+        assertThat(CardUtil.getLast4("1111")).isNull();
+        assertThat(CardUtil.getLast4("1111 2222 3333 44A4")).isNull();
+    }
+
+    /*
+        Тест нормализации последних цифр, введенных пользователем.
+     */
+    @Test
+    void normalizeLast4() {
+        assertThat(CardUtil.normalizeLast4("4444")).isEqualTo("4444");
+        assertThat(CardUtil.normalizeLast4("**** 4444")).isEqualTo("4444");
+        assertThat(CardUtil.normalizeLast4("444")).isNull();
+        assertThat(CardUtil.normalizeLast4("44445")).isNull();
+        assertThat(CardUtil.normalizeLast4(null)).isNull();
+    }
+
+    /*
+        Тест маски по последним цифрам.
+     */
+    @Test
+    void getMaskedLast4() {
+        assertThat(CardUtil.getMaskedLast4("4444")).isEqualTo("**** **** **** 4444");
+        assertThat(CardUtil.getMaskedLast4(null)).isEqualTo("???? ???? ???? ????");
+        assertThat(CardUtil.getMaskedLast4("44")).isEqualTo("???? ???? ???? ????");
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoneyTest {
+
+    /*
+        Перевод из BigDecimal и обратно без потери точности.
+     */
+    @Test
+    void conversion() {
+        assertEquals(10050, Money.toMinor(new BigDecimal("100.50")));
+        assertEquals(10050, Money.toMinor(new BigDecimal("100.5")));
+        assertEquals(10000, Money.toMinor(BigDecimal.valueOf(100)));
+        assertEquals(-1, Money.toMinor(new BigDecimal("-0.01")));
+        assertEquals(new BigDecimal("100.50"), Money.toBigDecimal(10050));
+        assertEquals(new BigDecimal("100.50"), Money.toBigDecimal(Money.toMinor(new BigDecimal("100.500"))));
+    }
+
+    /*
+        Больше 2 знаков после запятой и суммы вне long - ошибка, а не округление.
+     */
+    @Test
+    void conversion_failure() {
+        assertThrows(ArithmeticException.class, () -> Money.toMinor(new BigDecimal("0.001")));
+        assertThrows(ArithmeticException.class, () -> Money.toMinor(new BigDecimal("1e30")));
+    }
+
+    /*
+        Арифметика с проверкой переполнения.
+     */
+    @Test
+    void arithmetic() {
+        assertEquals(1100, Money.add(1025, 75));
+        assertEquals(-50, Money.subtract(25, 75));
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.subtract(Long.MIN_VALUE, 1));
+    }
+}